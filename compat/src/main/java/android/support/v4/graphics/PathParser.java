@@ -22,7 +22,9 @@ import android.graphics.Path;
 import android.support.annotation.RestrictTo;
 import android.util.Log;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * This class is a duplicate from the PathParser.java of frameworks/base, with slight
@@ -91,25 +93,9 @@ public class PathParser {
         if (pathData == null) {
             return null;
         }
-        int start = 0;
-        int end = 1;
-
-        ArrayList<PathDataNode> list = new ArrayList<PathDataNode>();
-        while (end < pathData.length()) {
-            end = nextStart(pathData, end);
-            String s = pathData.substring(start, end).trim();
-            if (s.length() > 0) {
-                float[] val = getFloats(s);
-                addNode(list, s.charAt(0), val);
-            }
-
-            start = end;
-            end++;
-        }
-        if ((end - start) == 1 && start < pathData.length()) {
-            addNode(list, pathData.charAt(start), new float[0]);
-        }
-        return list.toArray(new PathDataNode[list.size()]);
+        final PackedPathData data = new PackedPathData();
+        data.parse(pathData);
+        return data.toNodes();
     }
 
     /**
@@ -127,6 +113,63 @@ public class PathParser {
         return copy;
     }
 
+    /**
+     * Writes nodes in a packed form which can be read back by {@link #readNodes(DataInput)}
+     * without parsing a path string: the number of nodes, the type of each node, the number of
+     * parameters of each node, and then all the parameters.
+     *
+     * @param nodes The array of PathDataNode to write, can be null.
+     * @param out   The output to write to.
+     */
+    public static void writeNodes(PathDataNode[] nodes, DataOutput out) throws IOException {
+        if (nodes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            out.writeByte(nodes[i].mType);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            out.writeShort(nodes[i].mParams.length);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            final float[] params = nodes[i].mParams;
+            for (int j = 0; j < params.length; j++) {
+                out.writeFloat(params[j]);
+            }
+        }
+    }
+
+    /**
+     * @param in The input to read nodes written by {@link #writeNodes(PathDataNode[], DataOutput)}
+     *           from.
+     * @return the array of PathDataNode, or null if null was written.
+     */
+    public static PathDataNode[] readNodes(DataInput in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        final char[] types = new char[count];
+        for (int i = 0; i < count; i++) {
+            types[i] = (char) in.readUnsignedByte();
+        }
+        final float[][] params = new float[count][];
+        for (int i = 0; i < count; i++) {
+            params[i] = new float[in.readUnsignedShort()];
+        }
+        final PathDataNode[] nodes = new PathDataNode[count];
+        for (int i = 0; i < count; i++) {
+            final float[] nodeParams = params[i];
+            for (int j = 0; j < nodeParams.length; j++) {
+                nodeParams[j] = in.readFloat();
+            }
+            nodes[i] = new PathDataNode(types[i], nodeParams);
+        }
+        return nodes;
+    }
+
     /**
      * @param nodesFrom The source path represented in an array of PathDataNode
      * @param nodesTo   The target path represented in an array of PathDataNode
@@ -184,10 +227,6 @@ public class PathParser {
         return end;
     }
 
-    private static void addNode(ArrayList<PathDataNode> list, char cmd, float[] val) {
-        list.add(new PathDataNode(cmd, val));
-    }
-
     private static class ExtractFloatResult {
         // We need to return the position of the next separator and whether the
         // next float starts with a '-' or a '.'.
@@ -198,67 +237,23 @@ public class PathParser {
         }
     }
 
-    /**
-     * Parse the floats in the string.
-     * This is an optimized version of parseFloat(s.split(",|\\s"));
-     *
-     * @param s the string containing a command and list of floats
-     * @return array of floats
-     */
-    private static float[] getFloats(String s) {
-        if (s.charAt(0) == 'z' || s.charAt(0) == 'Z') {
-            return new float[0];
-        }
-        try {
-            float[] results = new float[s.length()];
-            int count = 0;
-            int startPosition = 1;
-            int endPosition = 0;
-
-            ExtractFloatResult result = new ExtractFloatResult();
-            int totalLength = s.length();
-
-            // The startPosition should always be the first character of the
-            // current number, and endPosition is the character after the current
-            // number.
-            while (startPosition < totalLength) {
-                extract(s, startPosition, result);
-                endPosition = result.mEndPosition;
-
-                if (startPosition < endPosition) {
-                    results[count++] = Float.parseFloat(
-                            s.substring(startPosition, endPosition));
-                }
-
-                if (result.mEndWithNegOrDot) {
-                    // Keep the '-' or '.' sign with next number.
-                    startPosition = endPosition;
-                } else {
-                    startPosition = endPosition + 1;
-                }
-            }
-            return copyOfRange(results, 0, count);
-        } catch (NumberFormatException e) {
-            throw new RuntimeException("error in parsing \"" + s + "\"", e);
-        }
-    }
-
     /**
      * Calculate the position of the next comma or space or negative sign
      *
      * @param s      the string to search
      * @param start  the position to start searching
+     * @param end    the position to stop searching at, exclusive
      * @param result the result of the extraction, including the position of the
      *               the starting position of next number, whether it is ending with a '-'.
      */
-    private static void extract(String s, int start, ExtractFloatResult result) {
+    private static void extract(String s, int start, int end, ExtractFloatResult result) {
         // Now looking for ' ', ',', '.' or '-' from the start.
         int currentIndex = start;
         boolean foundSeparator = false;
         result.mEndWithNegOrDot = false;
         boolean secondDot = false;
         boolean isExponential = false;
-        for (; currentIndex < s.length(); currentIndex++) {
+        for (; currentIndex < end; currentIndex++) {
             boolean isPrevExponential = isExponential;
             isExponential = false;
             char currentChar = s.charAt(currentIndex);
@@ -297,6 +292,328 @@ public class PathParser {
         result.mEndPosition = currentIndex;
     }
 
+    // Largest integer up to which every integer is exactly representable as a float.
+    private static final int MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+
+    // Powers of ten which are exactly representable as a float.
+    private static final float[] EXACT_FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    /**
+     * Parses the number of {@code s} from {@code start} to {@code end}, with the same result as
+     * {@link Float#parseFloat(String)}.
+     * <p>
+     * Numbers whose digits form an integer of at most 2^24 and whose power of ten is at most
+     * 10^10, which covers the numbers of path data, are computed from the digits in place: both
+     * are exactly representable as floats, so a single multiplication or division gives the
+     * correctly rounded result. Other numbers fall back to {@link Float#parseFloat(String)}.
+     */
+    static float parseFloat(String s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        char c = s.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        int mantissa = 0;
+        boolean hasDigits = false;
+        boolean hasDot = false;
+        int exponent = 0;
+        for (; i < end; i++) {
+            c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > MAX_EXACT_FLOAT_MANTISSA) {
+                    return Float.parseFloat(s.substring(start, end));
+                }
+                hasDigits = true;
+                if (hasDot) {
+                    exponent--;
+                }
+            } else if (c == '.' && !hasDot) {
+                hasDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!hasDigits) {
+            return Float.parseFloat(s.substring(start, end));
+        }
+        if (i < end) {
+            if (c != 'e' && c != 'E' || ++i == end) {
+                return Float.parseFloat(s.substring(start, end));
+            }
+            c = s.charAt(i);
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                if (++i == end) {
+                    return Float.parseFloat(s.substring(start, end));
+                }
+            }
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                c = s.charAt(i);
+                if (c < '0' || c > '9' || explicitExponent > EXACT_FLOAT_POWERS_OF_TEN.length) {
+                    return Float.parseFloat(s.substring(start, end));
+                }
+                explicitExponent = explicitExponent * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        float value;
+        if (mantissa == 0) {
+            value = 0f;
+        } else if (exponent >= 0 && exponent < EXACT_FLOAT_POWERS_OF_TEN.length) {
+            value = mantissa * EXACT_FLOAT_POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < EXACT_FLOAT_POWERS_OF_TEN.length) {
+            value = mantissa / EXACT_FLOAT_POWERS_OF_TEN[-exponent];
+        } else {
+            return Float.parseFloat(s.substring(start, end));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * A path represented with a single array of commands and a single array holding the
+     * parameters of all the commands, instead of one {@link PathDataNode} per command.
+     * <p>
+     * The arrays are reused, so interpolating between two paths and converting the result to a
+     * {@link Path} do not allocate once they are large enough. Parsing does not allocate either,
+     * except for the rare numbers with many significant digits, which are parsed with
+     * {@link Float#parseFloat(String)}. This is meant for path morphing, where a new path is
+     * computed for every frame.
+     */
+    public static class PackedPathData {
+        // Command of each node.
+        byte[] mTypes = new byte[16];
+        // Parameters of node i are in mParams[mParamOffsets[i]] to mParams[mParamOffsets[i + 1]].
+        int[] mParamOffsets = new int[17];
+        float[] mParams = new float[64];
+        int mNodeCount;
+
+        private final ExtractFloatResult mExtractResult = new ExtractFloatResult();
+        private final float[] mCurrent = new float[6];
+
+        public PackedPathData() {
+        }
+
+        /**
+         * @return the number of commands of this path.
+         */
+        public int getNodeCount() {
+            return mNodeCount;
+        }
+
+        /**
+         * @return the total number of parameters of the commands of this path.
+         */
+        public int getParamCount() {
+            return mParamOffsets[mNodeCount];
+        }
+
+        /**
+         * Replaces the content of this path by the parsed path string. The result is the same as
+         * {@link PathParser#createNodesFromPathData(String)}.
+         *
+         * @param pathData The string representing a path, the same as "d" string in svg file.
+         */
+        public void parse(String pathData) {
+            mNodeCount = 0;
+            mParamOffsets[0] = 0;
+            final int length = pathData.length();
+            int start = 0;
+            int end = 1;
+            while (end < length) {
+                end = nextStart(pathData, end);
+                parseNode(pathData, start, end);
+                start = end;
+                end++;
+            }
+            if ((end - start) == 1 && start < length) {
+                addNode(pathData.charAt(start), 0);
+            }
+        }
+
+        /**
+         * Parses the command of {@code s} from {@code start} to {@code end}, ignoring the
+         * leading and trailing whitespace.
+         */
+        private void parseNode(String s, int start, int end) {
+            while (start < end && s.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && s.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                return;
+            }
+            final char type = s.charAt(start);
+            if (type == 'z' || type == 'Z') {
+                addNode(type, 0);
+                return;
+            }
+            // There can not be more numbers than characters.
+            final int paramOffset = mParamOffsets[mNodeCount];
+            ensureParamCapacity(paramOffset + end - start);
+
+            int count = 0;
+            try {
+                final ExtractFloatResult result = mExtractResult;
+                int startPosition = start + 1;
+                while (startPosition < end) {
+                    extract(s, startPosition, end, result);
+                    final int endPosition = result.mEndPosition;
+
+                    if (startPosition < endPosition) {
+                        mParams[paramOffset + count++] = PathParser.parseFloat(s, startPosition,
+                                endPosition);
+                    }
+
+                    if (result.mEndWithNegOrDot) {
+                        // Keep the '-' or '.' sign with next number.
+                        startPosition = endPosition;
+                    } else {
+                        startPosition = endPosition + 1;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("error in parsing \"" + s.substring(start, end) + "\"",
+                        e);
+            }
+            addNode(type, count);
+        }
+
+        /**
+         * Adds a node whose parameters have already been written after the last node.
+         */
+        private void addNode(char type, int paramCount) {
+            ensureNodeCapacity(mNodeCount + 1);
+            mTypes[mNodeCount] = (byte) type;
+            mParamOffsets[mNodeCount + 1] = mParamOffsets[mNodeCount] + paramCount;
+            mNodeCount++;
+        }
+
+        private void ensureNodeCapacity(int nodeCount) {
+            if (mTypes.length < nodeCount) {
+                final int capacity = Math.max(nodeCount, mTypes.length * 2);
+                final byte[] types = new byte[capacity];
+                System.arraycopy(mTypes, 0, types, 0, mNodeCount);
+                mTypes = types;
+                final int[] offsets = new int[capacity + 1];
+                System.arraycopy(mParamOffsets, 0, offsets, 0, mNodeCount + 1);
+                mParamOffsets = offsets;
+            }
+        }
+
+        private void ensureParamCapacity(int paramCount) {
+            if (mParams.length < paramCount) {
+                final float[] params = new float[Math.max(paramCount, mParams.length * 2)];
+                System.arraycopy(mParams, 0, params, 0, mParamOffsets[mNodeCount]);
+                mParams = params;
+            }
+        }
+
+        /**
+         * @param other The path to morph into.
+         * @return whether this path can morph into {@code other}, that is both paths have the
+         * same commands with the same number of parameters.
+         */
+        public boolean canMorph(PackedPathData other) {
+            if (other == null || mNodeCount != other.mNodeCount) {
+                return false;
+            }
+            for (int i = 0; i < mNodeCount; i++) {
+                if (mTypes[i] != other.mTypes[i]
+                        || mParamOffsets[i + 1] != other.mParamOffsets[i + 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sets this path to the interpolation between {@code from} and {@code to} according to
+         * the {@code fraction}. Before calling this, make sure {@code from.canMorph(to)} is true.
+         *
+         * @param from     The start value.
+         * @param to       The end value.
+         * @param fraction The fraction to interpolate.
+         */
+        public void interpolate(PackedPathData from, PackedPathData to, float fraction) {
+            final int paramCount = from.getParamCount();
+            if (this != from) {
+                copyCommands(from);
+            }
+            final float[] fromParams = from.mParams;
+            final float[] toParams = to.mParams;
+            final float[] params = mParams;
+            for (int i = 0; i < paramCount; i++) {
+                params[i] = fromParams[i] * (1 - fraction) + toParams[i] * fraction;
+            }
+        }
+
+        /**
+         * Replaces the content of this path by a copy of {@code source}.
+         *
+         * @param source The path to copy.
+         */
+        public void set(PackedPathData source) {
+            if (this != source) {
+                copyCommands(source);
+                System.arraycopy(source.mParams, 0, mParams, 0, source.getParamCount());
+            }
+        }
+
+        /**
+         * Copies the commands of {@code source} and makes room for its parameters.
+         */
+        private void copyCommands(PackedPathData source) {
+            final int nodeCount = source.mNodeCount;
+            mNodeCount = 0;
+            ensureNodeCapacity(nodeCount);
+            ensureParamCapacity(source.mParamOffsets[nodeCount]);
+            System.arraycopy(source.mTypes, 0, mTypes, 0, nodeCount);
+            System.arraycopy(source.mParamOffsets, 0, mParamOffsets, 0, nodeCount + 1);
+            mNodeCount = nodeCount;
+        }
+
+        /**
+         * Adds the commands of this path to {@code path}, the same way as
+         * {@link PathDataNode#nodesToPath(PathDataNode[], Path)}.
+         *
+         * @param path The target Path object.
+         */
+        public void toPath(Path path) {
+            final float[] current = mCurrent;
+            for (int i = 0; i < current.length; i++) {
+                current[i] = 0;
+            }
+            char previousCommand = 'm';
+            for (int i = 0; i < mNodeCount; i++) {
+                final char type = (char) (mTypes[i] & 0xff);
+                final int offset = mParamOffsets[i];
+                PathDataNode.addCommand(path, current, previousCommand, type, mParams, offset,
+                        mParamOffsets[i + 1] - offset);
+                previousCommand = type;
+            }
+        }
+
+        /**
+         * @return a new array of PathDataNode with the same commands as this path.
+         */
+        public PathDataNode[] toNodes() {
+            final PathDataNode[] nodes = new PathDataNode[mNodeCount];
+            for (int i = 0; i < mNodeCount; i++) {
+                nodes[i] = new PathDataNode((char) (mTypes[i] & 0xff),
+                        copyOfRange(mParams, mParamOffsets[i], mParamOffsets[i + 1]));
+            }
+            return nodes;
+        }
+    }
+
     /**
      * Each PathDataNode represents one command in the "d" attribute of the svg
      * file.
@@ -336,7 +653,8 @@ public class PathParser {
             float[] current = new float[6];
             char previousCommand = 'm';
             for (int i = 0; i < node.length; i++) {
-                addCommand(path, current, previousCommand, node[i].mType, node[i].mParams);
+                addCommand(path, current, previousCommand, node[i].mType, node[i].mParams, 0,
+                        node[i].mParams.length);
                 previousCommand = node[i].mType;
             }
         }
@@ -358,8 +676,8 @@ public class PathParser {
             }
         }
 
-        private static void addCommand(Path path, float[] current,
-                char previousCmd, char cmd, float[] val) {
+        static void addCommand(Path path, float[] current,
+                char previousCmd, char cmd, float[] val, int offset, int count) {
 
             int incr = 2;
             float currentX = current[0];
@@ -414,12 +732,13 @@ public class PathParser {
                     break;
             }
 
-            for (int k = 0; k < val.length; k += incr) {
+            final int end = offset + count;
+            for (int k = offset; k < end; k += incr) {
                 switch (cmd) {
                     case 'm': // moveto - Start a new sub-path (relative)
                         currentX += val[k + 0];
                         currentY += val[k + 1];
-                        if (k > 0) {
+                        if (k > offset) {
                             // According to the spec, if a moveto is followed by multiple
                             // pairs of coordinates, the subsequent pairs are treated as
                             // implicit lineto commands.
@@ -433,7 +752,7 @@ public class PathParser {
                     case 'M': // moveto - Start a new sub-path
                         currentX = val[k + 0];
                         currentY = val[k + 1];
-                        if (k > 0) {
+                        if (k > offset) {
                             // According to the spec, if a moveto is followed by multiple
                             // pairs of coordinates, the subsequent pairs are treated as
                             // implicit lineto commands.
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycles the backing arrays of {@link SimpleArrayMap} and {@link ArraySet}.
+ *
+ * <p>Each thread keeps its own free lists, so allocating or freeing arrays never takes a lock.
+ * Arrays freed on one thread are reused by that thread only. Capacities up to the largest size
+ * class are rounded up to a size class so that arrays freed after growing or shrinking can be
+ * reused; the size classes follow the growth sequence of the containers.
+ *
+ * <p>As in the original per-class caches, a cached Object[] stores the next cached array of
+ * its size class at index 0 and its int[] hash array at index 1.
+ */
+final class ArrayRecycler {
+    static final int[] SIZE_CLASSES = {4, 8, 12, 18, 27, 40, 60};
+
+    /**
+     * Maximum number of arrays cached per size class and thread.
+     */
+    private static final int[] CACHE_SIZES = {10, 10, 6, 6, 4, 4, 4};
+
+    /**
+     * Per-thread counters are published to the global counters after this many events, so the
+     * global counters are not written on every allocation.
+     */
+    private static final int STATS_FLUSH_INTERVAL = 64;
+
+    private static final AtomicLong sRecycledCount = new AtomicLong();
+    private static final AtomicLong sAllocatedCount = new AtomicLong();
+
+    private final int mSlotsPerEntry;
+
+    private final ThreadLocal<Pool> mPools = new ThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            return new Pool();
+        }
+    };
+
+    private static final class Pool {
+        final Object[][] mHeads = new Object[SIZE_CLASSES.length][];
+        final int[] mCounts = new int[SIZE_CLASSES.length];
+        int mPendingRecycled;
+        int mPendingAllocated;
+
+        void flushStats() {
+            if (mPendingRecycled != 0) {
+                sRecycledCount.addAndGet(mPendingRecycled);
+                mPendingRecycled = 0;
+            }
+            if (mPendingAllocated != 0) {
+                sAllocatedCount.addAndGet(mPendingAllocated);
+                mPendingAllocated = 0;
+            }
+        }
+
+        void maybeFlushStats() {
+            if (mPendingRecycled + mPendingAllocated >= STATS_FLUSH_INTERVAL) {
+                flushStats();
+            }
+        }
+    }
+
+    /**
+     * @param slotsPerEntry number of Object[] slots used per entry: 2 for a map, 1 for a set.
+     */
+    ArrayRecycler(int slotsPerEntry) {
+        mSlotsPerEntry = slotsPerEntry;
+    }
+
+    /**
+     * Rounds the capacity up to the closest size class, or returns it unchanged if it is larger
+     * than the largest size class.
+     */
+    static int roundCapacity(int capacity) {
+        for (int sizeClass : SIZE_CLASSES) {
+            if (capacity <= sizeClass) {
+                return sizeClass;
+            }
+        }
+        return capacity;
+    }
+
+    private static int sizeClassIndex(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (SIZE_CLASSES[i] == capacity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a cleared Object[] for the given capacity, with the matching int[] hash array
+     * stored at index 1, or null if the calling thread has no cached array of that capacity.
+     * The caller must clear indices 0 and 1 after taking the hash array.
+     */
+    Object[] acquire(int capacity) {
+        final Pool pool = mPools.get();
+        final int index = sizeClassIndex(capacity);
+        final Object[] array = index >= 0 ? pool.mHeads[index] : null;
+        if (array == null) {
+            pool.mPendingAllocated++;
+            pool.maybeFlushStats();
+            return null;
+        }
+        pool.mHeads[index] = (Object[]) array[0];
+        pool.mCounts[index]--;
+        pool.mPendingRecycled++;
+        pool.maybeFlushStats();
+        return array;
+    }
+
+    /**
+     * Caches the arrays for reuse by the calling thread if their capacity is a size class that
+     * is not full yet.
+     *
+     * @param usedEntries number of entries of the arrays that hold references to clear.
+     */
+    void release(int[] hashes, Object[] array, int usedEntries) {
+        final int index = sizeClassIndex(hashes.length);
+        if (index < 0) {
+            return;
+        }
+        final Pool pool = mPools.get();
+        if (pool.mCounts[index] >= CACHE_SIZES[index]) {
+            return;
+        }
+        array[0] = pool.mHeads[index];
+        array[1] = hashes;
+        for (int i = usedEntries * mSlotsPerEntry - 1; i >= 2; i--) {
+            array[i] = null;
+        }
+        pool.mHeads[index] = array;
+        pool.mCounts[index]++;
+    }
+
+    /**
+     * Returns the number of array allocations that were served from a recycled array.
+     */
+    static long getRecycledCount() {
+        flushCurrentThreadStats();
+        return sRecycledCount.get();
+    }
+
+    /**
+     * Returns the number of array allocations that required new arrays.
+     */
+    static long getAllocatedCount() {
+        flushCurrentThreadStats();
+        return sAllocatedCount.get();
+    }
+
+    private static void flushCurrentThreadStats() {
+        SimpleArrayMap.sArrayRecycler.mPools.get().flushStats();
+        ArraySet.sArrayRecycler.mPools.get().flushStats();
+    }
+}
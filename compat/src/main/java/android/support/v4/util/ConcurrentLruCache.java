@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A thread safe cache with the same contract as {@link LruCache}, for caches that are accessed
+ * from many threads at once.
+ *
+ * <p>Instead of guarding a single map with one lock, the entries are spread by key hash over a
+ * fixed number of segments, each with its own lock, its own least recently used order and an
+ * equal share of the maximum size. Threads accessing keys in different segments do not contend
+ * with each other. The price is that eviction is only approximately least recently used: when a
+ * segment is full, the eldest entry of that segment is evicted even though an older entry may
+ * exist in another segment.
+ *
+ * <p>An entry whose size exceeds the share of a single segment is not admitted into the cache,
+ * since caching it would flush every other entry of its segment. {@link #put} returns without
+ * storing it and {@link #entryRemoved} is called with {@code evicted} set to true.
+ *
+ * <p>As with {@link LruCache}, {@link #create} and {@link #entryRemoved} are called without any
+ * lock held.
+ */
+public class ConcurrentLruCache<K, V> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final Segment<K, V>[] mSegments;
+    private final int mSegmentMask;
+
+    private int mMaxSize;
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *     the maximum number of entries in the cache. For all other caches,
+     *     this is the maximum sum of the sizes of the entries in this cache.
+     */
+    public ConcurrentLruCache(int maxSize) {
+        this(maxSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *     the maximum number of entries in the cache. For all other caches,
+     *     this is the maximum sum of the sizes of the entries in this cache.
+     * @param concurrencyLevel the expected number of threads accessing the cache at the same
+     *     time. The number of segments is the smallest power of two at or above this value,
+     *     reduced if needed so that every segment can hold at least one unit of size.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int maxSize, int concurrencyLevel) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount < MAX_SEGMENTS) {
+            segmentCount <<= 1;
+        }
+        while (segmentCount > 1 && segmentCount > maxSize) {
+            segmentCount >>= 1;
+        }
+        mSegments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mSegments[i] = new Segment<>();
+        }
+        mSegmentMask = segmentCount - 1;
+        setSegmentMaxSizes(maxSize);
+    }
+
+    /**
+     * Sets the size of the cache. The number of segments is fixed at construction, so if
+     * {@code maxSize} is smaller than it, every segment still holds one unit of size and the
+     * cache can exceed {@code maxSize} by up to the number of segments minus one.
+     *
+     * @param maxSize The new maximum size.
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        setSegmentMaxSizes(maxSize);
+        for (Segment<K, V> segment : mSegments) {
+            trimSegment(segment, segment.maxSize());
+        }
+    }
+
+    private void setSegmentMaxSizes(int maxSize) {
+        synchronized (mSegments) {
+            mMaxSize = maxSize;
+            final int count = mSegments.length;
+            for (int i = 0; i < count; i++) {
+                // Spread the remainder over the first segments so the shares add up to maxSize,
+                // but never leave a segment with no room, which would reject every entry.
+                final int share = Math.max(1, maxSize / count + (i < maxSize % count ? 1 : 0));
+                synchronized (mSegments[i]) {
+                    mSegments[i].mMaxSize = share;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value for {@code key} if it exists in the cache or can be
+     * created by {@code #create}. If a value was returned, it is moved to the
+     * head of its segment's queue. This returns null if a value is not cached
+     * and cannot be created.
+     */
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        final Segment<K, V> segment = segmentFor(key);
+        V mapValue;
+        synchronized (segment) {
+            mapValue = segment.mMap.get(key);
+            if (mapValue != null) {
+                segment.mHitCount++;
+                return mapValue;
+            }
+            segment.mMissCount++;
+        }
+
+        /*
+         * Attempt to create a value. This may take a long time, and the map
+         * may be different when create() returns. If a conflicting value was
+         * added to the map while create() was working, we leave that value in
+         * the map and release the created value.
+         */
+
+        V createdValue = create(key);
+        if (createdValue == null) {
+            return null;
+        }
+
+        final int createdSize = safeSizeOf(key, createdValue);
+        boolean admitted = true;
+        synchronized (segment) {
+            segment.mCreateCount++;
+            mapValue = segment.mMap.get(key);
+            if (mapValue == null) {
+                if (createdSize > segment.mMaxSize) {
+                    admitted = false;
+                    segment.mEvictionCount++;
+                } else {
+                    segment.mMap.put(key, createdValue);
+                    segment.mSize += createdSize;
+                }
+            }
+        }
+
+        if (mapValue != null) {
+            entryRemoved(false, key, createdValue, mapValue);
+            return mapValue;
+        } else if (!admitted) {
+            entryRemoved(true, key, createdValue, null);
+            return createdValue;
+        } else {
+            trimSegment(segment, segment.maxSize());
+            return createdValue;
+        }
+    }
+
+    /**
+     * Caches {@code value} for {@code key}. The value is moved to the head of
+     * its segment's queue.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        final Segment<K, V> segment = segmentFor(key);
+        final int valueSize = safeSizeOf(key, value);
+        V previous;
+        boolean admitted = true;
+        synchronized (segment) {
+            segment.mPutCount++;
+            if (valueSize > segment.mMaxSize) {
+                admitted = false;
+                segment.mEvictionCount++;
+                previous = segment.mMap.remove(key);
+            } else {
+                previous = segment.mMap.put(key, value);
+                segment.mSize += valueSize;
+            }
+            if (previous != null) {
+                segment.mSize -= safeSizeOf(key, previous);
+            }
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, admitted ? value : null);
+        }
+        if (!admitted) {
+            entryRemoved(true, key, value, null);
+            return previous;
+        }
+
+        trimSegment(segment, segment.maxSize());
+        return previous;
+    }
+
+    /**
+     * Remove the eldest entries of every segment until the total of remaining
+     * entries is at or below the requested size. The requested size is split
+     * evenly between the segments.
+     *
+     * @param maxSize the maximum size of the cache before returning. May be -1
+     *            to evict even 0-sized elements.
+     */
+    public void trimToSize(int maxSize) {
+        final int count = mSegments.length;
+        for (int i = 0; i < count; i++) {
+            final int share = maxSize < 0
+                    ? -1 : maxSize / count + (i < maxSize % count ? 1 : 0);
+            trimSegment(mSegments[i], share);
+        }
+    }
+
+    private void trimSegment(Segment<K, V> segment, int maxSize) {
+        while (true) {
+            K key;
+            V value;
+            synchronized (segment) {
+                if (segment.mSize < 0 || (segment.mMap.isEmpty() && segment.mSize != 0)) {
+                    throw new IllegalStateException(getClass().getName()
+                            + ".sizeOf() is reporting inconsistent results!");
+                }
+
+                if (segment.mSize <= maxSize || segment.mMap.isEmpty()) {
+                    break;
+                }
+
+                Map.Entry<K, V> toEvict = segment.mMap.entrySet().iterator().next();
+                key = toEvict.getKey();
+                value = toEvict.getValue();
+                segment.mMap.remove(key);
+                segment.mSize -= safeSizeOf(key, value);
+                segment.mEvictionCount++;
+            }
+
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key} if it exists.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        final Segment<K, V> segment = segmentFor(key);
+        V previous;
+        synchronized (segment) {
+            previous = segment.mMap.remove(key);
+            if (previous != null) {
+                segment.mSize -= safeSizeOf(key, previous);
+            }
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Called for entries that have been evicted or removed. This method is
+     * invoked when a value is evicted to make space, not admitted because it
+     * is too large, removed by a call to {@link #remove}, or replaced by a call
+     * to {@link #put}. The default implementation does nothing.
+     *
+     * <p>The method is called without synchronization: other threads may
+     * access the cache while this method is executing.
+     *
+     * @param evicted true if the entry is being removed to make space or was
+     *     too large to be cached, false if the removal was caused by a
+     *     {@link #put} or {@link #remove}.
+     * @param newValue the new value for {@code key}, if it exists. If non-null,
+     *     this removal was caused by a {@link #put}. Otherwise it was caused by
+     *     an eviction or a {@link #remove}.
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {}
+
+    /**
+     * Called after a cache miss to compute a value for the corresponding key.
+     * Returns the computed value or null if no value can be computed. The
+     * default implementation returns null.
+     *
+     * <p>The method is called without synchronization: other threads may
+     * access the cache while this method is executing.
+     *
+     * <p>If a value for {@code key} exists in the cache when this method
+     * returns, the created value will be released with {@link #entryRemoved}
+     * and discarded.
+     */
+    protected V create(K key) {
+        return null;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry for {@code key} and {@code value} in
+     * user-defined units.  The default implementation returns 1 so that size
+     * is the number of entries and max size is the maximum number of entries.
+     *
+     * <p>An entry's size must not change while it is in the cache. This method
+     * may be called concurrently from several threads.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Clear the cache, calling {@link #entryRemoved} on each removed entry.
+     */
+    public final void evictAll() {
+        trimToSize(-1); // -1 will evict 0-sized elements
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the number
+     * of entries in the cache. For all other caches, this returns the sum of
+     * the sizes of the entries in this cache.
+     */
+    public final int size() {
+        int size = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                size += segment.mSize;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the maximum
+     * number of entries in the cache. For all other caches, this returns the
+     * maximum sum of the sizes of the entries in this cache.
+     */
+    public final int maxSize() {
+        synchronized (mSegments) {
+            return mMaxSize;
+        }
+    }
+
+    /**
+     * Returns the number of segments the entries are spread over.
+     */
+    public final int segmentCount() {
+        return mSegments.length;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was
+     * already present in the cache.
+     */
+    public final int hitCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mHitCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned null or required a new
+     * value to be created.
+     */
+    public final int missCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mMissCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of times {@link #create(Object)} returned a value.
+     */
+    public final int createCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mCreateCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    public final int putCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mPutCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of values that have been evicted or were not admitted
+     * because they were too large.
+     */
+    public final int evictionCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mEvictionCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy of the current contents of the cache. Entries are grouped
+     * by segment and ordered from least recently accessed to most recently
+     * accessed within a segment.
+     */
+    public final Map<K, V> snapshot() {
+        Map<K, V> snapshot = new LinkedHashMap<>();
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                snapshot.putAll(segment.mMap);
+            }
+        }
+        return snapshot;
+    }
+
+    @Override public final String toString() {
+        int hitCount = hitCount();
+        int missCount = missCount();
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format(Locale.US,
+                "ConcurrentLruCache[maxSize=%d,segments=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize(), mSegments.length, hitCount, missCount, hitPercent);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        // Spread the high bits down so that keys with similar hash codes use different segments.
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return mSegments[h & mSegmentMask];
+    }
+
+    /**
+     * A slice of the cache guarded by its own monitor.
+     */
+    private static final class Segment<K, V> {
+        final LinkedHashMap<K, V> mMap = new LinkedHashMap<>(0, 0.75f, true);
+
+        int mSize;
+        int mMaxSize;
+
+        int mPutCount;
+        int mCreateCount;
+        int mEvictionCount;
+        int mHitCount;
+        int mMissCount;
+
+        synchronized int maxSize() {
+            return mMaxSize;
+        }
+    }
+}
@@ -79,4 +79,27 @@ class ContainerHelpers {
         }
         return ~lo;  // value not present
     }
+
+    /**
+     * Returns the power of two table size for an open addressing hash table that holds
+     * {@code need} entries without exceeding the given load factor.
+     */
+    static int hashTableSize(int need, float loadFactor) {
+        int size = 4;
+        while (size * loadFactor < need) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    // Fibonacci hashing followed by folding the high bits, so that sequential keys spread
+    // well over power of two tables.
+    static int hashInt(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int hashLong(long key) {
+        return hashInt((int) (key ^ (key >>> 32)));
+    }
 }
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+/**
+ * A hash map from longs to Objects that does not box its keys.
+ *
+ * <p>Unlike {@link LongSparseArray}, which keeps its keys sorted and needs a binary search
+ * for lookups and an array copy for insertions and removals, this map uses open addressing
+ * with linear probing, so lookups, insertions and removals take constant time on average.
+ * It is intended for maps that grow beyond a few hundred entries; for small maps
+ * {@link LongSparseArray} uses less memory.
+ *
+ * <p>The mappings can be iterated without allocating an iterator:
+ * <pre>
+ * for (int slot = map.firstSlot(); slot >= 0; slot = map.nextSlot(slot)) {
+ *     long key = map.keyAtSlot(slot);
+ *     E value = map.valueAtSlot(slot);
+ * }
+ * </pre>
+ * The iteration order is unspecified, and the map must not be modified while iterating.
+ *
+ * <p>This class is not thread safe.
+ */
+public class LongObjectMap<E> implements Cloneable {
+    private static final float LOAD_FACTOR = 0.75f;
+    // Marks slots that hold a null value, empty slots hold null.
+    private static final Object NULL_VALUE = new Object();
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+    private int mGrowThreshold;
+
+    /**
+     * Creates a new LongObjectMap containing no mappings.
+     */
+    public LongObjectMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a new LongObjectMap containing no mappings that will not require any additional
+     * memory allocation to store the specified number of mappings. If you supply an initial
+     * capacity of 0, no table is allocated until the first mapping is added.
+     */
+    public LongObjectMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        if (initialCapacity == 0) {
+            mKeys = ContainerHelpers.EMPTY_LONGS;
+            mValues = ContainerHelpers.EMPTY_OBJECTS;
+        } else {
+            allocateTable(ContainerHelpers.hashTableSize(initialCapacity, LOAD_FACTOR));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public LongObjectMap<E> clone() {
+        LongObjectMap<E> clone = null;
+        try {
+            clone = (LongObjectMap<E>) super.clone();
+            clone.mKeys = mKeys.clone();
+            clone.mValues = mValues.clone();
+        } catch (CloneNotSupportedException cnse) {
+            /* ignore */
+        }
+        return clone;
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or <code>null</code>
+     * if no such mapping has been made.
+     */
+    public E get(long key) {
+        return get(key, null);
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or the specified Object
+     * if no such mapping has been made.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long key, E valueIfKeyNotFound) {
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return valueIfKeyNotFound;
+        }
+        final Object value = mValues[slot];
+        return value == NULL_VALUE ? null : (E) value;
+    }
+
+    /**
+     * Returns true if a mapping for the specified key exists.
+     */
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Adds a mapping from the specified key to the specified value,
+     * replacing the previous mapping from the specified key if there
+     * was one.
+     *
+     * @return the previous value mapped from the key, or <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public E put(long key, E value) {
+        final Object stored = value == null ? NULL_VALUE : value;
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            final Object previous = mValues[slot];
+            mValues[slot] = stored;
+            return previous == NULL_VALUE ? null : (E) previous;
+        }
+        if (mSize >= mGrowThreshold) {
+            rehash(ContainerHelpers.hashTableSize(mSize + 1, LOAD_FACTOR));
+            slot = findSlot(key);
+        }
+        slot = ~slot;
+        mKeys[slot] = key;
+        mValues[slot] = stored;
+        mSize++;
+        return null;
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map, replacing the existing
+     * mappings for the same keys.
+     */
+    public void putAll(LongObjectMap<? extends E> map) {
+        ensureCapacity(mSize + map.mSize);
+        final long[] keys = map.mKeys;
+        final Object[] values = map.mValues;
+        for (int i = 0; i < keys.length; i++) {
+            final Object value = values[i];
+            if (value != null) {
+                putInternal(keys[i], value);
+            }
+        }
+    }
+
+    private void putInternal(long key, Object stored) {
+        final int slot = findSlot(key);
+        if (slot >= 0) {
+            mValues[slot] = stored;
+        } else {
+            mKeys[~slot] = key;
+            mValues[~slot] = stored;
+            mSize++;
+        }
+    }
+
+    /**
+     * Removes the mapping from the specified key, if there was any.
+     *
+     * @return the removed value, or <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public E remove(long key) {
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        final Object previous = mValues[slot];
+        removeSlot(slot);
+        return previous == NULL_VALUE ? null : (E) previous;
+    }
+
+    /**
+     * Removes the mappings from all the specified keys.
+     *
+     * @return the number of mappings removed.
+     */
+    public int removeAll(long... keys) {
+        int removed = 0;
+        for (long key : keys) {
+            final int slot = findSlot(key);
+            if (slot >= 0) {
+                removeSlot(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the mappings from all the keys contained in the specified set.
+     *
+     * @return the number of mappings removed.
+     */
+    public int removeAll(LongSet keys) {
+        int removed = 0;
+        for (int slot = keys.firstSlot(); slot >= 0; slot = keys.nextSlot(slot)) {
+            final int mapSlot = findSlot(keys.keyAtSlot(slot));
+            if (mapSlot >= 0) {
+                removeSlot(mapSlot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of key-value mappings that this map currently stores.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Return true if size() is 0.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Removes all key-value mappings from this map. The table is kept for reuse.
+     */
+    public void clear() {
+        if (mSize > 0) {
+            final Object[] values = mValues;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+            mSize = 0;
+        }
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold the specified number of mappings without
+     * any additional memory allocation.
+     */
+    public void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity > mGrowThreshold) {
+            rehash(ContainerHelpers.hashTableSize(minimumCapacity, LOAD_FACTOR));
+        }
+    }
+
+    /**
+     * Returns the first slot holding a mapping, or -1 if the map is empty.
+     */
+    public int firstSlot() {
+        return mSize == 0 ? -1 : nextOccupiedSlot(0);
+    }
+
+    /**
+     * Returns the slot holding a mapping after the specified slot, or -1 if there is none.
+     */
+    public int nextSlot(int slot) {
+        return nextOccupiedSlot(slot + 1);
+    }
+
+    private int nextOccupiedSlot(int start) {
+        final Object[] values = mValues;
+        for (int i = start; i < values.length; i++) {
+            if (values[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key of the mapping stored in the specified slot, as returned by
+     * {@link #firstSlot()} or {@link #nextSlot(int)}.
+     */
+    public long keyAtSlot(int slot) {
+        return mKeys[slot];
+    }
+
+    /**
+     * Returns the value of the mapping stored in the specified slot, as returned by
+     * {@link #firstSlot()} or {@link #nextSlot(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public E valueAtSlot(int slot) {
+        final Object value = mValues[slot];
+        return value == NULL_VALUE ? null : (E) value;
+    }
+
+    /**
+     * Returns the slot holding the key, or the bitwise complement of the empty slot where it
+     * would be inserted.
+     */
+    private int findSlot(long key) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        if (keys.length == 0) {
+            return ~0;
+        }
+        final int mask = keys.length - 1;
+        int slot = ContainerHelpers.hashLong(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Empties the slot and shifts back the following entries of the probe sequence so that no
+     * tombstones are needed.
+     */
+    private void removeSlot(int slot) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = keys.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            final int ideal = ContainerHelpers.hashLong(keys[i]) & mask;
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = null;
+        mSize--;
+    }
+
+    private void allocateTable(int tableSize) {
+        mKeys = new long[tableSize];
+        mValues = new Object[tableSize];
+        mGrowThreshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private void rehash(int tableSize) {
+        final long[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+        allocateTable(tableSize);
+        final int mask = tableSize - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final Object value = oldValues[i];
+            if (value != null) {
+                int slot = ContainerHelpers.hashLong(oldKeys[i]) & mask;
+                while (mValues[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = oldKeys[i];
+                mValues[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation composes a string by iterating over its mappings. If
+     * this map contains itself as a value, the string "(this Map)"
+     * will appear in its place.
+     */
+    @Override
+    public String toString() {
+        if (size() <= 0) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(mSize * 28);
+        buffer.append('{');
+        boolean first = true;
+        for (int slot = firstSlot(); slot >= 0; slot = nextSlot(slot)) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            first = false;
+            buffer.append(keyAtSlot(slot));
+            buffer.append('=');
+            Object value = valueAtSlot(slot);
+            if (value != this) {
+                buffer.append(value);
+            } else {
+                buffer.append("(this Map)");
+            }
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
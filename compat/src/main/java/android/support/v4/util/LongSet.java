@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+/**
+ * A hash set of longs that does not box its elements.
+ *
+ * <p>The set uses open addressing with linear probing over a single long array, so lookups,
+ * insertions and removals take constant time on average. The elements can be iterated
+ * without allocating an iterator:
+ * <pre>
+ * for (int slot = set.firstSlot(); slot >= 0; slot = set.nextSlot(slot)) {
+ *     long key = set.keyAtSlot(slot);
+ * }
+ * </pre>
+ * The iteration order is unspecified, and the set must not be modified while iterating.
+ *
+ * <p>This class is not thread safe.
+ */
+public class LongSet implements Cloneable {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // Empty slots hold 0, so the presence of 0 itself is tracked separately.
+    private long[] mKeys;
+    private boolean mContainsZero;
+    private int mSize;
+    private int mGrowThreshold;
+
+    /**
+     * Creates a new empty LongSet.
+     */
+    public LongSet() {
+        this(0);
+    }
+
+    /**
+     * Creates a new empty LongSet that will not require any additional memory allocation to
+     * store the specified number of elements.
+     */
+    public LongSet(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        if (initialCapacity == 0) {
+            mKeys = ContainerHelpers.EMPTY_LONGS;
+        } else {
+            allocateTable(ContainerHelpers.hashTableSize(initialCapacity, LOAD_FACTOR));
+        }
+    }
+
+    @Override
+    public LongSet clone() {
+        LongSet clone = null;
+        try {
+            clone = (LongSet) super.clone();
+            clone.mKeys = mKeys.clone();
+        } catch (CloneNotSupportedException cnse) {
+            /* ignore */
+        }
+        return clone;
+    }
+
+    /**
+     * Returns true if the set contains the specified element.
+     */
+    public boolean contains(long key) {
+        return key == 0 ? mContainsZero : findSlot(key) >= 0;
+    }
+
+    /**
+     * Adds the specified element to the set.
+     *
+     * @return true if the set did not already contain the element.
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (mContainsZero) {
+                return false;
+            }
+            mContainsZero = true;
+            mSize++;
+            return true;
+        }
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            return false;
+        }
+        if (mSize >= mGrowThreshold) {
+            rehash(ContainerHelpers.hashTableSize(mSize + 1, LOAD_FACTOR));
+            slot = findSlot(key);
+        }
+        mKeys[~slot] = key;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Adds all the specified elements to the set.
+     *
+     * @return the number of elements that were not already in the set.
+     */
+    public int addAll(long... keys) {
+        ensureCapacity(mSize + keys.length);
+        int added = 0;
+        for (long key : keys) {
+            if (add(key)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds all the elements of the specified set to this set.
+     *
+     * @return the number of elements that were not already in this set.
+     */
+    public int addAll(LongSet set) {
+        ensureCapacity(mSize + set.mSize);
+        int added = 0;
+        for (int slot = set.firstSlot(); slot >= 0; slot = set.nextSlot(slot)) {
+            if (add(set.keyAtSlot(slot))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes the specified element from the set.
+     *
+     * @return true if the set contained the element.
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!mContainsZero) {
+                return false;
+            }
+            mContainsZero = false;
+            mSize--;
+            return true;
+        }
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes all the specified elements from the set.
+     *
+     * @return the number of elements removed.
+     */
+    public int removeAll(long... keys) {
+        int removed = 0;
+        for (long key : keys) {
+            if (remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all the elements of the specified set from this set.
+     *
+     * @return the number of elements removed.
+     */
+    public int removeAll(LongSet set) {
+        int removed = 0;
+        for (int slot = set.firstSlot(); slot >= 0; slot = set.nextSlot(slot)) {
+            if (remove(set.keyAtSlot(slot))) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Return true if size() is 0.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Removes all elements from the set. The table is kept for reuse.
+     */
+    public void clear() {
+        if (mSize > 0) {
+            final long[] keys = mKeys;
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = 0;
+            }
+            mContainsZero = false;
+            mSize = 0;
+        }
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold the specified number of elements without
+     * any additional memory allocation.
+     */
+    public void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity > mGrowThreshold) {
+            rehash(ContainerHelpers.hashTableSize(minimumCapacity, LOAD_FACTOR));
+        }
+    }
+
+    /**
+     * Returns the first slot holding an element, or -1 if the set is empty.
+     */
+    public int firstSlot() {
+        return mSize == 0 ? -1 : nextOccupiedSlot(0);
+    }
+
+    /**
+     * Returns the slot holding an element after the specified slot, or -1 if there is none.
+     */
+    public int nextSlot(int slot) {
+        return nextOccupiedSlot(slot + 1);
+    }
+
+    private int nextOccupiedSlot(int start) {
+        final long[] keys = mKeys;
+        for (int i = start; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                return i;
+            }
+        }
+        // The zero element lives in a virtual slot after the table.
+        return mContainsZero && start <= keys.length ? keys.length : -1;
+    }
+
+    /**
+     * Returns the element stored in the specified slot, as returned by {@link #firstSlot()} or
+     * {@link #nextSlot(int)}.
+     */
+    public long keyAtSlot(int slot) {
+        return slot == mKeys.length ? 0 : mKeys[slot];
+    }
+
+    /**
+     * Returns the elements of the set in a new array.
+     */
+    public long[] toArray() {
+        final long[] result = new long[mSize];
+        int i = 0;
+        for (int slot = firstSlot(); slot >= 0; slot = nextSlot(slot)) {
+            result[i++] = keyAtSlot(slot);
+        }
+        return result;
+    }
+
+    private int findSlot(long key) {
+        final long[] keys = mKeys;
+        if (keys.length == 0) {
+            return ~0;
+        }
+        final int mask = keys.length - 1;
+        int slot = ContainerHelpers.hashLong(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private void removeSlot(int slot) {
+        final long[] keys = mKeys;
+        final int mask = keys.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            final long key = keys[i];
+            if (key == 0) {
+                break;
+            }
+            final int ideal = ContainerHelpers.hashLong(key) & mask;
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = key;
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        mSize--;
+    }
+
+    private void allocateTable(int tableSize) {
+        mKeys = new long[tableSize];
+        mGrowThreshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private void rehash(int tableSize) {
+        final long[] oldKeys = mKeys;
+        allocateTable(tableSize);
+        final int mask = tableSize - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key != 0) {
+                int slot = ContainerHelpers.hashLong(key) & mask;
+                while (mKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = key;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (size() <= 0) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(mSize * 14);
+        buffer.append('{');
+        boolean first = true;
+        for (int slot = firstSlot(); slot >= 0; slot = nextSlot(slot)) {
+            if (!first) {
+                buffer.append(", ");
+            }
+            first = false;
+            buffer.append(keyAtSlot(slot));
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
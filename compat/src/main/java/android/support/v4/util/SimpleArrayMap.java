@@ -52,20 +52,10 @@ public class SimpleArrayMap<K, V> {
     private static final int BASE_SIZE = 4;
 
     /**
-     * Maximum number of entries to have in array caches.
+     * Recycles backing arrays per thread to avoid spamming garbage without taking a global
+     * lock on every allocation.
      */
-    private static final int CACHE_SIZE = 10;
-
-    /**
-     * Caches of small array objects to avoid spamming garbage.  The cache
-     * Object[] variable is a pointer to a linked list of array objects.
-     * The first entry in the array is a pointer to the next array in the
-     * list; the second entry is a pointer to the int[] hash code array for it.
-     */
-    static Object[] mBaseCache;
-    static int mBaseCacheSize;
-    static Object[] mTwiceBaseCache;
-    static int mTwiceBaseCacheSize;
+    static final ArrayRecycler sArrayRecycler = new ArrayRecycler(2);
 
     int[] mHashes;
     Object[] mArray;
@@ -160,35 +150,15 @@ public class SimpleArrayMap<K, V> {
     }
 
     @SuppressWarnings("ArrayToString")
-    private void allocArrays(final int size) {
-        if (size == (BASE_SIZE*2)) {
-            synchronized (ArrayMap.class) {
-                if (mTwiceBaseCache != null) {
-                    final Object[] array = mTwiceBaseCache;
-                    mArray = array;
-                    mTwiceBaseCache = (Object[])array[0];
-                    mHashes = (int[])array[1];
-                    array[0] = array[1] = null;
-                    mTwiceBaseCacheSize--;
-                    if (DEBUG) Log.d(TAG, "Retrieving 2x cache " + mHashes
-                            + " now have " + mTwiceBaseCacheSize + " entries");
-                    return;
-                }
-            }
-        } else if (size == BASE_SIZE) {
-            synchronized (ArrayMap.class) {
-                if (mBaseCache != null) {
-                    final Object[] array = mBaseCache;
-                    mArray = array;
-                    mBaseCache = (Object[])array[0];
-                    mHashes = (int[])array[1];
-                    array[0] = array[1] = null;
-                    mBaseCacheSize--;
-                    if (DEBUG) Log.d(TAG, "Retrieving 1x cache " + mHashes
-                            + " now have " + mBaseCacheSize + " entries");
-                    return;
-                }
-            }
+    private void allocArrays(int size) {
+        size = ArrayRecycler.roundCapacity(size);
+        final Object[] array = sArrayRecycler.acquire(size);
+        if (array != null) {
+            mArray = array;
+            mHashes = (int[])array[1];
+            array[0] = array[1] = null;
+            if (DEBUG) Log.d(TAG, "Retrieving cached arrays " + mHashes + " of size " + size);
+            return;
         }
 
         mHashes = new int[size];
@@ -197,35 +167,29 @@ public class SimpleArrayMap<K, V> {
 
     @SuppressWarnings("ArrayToString")
     private static void freeArrays(final int[] hashes, final Object[] array, final int size) {
-        if (hashes.length == (BASE_SIZE*2)) {
-            synchronized (ArrayMap.class) {
-                if (mTwiceBaseCacheSize < CACHE_SIZE) {
-                    array[0] = mTwiceBaseCache;
-                    array[1] = hashes;
-                    for (int i=(size<<1)-1; i>=2; i--) {
-                        array[i] = null;
-                    }
-                    mTwiceBaseCache = array;
-                    mTwiceBaseCacheSize++;
-                    if (DEBUG) Log.d(TAG, "Storing 2x cache " + array
-                            + " now have " + mTwiceBaseCacheSize + " entries");
-                }
-            }
-        } else if (hashes.length == BASE_SIZE) {
-            synchronized (ArrayMap.class) {
-                if (mBaseCacheSize < CACHE_SIZE) {
-                    array[0] = mBaseCache;
-                    array[1] = hashes;
-                    for (int i=(size<<1)-1; i>=2; i--) {
-                        array[i] = null;
-                    }
-                    mBaseCache = array;
-                    mBaseCacheSize++;
-                    if (DEBUG) Log.d(TAG, "Storing 1x cache " + array
-                            + " now have " + mBaseCacheSize + " entries");
-                }
-            }
-        }
+        if (DEBUG) Log.d(TAG, "Freeing arrays " + hashes + " of size " + hashes.length);
+        sArrayRecycler.release(hashes, array, size);
+    }
+
+    /**
+     * Returns the number of times the backing arrays of an {@link ArrayMap},
+     * {@link SimpleArrayMap} or {@link ArraySet} were taken from the per-thread cache of
+     * recycled arrays instead of being allocated.
+     *
+     * <p>Counts of other threads are published in batches, so they may lag slightly behind.
+     */
+    public static long getRecycledArrayCount() {
+        return ArrayRecycler.getRecycledCount();
+    }
+
+    /**
+     * Returns the number of times new backing arrays were allocated for an {@link ArrayMap},
+     * {@link SimpleArrayMap} or {@link ArraySet} because no recycled arrays were available.
+     *
+     * <p>Counts of other threads are published in batches, so they may lag slightly behind.
+     */
+    public static long getAllocatedArrayCount() {
+        return ArrayRecycler.getAllocatedCount();
     }
 
     /**
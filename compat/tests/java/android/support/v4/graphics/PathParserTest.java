@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+@RunWith(AndroidJUnit4.class)
+public class PathParserTest {
+    private static final String TAG = "PathParserTest";
+
+    private static final String SHARE_PATH = "M60.64,49.29a11.35,11.35 0,0 0,-9.74 5.54L22,39.65"
+            + "a11.14,11.14 0,0 0,0 -7.72L50.87,17.11a11.47,11.47 0,1 0,-1.17 -2.77l-29,14.93"
+            + "a11.36,11.36 0,1 0,0 13L49.71,57.59A11.35,11.35 0,1 0,60.64 49.29Z"
+            + "M60.64,3a8.36,8.36 0,1 1,-8.36 8.36A8.37,8.37 0,0 1,60.64 3Z"
+            + "M11.36,44.13a8.36,8.36 0,1 1,8.36 -8.36A8.37,8.37 0,0 1,11.36 44.13Z"
+            + "M60.64,69A8.36,8.36 0,1 1,69 60.64,8.37 8.37,0 0,1 60.64,69Z";
+
+    private static final String SETTINGS_PATH = "M19.429,12.975998c0.042-0.32 0.07-0.645 "
+            + "0.07-0.976s-0.029-0.655-0.07-0.976l2.113-1.654c0.188-0.151 0.243-0.422 "
+            + "0.118-0.639l-2.0-3.463c-0.125-0.217-0.386-0.304-0.612-0.218l-2.49,1.004"
+            + "c-0.516-0.396-1.081-0.731-1.69-0.984l-0.375-2.648C14.456,2.1829987 14.25,2.0 "
+            + "14.0,2.0l-4.0,0.0C9.75,2.0 9.544,2.1829987 9.506,2.422001L9.131,5.0699997"
+            + "C8.521,5.322998 7.957,5.6570015 7.44,6.054001L4.952,5.0509987C4.726,4.965 "
+            + "4.464,5.052002 4.34,5.269001l-2.0,3.463C2.2150002,8.947998 2.27,9.219002 "
+            + "2.4580002,9.369999l2.112,1.653C4.528,11.344002 4.5,11.668999 4.5,12.0"
+            + "s0.029,0.656 0.071,0.977L2.4580002,14.630001c-0.188,0.151-0.243,0.422-0.118,0.639"
+            + "l2.0,3.463c0.125,0.217 0.386,0.304 0.612,0.218l2.489-1.004c0.516,0.396 "
+            + "1.081,0.731 1.69,0.984l0.375,2.648C9.544,21.817001 9.75,22.0 10.0,22.0l4.0,0.0"
+            + "c0.25,0.0 0.456-0.183 0.494-0.422l0.375-2.648c0.609-0.253 1.174-0.588 "
+            + "1.689-0.984l2.49,1.004c0.226,0.086 0.487-0.001 0.612-0.218l2.0-3.463"
+            + "c0.125-0.217 0.07-0.487-0.118-0.639L19.429,12.975998zM12.0,16.0"
+            + "c-2.21,0.0-4.0-1.791-4.0-4.0c0.0-2.21 1.79-4.0 4.0-4.0c2.208,0.0 4.0,1.79 4.0,4.0"
+            + "C16.0,14.209 14.208,16.0 12.0,16.0z";
+
+    private static final String[] PATHS = {
+            SHARE_PATH, SETTINGS_PATH, "", "z", " M1 2\n", "M1.2.3.4-5-6z", "M1e-3-2E+2L3 4"};
+
+    @Test
+    @SmallTest
+    public void testParse() {
+        assertNodesEqual(new PathParser.PathDataNode[] {
+                new PathParser.PathDataNode('M', new float[] {1.2f, .3f, .4f, -5f, -6f}),
+                new PathParser.PathDataNode('z', new float[0])},
+                PathParser.createNodesFromPathData("M1.2.3.4-5-6z"));
+        assertNodesEqual(new PathParser.PathDataNode[] {
+                new PathParser.PathDataNode('M', new float[] {1e-3f, -2e2f}),
+                new PathParser.PathDataNode('L', new float[] {3f, 4f})},
+                PathParser.createNodesFromPathData("M1e-3-2E+2L3 4"));
+        assertNodesEqual(new PathParser.PathDataNode[] {
+                new PathParser.PathDataNode('M', new float[] {1f, 2f})},
+                PathParser.createNodesFromPathData(" M1 2\n"));
+        assertNodesEqual(new PathParser.PathDataNode[0],
+                PathParser.createNodesFromPathData(""));
+    }
+
+    @Test
+    @SmallTest
+    public void testPackedParseMatchesReferenceParser() {
+        final PathParser.PackedPathData data = new PathParser.PackedPathData();
+        for (String pathData : PATHS) {
+            final PathParser.PathDataNode[] expected =
+                    ReferencePathParser.createNodesFromPathData(pathData);
+            // The same instance is reused for every path.
+            data.parse(pathData);
+            assertNodesEqual(expected, data.toNodes());
+            assertNodesEqual(expected, PathParser.createNodesFromPathData(pathData));
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testParseFloatMatchesFloatParseFloat() {
+        final String[] numbers = {"0", "-0", "+5", ".5", "5.", "-.5e-3", "1e10", "1e11",
+                "16777216", "16777217", "0.0000000001", "12.975998", "3.4028235e38", "1e-45",
+                "0.1234567891", "1f", "Infinity"};
+        for (String number : numbers) {
+            assertParseFloat(number);
+        }
+        final Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            final StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            number.append(random.nextInt(100000)).append('.').append(random.nextInt(10000000));
+            if (random.nextInt(4) == 0) {
+                number.append('e').append(random.nextInt(25) - 12);
+            }
+            assertParseFloat(number.toString());
+        }
+    }
+
+    private static void assertParseFloat(String number) {
+        // The number is parsed in the middle of a longer string, like in a path.
+        final String s = "M" + number + ",";
+        assertEquals(number, Float.floatToRawIntBits(Float.parseFloat(number)),
+                Float.floatToRawIntBits(PathParser.parseFloat(s, 1, s.length() - 1)));
+    }
+
+    @Test
+    @SmallTest
+    public void testPackedSet() {
+        final PathParser.PackedPathData source = new PathParser.PackedPathData();
+        final PathParser.PackedPathData copy = new PathParser.PackedPathData();
+        source.parse(SETTINGS_PATH);
+        copy.parse("M0,0");
+        copy.set(source);
+        assertNodesEqual(source.toNodes(), copy.toNodes());
+    }
+
+    @Test
+    @SmallTest
+    public void testPackedToPathMatchesNodes() {
+        final PathParser.PackedPathData data = new PathParser.PackedPathData();
+        data.parse(SETTINGS_PATH);
+        final Path packedPath = new Path();
+        data.toPath(packedPath);
+        final Path nodesPath = PathParser.createPathFromPathData(SETTINGS_PATH);
+
+        final RectF packedBounds = new RectF();
+        final RectF nodesBounds = new RectF();
+        packedPath.computeBounds(packedBounds, true);
+        nodesPath.computeBounds(nodesBounds, true);
+        assertEquals(nodesBounds, packedBounds);
+    }
+
+    @Test
+    @SmallTest
+    public void testPackedInterpolateMatchesNodes() {
+        final PathParser.PackedPathData from = new PathParser.PackedPathData();
+        final PathParser.PackedPathData to = new PathParser.PackedPathData();
+        final PathParser.PackedPathData result = new PathParser.PackedPathData();
+        from.parse(SHARE_PATH);
+        to.parse(scaledPathData(SHARE_PATH, 0.5f));
+        assertTrue(from.canMorph(to));
+
+        final PathParser.PathDataNode[] nodesFrom =
+                PathParser.createNodesFromPathData(SHARE_PATH);
+        final PathParser.PathDataNode[] nodesTo =
+                PathParser.createNodesFromPathData(scaledPathData(SHARE_PATH, 0.5f));
+        final PathParser.PathDataNode[] nodes = PathParser.deepCopyNodes(nodesFrom);
+        for (float fraction = 0; fraction <= 1; fraction += 0.125f) {
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i].interpolatePathDataNode(nodesFrom[i], nodesTo[i], fraction);
+            }
+            result.interpolate(from, to, fraction);
+            assertNodesEqual(nodes, result.toNodes());
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testPackedCanMorph() {
+        final PathParser.PackedPathData a = new PathParser.PackedPathData();
+        final PathParser.PackedPathData b = new PathParser.PackedPathData();
+        a.parse("M0,0L1,1");
+        b.parse("M2,2L3,3");
+        assertTrue(a.canMorph(b));
+        b.parse("M2,2L3,3z");
+        assertFalse(a.canMorph(b));
+        b.parse("M2,2l3,3");
+        assertFalse(a.canMorph(b));
+        b.parse("M2,2L3,3 4,4");
+        assertFalse(a.canMorph(b));
+        assertFalse(a.canMorph(null));
+    }
+
+    @Test
+    @LargeTest
+    public void testParseAndMorph_benchmark() {
+        final int iterations = 2000;
+        final String toPathData = scaledPathData(SETTINGS_PATH, 0.5f);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            PathParser.createNodesFromPathData(SETTINGS_PATH);
+        }
+        final long nodesParseNanos = System.nanoTime() - start;
+
+        final PathParser.PackedPathData from = new PathParser.PackedPathData();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            from.parse(SETTINGS_PATH);
+        }
+        final long packedParseNanos = System.nanoTime() - start;
+
+        // One frame of a path morph: interpolate the path data, then build the path.
+        final Path path = new Path();
+        final PathParser.PathDataNode[] nodesFrom =
+                PathParser.createNodesFromPathData(SETTINGS_PATH);
+        final PathParser.PathDataNode[] nodesTo = PathParser.createNodesFromPathData(toPathData);
+        final PathParser.PathDataNode[] nodes = PathParser.deepCopyNodes(nodesFrom);
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final float fraction = (float) i / iterations;
+            for (int j = 0; j < nodes.length; j++) {
+                nodes[j].interpolatePathDataNode(nodesFrom[j], nodesTo[j], fraction);
+            }
+            path.reset();
+            PathParser.PathDataNode.nodesToPath(nodes, path);
+        }
+        final long nodesMorphNanos = System.nanoTime() - start;
+
+        final PathParser.PackedPathData to = new PathParser.PackedPathData();
+        to.parse(toPathData);
+        final PathParser.PackedPathData result = new PathParser.PackedPathData();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            result.interpolate(from, to, (float) i / iterations);
+            path.reset();
+            result.toPath(path);
+        }
+        final long packedMorphNanos = System.nanoTime() - start;
+
+        Log.d(TAG, "Parse: nodes " + nodesParseNanos / iterations / 1000 + "us, packed "
+                + packedParseNanos / iterations / 1000 + "us; morph frame: nodes "
+                + nodesMorphNanos / iterations / 1000 + "us, packed "
+                + packedMorphNanos / iterations / 1000 + "us");
+    }
+
+    private static void assertNodesEqual(PathParser.PathDataNode[] expected,
+            PathParser.PathDataNode[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].mType, actual[i].mType);
+            assertArrayEquals(expected[i].mParams, actual[i].mParams, 0f);
+        }
+    }
+
+    /**
+     * @return a path with the same commands as {@code pathData} and all parameters scaled.
+     */
+    private static String scaledPathData(String pathData, float scale) {
+        final StringBuilder builder = new StringBuilder();
+        for (PathParser.PathDataNode node : PathParser.createNodesFromPathData(pathData)) {
+            builder.append(node.mType);
+            for (float param : node.mParams) {
+                builder.append(' ').append(param * scale);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The parser which created one {@link PathParser.PathDataNode} per command before
+     * {@link PathParser.PackedPathData}, kept as the reference of the parsing results.
+     */
+    private static class ReferencePathParser {
+        static PathParser.PathDataNode[] createNodesFromPathData(String pathData) {
+            int start = 0;
+            int end = 1;
+
+            ArrayList<PathParser.PathDataNode> list = new ArrayList<>();
+            while (end < pathData.length()) {
+                end = nextStart(pathData, end);
+                String s = pathData.substring(start, end).trim();
+                if (s.length() > 0) {
+                    list.add(new PathParser.PathDataNode(s.charAt(0), getFloats(s)));
+                }
+
+                start = end;
+                end++;
+            }
+            if ((end - start) == 1 && start < pathData.length()) {
+                list.add(new PathParser.PathDataNode(pathData.charAt(start), new float[0]));
+            }
+            return list.toArray(new PathParser.PathDataNode[list.size()]);
+        }
+
+        private static int nextStart(String s, int end) {
+            while (end < s.length()) {
+                char c = s.charAt(end);
+                if ((((c - 'A') * (c - 'Z') <= 0) || ((c - 'a') * (c - 'z') <= 0))
+                        && c != 'e' && c != 'E') {
+                    return end;
+                }
+                end++;
+            }
+            return end;
+        }
+
+        private static float[] getFloats(String s) {
+            if (s.charAt(0) == 'z' || s.charAt(0) == 'Z') {
+                return new float[0];
+            }
+            float[] results = new float[s.length()];
+            int count = 0;
+            int startPosition = 1;
+            int[] endPosition = new int[1];
+            boolean[] endWithNegOrDot = new boolean[1];
+            while (startPosition < s.length()) {
+                extract(s, startPosition, endPosition, endWithNegOrDot);
+                if (startPosition < endPosition[0]) {
+                    results[count++] = Float.parseFloat(
+                            s.substring(startPosition, endPosition[0]));
+                }
+                startPosition = endWithNegOrDot[0] ? endPosition[0] : endPosition[0] + 1;
+            }
+            return PathParser.copyOfRange(results, 0, count);
+        }
+
+        private static void extract(String s, int start, int[] endPosition,
+                boolean[] endWithNegOrDot) {
+            int currentIndex = start;
+            boolean foundSeparator = false;
+            endWithNegOrDot[0] = false;
+            boolean secondDot = false;
+            boolean isExponential = false;
+            for (; currentIndex < s.length(); currentIndex++) {
+                boolean isPrevExponential = isExponential;
+                isExponential = false;
+                char currentChar = s.charAt(currentIndex);
+                switch (currentChar) {
+                    case ' ':
+                    case ',':
+                        foundSeparator = true;
+                        break;
+                    case '-':
+                        if (currentIndex != start && !isPrevExponential) {
+                            foundSeparator = true;
+                            endWithNegOrDot[0] = true;
+                        }
+                        break;
+                    case '.':
+                        if (!secondDot) {
+                            secondDot = true;
+                        } else {
+                            foundSeparator = true;
+                            endWithNegOrDot[0] = true;
+                        }
+                        break;
+                    case 'e':
+                    case 'E':
+                        isExponential = true;
+                        break;
+                }
+                if (foundSeparator) {
+                    break;
+                }
+            }
+            endPosition[0] = currentIndex;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class ArrayRecyclerTest {
+
+    @Test
+    public void testRoundCapacity() {
+        assertEquals(4, ArrayRecycler.roundCapacity(1));
+        assertEquals(8, ArrayRecycler.roundCapacity(5));
+        assertEquals(18, ArrayRecycler.roundCapacity(13));
+        assertEquals(60, ArrayRecycler.roundCapacity(60));
+        assertEquals(61, ArrayRecycler.roundCapacity(61));
+    }
+
+    @Test
+    public void testAcquireReturnsReleasedArraysCleared() {
+        ArrayRecycler recycler = new ArrayRecycler(2);
+        assertNull(recycler.acquire(12));
+
+        int[] hashes = new int[12];
+        Object[] array = new Object[24];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = "value" + i;
+        }
+        recycler.release(hashes, array, 12);
+
+        Object[] recycled = recycler.acquire(12);
+        assertSame(array, recycled);
+        assertSame(hashes, recycled[1]);
+        for (int i = 2; i < recycled.length; i++) {
+            assertNull(recycled[i]);
+        }
+        assertNull(recycler.acquire(12));
+    }
+
+    @Test
+    public void testArraysAreNotSharedAcrossThreads() throws Exception {
+        final ArrayRecycler recycler = new ArrayRecycler(1);
+        recycler.release(new int[8], new Object[8], 0);
+        final Object[][] result = new Object[1][];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = recycler.acquire(8);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(result[0]);
+        assertNotNull(recycler.acquire(8));
+    }
+
+    @Test
+    public void testUncachedCapacityIsNotRecycled() {
+        ArrayRecycler recycler = new ArrayRecycler(2);
+        recycler.release(new int[100], new Object[200], 0);
+        assertNull(recycler.acquire(100));
+    }
+
+    @Test
+    public void testMapGrowthIsRecycled() {
+        // Warm up this thread's cache for every size class the maps below go through.
+        SimpleArrayMap<Integer, Integer> map = new SimpleArrayMap<>();
+        for (int i = 0; i < 50; i++) {
+            map.put(i, i);
+        }
+        map.clear();
+
+        final long recycled = SimpleArrayMap.getRecycledArrayCount();
+        for (int round = 0; round < 10; round++) {
+            map = new SimpleArrayMap<>();
+            for (int i = 0; i < 50; i++) {
+                map.put(i, i);
+            }
+            map.clear();
+        }
+        // Each round goes through the 7 size classes from 4 to 60 entries.
+        assertTrue(SimpleArrayMap.getRecycledArrayCount() - recycled >= 70);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentLruCacheTest {
+    private static final String TAG = "ConcurrentLruCacheTest";
+
+    @SmallTest
+    @Test
+    public void testSegmentCount() {
+        assertEquals(4, new ConcurrentLruCache<String, String>(100).segmentCount());
+        assertEquals(8, new ConcurrentLruCache<String, String>(100, 5).segmentCount());
+        // Every segment must be able to hold at least one entry.
+        assertEquals(2, new ConcurrentLruCache<String, String>(3, 16).segmentCount());
+        assertEquals(1, new ConcurrentLruCache<String, String>(1, 16).segmentCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testGetPutRemove() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(10);
+        assertNull(cache.get("a"));
+        assertNull(cache.put("a", "A"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.put("a", "AA"));
+        assertEquals("AA", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.putCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testCreate() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(10) {
+            @Override
+            protected String create(String key) {
+                return key.toUpperCase();
+            }
+        };
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.createCount());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @SmallTest
+    @Test
+    public void testEvictionWithinSegment() {
+        // A single segment behaves exactly like LruCache.
+        final List<String> evicted = new ArrayList<>();
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(2, 1) {
+            @Override
+            protected void entryRemoved(boolean evicted1, String key, String oldValue,
+                    String newValue) {
+                if (evicted1) {
+                    evicted.add(key);
+                }
+            }
+        };
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+        assertEquals(1, evicted.size());
+        assertEquals("b", evicted.get(0));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testSizeOfAndAdmission() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(20, 2) {
+            @Override
+            protected int sizeOf(String key, String value) {
+                return value.length();
+            }
+        };
+        cache.put("a", "aaaa");
+        assertEquals(4, cache.size());
+        // Larger than the 10 unit share of a segment, so it is never cached.
+        assertNull(cache.put("b", "bbbbbbbbbbbb"));
+        assertNull(cache.get("b"));
+        assertEquals(4, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testResizeAndEvictAll() {
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<>(100, 4);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+        }
+        assertTrue(cache.size() <= 100);
+        cache.resize(8);
+        assertEquals(8, cache.maxSize());
+        assertTrue(cache.size() <= 8);
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertTrue(cache.snapshot().isEmpty());
+    }
+
+    @SmallTest
+    @Test
+    public void testResizeBelowSegmentCount() {
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<>(100, 4);
+        cache.resize(2);
+        assertEquals(2, cache.maxSize());
+        // Every segment keeps room for one entry, so the cache holds at most one per segment.
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+            assertEquals("v" + i, cache.get(i));
+        }
+        assertTrue(cache.size() <= 4);
+    }
+
+    @SmallTest
+    @Test
+    public void testConcurrentAccessKeepsSizeBounded() throws Exception {
+        final ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(64, 8);
+        runConcurrently(new CacheOps() {
+            @Override
+            public Object get(Integer key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                cache.put(key, value);
+            }
+        }, 4, 10000, 256);
+        assertTrue(cache.size() <= 64);
+        assertEquals(cache.size(), cache.snapshot().size());
+        assertFalse(cache.toString().isEmpty());
+    }
+
+    /**
+     * Compares the throughput of {@link LruCache} and {@link ConcurrentLruCache} with several
+     * threads hitting the same cache.
+     */
+    @LargeTest
+    @Test
+    public void benchmarkAgainstLruCache() throws Exception {
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int iterations = 200000;
+        final int keySpace = 2048;
+
+        final LruCache<Integer, Integer> lruCache = new LruCache<>(1024);
+        long lruTime = runConcurrently(new CacheOps() {
+            @Override
+            public Object get(Integer key) {
+                return lruCache.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                lruCache.put(key, value);
+            }
+        }, threads, iterations, keySpace);
+
+        final ConcurrentLruCache<Integer, Integer> concurrentCache =
+                new ConcurrentLruCache<>(1024, threads);
+        long concurrentTime = runConcurrently(new CacheOps() {
+            @Override
+            public Object get(Integer key) {
+                return concurrentCache.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                concurrentCache.put(key, value);
+            }
+        }, threads, iterations, keySpace);
+
+        Log.d(TAG, threads + " threads x " + iterations + " ops: LruCache " + lruTime
+                + "ms (" + lruCache + "), ConcurrentLruCache " + concurrentTime + "ms ("
+                + concurrentCache + ")");
+    }
+
+    private interface CacheOps {
+        Object get(Integer key);
+
+        void put(Integer key, Integer value);
+    }
+
+    private static long runConcurrently(final CacheOps ops, int threadCount,
+            final int iterations, final int keySpace) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int seed = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        Integer key = random.nextInt(keySpace);
+                        if (ops.get(key) == null) {
+                            ops.put(key, j);
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+}
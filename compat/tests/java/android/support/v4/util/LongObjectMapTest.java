@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(AndroidJUnit4.class)
+public class LongObjectMapTest {
+    private static final String TAG = "LongObjectMapTest";
+
+    @SmallTest
+    @Test
+    public void testPutGetRemove() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, null));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals(3, map.size());
+        assertEquals("uno", map.get(1));
+        assertEquals("zero", map.get(0));
+        assertTrue(map.containsKey(-1));
+        assertNull(map.get(-1, "default"));
+        assertEquals("default", map.get(2, "default"));
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @SmallTest
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(42);
+        LongObjectMap<Integer> map = new LongObjectMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // A small key range forces collisions, long probe chains and removals inside them.
+            long key = random.nextInt(512) * (1L << 33);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 512 * (1L << 33); key += 1L << 33) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        int iterated = 0;
+        for (int slot = map.firstSlot(); slot >= 0; slot = map.nextSlot(slot)) {
+            assertEquals(expected.get(map.keyAtSlot(slot)), map.valueAtSlot(slot));
+            iterated++;
+        }
+        assertEquals(expected.size(), iterated);
+    }
+
+    @SmallTest
+    @Test
+    public void testBulkOperations() {
+        LongObjectMap<String> first = new LongObjectMap<>();
+        LongObjectMap<String> second = new LongObjectMap<>(100);
+        for (int i = 0; i < 100; i++) {
+            first.put(i, "first" + i);
+            second.put(i + 50, "second" + i);
+        }
+        first.putAll(second);
+        assertEquals(150, first.size());
+        assertEquals("second0", first.get(50));
+        assertEquals("first49", first.get(49));
+
+        assertEquals(2, first.removeAll(0L, 1L, 1000L));
+        LongSet keys = new LongSet();
+        for (int i = 100; i < 150; i++) {
+            keys.add(i);
+        }
+        assertEquals(50, first.removeAll(keys));
+        assertEquals(98, first.size());
+
+        LongObjectMap<String> clone = first.clone();
+        clone.remove(2);
+        assertEquals(98, first.size());
+        assertEquals("first2", first.get(2));
+    }
+
+    @SmallTest
+    @Test
+    public void testToString() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertEquals("{}", map.toString());
+        map.put(7L, "seven");
+        assertEquals("{7=seven}", map.toString());
+    }
+
+    /**
+     * Compares lookups and insertions against {@link LongSparseArray} at several sizes.
+     */
+    @LargeTest
+    @Test
+    public void benchmarkAgainstLongSparseArray() {
+        for (int size : new int[] {10, 1000, 100000}) {
+            final long[] keys = new long[size];
+            Random random = new Random(size);
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextLong();
+            }
+            final int rounds = Math.max(1, 1000000 / size);
+
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                LongSparseArray<Object> sparseArray = new LongSparseArray<>();
+                for (long key : keys) {
+                    sparseArray.put(key, TAG);
+                }
+                for (long key : keys) {
+                    sparseArray.get(key);
+                }
+            }
+            long sparseArrayTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                LongObjectMap<Object> map = new LongObjectMap<>();
+                for (long key : keys) {
+                    map.put(key, TAG);
+                }
+                for (long key : keys) {
+                    map.get(key);
+                }
+            }
+            long mapTime = System.nanoTime() - start;
+
+            Log.d(TAG, size + " entries: LongSparseArray " + sparseArrayTime / rounds
+                    + "ns, LongObjectMap " + mapTime / rounds + "ns per fill and lookup");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class LongSetTest {
+
+    @Test
+    public void testAddContainsRemove() {
+        LongSet set = new LongSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(5));
+        assertTrue(set.add(-5));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-5));
+        assertFalse(set.contains(6));
+        assertTrue(set.remove(0));
+        assertFalse(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(2, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(5));
+    }
+
+    @Test
+    public void testIterationIncludesZero() {
+        LongSet set = new LongSet();
+        set.addAll(0, 1, 2, 3);
+        long sum = 0;
+        int count = 0;
+        for (int slot = set.firstSlot(); slot >= 0; slot = set.nextSlot(slot)) {
+            sum += set.keyAtSlot(slot);
+            count++;
+        }
+        assertEquals(4, count);
+        assertEquals(6, sum);
+        assertEquals(4, set.toArray().length);
+    }
+
+    @Test
+    public void testMatchesHashSet() {
+        Random random = new Random(7);
+        LongSet set = new LongSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = (long) random.nextInt(256) << 40;
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                assertEquals(expected.add(key), set.add(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long key : expected) {
+            assertTrue(set.contains(key));
+        }
+    }
+
+    @Test
+    public void testBulkOperations() {
+        LongSet first = new LongSet();
+        LongSet second = new LongSet(10);
+        assertEquals(3, first.addAll(1, 2, 3));
+        assertEquals(2, second.addAll(3, 4));
+        assertEquals(1, first.addAll(second));
+        assertEquals(4, first.size());
+        assertEquals(2, first.removeAll(second));
+        assertEquals(1, first.removeAll(1, 5));
+        assertEquals(1, first.size());
+        assertTrue(first.contains(2));
+
+        LongSet clone = first.clone();
+        clone.add(10);
+        assertFalse(first.contains(10));
+        assertEquals("{2}", first.toString());
+    }
+}
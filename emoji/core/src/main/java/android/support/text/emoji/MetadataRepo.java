@@ -26,7 +26,6 @@ import android.support.annotation.RestrictTo;
 import android.support.annotation.VisibleForTesting;
 import android.support.text.emoji.flatbuffer.MetadataList;
 import android.support.v4.util.Preconditions;
-import android.util.SparseArray;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,11 +37,6 @@ import java.nio.ByteBuffer;
 @AnyThread
 @RequiresApi(19)
 public final class MetadataRepo {
-    /**
-     * The default children size of the root node.
-     */
-    private static final int DEFAULT_ROOT_SIZE = 1024;
-
     /**
      * MetadataList that contains the emoji metadata.
      */
@@ -55,9 +49,10 @@ public final class MetadataRepo {
     private final char[] mEmojiCharArray;
 
     /**
-     * Empty root node of the trie.
+     * Trie that maps emoji codepoint sequences to EmojiMetadata. Only replaced by {@link #put},
+     * which is used by tests.
      */
-    private final Node mRootNode;
+    private volatile Trie mTrie;
 
     /**
      * Typeface to be used to render emojis.
@@ -73,7 +68,7 @@ public final class MetadataRepo {
     MetadataRepo() {
         mTypeface = null;
         mMetadataList = null;
-        mRootNode = new Node(DEFAULT_ROOT_SIZE);
+        mTrie = Trie.build(new EmojiMetadata[0], 0);
         mEmojiCharArray = new char[0];
     }
 
@@ -87,7 +82,6 @@ public final class MetadataRepo {
             @NonNull final MetadataList metadataList) {
         mTypeface = typeface;
         mMetadataList = metadataList;
-        mRootNode = new Node(DEFAULT_ROOT_SIZE);
         mEmojiCharArray = new char[mMetadataList.listLength() * 2];
         constructIndex(mMetadataList);
     }
@@ -134,14 +128,17 @@ public final class MetadataRepo {
      */
     private void constructIndex(final MetadataList metadataList) {
         int length = metadataList.listLength();
+        final EmojiMetadata[] metadataArray = new EmojiMetadata[length];
         for (int i = 0; i < length; i++) {
             final EmojiMetadata metadata = new EmojiMetadata(this, i);
             //since all emojis are mapped to a single codepoint in Private Use Area A they are 2
             //chars wide
             //noinspection ResultOfMethodCallIgnored
             Character.toChars(metadata.getId(), mEmojiCharArray, i * 2);
-            put(metadata);
+            checkMetadata(metadata);
+            metadataArray[i] = metadata;
         }
+        mTrie = Trie.build(metadataArray, length);
     }
 
     /**
@@ -164,8 +161,8 @@ public final class MetadataRepo {
      * @hide
      */
     @RestrictTo(LIBRARY_GROUP)
-    Node getRootNode() {
-        return mRootNode;
+    Trie getTrie() {
+        return mTrie;
     }
 
     /**
@@ -185,59 +182,253 @@ public final class MetadataRepo {
     }
 
     /**
-     * Add an EmojiMetadata to the index.
+     * Add an EmojiMetadata to the index. The trie is rebuilt on every call, therefore this is
+     * only meant to be used by tests.
      *
      * @hide
      */
     @RestrictTo(LIBRARY_GROUP)
     @VisibleForTesting
     void put(@NonNull final EmojiMetadata data) {
+        checkMetadata(data);
+
+        final Trie trie = mTrie;
+        final EmojiMetadata[] metadataArray = new EmojiMetadata[trie.getNodeCount() + 1];
+        int count = 0;
+        for (int node = 0; node < trie.getNodeCount(); node++) {
+            final EmojiMetadata existing = trie.getData(node);
+            if (existing != null) {
+                metadataArray[count++] = existing;
+            }
+        }
+        // Added last so that it replaces an existing mapping for the same codepoints.
+        metadataArray[count++] = data;
+        mTrie = Trie.build(metadataArray, count);
+    }
+
+    private static void checkMetadata(final EmojiMetadata data) {
         Preconditions.checkNotNull(data, "emoji metadata cannot be null");
         Preconditions.checkArgument(data.getCodepointsLength() > 0,
                 "invalid metadata codepoint length");
-
-        mRootNode.put(data, 0, data.getCodepointsLength() - 1);
     }
 
     /**
-     * Trie node that holds mapping from emoji codepoint(s) to EmojiMetadata. A single codepoint
-     * emoji is represented by a child of the root node.
+     * Trie that holds mapping from emoji codepoint(s) to EmojiMetadata, stored in flat primitive
+     * arrays instead of a node object and a SparseArray per node.
+     * <p>
+     * Nodes are identified by their index and numbered in breadth first order starting from the
+     * root {@link #ROOT}, therefore the children of a node are stored next to each other, sorted
+     * by codepoint: the children of node {@code n} are the nodes from {@code mFirstChild[n]} up
+     * to, but excluding, {@code mFirstChild[n + 1]}. A single codepoint emoji is represented by
+     * a child of the root node.
      *
      * @hide
      */
     @RestrictTo(LIBRARY_GROUP)
-    static class Node {
-        private final SparseArray<Node> mChildren;
-        private EmojiMetadata mData;
+    static final class Trie {
+        /**
+         * Index of the root node.
+         */
+        static final int ROOT = 0;
 
-        private Node() {
-            this(1);
+        /**
+         * Returned by {@link #getChild(int, int)} when there is no child for a codepoint.
+         */
+        static final int NO_NODE = -1;
+
+        /**
+         * Index of the first child of each node, followed by the total node count.
+         */
+        private final int[] mFirstChild;
+
+        /**
+         * Codepoint of the edge leading to each node. Unused for the root.
+         */
+        private final int[] mCodepoints;
+
+        /**
+         * EmojiMetadata ending at each node, or null.
+         */
+        private final EmojiMetadata[] mData;
+
+        private Trie(final int[] firstChild, final int[] codepoints,
+                final EmojiMetadata[] data) {
+            mFirstChild = firstChild;
+            mCodepoints = codepoints;
+            mData = data;
         }
 
-        private Node(final int defaultChildrenSize) {
-            mChildren = new SparseArray<>(defaultChildrenSize);
+        /**
+         * @return the child of {@code node} for {@code codePoint}, or {@link #NO_NODE}
+         */
+        int getChild(final int node, final int codePoint) {
+            final int[] codepoints = mCodepoints;
+            int lo = mFirstChild[node];
+            int hi = mFirstChild[node + 1] - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                final int midCodepoint = codepoints[mid];
+                if (midCodepoint < codePoint) {
+                    lo = mid + 1;
+                } else if (midCodepoint > codePoint) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return NO_NODE;
         }
 
-        Node get(final int key) {
-            return mChildren == null ? null : mChildren.get(key);
+        /**
+         * @return the EmojiMetadata whose codepoints end at {@code node}, or null
+         */
+        EmojiMetadata getData(final int node) {
+            return mData[node];
         }
 
-        final EmojiMetadata getData() {
-            return mData;
+        int getNodeCount() {
+            return mData.length;
         }
 
-        private void put(@NonNull final EmojiMetadata data, final int start, final int end) {
-            Node node = get(data.getCodepointAt(start));
-            if (node == null) {
-                node = new Node();
-                mChildren.put(data.getCodepointAt(start), node);
+        /**
+         * Builds the trie from the first {@code count} entries of {@code metadataArray}. If
+         * several entries have the same codepoints the last one is kept.
+         */
+        static Trie build(@NonNull final EmojiMetadata[] metadataArray, final int count) {
+            // Copy the codepoints once into a flat array, so that sorting and building do not go
+            // through the FlatBuffer accessors over and over.
+            final int[] offsets = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                offsets[i + 1] = offsets[i] + metadataArray[i].getCodepointsLength();
             }
+            final int[] sequences = new int[offsets[count]];
+            for (int i = 0; i < count; i++) {
+                final EmojiMetadata metadata = metadataArray[i];
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    sequences[j] = metadata.getCodepointAt(j - offsets[i]);
+                }
+            }
+
+            // Sort the entries by codepoint sequence, so that the entries below a node form a
+            // contiguous range and a prefix comes before its extensions.
+            final int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            mergeSort(order, new int[count], 0, count, offsets, sequences);
+
+            // A trie over the sorted sequences has at most one node per codepoint plus the root.
+            final int maxNodes = sequences.length + 1;
+            final int[] firstChild = new int[maxNodes + 1];
+            final int[] codepoints = new int[maxNodes];
+            final EmojiMetadata[] data = new EmojiMetadata[maxNodes];
+            // Range of sorted entries below each node, used while building only.
+            final int[] rangeStart = new int[maxNodes];
+            final int[] rangeEnd = new int[maxNodes];
+
+            rangeStart[ROOT] = 0;
+            rangeEnd[ROOT] = count;
+            int nodeCount = 1;
+            // Nodes are created in breadth first order, so the depth only changes between runs
+            // of nodes and can be tracked with the index of the last node of the current level.
+            int depth = 0;
+            int lastNodeOfLevel = ROOT;
+            for (int node = 0; node < nodeCount; node++) {
+                int start = rangeStart[node];
+                final int end = rangeEnd[node];
+                // Sequences that end at this node sort first within the range.
+                while (start < end && length(order[start], offsets) == depth) {
+                    data[node] = metadataArray[order[start]];
+                    start++;
+                }
+                firstChild[node] = nodeCount;
+                while (start < end) {
+                    final int codepoint = sequences[offsets[order[start]] + depth];
+                    int groupEnd = start + 1;
+                    while (groupEnd < end
+                            && sequences[offsets[order[groupEnd]] + depth] == codepoint) {
+                        groupEnd++;
+                    }
+                    codepoints[nodeCount] = codepoint;
+                    rangeStart[nodeCount] = start;
+                    rangeEnd[nodeCount] = groupEnd;
+                    nodeCount++;
+                    start = groupEnd;
+                }
+                if (node == lastNodeOfLevel) {
+                    depth++;
+                    lastNodeOfLevel = nodeCount - 1;
+                }
+            }
+            firstChild[nodeCount] = nodeCount;
+
+            return new Trie(trim(firstChild, nodeCount + 1), trim(codepoints, nodeCount),
+                    trim(data, nodeCount));
+        }
+
+        private static int length(final int entry, final int[] offsets) {
+            return offsets[entry + 1] - offsets[entry];
+        }
+
+        private static int compare(final int lhs, final int rhs, final int[] offsets,
+                final int[] sequences) {
+            final int lhsLength = length(lhs, offsets);
+            final int rhsLength = length(rhs, offsets);
+            final int length = Math.min(lhsLength, rhsLength);
+            for (int i = 0; i < length; i++) {
+                final int lhsCodepoint = sequences[offsets[lhs] + i];
+                final int rhsCodepoint = sequences[offsets[rhs] + i];
+                if (lhsCodepoint != rhsCodepoint) {
+                    return lhsCodepoint < rhsCodepoint ? -1 : 1;
+                }
+            }
+            return lhsLength - rhsLength;
+        }
+
+        /**
+         * Stable merge sort of {@code order[from, to)}, so that duplicate sequences keep the
+         * order in which they were added.
+         */
+        private static void mergeSort(final int[] order, final int[] scratch, final int from,
+                final int to, final int[] offsets, final int[] sequences) {
+            if (to - from < 2) {
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            mergeSort(order, scratch, from, mid, offsets, sequences);
+            mergeSort(order, scratch, mid, to, offsets, sequences);
+            if (compare(order[mid - 1], order[mid], offsets, sequences) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, scratch, from, to - from);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < mid
+                        && compare(scratch[left], scratch[right], offsets, sequences) <= 0)) {
+                    order[i] = scratch[left++];
+                } else {
+                    order[i] = scratch[right++];
+                }
+            }
+        }
+
+        private static int[] trim(final int[] array, final int length) {
+            if (array.length == length) {
+                return array;
+            }
+            final int[] result = new int[length];
+            System.arraycopy(array, 0, result, 0, length);
+            return result;
+        }
 
-            if (end > start) {
-                node.put(data, start + 1, end);
-            } else {
-                node.mData = data;
+        private static EmojiMetadata[] trim(final EmojiMetadata[] array, final int length) {
+            if (array.length == length) {
+                return array;
             }
+            final EmojiMetadata[] result = new EmojiMetadata[length];
+            System.arraycopy(array, 0, result, 0, length);
+            return result;
         }
     }
 }
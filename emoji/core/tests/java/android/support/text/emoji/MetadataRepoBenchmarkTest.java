@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.text.emoji;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.Spanned;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time to create a MetadataRepo and to process a chat transcript. The results are
+ * written to logcat.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 19)
+public class MetadataRepoBenchmarkTest {
+    private static final String TAG = "MetadataRepoBenchmark";
+    private static final int TRANSCRIPT_SIZE = 100 * 1024;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void benchmarkCreate() throws Exception {
+        final AssetManager assetManager = InstrumentationRegistry.getContext().getAssets();
+        // Warm up the typeface and file caches.
+        MetadataRepo.create(assetManager, "NotoColorEmojiCompat.ttf");
+
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            final MetadataRepo repo = MetadataRepo.create(assetManager,
+                    "NotoColorEmojiCompat.ttf");
+            total += System.nanoTime() - start;
+            assertNotNull(repo.getTrie());
+        }
+        Log.d(TAG, "MetadataRepo.create: " + total / ITERATIONS / 1000 + "us");
+    }
+
+    @Test
+    public void benchmarkProcessTranscript() throws Exception {
+        EmojiCompat.reset(TestConfigBuilder.config());
+        final String transcript = createTranscript();
+
+        // Warm up.
+        EmojiCompat.get().process(transcript);
+
+        long total = 0;
+        CharSequence result = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            result = EmojiCompat.get().process(transcript);
+            total += System.nanoTime() - start;
+        }
+        assertTrue(result instanceof Spanned);
+        Log.d(TAG, "process " + transcript.length() + " chars: " + total / ITERATIONS / 1000
+                + "us");
+    }
+
+    /**
+     * Builds a chat-like transcript mixing plain words and the emojis from emojis.txt.
+     */
+    private static String createTranscript() throws Exception {
+        final List<String> emojis = readEmojis();
+        final String[] words = {"hey", "see you", "lol", "on my way", "ok", "thanks!", "haha"};
+        final StringBuilder builder = new StringBuilder(TRANSCRIPT_SIZE + 64);
+        int i = 0;
+        while (builder.length() < TRANSCRIPT_SIZE) {
+            builder.append(words[i % words.length]).append(' ');
+            builder.append(emojis.get((i * 31) % emojis.size()));
+            if (i % 3 == 0) {
+                builder.append(emojis.get((i * 17) % emojis.size()));
+            }
+            builder.append('\n');
+            i++;
+        }
+        return builder.toString();
+    }
+
+    private static List<String> readEmojis() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final InputStream inputStream = context.getAssets().open("emojis.txt");
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+            final List<String> emojis = new ArrayList<>();
+            final StringBuilder stringBuilder = new StringBuilder();
+            String s;
+            while ((s = reader.readLine()) != null) {
+                s = s.trim();
+                if (s.isEmpty() || s.startsWith("#")) continue;
+                stringBuilder.setLength(0);
+                for (String part : s.split(" ")) {
+                    stringBuilder.append(Character.toChars(Integer.parseInt(part.trim(), 16)));
+                }
+                emojis.add(stringBuilder.toString());
+            }
+            return emojis;
+        } finally {
+            inputStream.close();
+        }
+    }
+}
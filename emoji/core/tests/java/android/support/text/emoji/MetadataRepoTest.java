@@ -21,7 +21,7 @@ import static org.junit.Assert.assertSame;
 import android.support.test.filters.SdkSuppress;
 import android.support.test.filters.SmallTest;
 import android.support.test.runner.AndroidJUnit4;
-import android.support.text.emoji.MetadataRepo.Node;
+import android.support.text.emoji.MetadataRepo.Trie;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -94,15 +94,12 @@ public class MetadataRepoTest {
     }
 
     final EmojiMetadata getNode(final int[] codepoints) {
-        return getNode(mMetadataRepo.getRootNode(), codepoints, 0);
-    }
-
-    final EmojiMetadata getNode(Node node, final int[] codepoints, int start) {
-        if (codepoints.length < start) return null;
-        if (codepoints.length == start) return node.getData();
-
-        final Node childNode = node.get(codepoints[start]);
-        if (childNode == null) return null;
-        return getNode(childNode, codepoints, start + 1);
+        final Trie trie = mMetadataRepo.getTrie();
+        int node = Trie.ROOT;
+        for (int codepoint : codepoints) {
+            node = trie.getChild(node, codepoint);
+            if (node == Trie.NO_NODE) return null;
+        }
+        return trie.getData(node);
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.media;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a fixed set of tags from many image files in parallel.
+ *
+ * <p>The files are read by at most {@code maxWorkers} tasks running on the given
+ * {@link Executor}. Each task takes the next file of the batch until all the files have been
+ * read, using its own {@link ExifTagReader} so that buffers are reused from one file to the next
+ * without any locking. The results are delivered to a {@link Callback} as soon as each file has
+ * been read.
+ */
+public class ExifBatchReader {
+    /**
+     * Receives the results of {@link #read(List, Callback)}.
+     *
+     * <p>The methods are called on the threads of the executor, possibly concurrently.
+     */
+    public interface Callback {
+        /**
+         * Called when a file has been read.
+         *
+         * @param path the path of the file.
+         * @param attributes the values of the requested tags, see
+         *        {@link ExifTagReader#readAttributes(String)}.
+         * @param readTimeNanos the time spent reading the file.
+         */
+        @WorkerThread
+        void onFileRead(@NonNull String path, @NonNull Map<String, String> attributes,
+                long readTimeNanos);
+
+        /**
+         * Called when a file could not be read.
+         *
+         * @param path the path of the file.
+         * @param error the error that occurred. When the file is corrupt and the parser fails,
+         *              the parser's exception is the cause of the error.
+         * @param readTimeNanos the time spent before the error occurred.
+         */
+        @WorkerThread
+        void onFileFailed(@NonNull String path, @NonNull IOException error, long readTimeNanos);
+
+        /**
+         * Called once after all the files of the batch have been reported.
+         */
+        @WorkerThread
+        void onBatchFinished();
+    }
+
+    private final Executor mExecutor;
+    private final int mMaxWorkers;
+    private final String[] mTags;
+    // Readers left by the workers of previous batches, guarded by itself.
+    private final ArrayDeque<ExifTagReader> mIdleReaders = new ArrayDeque<>();
+
+    /**
+     * Creates a batch reader for the given tags.
+     *
+     * @param executor the executor running the workers.
+     * @param maxWorkers the maximum number of files read at the same time by one batch.
+     * @param tags the names of the tags to read, such as {@link ExifInterface#TAG_ORIENTATION}.
+     */
+    public ExifBatchReader(@NonNull Executor executor, int maxWorkers, @NonNull String... tags) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("maxWorkers must be positive");
+        }
+        if (tags == null) {
+            throw new IllegalArgumentException("tags cannot be null");
+        }
+        mExecutor = executor;
+        mMaxWorkers = maxWorkers;
+        mTags = tags.clone();
+    }
+
+    /**
+     * Reads the given files asynchronously. Several batches can be read at the same time.
+     *
+     * @param paths the paths of the files to read.
+     * @param callback the callback receiving the result of each file.
+     */
+    public void read(@NonNull List<String> paths, @NonNull Callback callback) {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths cannot be null");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("callback cannot be null");
+        }
+        if (paths.contains(null)) {
+            throw new IllegalArgumentException("paths cannot contain null");
+        }
+        final Batch batch = new Batch(new ArrayList<>(paths), callback);
+        // An empty batch still runs one worker to report onBatchFinished() on the executor.
+        final int workerCount = Math.max(1, Math.min(mMaxWorkers, batch.mPaths.size()));
+        batch.mActiveWorkers.set(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            mExecutor.execute(batch);
+        }
+    }
+
+    private ExifTagReader acquireReader() {
+        synchronized (mIdleReaders) {
+            final ExifTagReader reader = mIdleReaders.poll();
+            if (reader != null) {
+                return reader;
+            }
+        }
+        return new ExifTagReader(mTags);
+    }
+
+    private void releaseReader(ExifTagReader reader) {
+        synchronized (mIdleReaders) {
+            // Keep at most one reader per worker that can run at the same time.
+            if (mIdleReaders.size() < mMaxWorkers) {
+                mIdleReaders.push(reader);
+            }
+        }
+    }
+
+    /**
+     * The files of one call to {@link #read(List, Callback)}. Each worker runs this runnable.
+     */
+    private final class Batch implements Runnable {
+        final List<String> mPaths;
+        final Callback mCallback;
+        final AtomicInteger mNextIndex = new AtomicInteger();
+        final AtomicInteger mActiveWorkers = new AtomicInteger();
+
+        Batch(List<String> paths, Callback callback) {
+            mPaths = paths;
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            final ExifTagReader reader = acquireReader();
+            try {
+                int index;
+                while ((index = mNextIndex.getAndIncrement()) < mPaths.size()) {
+                    readFile(reader, mPaths.get(index));
+                }
+            } finally {
+                releaseReader(reader);
+                if (mActiveWorkers.decrementAndGet() == 0) {
+                    mCallback.onBatchFinished();
+                }
+            }
+        }
+
+        private void readFile(ExifTagReader reader, String path) {
+            final long start = System.nanoTime();
+            final Map<String, String> attributes;
+            try {
+                attributes = reader.readAttributes(path);
+            } catch (IOException e) {
+                mCallback.onFileFailed(path, e, System.nanoTime() - start);
+                return;
+            } catch (RuntimeException e) {
+                // A corrupt file must not stop the worker before the rest of its files.
+                mCallback.onFileFailed(path, new IOException("Failed to parse " + path, e),
+                        System.nanoTime() - start);
+                return;
+            }
+            mCallback.onFileRead(path, attributes, System.nanoTime() - start);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import android.util.Pair;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInput;
 import java.io.DataInputStream;
@@ -40,10 +41,12 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
@@ -2870,19 +2873,19 @@ public class ExifInterface {
 
     // Formats for the value in IFD entry (See TIFF 6.0 Section 2, "Image File Directory".)
     private static final int IFD_FORMAT_BYTE = 1;
-    private static final int IFD_FORMAT_STRING = 2;
-    private static final int IFD_FORMAT_USHORT = 3;
-    private static final int IFD_FORMAT_ULONG = 4;
+    static final int IFD_FORMAT_STRING = 2;
+    static final int IFD_FORMAT_USHORT = 3;
+    static final int IFD_FORMAT_ULONG = 4;
     private static final int IFD_FORMAT_URATIONAL = 5;
     private static final int IFD_FORMAT_SBYTE = 6;
-    private static final int IFD_FORMAT_UNDEFINED = 7;
-    private static final int IFD_FORMAT_SSHORT = 8;
-    private static final int IFD_FORMAT_SLONG = 9;
+    static final int IFD_FORMAT_UNDEFINED = 7;
+    static final int IFD_FORMAT_SSHORT = 8;
+    static final int IFD_FORMAT_SLONG = 9;
     private static final int IFD_FORMAT_SRATIONAL = 10;
     private static final int IFD_FORMAT_SINGLE = 11;
     private static final int IFD_FORMAT_DOUBLE = 12;
     // Format indicating a new IFD entry (See Adobe PageMaker® 6.0 TIFF Technical Notes, "New Tag")
-    private static final int IFD_FORMAT_IFD = 13;
+    static final int IFD_FORMAT_IFD = 13;
     // Names for the data formats for debugging purpose.
     static final String[] IFD_FORMAT_NAMES = new String[] {
             "", "BYTE", "STRING", "USHORT", "ULONG", "URATIONAL", "SBYTE", "UNDEFINED", "SSHORT",
@@ -3311,7 +3314,7 @@ public class ExifInterface {
             this.secondaryFormat = secondaryFormat;
         }
 
-        private boolean isFormatCompatible(int format) {
+        boolean isFormatCompatible(int format) {
             if (primaryFormat == IFD_FORMAT_UNDEFINED || format == IFD_FORMAT_UNDEFINED) {
                 return true;
             } else if (primaryFormat == format || secondaryFormat == format) {
@@ -3557,9 +3560,9 @@ public class ExifInterface {
     public @interface IfdType {}
 
     static final int IFD_TYPE_PRIMARY = 0;
-    private static final int IFD_TYPE_EXIF = 1;
-    private static final int IFD_TYPE_GPS = 2;
-    private static final int IFD_TYPE_INTEROPERABILITY = 3;
+    static final int IFD_TYPE_EXIF = 1;
+    static final int IFD_TYPE_GPS = 2;
+    static final int IFD_TYPE_INTEROPERABILITY = 3;
     static final int IFD_TYPE_THUMBNAIL = 4;
     static final int IFD_TYPE_PREVIEW = 5;
     private static final int IFD_TYPE_ORF_MAKER_NOTE = 6;
@@ -3616,23 +3619,23 @@ public class ExifInterface {
     // the indicator. There is no SOF4, SOF8, SOF16 markers in JPEG and SOFx markers indicates start
     // of frame(baseline DCT) and the image size info exists in its beginning part.
     static final byte MARKER = (byte) 0xff;
-    private static final byte MARKER_SOI = (byte) 0xd8;
-    private static final byte MARKER_SOF0 = (byte) 0xc0;
-    private static final byte MARKER_SOF1 = (byte) 0xc1;
-    private static final byte MARKER_SOF2 = (byte) 0xc2;
-    private static final byte MARKER_SOF3 = (byte) 0xc3;
-    private static final byte MARKER_SOF5 = (byte) 0xc5;
-    private static final byte MARKER_SOF6 = (byte) 0xc6;
-    private static final byte MARKER_SOF7 = (byte) 0xc7;
-    private static final byte MARKER_SOF9 = (byte) 0xc9;
-    private static final byte MARKER_SOF10 = (byte) 0xca;
-    private static final byte MARKER_SOF11 = (byte) 0xcb;
-    private static final byte MARKER_SOF13 = (byte) 0xcd;
-    private static final byte MARKER_SOF14 = (byte) 0xce;
-    private static final byte MARKER_SOF15 = (byte) 0xcf;
-    private static final byte MARKER_SOS = (byte) 0xda;
+    static final byte MARKER_SOI = (byte) 0xd8;
+    static final byte MARKER_SOF0 = (byte) 0xc0;
+    static final byte MARKER_SOF1 = (byte) 0xc1;
+    static final byte MARKER_SOF2 = (byte) 0xc2;
+    static final byte MARKER_SOF3 = (byte) 0xc3;
+    static final byte MARKER_SOF5 = (byte) 0xc5;
+    static final byte MARKER_SOF6 = (byte) 0xc6;
+    static final byte MARKER_SOF7 = (byte) 0xc7;
+    static final byte MARKER_SOF9 = (byte) 0xc9;
+    static final byte MARKER_SOF10 = (byte) 0xca;
+    static final byte MARKER_SOF11 = (byte) 0xcb;
+    static final byte MARKER_SOF13 = (byte) 0xcd;
+    static final byte MARKER_SOF14 = (byte) 0xce;
+    static final byte MARKER_SOF15 = (byte) 0xcf;
+    static final byte MARKER_SOS = (byte) 0xda;
     static final byte MARKER_APP1 = (byte) 0xe1;
-    private static final byte MARKER_COM = (byte) 0xfe;
+    static final byte MARKER_COM = (byte) 0xfe;
     static final byte MARKER_EOI = (byte) 0xd9;
 
     // Supported Image File Types
@@ -3672,6 +3675,23 @@ public class ExifInterface {
         sExifPointerTagMap.put(EXIF_POINTER_TAGS[5].number, IFD_TYPE_ORF_IMAGE_PROCESSING); // 8256
     }
 
+    /**
+     * Returns the tag with the given number that can be read from the given IFD type, or
+     * {@code null}.
+     */
+    static ExifTag getTagForReading(@IfdType int ifdType, int tagNumber) {
+        return sExifTagMapsForReading[ifdType].get(tagNumber);
+    }
+
+    /**
+     * Returns the type of the IFD pointed to by the given tag, or -1 if the tag is not an IFD
+     * pointer tag.
+     */
+    static int getPointerIfdType(int tagNumber) {
+        final Integer ifdType = sExifPointerTagMap.get(tagNumber);
+        return ifdType != null ? ifdType : -1;
+    }
+
     private final String mFilename;
     private final AssetManager.AssetInputStream mAssetInputStream;
     private int mMimeType;
@@ -3770,33 +3790,48 @@ public class ExifInterface {
     public String getAttribute(@NonNull String tag) {
         ExifAttribute attribute = getExifAttribute(tag);
         if (attribute != null) {
-            if (!sTagSetForCompatibility.contains(tag)) {
-                return attribute.getStringValue(mExifByteOrder);
-            }
-            if (tag.equals(TAG_GPS_TIMESTAMP)) {
-                // Convert the rational values to the custom formats for backwards compatibility.
-                if (attribute.format != IFD_FORMAT_URATIONAL
-                        && attribute.format != IFD_FORMAT_SRATIONAL) {
-                    Log.w(TAG, "GPS Timestamp format is not rational. format=" + attribute.format);
-                    return null;
-                }
-                Rational[] array = (Rational[]) attribute.getValue(mExifByteOrder);
-                if (array == null || array.length != 3) {
-                    Log.w(TAG, "Invalid GPS Timestamp array. array=" + Arrays.toString(array));
-                    return null;
-                }
-                return String.format("%02d:%02d:%02d",
-                        (int) ((float) array[0].numerator / array[0].denominator),
-                        (int) ((float) array[1].numerator / array[1].denominator),
-                        (int) ((float) array[2].numerator / array[2].denominator));
+            return getAttributeString(tag, attribute, mExifByteOrder);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the given attribute in the format returned by
+     * {@link #getAttribute(String)}.
+     */
+    static String getAttributeString(@NonNull String tag, int format, int numberOfComponents,
+            byte[] bytes, ByteOrder byteOrder) {
+        return getAttributeString(tag, new ExifAttribute(format, numberOfComponents, bytes),
+                byteOrder);
+    }
+
+    private static String getAttributeString(@NonNull String tag, ExifAttribute attribute,
+            ByteOrder byteOrder) {
+        if (!sTagSetForCompatibility.contains(tag)) {
+            return attribute.getStringValue(byteOrder);
+        }
+        if (tag.equals(TAG_GPS_TIMESTAMP)) {
+            // Convert the rational values to the custom formats for backwards compatibility.
+            if (attribute.format != IFD_FORMAT_URATIONAL
+                    && attribute.format != IFD_FORMAT_SRATIONAL) {
+                Log.w(TAG, "GPS Timestamp format is not rational. format=" + attribute.format);
+                return null;
             }
-            try {
-                return Double.toString(attribute.getDoubleValue(mExifByteOrder));
-            } catch (NumberFormatException e) {
+            Rational[] array = (Rational[]) attribute.getValue(byteOrder);
+            if (array == null || array.length != 3) {
+                Log.w(TAG, "Invalid GPS Timestamp array. array=" + Arrays.toString(array));
                 return null;
             }
+            return String.format("%02d:%02d:%02d",
+                    (int) ((float) array[0].numerator / array[0].denominator),
+                    (int) ((float) array[1].numerator / array[1].denominator),
+                    (int) ((float) array[2].numerator / array[2].denominator));
+        }
+        try {
+            return Double.toString(attribute.getDoubleValue(byteOrder));
+        } catch (NumberFormatException e) {
+            return null;
         }
-        return null;
     }
 
     /**
@@ -4276,6 +4311,57 @@ public class ExifInterface {
      * </p>
      */
     public void saveAttributes() throws IOException {
+        checkCanSaveAttributes();
+
+        // Keep the thumbnail in memory
+        mThumbnailBytes = getThumbnail();
+
+        rewriteJpegFile();
+
+        // Discard the thumbnail in memory
+        mThumbnailBytes = null;
+    }
+
+    /**
+     * Save the tag data into the original image file, overwriting the existing EXIF segment in
+     * place when the new tag data fits in it. Unlike {@link #saveAttributes()}, only the EXIF
+     * segment is written in that case, so the cost does not depend on the size of the image. The
+     * unused space left in the segment is filled with zeros and can be reused by later calls.
+     * <p>
+     * If the image has no EXIF segment, has more than one, or the new tag data does not fit in
+     * the existing segment, the whole image is rewritten as in {@link #saveAttributes()}.
+     * </p>
+     * <p>
+     * This method is only supported for JPEG files.
+     * </p>
+     *
+     * @return {@code true} if the EXIF segment was overwritten in place, {@code false} if the
+     *         whole image was rewritten.
+     */
+    public boolean saveAttributesInPlace() throws IOException {
+        checkCanSaveAttributes();
+
+        // Keep the thumbnail in memory, since it is read from the segment being overwritten.
+        mThumbnailBytes = getThumbnailBytes();
+
+        boolean savedInPlace = false;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFilename, "rw");
+            savedInPlace = overwriteExifSegment(file);
+        } finally {
+            closeQuietly(file);
+        }
+        if (!savedInPlace) {
+            rewriteJpegFile();
+        }
+
+        // Discard the thumbnail in memory
+        mThumbnailBytes = null;
+        return savedInPlace;
+    }
+
+    private void checkCanSaveAttributes() throws IOException {
         if (!mIsSupportedFile || mMimeType != IMAGE_TYPE_JPEG) {
             throw new IOException("ExifInterface only supports saving attributes on JPEG formats.");
         }
@@ -4283,10 +4369,12 @@ public class ExifInterface {
             throw new IOException(
                     "ExifInterface does not support saving attributes for the current input.");
         }
+    }
 
-        // Keep the thumbnail in memory
-        mThumbnailBytes = getThumbnail();
-
+    /**
+     * Writes the image with the current tag data to a new file replacing the original one.
+     */
+    private void rewriteJpegFile() throws IOException {
         File tempFile = new File(mFilename + ".tmp");
         File originalFile = new File(mFilename);
         if (!originalFile.renameTo(tempFile)) {
@@ -4305,9 +4393,86 @@ public class ExifInterface {
             closeQuietly(out);
             tempFile.delete();
         }
+    }
 
-        // Discard the thumbnail in memory
-        mThumbnailBytes = null;
+    /**
+     * Overwrites the EXIF APP1 segment of the given JPEG file with the current tag data, keeping
+     * the segment length unchanged.
+     *
+     * @return {@code false} if nothing was written because the file does not have exactly one
+     *         EXIF APP1 segment or the tag data does not fit in it.
+     */
+    private boolean overwriteExifSegment(RandomAccessFile file) throws IOException {
+        final long segmentOffset = findExifSegment(file);
+        if (segmentOffset < 0) {
+            return false;
+        }
+        // The segment length includes the two bytes of the length field.
+        file.seek(segmentOffset + 2);
+        final int segmentLength = file.readUnsignedShort();
+
+        final ByteArrayOutputStream segment = new ByteArrayOutputStream(segmentLength);
+        // The identifier starts after the marker and the length field. See saveJpegAttributes().
+        writeExifSegment(new ByteOrderedDataOutputStream(segment, ByteOrder.BIG_ENDIAN),
+                (int) segmentOffset + 4);
+        if (segment.size() > segmentLength) {
+            if (DEBUG) {
+                Log.d(TAG, "EXIF segment does not fit in place (" + segment.size() + " > "
+                        + segmentLength + ")");
+            }
+            return false;
+        }
+
+        // Pad the new tag data with zeros up to the original segment length. The IFDs are
+        // located through offsets, so readers ignore the padding.
+        final byte[] bytes = Arrays.copyOf(segment.toByteArray(), segmentLength);
+        bytes[0] = (byte) (segmentLength >> 8);
+        bytes[1] = (byte) segmentLength;
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final FileChannel channel = file.getChannel();
+        long position = segmentOffset + 2;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the marker of the EXIF APP1 segment of the given JPEG file, or -1 if
+     * the file does not have exactly one. Only the segment headers are read.
+     */
+    private static long findExifSegment(RandomAccessFile file) throws IOException {
+        file.seek(0);
+        if (file.readByte() != MARKER || file.readByte() != MARKER_SOI) {
+            return -1;
+        }
+        final byte[] identifier = new byte[IDENTIFIER_EXIF_APP1.length];
+        long exifSegmentOffset = -1;
+        while (true) {
+            final long offset = file.getFilePointer();
+            if (file.readByte() != MARKER) {
+                return -1;
+            }
+            final byte marker = file.readByte();
+            if (marker == MARKER_EOI || marker == MARKER_SOS) {
+                return exifSegmentOffset;
+            }
+            final int length = file.readUnsignedShort();
+            if (length < 2) {
+                return -1;
+            }
+            if (marker == MARKER_APP1 && length - 2 >= identifier.length) {
+                file.readFully(identifier);
+                if (Arrays.equals(identifier, IDENTIFIER_EXIF_APP1)) {
+                    if (exifSegmentOffset >= 0) {
+                        // saveJpegAttributes() merges multiple EXIF segments into one.
+                        return -1;
+                    }
+                    exifSegmentOffset = offset;
+                }
+            }
+            file.seek(offset + 2 + length);
+        }
     }
 
     /**
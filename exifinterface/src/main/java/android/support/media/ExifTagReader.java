@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.media;
+
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a fixed set of tags from image files without parsing the rest of their metadata.
+ *
+ * <p>{@link ExifInterface} reads every tag of every image file directory into memory. For
+ * JPEG files, this class instead seeks from one JPEG segment header to the next, reads only the
+ * EXIF segment, follows only the IFD offsets that can lead to the requested tags, and stops as
+ * soon as all of them have been found. This makes it much cheaper to scan many images for a few
+ * tags such as the orientation or the date.
+ *
+ * <p>The values returned are the same as the ones returned by
+ * {@link ExifInterface#getAttribute(String)}. Other image formats are read with
+ * {@link ExifInterface}.
+ *
+ * <p>A reader reuses its buffers from one file to the next, so it is not thread safe. Use one
+ * reader per thread.
+ */
+public class ExifTagReader {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int TIFF_HEADER_LENGTH = 8;
+    // IFD types that can be reached from the EXIF segment of a JPEG file.
+    private static final int IFD_TYPE_COUNT = ExifInterface.IFD_TYPE_PREVIEW + 1;
+    // Corrupted files may have IFD offsets pointing to each other.
+    private static final int MAX_IFD_COUNT = 32;
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private static final class Slot {
+        final ExifInterface.ExifTag mTag;
+        final int mIndex;
+
+        Slot(ExifInterface.ExifTag tag, int index) {
+            mTag = tag;
+            mIndex = index;
+        }
+    }
+
+    private final String[] mTags;
+    // Index in mNames of the value returned for each requested tag.
+    private final int[] mTagIndices;
+
+    // The tags actually looked up. This may differ from the requested tags, see the constructor.
+    private final String[] mNames;
+    // The lowest IFD type that can hold each tag. ExifInterface returns the value from the
+    // lowest IFD type when a tag appears in several IFDs.
+    private final int[] mBestIfdTypes;
+    @SuppressWarnings("unchecked")
+    private final SparseArray<Slot>[] mSlotsByIfdType = new SparseArray[IFD_TYPE_COUNT];
+    private final boolean[] mVisitIfdType = new boolean[IFD_TYPE_COUNT];
+    private final int mImageWidthIndex;
+    private final int mImageLengthIndex;
+    private final int mUserCommentIndex;
+    private final int mDateTimeIndex;
+    private final int mDateTimeOriginalIndex;
+    private final int mOrientationIndex;
+    private final int mLightSourceIndex;
+    // Number of looked up tags that are defined in an IFD that can be read.
+    private final int mReadableCount;
+
+    // State of the file being read.
+    private final String[] mValues;
+    private final int[] mValueIfdTypes;
+    private int mRemaining;
+    private boolean mThumbnailIfdRead;
+    private boolean mPreviewIfdRead;
+    private final int[] mVisitedIfdOffsets = new int[MAX_IFD_COUNT];
+    private int mVisitedIfdCount;
+    private final ByteBuffer mHeaderBuffer = ByteBuffer.allocate(5);
+    private byte[] mSegmentBytes = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * Creates a reader for the given tags.
+     *
+     * @param tags the names of the tags to read, such as {@link ExifInterface#TAG_ORIENTATION}.
+     */
+    public ExifTagReader(@NonNull String... tags) {
+        if (tags == null) {
+            throw new IllegalArgumentException("tags cannot be null");
+        }
+        mTags = tags.clone();
+        mTagIndices = new int[tags.length];
+
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < tags.length; i++) {
+            String name = tags[i];
+            if (name == null) {
+                throw new IllegalArgumentException("tags cannot contain null");
+            }
+            if (ExifInterface.TAG_ISO_SPEED_RATINGS.equals(name)) {
+                // See ExifInterface.getExifAttribute().
+                name = ExifInterface.TAG_PHOTOGRAPHIC_SENSITIVITY;
+            }
+            mTagIndices[i] = indexOf(names, name);
+        }
+        // ExifInterface falls back to the original date when the date is missing.
+        final boolean readsDateTime = names.contains(ExifInterface.TAG_DATETIME);
+        mDateTimeIndex = names.indexOf(ExifInterface.TAG_DATETIME);
+        mDateTimeOriginalIndex = readsDateTime
+                ? indexOf(names, ExifInterface.TAG_DATETIME_ORIGINAL) : -1;
+        mImageWidthIndex = names.indexOf(ExifInterface.TAG_IMAGE_WIDTH);
+        mImageLengthIndex = names.indexOf(ExifInterface.TAG_IMAGE_LENGTH);
+        mUserCommentIndex = names.indexOf(ExifInterface.TAG_USER_COMMENT);
+        mOrientationIndex = names.indexOf(ExifInterface.TAG_ORIENTATION);
+        mLightSourceIndex = names.indexOf(ExifInterface.TAG_LIGHT_SOURCE);
+
+        mNames = names.toArray(new String[names.size()]);
+        mBestIfdTypes = new int[mNames.length];
+        mValues = new String[mNames.length];
+        mValueIfdTypes = new int[mNames.length];
+        for (int index = 0; index < mNames.length; index++) {
+            mBestIfdTypes[index] = Integer.MAX_VALUE;
+            for (int ifdType = IFD_TYPE_COUNT - 1; ifdType >= 0; ifdType--) {
+                for (ExifInterface.ExifTag tag : ExifInterface.EXIF_TAGS[ifdType]) {
+                    if (tag.name.equals(mNames[index])) {
+                        if (mSlotsByIfdType[ifdType] == null) {
+                            mSlotsByIfdType[ifdType] = new SparseArray<>();
+                        }
+                        mSlotsByIfdType[ifdType].put(tag.number, new Slot(tag, index));
+                        mVisitIfdType[ifdType] = true;
+                        mBestIfdTypes[index] = ifdType;
+                    }
+                }
+            }
+        }
+        int readableCount = 0;
+        for (int bestIfdType : mBestIfdTypes) {
+            if (bestIfdType != Integer.MAX_VALUE) {
+                readableCount++;
+            }
+        }
+        mReadableCount = readableCount;
+        // The interoperability IFD is only pointed to from the EXIF IFD.
+        if (mVisitIfdType[ExifInterface.IFD_TYPE_INTEROPERABILITY]) {
+            mVisitIfdType[ExifInterface.IFD_TYPE_EXIF] = true;
+        }
+    }
+
+    private static int indexOf(List<String> names, String name) {
+        int index = names.indexOf(name);
+        if (index < 0) {
+            index = names.size();
+            names.add(name);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the tags of the given image file.
+     *
+     * @return a map from the requested tag names to their values. Tags that are not in the file
+     *         are not in the map.
+     * @throws IOException if the file cannot be read.
+     */
+    @NonNull
+    public Map<String, String> readAttributes(@NonNull String filename) throws IOException {
+        if (filename == null) {
+            throw new IllegalArgumentException("filename cannot be null");
+        }
+        final FileInputStream in = new FileInputStream(filename);
+        try {
+            final FileChannel channel = in.getChannel();
+            final ByteBuffer header = readAt(channel, 0, ExifInterface.JPEG_SIGNATURE.length);
+            if (header == null || header.get(0) != ExifInterface.JPEG_SIGNATURE[0]
+                    || header.get(1) != ExifInterface.JPEG_SIGNATURE[1]
+                    || header.get(2) != ExifInterface.JPEG_SIGNATURE[2]) {
+                return readWithExifInterface(filename);
+            }
+            resetValues();
+            readJpegSegments(channel);
+            addDefaultValuesForCompatibility();
+            return collectValues();
+        } finally {
+            in.close();
+        }
+    }
+
+    private Map<String, String> readWithExifInterface(String filename) throws IOException {
+        final ExifInterface exifInterface = new ExifInterface(filename);
+        final Map<String, String> values = new HashMap<>();
+        for (String tag : mTags) {
+            final String value = exifInterface.getAttribute(tag);
+            if (value != null) {
+                values.put(tag, value);
+            }
+        }
+        return values;
+    }
+
+    private void resetValues() {
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i] = null;
+            mValueIfdTypes[i] = Integer.MAX_VALUE;
+        }
+        mRemaining = mReadableCount;
+        mThumbnailIfdRead = false;
+        mPreviewIfdRead = false;
+        mVisitedIfdCount = 0;
+    }
+
+    private Map<String, String> collectValues() {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < mTags.length; i++) {
+            final String value = mValues[mTagIndices[i]];
+            if (value != null) {
+                values.put(mTags[i], value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Walks the JPEG segments like ExifInterface.getJpegAttributes(), reading only the segments
+     * that hold requested tags.
+     */
+    private void readJpegSegments(FileChannel channel) throws IOException {
+        boolean needsExif = mRemaining > 0;
+        boolean needsFrame = mImageWidthIndex >= 0 || mImageLengthIndex >= 0;
+        long position = 2;
+        while (needsExif || needsFrame || needsComment()) {
+            final ByteBuffer header = readAt(channel, position, 4);
+            if (header == null || header.get(0) != ExifInterface.MARKER) {
+                return;
+            }
+            final byte marker = header.get(1);
+            if (marker == ExifInterface.MARKER_EOI || marker == ExifInterface.MARKER_SOS) {
+                return;
+            }
+            final int length = (header.getShort(2) & 0xffff) - 2;
+            if (length < 0) {
+                return;
+            }
+            final long segmentPosition = position + 4;
+            switch (marker) {
+                case ExifInterface.MARKER_APP1: {
+                    final int identifierLength = ExifInterface.IDENTIFIER_EXIF_APP1.length;
+                    if (!needsExif || length <= identifierLength) {
+                        break;
+                    }
+                    final ByteBuffer segment = readSegment(channel, segmentPosition, length);
+                    if (segment == null) {
+                        return;
+                    }
+                    if (!hasExifIdentifier(segment)) {
+                        break;
+                    }
+                    segment.position(identifierLength);
+                    readTiff(segment.slice());
+                    needsExif = false;
+                    break;
+                }
+                case ExifInterface.MARKER_COM: {
+                    if (!needsComment()) {
+                        break;
+                    }
+                    final ByteBuffer segment = readSegment(channel, segmentPosition, length);
+                    if (segment == null) {
+                        return;
+                    }
+                    // ExifInterface stores the comment as an ASCII string.
+                    final byte[] bytes = (new String(mSegmentBytes, 0, length, ASCII) + '\0')
+                            .getBytes(ASCII);
+                    putValue(mUserCommentIndex, ExifInterface.IFD_TYPE_EXIF,
+                            ExifInterface.getAttributeString(ExifInterface.TAG_USER_COMMENT,
+                                    ExifInterface.IFD_FORMAT_STRING, bytes.length, bytes,
+                                    ByteOrder.BIG_ENDIAN));
+                    break;
+                }
+                case ExifInterface.MARKER_SOF0:
+                case ExifInterface.MARKER_SOF1:
+                case ExifInterface.MARKER_SOF2:
+                case ExifInterface.MARKER_SOF3:
+                case ExifInterface.MARKER_SOF5:
+                case ExifInterface.MARKER_SOF6:
+                case ExifInterface.MARKER_SOF7:
+                case ExifInterface.MARKER_SOF9:
+                case ExifInterface.MARKER_SOF10:
+                case ExifInterface.MARKER_SOF11:
+                case ExifInterface.MARKER_SOF13:
+                case ExifInterface.MARKER_SOF14:
+                case ExifInterface.MARKER_SOF15: {
+                    if (!needsFrame || length < 5) {
+                        break;
+                    }
+                    final ByteBuffer frame = readAt(channel, segmentPosition, 5);
+                    if (frame == null) {
+                        return;
+                    }
+                    // The frame size overrides the EXIF values, see
+                    // ExifInterface.getJpegAttributes().
+                    setValue(mImageLengthIndex, ExifInterface.IFD_TYPE_PRIMARY,
+                            Integer.toString(frame.getShort(1) & 0xffff));
+                    setValue(mImageWidthIndex, ExifInterface.IFD_TYPE_PRIMARY,
+                            Integer.toString(frame.getShort(3) & 0xffff));
+                    needsFrame = false;
+                    break;
+                }
+                default: {
+                    break;
+                }
+            }
+            position = segmentPosition + length;
+        }
+    }
+
+    private boolean needsComment() {
+        return mUserCommentIndex >= 0 && mValues[mUserCommentIndex] == null;
+    }
+
+    private static boolean hasExifIdentifier(ByteBuffer segment) {
+        final byte[] identifier = ExifInterface.IDENTIFIER_EXIF_APP1;
+        for (int i = 0; i < identifier.length; i++) {
+            if (segment.get(i) != identifier[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the TIFF header and the IFDs holding requested tags like
+     * ExifInterface.readExifSegment().
+     */
+    private void readTiff(ByteBuffer tiff) {
+        if (tiff.limit() < TIFF_HEADER_LENGTH) {
+            return;
+        }
+        final short byteOrder = tiff.getShort(0);
+        if (byteOrder == ExifInterface.BYTE_ALIGN_II) {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder == ExifInterface.BYTE_ALIGN_MM) {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return;
+        }
+        if (tiff.getShort(2) != ExifInterface.START_CODE) {
+            return;
+        }
+        final int firstIfdOffset = tiff.getInt(4);
+        if (firstIfdOffset < TIFF_HEADER_LENGTH || firstIfdOffset >= tiff.limit()) {
+            return;
+        }
+        readImageFileDirectory(tiff, firstIfdOffset, ExifInterface.IFD_TYPE_PRIMARY);
+    }
+
+    /**
+     * Reads the requested tags of an IFD like ExifInterface.readImageFileDirectory(), without
+     * copying the values of the other tags.
+     */
+    private void readImageFileDirectory(ByteBuffer tiff, int offset, int ifdType) {
+        if (mRemaining == 0 || !markVisited(offset)) {
+            return;
+        }
+        final int limit = tiff.limit();
+        if (offset + 2 > limit) {
+            return;
+        }
+        final short numberOfDirectoryEntry = tiff.getShort(offset);
+        int entryOffset = offset + 2;
+        if (entryOffset + 12 * numberOfDirectoryEntry > limit) {
+            return;
+        }
+        final SparseArray<Slot> slots = mSlotsByIfdType[ifdType];
+        for (short i = 0; i < numberOfDirectoryEntry; ++i, entryOffset += 12) {
+            if (mRemaining == 0) {
+                return;
+            }
+            final int tagNumber = tiff.getShort(entryOffset) & 0xffff;
+            final int nextIfdType = ExifInterface.getPointerIfdType(tagNumber);
+            final Slot slot;
+            final ExifInterface.ExifTag tag;
+            if (nextIfdType >= 0) {
+                // Pointer tags are followed, their values are not returned by ExifInterface.
+                if (nextIfdType >= IFD_TYPE_COUNT || !mVisitIfdType[nextIfdType]) {
+                    continue;
+                }
+                slot = null;
+                tag = ExifInterface.getTagForReading(ifdType, tagNumber);
+            } else {
+                slot = slots != null ? slots.get(tagNumber) : null;
+                if (slot == null) {
+                    continue;
+                }
+                tag = slot.mTag;
+            }
+            int dataFormat = tiff.getShort(entryOffset + 2) & 0xffff;
+            final int numberOfComponents = tiff.getInt(entryOffset + 4);
+            if (tag == null || dataFormat <= 0
+                    || dataFormat >= ExifInterface.IFD_FORMAT_BYTES_PER_FORMAT.length
+                    || !tag.isFormatCompatible(dataFormat)) {
+                continue;
+            }
+            if (dataFormat == ExifInterface.IFD_FORMAT_UNDEFINED) {
+                dataFormat = tag.primaryFormat;
+            }
+            final long byteCount = (long) numberOfComponents
+                    * ExifInterface.IFD_FORMAT_BYTES_PER_FORMAT[dataFormat];
+            if (byteCount < 0 || byteCount > Integer.MAX_VALUE) {
+                continue;
+            }
+            int valueOffset = entryOffset + 8;
+            if (byteCount > 4) {
+                valueOffset = tiff.getInt(valueOffset);
+                if (valueOffset < 0 || valueOffset + byteCount > limit) {
+                    continue;
+                }
+            }
+
+            if (slot == null) {
+                final long nextIfdOffset = readIfdOffset(tiff, valueOffset, dataFormat);
+                if (nextIfdOffset > 0L && nextIfdOffset < limit) {
+                    readImageFileDirectory(tiff, (int) nextIfdOffset, nextIfdType);
+                }
+                continue;
+            }
+
+            final byte[] bytes = new byte[(int) byteCount];
+            tiff.position(valueOffset);
+            tiff.get(bytes);
+            putValue(slot.mIndex, ifdType, ExifInterface.getAttributeString(tag.name,
+                    dataFormat, numberOfComponents, bytes, tiff.order()));
+        }
+
+        if (entryOffset + 4 <= limit) {
+            final int nextIfdOffset = tiff.getInt(entryOffset);
+            // The next IFD offset needs to be bigger than 8 since the first IFD offset is at
+            // least 8.
+            if (nextIfdOffset > TIFF_HEADER_LENGTH && nextIfdOffset < limit) {
+                if (!mThumbnailIfdRead) {
+                    mThumbnailIfdRead = true;
+                    if (mVisitIfdType[ExifInterface.IFD_TYPE_THUMBNAIL]) {
+                        readImageFileDirectory(tiff, nextIfdOffset,
+                                ExifInterface.IFD_TYPE_THUMBNAIL);
+                    }
+                } else if (!mPreviewIfdRead) {
+                    mPreviewIfdRead = true;
+                    if (mVisitIfdType[ExifInterface.IFD_TYPE_PREVIEW]) {
+                        readImageFileDirectory(tiff, nextIfdOffset,
+                                ExifInterface.IFD_TYPE_PREVIEW);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean markVisited(int offset) {
+        if (mVisitedIfdCount == MAX_IFD_COUNT) {
+            return false;
+        }
+        for (int i = 0; i < mVisitedIfdCount; i++) {
+            if (mVisitedIfdOffsets[i] == offset) {
+                return false;
+            }
+        }
+        mVisitedIfdOffsets[mVisitedIfdCount++] = offset;
+        return true;
+    }
+
+    private static long readIfdOffset(ByteBuffer tiff, int offset, int dataFormat) {
+        switch (dataFormat) {
+            case ExifInterface.IFD_FORMAT_USHORT:
+                return tiff.getShort(offset) & 0xffff;
+            case ExifInterface.IFD_FORMAT_SSHORT:
+                return tiff.getShort(offset);
+            case ExifInterface.IFD_FORMAT_ULONG:
+                return tiff.getInt(offset) & 0xffffffffL;
+            case ExifInterface.IFD_FORMAT_SLONG:
+            case ExifInterface.IFD_FORMAT_IFD:
+                return tiff.getInt(offset);
+            default:
+                return -1L;
+        }
+    }
+
+    /**
+     * Stores a value read from the given IFD type. As in ExifInterface, a value replaces a value
+     * of the same tag read earlier from the same IFD type or from a higher one.
+     */
+    private void putValue(int index, int ifdType, String value) {
+        if (value == null || ifdType > mValueIfdTypes[index]) {
+            return;
+        }
+        setValue(index, ifdType, value);
+    }
+
+    private void setValue(int index, int ifdType, String value) {
+        if (index < 0) {
+            return;
+        }
+        final boolean wasFound = mValueIfdTypes[index] == mBestIfdTypes[index];
+        mValues[index] = value;
+        mValueIfdTypes[index] = ifdType;
+        if (!wasFound && ifdType == mBestIfdTypes[index]) {
+            mRemaining--;
+        }
+    }
+
+    /**
+     * See ExifInterface.addDefaultValuesForCompatibility().
+     */
+    private void addDefaultValuesForCompatibility() {
+        if (mDateTimeIndex >= 0 && mValues[mDateTimeIndex] == null) {
+            mValues[mDateTimeIndex] = mValues[mDateTimeOriginalIndex];
+        }
+        setDefaultValue(mImageWidthIndex);
+        setDefaultValue(mImageLengthIndex);
+        setDefaultValue(mOrientationIndex);
+        setDefaultValue(mLightSourceIndex);
+    }
+
+    private void setDefaultValue(int index) {
+        if (index >= 0 && mValues[index] == null) {
+            mValues[index] = "0";
+        }
+    }
+
+    /**
+     * Reads a segment into the reused segment buffer.
+     */
+    private ByteBuffer readSegment(FileChannel channel, long position, int length)
+            throws IOException {
+        if (mSegmentBytes.length < length) {
+            mSegmentBytes = new byte[Math.max(length, mSegmentBytes.length * 2)];
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(mSegmentBytes, 0, length);
+        return readFully(channel, buffer, position) ? (ByteBuffer) buffer.flip() : null;
+    }
+
+    private ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = mHeaderBuffer;
+        buffer.clear();
+        buffer.limit(length);
+        return readFully(channel, buffer, position) ? (ByteBuffer) buffer.flip() : null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+}
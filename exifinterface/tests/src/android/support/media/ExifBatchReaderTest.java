@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.media;
+
+import static android.support.test.InstrumentationRegistry.getContext;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import android.os.Environment;
+import android.support.exifinterface.test.R;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test {@link ExifBatchReader}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExifBatchReaderTest {
+    private static final String TAG = ExifBatchReader.class.getSimpleName();
+    private static final int WORKER_COUNT = 4;
+
+    private File mDirectory;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = new File(Environment.getExternalStorageDirectory(), "exifBatch");
+        mDirectory.mkdirs();
+        mExecutor = Executors.newFixedThreadPool(WORKER_COUNT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    @MediumTest
+    public void testReadReportsEveryFile() throws Exception {
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final File file = new File(mDirectory, i + ".jpg");
+            copyResource(i % 2 == 0 ? R.raw.image_exif_byte_order_ii
+                    : R.raw.image_exif_byte_order_mm, file);
+            paths.add(file.getAbsolutePath());
+        }
+        final String missingPath = new File(mDirectory, "missing.jpg").getAbsolutePath();
+        paths.add(missingPath);
+
+        final RecordingCallback callback = new RecordingCallback();
+        new ExifBatchReader(mExecutor, WORKER_COUNT, ExifInterface.TAG_MAKE)
+                .read(paths, callback);
+        assertTrue(callback.mFinished.await(10, TimeUnit.SECONDS));
+
+        assertEquals(20, callback.mResults.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 2 == 0 ? "SAMSUNG" : "LGE",
+                    callback.mResults.get(paths.get(i)).get(ExifInterface.TAG_MAKE));
+        }
+        assertEquals(Collections.singletonList(missingPath), callback.mFailures);
+        assertEquals(1, callback.mFinishedCount.get());
+    }
+
+    @Test
+    @MediumTest
+    public void testReadEmptyBatch() throws Exception {
+        final RecordingCallback callback = new RecordingCallback();
+        new ExifBatchReader(mExecutor, WORKER_COUNT, ExifInterface.TAG_MAKE)
+                .read(Collections.<String>emptyList(), callback);
+        assertTrue(callback.mFinished.await(10, TimeUnit.SECONDS));
+        assertEquals(0, callback.mResults.size());
+        assertEquals(1, callback.mFinishedCount.get());
+    }
+
+    @Test
+    @LargeTest
+    public void testRead_benchmark() throws Exception {
+        final int fileCount = 500;
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            final File file = new File(mDirectory, i + ".jpg");
+            copyResource(R.raw.image_exif_byte_order_ii, file);
+            paths.add(file.getAbsolutePath());
+        }
+        final String[] tags = {ExifInterface.TAG_ORIENTATION, ExifInterface.TAG_DATETIME};
+
+        long start = System.nanoTime();
+        final ExifTagReader reader = new ExifTagReader(tags);
+        for (String path : paths) {
+            reader.readAttributes(path);
+        }
+        final long serialNanos = System.nanoTime() - start;
+
+        final RecordingCallback callback = new RecordingCallback();
+        start = System.nanoTime();
+        new ExifBatchReader(mExecutor, WORKER_COUNT, tags).read(paths, callback);
+        assertTrue(callback.mFinished.await(60, TimeUnit.SECONDS));
+        final long batchNanos = System.nanoTime() - start;
+        assertEquals(fileCount, callback.mResults.size());
+
+        Log.d(TAG, "Serial: " + TimeUnit.NANOSECONDS.toMillis(serialNanos) + "ms, batch with "
+                + WORKER_COUNT + " workers: " + TimeUnit.NANOSECONDS.toMillis(batchNanos)
+                + "ms, average read time: "
+                + callback.mReadTimeNanos.get() / fileCount / 1000 + "us per file");
+    }
+
+    private static class RecordingCallback implements ExifBatchReader.Callback {
+        final Map<String, Map<String, String>> mResults = new ConcurrentHashMap<>();
+        final List<String> mFailures = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicLong mReadTimeNanos = new AtomicLong();
+        final AtomicInteger mFinishedCount = new AtomicInteger();
+        final CountDownLatch mFinished = new CountDownLatch(1);
+
+        @Override
+        public void onFileRead(String path, Map<String, String> attributes,
+                long readTimeNanos) {
+            mResults.put(path, attributes);
+            mReadTimeNanos.addAndGet(readTimeNanos);
+        }
+
+        @Override
+        public void onFileFailed(String path, IOException error, long readTimeNanos) {
+            mFailures.add(path);
+        }
+
+        @Override
+        public void onBatchFinished() {
+            mFinishedCount.incrementAndGet();
+            mFinished.countDown();
+        }
+    }
+
+    private static void copyResource(int resourceId, File file) throws IOException {
+        InputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        try {
+            inputStream = getContext().getResources().openRawResource(resourceId);
+            outputStream = new FileOutputStream(file);
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+}
@@ -19,8 +19,10 @@ package android.support.media;
 import static android.support.test.InstrumentationRegistry.getContext;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 import android.content.res.TypedArray;
@@ -49,6 +51,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -647,6 +650,124 @@ public class ExifInterfaceTest {
         assertEquals(isoValue, exif.getAttribute(newTag));
     }
 
+    @Test
+    @SmallTest
+    public void testSaveAttributesInPlace() throws IOException {
+        File imageFile = new File(
+                Environment.getExternalStorageDirectory(), EXIF_BYTE_ORDER_II_JPEG);
+        final long fileLength = imageFile.length();
+        ExifInterface exif = new ExifInterface(imageFile.getAbsolutePath());
+        final String make = exif.getAttribute(ExifInterface.TAG_MAKE);
+        final byte[] thumbnail = exif.getThumbnail();
+
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION,
+                Integer.toString(ExifInterface.ORIENTATION_ROTATE_90));
+        assertTrue(exif.saveAttributesInPlace());
+        assertEquals(fileLength, imageFile.length());
+
+        exif = new ExifInterface(imageFile.getAbsolutePath());
+        assertIntTag(exif, ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_ROTATE_90);
+        assertEquals(make, exif.getAttribute(ExifInterface.TAG_MAKE));
+        assertTrue(Arrays.equals(thumbnail, exif.getThumbnail()));
+    }
+
+    @Test
+    @SmallTest
+    public void testSaveAttributesInPlace_fallsBackWhenSegmentIsTooSmall() throws IOException {
+        File imageFile = new File(
+                Environment.getExternalStorageDirectory(), EXIF_BYTE_ORDER_II_JPEG);
+        final long fileLength = imageFile.length();
+        final char[] chars = new char[200];
+        Arrays.fill(chars, 'a');
+        final String description = new String(chars);
+
+        ExifInterface exif = new ExifInterface(imageFile.getAbsolutePath());
+        exif.setAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION, description);
+        assertFalse(exif.saveAttributesInPlace());
+        assertTrue(imageFile.length() > fileLength);
+        exif = new ExifInterface(imageFile.getAbsolutePath());
+        assertEquals(description, exif.getAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION));
+
+        // The space freed by a shorter value is reused.
+        final long grownLength = imageFile.length();
+        exif.setAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION, "abc");
+        assertTrue(exif.saveAttributesInPlace());
+        assertEquals(grownLength, imageFile.length());
+        exif = new ExifInterface(imageFile.getAbsolutePath());
+        assertEquals("abc", exif.getAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION));
+    }
+
+    @Test
+    @LargeTest
+    public void testSaveAttributesInPlace_benchmark() throws IOException {
+        final int fileCount = 10;
+        final int fileLength = 20 * 1024 * 1024;
+        final File directory = new File(Environment.getExternalStorageDirectory(), "exifBench");
+        directory.mkdirs();
+        final File[] files = new File[fileCount];
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                files[i] = new File(directory, i + ".jpg");
+                createLargeJpeg(files[i], fileLength);
+            }
+
+            long copyNanos = 0;
+            long inPlaceNanos = 0;
+            for (int i = 0; i < fileCount; i++) {
+                ExifInterface exif = new ExifInterface(files[i].getAbsolutePath());
+                exif.setAttribute(ExifInterface.TAG_ORIENTATION,
+                        Integer.toString(ExifInterface.ORIENTATION_ROTATE_90));
+                long start = System.nanoTime();
+                exif.saveAttributes();
+                copyNanos += System.nanoTime() - start;
+
+                exif = new ExifInterface(files[i].getAbsolutePath());
+                exif.setAttribute(ExifInterface.TAG_ORIENTATION,
+                        Integer.toString(ExifInterface.ORIENTATION_ROTATE_180));
+                start = System.nanoTime();
+                assertTrue(exif.saveAttributesInPlace());
+                inPlaceNanos += System.nanoTime() - start;
+
+                exif = new ExifInterface(files[i].getAbsolutePath());
+                assertIntTag(exif, ExifInterface.TAG_ORIENTATION,
+                        ExifInterface.ORIENTATION_ROTATE_180);
+            }
+            Log.d(TAG, "saveAttributes: " + TimeUnit.NANOSECONDS.toMillis(copyNanos / fileCount)
+                    + "ms per file, saveAttributesInPlace: "
+                    + TimeUnit.NANOSECONDS.toMicros(inPlaceNanos / fileCount) + "us per file");
+        } finally {
+            for (File file : files) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Creates a JPEG file of the given length by appending zeros after the end of the test image.
+     */
+    private void createLargeJpeg(File file, int length) throws IOException {
+        InputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        try {
+            inputStream = getContext().getResources().openRawResource(
+                    R.raw.image_exif_byte_order_ii);
+            outputStream = new FileOutputStream(file);
+            int written = copy(inputStream, outputStream);
+            final byte[] zeros = new byte[64 * 1024];
+            while (written < length) {
+                final int count = Math.min(zeros.length, length - written);
+                outputStream.write(zeros, 0, count);
+                written += count;
+            }
+        } finally {
+            closeQuietly(inputStream);
+            closeQuietly(outputStream);
+        }
+    }
+
     private void printExifTagsAndValues(String fileName, ExifInterface exifInterface) {
         // Prints thumbnail information.
         if (exifInterface.hasThumbnail()) {
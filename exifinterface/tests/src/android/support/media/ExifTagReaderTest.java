@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.media;
+
+import static android.support.test.InstrumentationRegistry.getContext;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+import android.os.Environment;
+import android.support.exifinterface.test.R;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Test {@link ExifTagReader}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExifTagReaderTest {
+    private static final String TAG = ExifTagReader.class.getSimpleName();
+
+    private static final int[] IMAGE_RESOURCES = new int[] {
+            R.raw.image_exif_byte_order_ii, R.raw.image_exif_byte_order_mm, R.raw.lg_g4_iso_800};
+    private static final String[] IMAGE_FILENAMES = new String[] {
+            "reader_exif_byte_order_ii.jpg", "reader_exif_byte_order_mm.jpg",
+            "reader_lg_g4_iso_800.dng"};
+
+    // Tags from all the IFDs, including the ones with compatibility handling in ExifInterface.
+    private static final String[] TAGS = new String[] {
+            ExifInterface.TAG_ORIENTATION, ExifInterface.TAG_DATETIME,
+            ExifInterface.TAG_DATETIME_ORIGINAL, ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL, ExifInterface.TAG_IMAGE_WIDTH,
+            ExifInterface.TAG_IMAGE_LENGTH, ExifInterface.TAG_F_NUMBER,
+            ExifInterface.TAG_EXPOSURE_TIME, ExifInterface.TAG_ISO_SPEED_RATINGS,
+            ExifInterface.TAG_FOCAL_LENGTH, ExifInterface.TAG_USER_COMMENT,
+            ExifInterface.TAG_LIGHT_SOURCE, ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LATITUDE_REF, ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_PROCESSING_METHOD, ExifInterface.TAG_INTEROPERABILITY_INDEX,
+            ExifInterface.TAG_THUMBNAIL_IMAGE_WIDTH, ExifInterface.TAG_JPEG_INTERCHANGE_FORMAT};
+
+    private final File[] mImageFiles = new File[IMAGE_RESOURCES.length];
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < IMAGE_RESOURCES.length; ++i) {
+            mImageFiles[i] = new File(Environment.getExternalStorageDirectory(),
+                    IMAGE_FILENAMES[i]);
+            copyResource(IMAGE_RESOURCES[i], mImageFiles[i]);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File imageFile : mImageFiles) {
+            imageFile.delete();
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testValuesMatchExifInterface() throws IOException {
+        final ExifTagReader allTagsReader = new ExifTagReader(TAGS);
+        for (File imageFile : mImageFiles) {
+            final String path = imageFile.getAbsolutePath();
+            final ExifInterface exifInterface = new ExifInterface(path);
+            final Map<String, String> values = allTagsReader.readAttributes(path);
+            for (String tag : TAGS) {
+                final String expected = exifInterface.getAttribute(tag);
+                final String message = imageFile.getName() + ": " + tag;
+                assertEquals(message, expected, values.get(tag));
+                assertEquals(message, expected,
+                        new ExifTagReader(tag).readAttributes(path).get(tag));
+            }
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testReaderIsReusable() throws IOException {
+        final ExifTagReader reader = new ExifTagReader(ExifInterface.TAG_MAKE,
+                ExifInterface.TAG_GPS_LATITUDE_REF);
+        final Map<String, String> first = reader.readAttributes(mImageFiles[1].getAbsolutePath());
+        assertEquals("LGE", first.get(ExifInterface.TAG_MAKE));
+        assertEquals("N", first.get(ExifInterface.TAG_GPS_LATITUDE_REF));
+
+        // Values of the previous file must not leak into the next one.
+        final Map<String, String> second =
+                reader.readAttributes(mImageFiles[0].getAbsolutePath());
+        assertEquals("SAMSUNG", second.get(ExifInterface.TAG_MAKE));
+        assertFalse(second.containsKey(ExifInterface.TAG_GPS_LATITUDE_REF));
+    }
+
+    @Test
+    @SmallTest
+    public void testUnknownTag() throws IOException {
+        final Map<String, String> values = new ExifTagReader("NotATag")
+                .readAttributes(mImageFiles[0].getAbsolutePath());
+        assertEquals(0, values.size());
+    }
+
+    @Test
+    @LargeTest
+    public void testReadOrientationAndDate_benchmark() throws IOException {
+        final int iterations = 1000;
+        final String path = mImageFiles[0].getAbsolutePath();
+        final ExifTagReader reader = new ExifTagReader(ExifInterface.TAG_ORIENTATION,
+                ExifInterface.TAG_DATETIME);
+
+        // Warm up.
+        for (int i = 0; i < 10; i++) {
+            reader.readAttributes(path);
+            new ExifInterface(path);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            reader.readAttributes(path);
+        }
+        final long readerNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            final ExifInterface exifInterface = new ExifInterface(path);
+            exifInterface.getAttribute(ExifInterface.TAG_ORIENTATION);
+            exifInterface.getAttribute(ExifInterface.TAG_DATETIME);
+        }
+        final long exifInterfaceNanos = System.nanoTime() - start;
+
+        Log.d(TAG, "ExifTagReader: " + readerNanos / iterations / 1000 + "us per file, "
+                + "ExifInterface: " + exifInterfaceNanos / iterations / 1000 + "us per file");
+    }
+
+    private static void copyResource(int resourceId, File file) throws IOException {
+        InputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        try {
+            inputStream = getContext().getResources().openRawResource(resourceId);
+            outputStream = new FileOutputStream(file);
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+}
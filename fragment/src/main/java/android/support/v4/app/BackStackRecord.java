@@ -422,6 +422,11 @@ final class BackStackRecord extends FragmentTransaction implements
             fragment.mContainerId = fragment.mFragmentId = containerViewId;
         }
 
+        if (fragment.mIndex >= 0 && (tag != null || containerViewId != 0)) {
+            // An already active fragment may have been given its tag or id just now
+            mManager.invalidateFragmentIndices();
+        }
+
         addOp(new Op(opcmd, fragment));
     }
 
@@ -214,6 +214,31 @@ public class FragmentController {
         mHost.mFragmentManager.dispatchResume();
     }
 
+    /**
+     * Starts batching the state changes dispatched through this controller, such as
+     * {@link #dispatchActivityCreated()}, {@link #dispatchStart()} and
+     * {@link #dispatchResume()}. They take effect when the matching {@link #endStateBatch()} is
+     * called. Batches may be nested.
+     * <p>Call around a sequence of dispatches which all move in the same direction, for example
+     * while recreating the host, to move every Fragment through them in a single pass.
+     */
+    public void beginStateBatch() {
+        mHost.mFragmentManager.beginStateBatch();
+    }
+
+    /**
+     * Ends a batch started with {@link #beginStateBatch()}. When the outermost batch ends, all
+     * Fragments managed by the controller's FragmentManager, including their child Fragments,
+     * are moved to the last dispatched state. Each Fragment, followed by its children, goes
+     * through all the intermediate lifecycle callbacks before the next Fragment does, rather
+     * than all Fragments reaching each state together.
+     *
+     * @throws IllegalStateException if there is no batch to end
+     */
+    public void endStateBatch() {
+        mHost.mFragmentManager.endStateBatch();
+    }
+
     /**
      * Moves all Fragments managed by the controller's FragmentManager
      * into the pause state.
@@ -38,6 +38,7 @@ import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.RestrictTo;
 import android.support.annotation.StringRes;
+import android.support.v4.util.ArrayMap;
 import android.support.v4.util.ArraySet;
 import android.support.v4.util.DebugUtils;
 import android.support.v4.util.LogWriter;
@@ -654,6 +655,14 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
 
     final ArrayList<Fragment> mAdded = new ArrayList<>();
     SparseArray<Fragment> mActive;
+
+    // Indices for findFragmentById() and findFragmentByTag(). Adding a fragment updates them,
+    // any other change to mAdded or mActive clears them until the next lookup, so that they do
+    // not keep removed fragments reachable.
+    SparseArray<Fragment> mFragmentsById;
+    ArrayMap<String, Fragment> mFragmentsByTag;
+    boolean mFragmentIndicesValid;
+
     ArrayList<BackStackRecord> mBackStack;
     ArrayList<Fragment> mCreatedMenus;
 
@@ -676,6 +685,14 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     boolean mNeedMenuInvalidate;
     boolean mStateSaved;
     boolean mDestroyed;
+
+    // State changes dispatched between beginStateBatch() and endStateBatch()
+    int mStateBatchDepth;
+    boolean mHasBatchedState;
+    int mBatchedState;
+    boolean mMovingStateBatch;
+    // The fragment being moved while applying a state batch, whose child manager batches too
+    Fragment mBatchingFragment;
     String mNoTransactionsBecause;
     boolean mHavePendingDeferredStart;
 
@@ -1816,7 +1833,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             final int numAdded = mAdded.size();
             for (int i = 0; i < numAdded; i++) {
                 Fragment f = mAdded.get(i);
-                moveFragmentToExpectedState(f);
+                moveFragmentSubtreeToExpectedState(f);
                 if (f.mLoaderManager != null) {
                     loadersRunning |= f.mLoaderManager.hasRunningLoaders();
                 }
@@ -1828,7 +1845,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             for (int i = 0; i < numActive; i++) {
                 Fragment f = mActive.valueAt(i);
                 if (f != null && (f.mRemoving || f.mDetached) && !f.mIsNewlyAdded) {
-                    moveFragmentToExpectedState(f);
+                    moveFragmentSubtreeToExpectedState(f);
                     if (f.mLoaderManager != null) {
                         loadersRunning |= f.mLoaderManager.hasRunningLoaders();
                     }
@@ -1846,6 +1863,33 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         }
     }
 
+    /**
+     * Moves a fragment to its expected state. While a state batch is being applied, the state
+     * changes of the fragment's children are batched too, so that they move straight to their
+     * final state once the fragment itself has.
+     */
+    private void moveFragmentSubtreeToExpectedState(Fragment f) {
+        if (!mMovingStateBatch) {
+            moveFragmentToExpectedState(f);
+            return;
+        }
+        FragmentManagerImpl childManager = f.mChildFragmentManager;
+        if (childManager != null) {
+            childManager.beginStateBatch();
+        }
+        // A child manager created while moving, such as when restoring, starts its batch in
+        // attachController()
+        mBatchingFragment = f;
+        moveFragmentToExpectedState(f);
+        mBatchingFragment = null;
+        if (childManager == null) {
+            childManager = f.mChildFragmentManager;
+        }
+        if (childManager != null && childManager.mStateBatchDepth > 0) {
+            childManager.endStateBatch();
+        }
+    }
+
     void startPendingDeferredFragments() {
         if (mActive == null) return;
 
@@ -1867,6 +1911,20 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             mActive = new SparseArray<>();
         }
         mActive.put(f.mIndex, f);
+        if (mFragmentIndicesValid) {
+            // The new fragment has the highest index, so it is found before any other active
+            // fragment, but not before an added one.
+            final Fragment byId = mFragmentsById.get(f.mFragmentId);
+            if (byId == null || !byId.mAdded) {
+                mFragmentsById.put(f.mFragmentId, f);
+            }
+            if (f.mTag != null) {
+                final Fragment byTag = mFragmentsByTag.get(f.mTag);
+                if (byTag == null || !byTag.mAdded) {
+                    mFragmentsByTag.put(f.mTag, f);
+                }
+            }
+        }
         if (DEBUG) Log.v(TAG, "Allocated fragment index " + f);
     }
 
@@ -1879,6 +1937,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         // Don't remove yet. That happens in burpActive(). This prevents
         // concurrent modification while iterating over mActive
         mActive.put(f.mIndex, null);
+        invalidateFragmentIndices();
 
         mHost.inactivateFragment(f.mWho);
         f.initState();
@@ -1894,6 +1953,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             synchronized (mAdded) {
                 mAdded.add(fragment);
             }
+            indexAddedFragment(fragment);
             fragment.mAdded = true;
             fragment.mRemoving = false;
             if (fragment.mView == null) {
@@ -1915,6 +1975,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             synchronized (mAdded) {
                 mAdded.remove(fragment);
             }
+            invalidateFragmentIndices();
             if (fragment.mHasMenu && fragment.mMenuVisible) {
                 mNeedMenuInvalidate = true;
             }
@@ -1965,6 +2026,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 synchronized (mAdded) {
                     mAdded.remove(fragment);
                 }
+                invalidateFragmentIndices();
                 if (fragment.mHasMenu && fragment.mMenuVisible) {
                     mNeedMenuInvalidate = true;
                 }
@@ -1985,6 +2047,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 synchronized (mAdded) {
                     mAdded.add(fragment);
                 }
+                indexAddedFragment(fragment);
                 fragment.mAdded = true;
                 if (fragment.mHasMenu && fragment.mMenuVisible) {
                     mNeedMenuInvalidate = true;
@@ -1995,46 +2058,76 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
 
     @Override
     public Fragment findFragmentById(int id) {
-        // First look through added fragments.
-        for (int i = mAdded.size() - 1; i >= 0; i--) {
-            Fragment f = mAdded.get(i);
-            if (f != null && f.mFragmentId == id) {
-                return f;
-            }
-        }
-        if (mActive != null) {
-            // Now for any known fragment.
-            for (int i=mActive.size()-1; i>=0; i--) {
-                Fragment f = mActive.valueAt(i);
-                if (f != null && f.mFragmentId == id) {
-                    return f;
-                }
-            }
-        }
-        return null;
+        ensureFragmentIndices();
+        return mFragmentsById.get(id);
     }
 
     @Override
     public Fragment findFragmentByTag(String tag) {
-        if (tag != null) {
-            // First look through added fragments.
-            for (int i=mAdded.size()-1; i>=0; i--) {
-                Fragment f = mAdded.get(i);
-                if (f != null && tag.equals(f.mTag)) {
-                    return f;
+        if (tag == null) {
+            return null;
+        }
+        ensureFragmentIndices();
+        return mFragmentsByTag.get(tag);
+    }
+
+    /**
+     * Rebuilds the id and tag indices if they have been invalidated. The most recently added
+     * fragment wins, then the active fragment with the highest index.
+     */
+    private void ensureFragmentIndices() {
+        if (mFragmentIndicesValid) {
+            return;
+        }
+        if (mFragmentsById == null) {
+            mFragmentsById = new SparseArray<>();
+            mFragmentsByTag = new ArrayMap<>();
+        }
+        if (mActive != null) {
+            final int numActive = mActive.size();
+            for (int i = 0; i < numActive; i++) {
+                final Fragment f = mActive.valueAt(i);
+                if (f != null) {
+                    indexFragment(f);
                 }
             }
         }
-        if (mActive != null && tag != null) {
-            // Now for any known fragment.
-            for (int i=mActive.size()-1; i>=0; i--) {
-                Fragment f = mActive.valueAt(i);
-                if (f != null && tag.equals(f.mTag)) {
-                    return f;
-                }
+        final int numAdded = mAdded.size();
+        for (int i = 0; i < numAdded; i++) {
+            final Fragment f = mAdded.get(i);
+            if (f != null) {
+                indexFragment(f);
             }
         }
-        return null;
+        mFragmentIndicesValid = true;
+    }
+
+    private void indexFragment(Fragment f) {
+        mFragmentsById.put(f.mFragmentId, f);
+        if (f.mTag != null) {
+            mFragmentsByTag.put(f.mTag, f);
+        }
+    }
+
+    /**
+     * Updates the indices for a fragment which was just appended to mAdded.
+     */
+    private void indexAddedFragment(Fragment f) {
+        if (mFragmentIndicesValid) {
+            indexFragment(f);
+        }
+    }
+
+    /**
+     * Called when the id or tag of an active fragment changes, or a fragment is removed. Clears
+     * the indices so that they are rebuilt on the next lookup.
+     */
+    void invalidateFragmentIndices() {
+        mFragmentIndicesValid = false;
+        if (mFragmentsById != null) {
+            mFragmentsById.clear();
+            mFragmentsByTag.clear();
+        }
     }
 
     public Fragment findFragmentByWho(String who) {
@@ -3055,6 +3148,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         // Build the full list of active fragments, instantiating them from
         // their saved state.
         mActive = new SparseArray<>(fms.mActive.length);
+        invalidateFragmentIndices();
         for (int i=0; i<fms.mActive.length; i++) {
             FragmentState fs = fms.mActive[i];
             if (fs != null) {
@@ -3107,6 +3201,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 }
             }
         }
+        invalidateFragmentIndices();
 
         // Build the back stack.
         if (fms.mBackStack != null) {
@@ -3157,6 +3252,10 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         mHost = host;
         mContainer = container;
         mParent = parent;
+        if (parent != null && parent.mFragmentManager != null
+                && parent.mFragmentManager.mBatchingFragment == parent) {
+            beginStateBatch();
+        }
     }
 
     public void noteStateNotSaved() {
@@ -3215,13 +3314,51 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     public void dispatchDestroy() {
         mDestroyed = true;
         execPendingActions();
-        dispatchStateChange(Fragment.INITIALIZING);
+        // Destruction is never batched and supersedes any batched state
+        mHasBatchedState = false;
+        moveToStateNow(Fragment.INITIALIZING);
         mHost = null;
         mContainer = null;
         mParent = null;
     }
 
+    /**
+     * Starts batching state changes. Until the matching {@link #endStateBatch()}, dispatched
+     * state changes only record the requested state. Batches may be nested.
+     */
+    public void beginStateBatch() {
+        mStateBatchDepth++;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginStateBatch()}. When the outermost batch ends, all
+     * fragments, and their children, are moved to the last requested state in a single pass.
+     */
+    public void endStateBatch() {
+        if (mStateBatchDepth <= 0) {
+            throw new IllegalStateException("endStateBatch() called without beginStateBatch()");
+        }
+        if (--mStateBatchDepth == 0 && mHasBatchedState) {
+            mHasBatchedState = false;
+            mMovingStateBatch = true;
+            try {
+                moveToStateNow(mBatchedState);
+            } finally {
+                mMovingStateBatch = false;
+            }
+        }
+    }
+
     private void dispatchStateChange(int nextState) {
+        if (mStateBatchDepth > 0) {
+            mBatchedState = nextState;
+            mHasBatchedState = true;
+            return;
+        }
+        moveToStateNow(nextState);
+    }
+
+    private void moveToStateNow(int nextState) {
         try {
             mExecutingActions = true;
             moveToState(nextState, false);
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import android.os.Handler;
+import android.os.Parcelable;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.app.test.EmptyFragmentTestActivity;
+import android.util.Log;
+import android.util.Pair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests batched state changes through {@link FragmentController#beginStateBatch()}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FragmentStateBatchTest {
+    private static final String TAG = "FragmentStateBatchTest";
+
+    @Rule
+    public ActivityTestRule<EmptyFragmentTestActivity> mActivityRule =
+            new ActivityTestRule<>(EmptyFragmentTestActivity.class);
+
+    @Test
+    @MediumTest
+    @UiThreadTest
+    public void testBatchedStateChangesApplyAtEnd() {
+        final FragmentController fc = createController();
+        fc.attachHost(null);
+        fc.dispatchCreate();
+
+        final StrictFragment parent = new StrictFragment();
+        fc.getSupportFragmentManager().beginTransaction().add(parent, "parent").commitNow();
+        final StrictFragment child = new StrictFragment();
+        parent.getChildFragmentManager().beginTransaction().add(child, "child").commitNow();
+
+        fc.beginStateBatch();
+        fc.dispatchActivityCreated();
+        fc.beginStateBatch();
+        fc.dispatchStart();
+        fc.endStateBatch();
+        fc.dispatchResume();
+        assertEquals(StrictFragment.CREATED, parent.mState);
+        assertEquals(StrictFragment.CREATED, child.mState);
+
+        // StrictFragment throws if any lifecycle callback is skipped
+        fc.endStateBatch();
+        assertEquals(StrictFragment.RESUMED, parent.mState);
+        assertEquals(StrictFragment.RESUMED, child.mState);
+
+        fc.dispatchPause();
+        fc.dispatchStop();
+        fc.dispatchReallyStop();
+        fc.dispatchDestroy();
+        assertEquals(StrictFragment.DETACHED, parent.mState);
+        assertEquals(StrictFragment.DETACHED, child.mState);
+    }
+
+    @Test
+    @MediumTest
+    @UiThreadTest
+    public void testEndStateBatchWithoutBegin() {
+        final FragmentController fc = createController();
+        fc.attachHost(null);
+        try {
+            fc.endStateBatch();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    @MediumTest
+    @UiThreadTest
+    public void testBatchedRestoreRestoresChildren() {
+        FragmentController fc = createController();
+        resume(fc, null, false);
+        addFragments(fc, 2, 2);
+        final Pair<Parcelable, FragmentManagerNonConfig> savedState = destroy(fc);
+
+        fc = createController();
+        resume(fc, savedState, true);
+        for (int i = 0; i < 2; i++) {
+            final StrictFragment parent = (StrictFragment) fc.getSupportFragmentManager()
+                    .findFragmentByTag("parent" + i);
+            assertNotNull(parent);
+            assertEquals(StrictFragment.RESUMED, parent.mState);
+            for (int j = 0; j < 2; j++) {
+                final StrictFragment child = (StrictFragment) parent.getChildFragmentManager()
+                        .findFragmentByTag("child" + j);
+                assertNotNull(child);
+                assertEquals(StrictFragment.RESUMED, child.mState);
+            }
+        }
+        destroy(fc);
+    }
+
+    @Test
+    @LargeTest
+    @UiThreadTest
+    public void testRecreation_benchmark() {
+        // 20 fragments with 4 children each
+        final int parentCount = 20;
+        final int childCount = 4;
+        final int iterations = 50;
+
+        FragmentController fc = createController();
+        resume(fc, null, false);
+        addFragments(fc, parentCount, childCount);
+
+        final long[] nanos = new long[2];
+        for (int i = 0; i < iterations * 2; i++) {
+            final boolean batched = i % 2 == 1;
+            final Pair<Parcelable, FragmentManagerNonConfig> savedState = destroy(fc);
+            fc = createController();
+            final long start = System.nanoTime();
+            resume(fc, savedState, batched);
+            for (int j = 0; j < parentCount; j++) {
+                fc.getSupportFragmentManager().findFragmentByTag("parent" + j);
+            }
+            nanos[batched ? 1 : 0] += System.nanoTime() - start;
+        }
+        destroy(fc);
+
+        Log.d(TAG, "Recreating " + parentCount * (childCount + 1) + " fragments: "
+                + nanos[0] / iterations / 1000 + "us, batched: "
+                + nanos[1] / iterations / 1000 + "us");
+    }
+
+    private FragmentController createController() {
+        return FragmentController.createController(
+                new HostCallbacks(mActivityRule.getActivity(), new Handler(), 0));
+    }
+
+    private static void addFragments(FragmentController fc, int parentCount, int childCount) {
+        final FragmentManager fm = fc.getSupportFragmentManager();
+        for (int i = 0; i < parentCount; i++) {
+            final StrictFragment parent = new StrictFragment();
+            fm.beginTransaction().add(parent, "parent" + i).commitNow();
+            for (int j = 0; j < childCount; j++) {
+                parent.getChildFragmentManager().beginTransaction()
+                        .add(new StrictFragment(), "child" + j)
+                        .commitNow();
+            }
+        }
+    }
+
+    private static void resume(FragmentController fc,
+            Pair<Parcelable, FragmentManagerNonConfig> savedState, boolean batched) {
+        fc.attachHost(null);
+        if (savedState != null) {
+            fc.restoreAllState(savedState.first, savedState.second);
+        }
+        if (batched) {
+            fc.beginStateBatch();
+        }
+        fc.dispatchCreate();
+        fc.dispatchActivityCreated();
+        fc.noteStateNotSaved();
+        fc.execPendingActions();
+        fc.dispatchStart();
+        fc.dispatchResume();
+        if (batched) {
+            fc.endStateBatch();
+        }
+        fc.execPendingActions();
+    }
+
+    private static Pair<Parcelable, FragmentManagerNonConfig> destroy(FragmentController fc) {
+        fc.dispatchPause();
+        final Parcelable savedState = fc.saveAllState();
+        final FragmentManagerNonConfig nonConfig = fc.retainNestedNonConfig();
+        fc.dispatchStop();
+        fc.dispatchReallyStop();
+        fc.dispatchDestroy();
+        return Pair.create(savedState, nonConfig);
+    }
+}
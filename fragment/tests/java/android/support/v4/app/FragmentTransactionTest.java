@@ -447,6 +447,35 @@ public class FragmentTransactionTest {
         }
     }
 
+    @Test
+    @UiThreadTest
+    public void testFindFragmentAfterAddDetachAndRemove() {
+        final FragmentManager fm = mActivity.getSupportFragmentManager();
+        final Fragment first = new CorrectFragment();
+        final Fragment second = new CorrectFragment();
+        fm.beginTransaction().add(R.id.content, first, "tag").commitNow();
+        assertSame(first, fm.findFragmentByTag("tag"));
+        assertSame(first, fm.findFragmentById(R.id.content));
+
+        // The most recently added fragment is found first
+        fm.beginTransaction().add(R.id.content, second, "tag").commitNow();
+        assertSame(second, fm.findFragmentByTag("tag"));
+        assertSame(second, fm.findFragmentById(R.id.content));
+
+        // Added fragments are found before detached ones, which are still active
+        fm.beginTransaction().detach(second).commitNow();
+        assertSame(first, fm.findFragmentByTag("tag"));
+        assertSame(first, fm.findFragmentById(R.id.content));
+        fm.beginTransaction().remove(first).commitNow();
+        assertSame(second, fm.findFragmentByTag("tag"));
+        assertSame(second, fm.findFragmentById(R.id.content));
+
+        fm.beginTransaction().remove(second).commitNow();
+        assertNull(fm.findFragmentByTag("tag"));
+        assertNull(fm.findFragmentById(R.id.content));
+        assertNull(fm.findFragmentByTag(null));
+    }
+
     private void getFragmentsUntilSize(int expectedSize) {
         final long endTime = SystemClock.uptimeMillis() + 3000;
 
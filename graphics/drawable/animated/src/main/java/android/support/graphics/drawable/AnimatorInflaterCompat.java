@@ -147,6 +147,31 @@ public class AnimatorInflaterCompat {
         }
     }
 
+    /**
+     * PackedPathDataEvaluator interpolates between two paths represented as
+     * {@link PathParser.PackedPathData}, which the path morph animations use so that no object is
+     * allocated per frame. The returned value is reused for every evaluate() call, and is copied
+     * by the setter of the animated path.
+     */
+    private static class PackedPathDataEvaluator implements
+            TypeEvaluator<PathParser.PackedPathData> {
+        private final PathParser.PackedPathData mResult = new PathParser.PackedPathData();
+
+        PackedPathDataEvaluator() {
+        }
+
+        @Override
+        public PathParser.PackedPathData evaluate(float fraction,
+                PathParser.PackedPathData startPathData, PathParser.PackedPathData endPathData) {
+            if (!startPathData.canMorph(endPathData)) {
+                throw new IllegalArgumentException("Can't interpolate between"
+                        + " two incompatible pathData");
+            }
+            mResult.interpolate(startPathData, endPathData, fraction);
+            return mResult;
+        }
+    }
+
     /**
      * PathDataEvaluator is used to interpolate between two paths which are
      * represented in the same format but different control points' values.
@@ -227,29 +252,27 @@ public class AnimatorInflaterCompat {
             String fromString = styledAttributes.getString(valueFromId);
             String toString = styledAttributes.getString(valueToId);
 
-            PathParser.PathDataNode[] nodesFrom =
-                    PathParser.createNodesFromPathData(fromString);
-            PathParser.PathDataNode[] nodesTo =
-                    PathParser.createNodesFromPathData(toString);
-            if (nodesFrom != null || nodesTo != null) {
-                if (nodesFrom != null) {
-                    TypeEvaluator evaluator = new PathDataEvaluator();
-                    if (nodesTo != null) {
-                        if (!PathParser.canMorph(nodesFrom, nodesTo)) {
-                            throw new InflateException(" Can't morph from " + fromString + " to "
-                                    + toString);
-                        }
-                        returnValue = PropertyValuesHolder.ofObject(propertyName, evaluator,
-                                nodesFrom, nodesTo);
-                    } else {
-                        returnValue = PropertyValuesHolder.ofObject(propertyName, evaluator,
-                                (Object) nodesFrom);
-                    }
-                } else if (nodesTo != null) {
-                    TypeEvaluator evaluator = new PathDataEvaluator();
-                    returnValue = PropertyValuesHolder.ofObject(propertyName, evaluator,
-                            (Object) nodesTo);
+            if (fromString != null && toString != null) {
+                // A morph between two paths: the animated paths have a setter taking the packed
+                // form, which is interpolated without allocating per frame.
+                PathParser.PackedPathData dataFrom = new PathParser.PackedPathData();
+                PathParser.PackedPathData dataTo = new PathParser.PackedPathData();
+                dataFrom.parse(fromString);
+                dataTo.parse(toString);
+                if (!dataFrom.canMorph(dataTo)) {
+                    throw new InflateException(" Can't morph from " + fromString + " to "
+                            + toString);
                 }
+                returnValue = PropertyValuesHolder.ofObject(propertyName,
+                        new PackedPathDataEvaluator(), dataFrom, dataTo);
+            } else if (fromString != null) {
+                TypeEvaluator evaluator = new PathDataEvaluator();
+                returnValue = PropertyValuesHolder.ofObject(propertyName, evaluator,
+                        (Object) PathParser.createNodesFromPathData(fromString));
+            } else if (toString != null) {
+                TypeEvaluator evaluator = new PathDataEvaluator();
+                returnValue = PropertyValuesHolder.ofObject(propertyName, evaluator,
+                        (Object) PathParser.createNodesFromPathData(toString));
             }
         } else {
             TypeEvaluator evaluator = null;
@@ -18,6 +18,7 @@ import static android.support.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 
 import android.annotation.SuppressLint;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.Resources.Theme;
 import android.content.res.TypedArray;
@@ -47,6 +48,7 @@ import android.support.v4.content.res.TypedArrayUtils;
 import android.support.v4.graphics.PathParser;
 import android.support.v4.graphics.drawable.DrawableCompat;
 import android.support.v4.util.ArrayMap;
+import android.support.v4.util.LruCache;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -55,7 +57,16 @@ import android.util.Xml;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Stack;
 
@@ -217,6 +228,21 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
     private static final boolean DBG_VECTOR_DRAWABLE = false;
 
+    // Number of parsed trees kept by create(), shared by the whole process.
+    private static final int MAX_CACHED_STATES = 64;
+
+    // Parsed trees of the resources loaded by create(). The cached states are never drawn nor
+    // handed out, each drawable gets its own deep copy.
+    private static final LruCache<StateCacheKey, VectorDrawableCompatState> sStateCache =
+            new LruCache<StateCacheKey, VectorDrawableCompatState>(MAX_CACHED_STATES);
+
+    private static final int BINARY_MAGIC = 0x56444342; // "VDCB"
+    private static final int BINARY_VERSION = 1;
+
+    private static final int BINARY_CHILD_GROUP = 0;
+    private static final int BINARY_CHILD_FULL_PATH = 1;
+    private static final int BINARY_CHILD_CLIP_PATH = 2;
+
     private VectorDrawableCompatState mVectorState;
 
     private PorterDuffColorFilter mTintFilter;
@@ -537,6 +563,11 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
     /**
      * Create a VectorDrawableCompat object.
+     * <p/>
+     * Below API 24, the parsed tree of the resource is kept in a process-wide cache keyed by
+     * the resource id, the resources, the theme and the configuration, so that creating the same
+     * vector again only copies the tree instead of parsing the XML file. The returned drawables
+     * never share their state.
      *
      * @param res   the resources.
      * @param resId the resource ID for VectorDrawableCompat object.
@@ -554,6 +585,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             return drawable;
         }
 
+        final StateCacheKey key = new StateCacheKey(res, resId, theme);
+        final VectorDrawableCompatState cachedState = sStateCache.get(key);
+        if (cachedState != null) {
+            return new VectorDrawableCompat(new VectorDrawableCompatState(cachedState));
+        }
+
         try {
             @SuppressLint("ResourceType") final XmlPullParser parser = res.getXml(resId);
             final AttributeSet attrs = Xml.asAttributeSet(parser);
@@ -565,7 +602,9 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             if (type != XmlPullParser.START_TAG) {
                 throw new XmlPullParserException("No start tag found");
             }
-            return createFromXmlInner(res, parser, attrs, theme);
+            final VectorDrawableCompat drawable = createFromXmlInner(res, parser, attrs, theme);
+            sStateCache.put(key, new VectorDrawableCompatState(drawable.mVectorState));
+            return drawable;
         } catch (XmlPullParserException e) {
             Log.e(LOGTAG, "parser error", e);
         } catch (IOException e) {
@@ -587,6 +626,113 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         return drawable;
     }
 
+    /**
+     * Create a VectorDrawableCompat from the compact binary form written by
+     * {@link #writeBinary(OutputStream)}. No path string or XML is parsed, the path data is read
+     * as packed float arrays. This works on all API levels and never delegates to the framework.
+     * <p/>
+     * The stream is read through a buffer, so it should not contain anything after the binary
+     * form. It is not closed.
+     *
+     * @param res the resources, used to scale the intrinsic size to the screen density.
+     * @param in  the stream to read the binary form from.
+     * @return a new VectorDrawableCompat.
+     * @throws IOException if the stream can not be read or does not contain a vector drawable
+     *                     binary form.
+     */
+    @NonNull
+    public static VectorDrawableCompat createFromBinary(@NonNull Resources res,
+            @NonNull InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a vector drawable binary form");
+        }
+        final int version = data.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported vector drawable binary version " + version);
+        }
+
+        final VectorDrawableCompat drawable = new VectorDrawableCompat();
+        final VectorDrawableCompatState state = drawable.mVectorState;
+        final VPathRenderer pathRenderer = state.mVPathRenderer;
+        final float density = res.getDisplayMetrics().density;
+        state.mDensity = density;
+        state.mChangingConfigurations = data.readInt();
+        pathRenderer.mBaseWidth = data.readFloat() * density;
+        pathRenderer.mBaseHeight = data.readFloat() * density;
+        pathRenderer.mViewportWidth = data.readFloat();
+        pathRenderer.mViewportHeight = data.readFloat();
+        pathRenderer.setRootAlpha(data.readUnsignedByte());
+        pathRenderer.mRootName = readName(data);
+        if (pathRenderer.mRootName != null) {
+            pathRenderer.mVGTargetsMap.put(pathRenderer.mRootName, pathRenderer);
+        }
+        state.mAutoMirrored = data.readBoolean();
+        final int tintMode = data.readByte();
+        state.mTintMode = tintMode < 0 ? null : parseTintModeCompat(tintMode, DEFAULT_TINT_MODE);
+        if (data.readBoolean()) {
+            state.mTint = ColorStateList.valueOf(data.readInt());
+        }
+        pathRenderer.mRootGroup.readBinary(data, pathRenderer.mVGTargetsMap);
+        state.mCacheDirty = true;
+
+        drawable.mTintFilter = drawable.updateTintFilter(drawable.mTintFilter, state.mTint,
+                state.mTintMode);
+        return drawable;
+    }
+
+    /**
+     * Writes this vector drawable in a compact binary form which can be loaded by
+     * {@link #createFromBinary(Resources, InputStream)} without parsing any XML or path string.
+     * This can be used to produce the binary form ahead of time, for example from a drawable
+     * created with {@link #createFromXmlInner(Resources, XmlPullParser, AttributeSet, Theme)}.
+     * <p/>
+     * The intrinsic size is written in density independent pixels. Only the default color of the
+     * tint is kept. The stream is flushed but not closed.
+     *
+     * @param out the stream to write the binary form to.
+     * @throws IOException if the stream can not be written.
+     * @throws IllegalStateException if this drawable delegates to the framework
+     *                               {@link VectorDrawable}, as returned by
+     *                               {@link #create(Resources, int, Theme)} on API 24 and above.
+     */
+    public void writeBinary(@NonNull OutputStream out) throws IOException {
+        if (mDelegateDrawable != null) {
+            throw new IllegalStateException("Can not write a framework VectorDrawable");
+        }
+        final VectorDrawableCompatState state = mVectorState;
+        final VPathRenderer pathRenderer = state.mVPathRenderer;
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(BINARY_VERSION);
+        data.writeInt(state.mChangingConfigurations);
+        data.writeFloat(pathRenderer.mBaseWidth / state.mDensity);
+        data.writeFloat(pathRenderer.mBaseHeight / state.mDensity);
+        data.writeFloat(pathRenderer.mViewportWidth);
+        data.writeFloat(pathRenderer.mViewportHeight);
+        data.writeByte(pathRenderer.getRootAlpha());
+        writeName(data, pathRenderer.mRootName);
+        data.writeBoolean(state.mAutoMirrored);
+        data.writeByte(tintModeToCompat(state.mTintMode));
+        data.writeBoolean(state.mTint != null);
+        if (state.mTint != null) {
+            data.writeInt(state.mTint.getDefaultColor());
+        }
+        pathRenderer.mRootGroup.writeBinary(data);
+        data.flush();
+    }
+
+    static void writeName(DataOutput out, String name) throws IOException {
+        out.writeBoolean(name != null);
+        if (name != null) {
+            out.writeUTF(name);
+        }
+    }
+
+    static String readName(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     static int applyAlpha(int color, float alpha) {
         int alphaBytes = Color.alpha(color);
         color &= 0x00FFFFFF;
@@ -616,6 +762,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         final VectorDrawableCompatState state = mVectorState;
         final VPathRenderer pathRenderer = new VPathRenderer();
         state.mVPathRenderer = pathRenderer;
+        state.mDensity = res.getDisplayMetrics().density;
 
         final TypedArray a = TypedArrayUtils.obtainAttributes(res, theme, attrs,
                 AndroidResources.STYLEABLE_VECTOR_DRAWABLE_TYPE_ARRAY);
@@ -657,6 +804,32 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         }
     }
 
+    /**
+     * Inverse of {@link #parseTintModeCompat(int, Mode)}, -1 for no mode. Modes which can not be
+     * set from XML are mapped to the default mode.
+     */
+    private static int tintModeToCompat(Mode mode) {
+        if (mode == null) {
+            return -1;
+        }
+        switch (mode) {
+            case SRC_OVER:
+                return 3;
+            case SRC_IN:
+                return 5;
+            case SRC_ATOP:
+                return 9;
+            case MULTIPLY:
+                return 14;
+            case SCREEN:
+                return 15;
+            case ADD:
+                return 16;
+            default:
+                return 5;
+        }
+    }
+
     private void updateStateFromTypedArray(TypedArray a, XmlPullParser parser)
             throws XmlPullParserException {
         final VectorDrawableCompatState state = mVectorState;
@@ -877,6 +1050,66 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         super.unscheduleSelf(what);
     }
 
+    /**
+     * Key of the parsed trees cached by {@link #create(Resources, int, Theme)}. The resources
+     * and the theme are only weakly referenced, entries of collected ones are never matched again
+     * and are evicted as other entries are used.
+     */
+    private static class StateCacheKey {
+        private final int mResId;
+        private final WeakReference<Resources> mResources;
+        private final WeakReference<Theme> mTheme;
+        private final Configuration mConfiguration;
+        private final int mHashCode;
+
+        StateCacheKey(Resources res, int resId, Theme theme) {
+            mResId = resId;
+            mResources = new WeakReference<Resources>(res);
+            mTheme = theme == null ? null : new WeakReference<Theme>(theme);
+            mConfiguration = new Configuration(res.getConfiguration());
+
+            int hashCode = resId;
+            hashCode = 31 * hashCode + System.identityHashCode(res);
+            hashCode = 31 * hashCode + System.identityHashCode(theme);
+            hashCode = 31 * hashCode + mConfiguration.hashCode();
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StateCacheKey)) {
+                return false;
+            }
+            final StateCacheKey other = (StateCacheKey) o;
+            if (mResId != other.mResId || mHashCode != other.mHashCode) {
+                return false;
+            }
+            final Resources res = mResources.get();
+            if (res == null || res != other.mResources.get()) {
+                return false;
+            }
+            if (mTheme == null || other.mTheme == null) {
+                if (mTheme != other.mTheme) {
+                    return false;
+                }
+            } else {
+                final Theme theme = mTheme.get();
+                if (theme == null || theme != other.mTheme.get()) {
+                    return false;
+                }
+            }
+            return mConfiguration.equals(other.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
     /**
      * Constant state for delegating the creating drawable job for SDK >= 24.
      * Instead of creating a VectorDrawable, create a VectorDrawableCompat instance which contains
@@ -929,6 +1162,8 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         ColorStateList mTint = null;
         Mode mTintMode = DEFAULT_TINT_MODE;
         boolean mAutoMirrored;
+        // The density the intrinsic size has been resolved with.
+        float mDensity = 1;
 
         Bitmap mCachedBitmap;
         int[] mCachedThemeAttrs;
@@ -957,6 +1192,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                 mTint = copy.mTint;
                 mTintMode = copy.mTintMode;
                 mAutoMirrored = copy.mAutoMirrored;
+                mDensity = copy.mDensity;
             }
         }
 
@@ -1359,6 +1595,75 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             return mGroupName;
         }
 
+        void writeBinary(DataOutput out) throws IOException {
+            writeName(out, mGroupName);
+            out.writeFloat(mRotate);
+            out.writeFloat(mPivotX);
+            out.writeFloat(mPivotY);
+            out.writeFloat(mScaleX);
+            out.writeFloat(mScaleY);
+            out.writeFloat(mTranslateX);
+            out.writeFloat(mTranslateY);
+            out.writeInt(mChildren.size());
+            for (int i = 0; i < mChildren.size(); i++) {
+                final Object child = mChildren.get(i);
+                if (child instanceof VGroup) {
+                    out.writeByte(BINARY_CHILD_GROUP);
+                    ((VGroup) child).writeBinary(out);
+                } else if (child instanceof VFullPath) {
+                    out.writeByte(BINARY_CHILD_FULL_PATH);
+                    ((VFullPath) child).writeBinary(out);
+                } else if (child instanceof VClipPath) {
+                    out.writeByte(BINARY_CHILD_CLIP_PATH);
+                    ((VClipPath) child).writeBinary(out);
+                } else {
+                    throw new IllegalStateException("Unknown object in the tree!");
+                }
+            }
+        }
+
+        void readBinary(DataInput in, ArrayMap<String, Object> targetsMap) throws IOException {
+            mGroupName = readName(in);
+            if (mGroupName != null) {
+                targetsMap.put(mGroupName, this);
+            }
+            mRotate = in.readFloat();
+            mPivotX = in.readFloat();
+            mPivotY = in.readFloat();
+            mScaleX = in.readFloat();
+            mScaleY = in.readFloat();
+            mTranslateX = in.readFloat();
+            mTranslateY = in.readFloat();
+            updateLocalMatrix();
+
+            final int childCount = in.readInt();
+            mChildren.ensureCapacity(childCount);
+            for (int i = 0; i < childCount; i++) {
+                final int kind = in.readUnsignedByte();
+                if (kind == BINARY_CHILD_GROUP) {
+                    final VGroup group = new VGroup();
+                    group.readBinary(in, targetsMap);
+                    mChildren.add(group);
+                    continue;
+                }
+                final VPath path;
+                if (kind == BINARY_CHILD_FULL_PATH) {
+                    final VFullPath fullPath = new VFullPath();
+                    fullPath.readBinary(in);
+                    path = fullPath;
+                } else if (kind == BINARY_CHILD_CLIP_PATH) {
+                    path = new VClipPath();
+                    path.readBinary(in);
+                } else {
+                    throw new IOException("Unknown child kind " + kind);
+                }
+                mChildren.add(path);
+                if (path.mPathName != null) {
+                    targetsMap.put(path.mPathName, path);
+                }
+            }
+        }
+
         public Matrix getLocalMatrix() {
             return mLocalMatrix;
         }
@@ -1514,6 +1819,10 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
      */
     private static class VPath {
         protected PathParser.PathDataNode[] mNodes = null;
+        // Path data set by a path morph animation, reused for every frame. When
+        // mUsePackedData is true, it replaces mNodes until they are read.
+        PathParser.PackedPathData mPackedData;
+        boolean mUsePackedData;
         String mPathName;
         int mChangingConfigurations;
 
@@ -1527,7 +1836,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                 indent += "    ";
             }
             Log.v(LOGTAG, indent + "current path is :" + mPathName +
-                    " pathData is " + nodesToString(mNodes));
+                    " pathData is " + nodesToString(getNodes()));
 
         }
 
@@ -1546,12 +1855,38 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public VPath(VPath copy) {
             mPathName = copy.mPathName;
             mChangingConfigurations = copy.mChangingConfigurations;
-            mNodes = PathParser.deepCopyNodes(copy.mNodes);
+            mNodes = PathParser.deepCopyNodes(copy.getNodes());
+        }
+
+        /**
+         * Returns the nodes of the path, including the changes of a path morph animation.
+         */
+        PathParser.PathDataNode[] getNodes() {
+            if (mUsePackedData) {
+                mNodes = mPackedData.toNodes();
+                mUsePackedData = false;
+            }
+            return mNodes;
+        }
+
+        void writeBinary(DataOutput out) throws IOException {
+            writeName(out, mPathName);
+            out.writeInt(mChangingConfigurations);
+            PathParser.writeNodes(getNodes(), out);
+        }
+
+        void readBinary(DataInput in) throws IOException {
+            mPathName = readName(in);
+            mChangingConfigurations = in.readInt();
+            mNodes = PathParser.readNodes(in);
+            mUsePackedData = false;
         }
 
         public void toPath(Path path) {
             path.reset();
-            if (mNodes != null) {
+            if (mUsePackedData) {
+                mPackedData.toPath(path);
+            } else if (mNodes != null) {
                 PathParser.PathDataNode.nodesToPath(mNodes, path);
             }
         }
@@ -1574,11 +1909,22 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         /* Setters and Getters, used by animator from AnimatedVectorDrawable. */
         @SuppressWarnings("unused")
         public PathParser.PathDataNode[] getPathData() {
-            return mNodes;
+            return getNodes();
+        }
+
+        @SuppressWarnings("unused")
+        public void setPathData(PathParser.PackedPathData data) {
+            // Called for every frame of a path morph, copy without allocating.
+            if (mPackedData == null) {
+                mPackedData = new PathParser.PackedPathData();
+            }
+            mPackedData.set(data);
+            mUsePackedData = true;
         }
 
         @SuppressWarnings("unused")
         public void setPathData(PathParser.PathDataNode[] nodes) {
+            mUsePackedData = false;
             if (!PathParser.canMorph(mNodes, nodes)) {
                 // This should not happen in the middle of animation.
                 mNodes = PathParser.deepCopyNodes(nodes);
@@ -1708,6 +2054,72 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             }
         }
 
+        @Override
+        void writeBinary(DataOutput out) throws IOException {
+            super.writeBinary(out);
+            out.writeInt(mStrokeColor);
+            out.writeFloat(mStrokeWidth);
+            out.writeFloat(mStrokeAlpha);
+            out.writeInt(mFillColor);
+            out.writeFloat(mFillAlpha);
+            out.writeByte(mFillRule);
+            out.writeFloat(mTrimPathStart);
+            out.writeFloat(mTrimPathEnd);
+            out.writeFloat(mTrimPathOffset);
+            out.writeByte(getStrokeLineCapId(mStrokeLineCap));
+            out.writeByte(getStrokeLineJoinId(mStrokeLineJoin));
+            out.writeFloat(mStrokeMiterlimit);
+        }
+
+        @Override
+        void readBinary(DataInput in) throws IOException {
+            super.readBinary(in);
+            mStrokeColor = in.readInt();
+            mStrokeWidth = in.readFloat();
+            mStrokeAlpha = in.readFloat();
+            mFillColor = in.readInt();
+            mFillAlpha = in.readFloat();
+            mFillRule = in.readByte();
+            mTrimPathStart = in.readFloat();
+            mTrimPathEnd = in.readFloat();
+            mTrimPathOffset = in.readFloat();
+            mStrokeLineCap = getStrokeLineCap(in.readByte(), null);
+            mStrokeLineJoin = getStrokeLineJoin(in.readByte(), null);
+            mStrokeMiterlimit = in.readFloat();
+        }
+
+        private static int getStrokeLineCapId(Paint.Cap cap) {
+            if (cap == null) {
+                return -1;
+            }
+            switch (cap) {
+                case BUTT:
+                    return LINECAP_BUTT;
+                case ROUND:
+                    return LINECAP_ROUND;
+                case SQUARE:
+                    return LINECAP_SQUARE;
+                default:
+                    return -1;
+            }
+        }
+
+        private static int getStrokeLineJoinId(Paint.Join join) {
+            if (join == null) {
+                return -1;
+            }
+            switch (join) {
+                case MITER:
+                    return LINEJOIN_MITER;
+                case ROUND:
+                    return LINEJOIN_ROUND;
+                case BEVEL:
+                    return LINEJOIN_BEVEL;
+                default:
+                    return -1;
+            }
+        }
+
         @Override
         public boolean canApplyTheme() {
             return mThemeAttrs != null;
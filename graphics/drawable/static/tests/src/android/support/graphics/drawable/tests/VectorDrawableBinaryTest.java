@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.graphics.drawable.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.Resources.Theme;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.support.graphics.drawable.VectorDrawableCompat;
+import android.support.graphics.drawable.test.R;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.Xml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Test the parsed tree cache of {@link VectorDrawableCompat#create} and the binary form of
+ * {@link VectorDrawableCompat}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VectorDrawableBinaryTest {
+    private static final String LOGTAG = "VectorDrawableBinaryTest";
+
+    private static final int[] ICON_RES_IDS = new int[]{
+            R.drawable.vector_icon_create,
+            R.drawable.vector_icon_heart,
+            R.drawable.vector_icon_settings,
+            R.drawable.vector_icon_random_path_1,
+            R.drawable.vector_icon_clip_path_1,
+            R.drawable.vector_icon_transformation_4,
+            R.drawable.vector_icon_stroke_2,
+            R.drawable.vector_icon_group_clip,
+            R.drawable.vector_icon_filltype_evenodd,
+    };
+
+    private static final int IMAGE_WIDTH = 64;
+    private static final int IMAGE_HEIGHT = 64;
+
+    private Resources mResources;
+    private Theme mTheme;
+
+    @Before
+    public void setup() {
+        final Context context = InstrumentationRegistry.getContext();
+        mResources = context.getResources();
+        mTheme = context.getTheme();
+    }
+
+    @Test
+    @MediumTest
+    public void testBinaryRoundTrip() throws Exception {
+        for (int resId : ICON_RES_IDS) {
+            final VectorDrawableCompat drawable = inflate(resId);
+            final VectorDrawableCompat loaded = VectorDrawableCompat.createFromBinary(mResources,
+                    new ByteArrayInputStream(toBinary(drawable)));
+
+            final String name = mResources.getResourceEntryName(resId);
+            assertEquals(name, drawable.getIntrinsicWidth(), loaded.getIntrinsicWidth());
+            assertEquals(name, drawable.getIntrinsicHeight(), loaded.getIntrinsicHeight());
+            assertEquals(name, drawable.getAlpha(), loaded.getAlpha());
+            assertEquals(name, drawable.isAutoMirrored(), loaded.isAutoMirrored());
+            assertTrue(name, render(drawable).sameAs(render(loaded)));
+        }
+    }
+
+    @Test
+    @MediumTest
+    public void testBinaryInvalidInput() {
+        try {
+            VectorDrawableCompat.createFromBinary(mResources,
+                    new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    @MediumTest
+    public void testCreateReturnsIndependentDrawables() {
+        final VectorDrawableCompat first =
+                VectorDrawableCompat.create(mResources, R.drawable.vector_icon_heart, mTheme);
+        final Bitmap expected = render(first);
+        final int originalAlpha = first.getAlpha();
+
+        // The second one comes from the cache below API 24.
+        final VectorDrawableCompat second =
+                VectorDrawableCompat.create(mResources, R.drawable.vector_icon_heart, mTheme);
+        assertNotSame(first, second);
+        assertNotSame(first.getConstantState(), second.getConstantState());
+
+        first.setAlpha(0x40);
+        assertEquals(originalAlpha, second.getAlpha());
+        assertTrue(expected.sameAs(render(second)));
+
+        final VectorDrawableCompat third =
+                VectorDrawableCompat.create(mResources, R.drawable.vector_icon_heart, mTheme);
+        assertEquals(originalAlpha, third.getAlpha());
+        assertTrue(expected.sameAs(render(third)));
+    }
+
+    @Test
+    @LargeTest
+    public void testInflation_benchmark() throws Exception {
+        final int iterations = 200;
+        final byte[][] binaries = new byte[ICON_RES_IDS.length][];
+        for (int i = 0; i < ICON_RES_IDS.length; i++) {
+            binaries[i] = toBinary(inflate(ICON_RES_IDS[i]));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int resId : ICON_RES_IDS) {
+                inflate(resId);
+            }
+        }
+        final long xmlNanos = System.nanoTime() - start;
+
+        // Every resource is already in the cache after the first iteration.
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int resId : ICON_RES_IDS) {
+                VectorDrawableCompat.create(mResources, resId, mTheme);
+            }
+        }
+        final long createNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] binary : binaries) {
+                VectorDrawableCompat.createFromBinary(mResources,
+                        new ByteArrayInputStream(binary));
+            }
+        }
+        final long binaryNanos = System.nanoTime() - start;
+
+        final int count = iterations * ICON_RES_IDS.length;
+        Log.d(LOGTAG, "XML inflation: " + xmlNanos / count / 1000 + "us, "
+                + (Build.VERSION.SDK_INT >= 24 ? "framework" : "cached") + " create: "
+                + createNanos / count / 1000 + "us, binary: " + binaryNanos / count / 1000
+                + "us per drawable");
+    }
+
+    // Always parses the XML file into a VectorDrawableCompat tree, on all API levels.
+    private VectorDrawableCompat inflate(int resId) throws Exception {
+        final XmlPullParser parser = mResources.getXml(resId);
+        final AttributeSet attrs = Xml.asAttributeSet(parser);
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG
+                && type != XmlPullParser.END_DOCUMENT) {
+            // Empty loop
+        }
+        return VectorDrawableCompat.createFromXmlInner(mResources, parser, attrs, mTheme);
+    }
+
+    private static byte[] toBinary(VectorDrawableCompat drawable) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        drawable.writeBinary(out);
+        return out.toByteArray();
+    }
+
+    private static Bitmap render(VectorDrawableCompat drawable) {
+        final Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT,
+                Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
@@ -16,6 +16,9 @@
 package android.support.v4.media;
 
 import static android.support.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_INSERTED;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_REMOVED;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_UPDATED;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_ADD_SUBSCRIPTION;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_CONNECT;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_DISCONNECT;
@@ -28,6 +31,9 @@ import static android.support.v4.media.MediaBrowserProtocol
         .CLIENT_MSG_UNREGISTER_CALLBACK_MESSENGER;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_VERSION_CURRENT;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CALLBACK_TOKEN;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_ITEM_COUNT;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_POSITION;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_TYPE;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CUSTOM_ACTION;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CUSTOM_ACTION_EXTRAS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_ITEM_ID;
@@ -35,6 +41,7 @@ import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_ITEM_LIST
 import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_SESSION_TOKEN;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_OPTIONS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_PACKAGE_NAME;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_RECEIVE_CHILDREN_CHANGES;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_RESULT_RECEIVER;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_ROOT_HINTS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_SEARCH_EXTRAS;
@@ -42,6 +49,7 @@ import static android.support.v4.media.MediaBrowserProtocol.DATA_SEARCH_QUERY;
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_CLIENT_VERSION;
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_MESSENGER_BINDER;
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_SESSION_BINDER;
+import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CONNECT;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CONNECT_FAILED;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_LOAD_CHILDREN;
@@ -673,9 +681,35 @@ public final class MediaBrowserCompat {
     public static abstract class SubscriptionCallback {
         private final Object mSubscriptionCallbackObj;
         private final IBinder mToken;
+        final boolean mReceiveChildrenChanges;
         WeakReference<Subscription> mSubscriptionRef;
 
         public SubscriptionCallback() {
+            this(false);
+        }
+
+        /**
+         * Creates a subscription callback which may receive the changes of the children as
+         * ranges of inserted, removed or updated items, rather than as a complete list.
+         * <p>
+         * When {@code receiveChildrenChanges} is true and the service publishes a change with
+         * {@link MediaBrowserServiceCompat#notifyChildrenInserted},
+         * {@link MediaBrowserServiceCompat#notifyChildrenRemoved} or
+         * {@link MediaBrowserServiceCompat#notifyChildrenUpdated}, one of
+         * {@link #onChildrenInserted}, {@link #onChildrenRemoved} or {@link #onChildrenUpdated}
+         * is called instead of {@link #onChildrenLoaded}. The positions are relative to the
+         * children last passed to {@link #onChildrenLoaded}, with the changes received since
+         * then applied.
+         * </p><p>
+         * The changes are only received for the subscriptions without options. Otherwise, and
+         * when the service or the platform does not support it, {@link #onChildrenLoaded} is
+         * called with the complete list as usual.
+         * </p>
+         *
+         * @param receiveChildrenChanges Whether to receive the changes of the children as ranges.
+         */
+        public SubscriptionCallback(boolean receiveChildrenChanges) {
+            mReceiveChildrenChanges = receiveChildrenChanges;
             if (Build.VERSION.SDK_INT >= 26) {
                 mSubscriptionCallbackObj =
                         MediaBrowserCompatApi26.createSubscriptionCallback(new StubApi26());
@@ -712,6 +746,44 @@ public final class MediaBrowserCompat {
                 @NonNull Bundle options) {
         }
 
+        /**
+         * Called when children are inserted, if this callback was created to receive the changes
+         * of the children.
+         *
+         * @param parentId The media id of the parent media item.
+         * @param position The position of the first inserted child.
+         * @param children The inserted children.
+         * @see #SubscriptionCallback(boolean)
+         */
+        public void onChildrenInserted(@NonNull String parentId, int position,
+                @NonNull List<MediaItem> children) {
+        }
+
+        /**
+         * Called when children are removed, if this callback was created to receive the changes
+         * of the children.
+         *
+         * @param parentId The media id of the parent media item.
+         * @param position The position of the first removed child.
+         * @param itemCount The number of removed children.
+         * @see #SubscriptionCallback(boolean)
+         */
+        public void onChildrenRemoved(@NonNull String parentId, int position, int itemCount) {
+        }
+
+        /**
+         * Called when children are replaced by updated items, if this callback was created to
+         * receive the changes of the children.
+         *
+         * @param parentId The media id of the parent media item.
+         * @param position The position of the first updated child.
+         * @param children The updated children.
+         * @see #SubscriptionCallback(boolean)
+         */
+        public void onChildrenUpdated(@NonNull String parentId, int position,
+                @NonNull List<MediaItem> children) {
+        }
+
         /**
          * Called when the id doesn't exist or other errors in subscribing.
          * <p>
@@ -743,6 +815,28 @@ public final class MediaBrowserCompat {
             mSubscriptionRef = new WeakReference<>(subscription);
         }
 
+        void dispatchChildrenRangeChanged(String parentId, int changeType, int position,
+                int itemCount, List<MediaItem> children) {
+            if (!mReceiveChildrenChanges) {
+                Log.w(TAG, "Ignoring a change of the children of " + parentId
+                        + " for a callback which does not receive changes");
+                return;
+            }
+            switch (changeType) {
+                case CHANGE_TYPE_INSERTED:
+                    onChildrenInserted(parentId, position, children);
+                    break;
+                case CHANGE_TYPE_REMOVED:
+                    onChildrenRemoved(parentId, position, itemCount);
+                    break;
+                case CHANGE_TYPE_UPDATED:
+                    onChildrenUpdated(parentId, position, children);
+                    break;
+                default:
+                    Log.w(TAG, "Unknown change type " + changeType + " for " + parentId);
+            }
+        }
+
         private class StubApi21 implements MediaBrowserCompatApi21.SubscriptionCallback {
             StubApi21() {
             }
@@ -956,6 +1050,8 @@ public final class MediaBrowserCompat {
                 Bundle extra);
         void onConnectionFailed(Messenger callback);
         void onLoadChildren(Messenger callback, String parentId, List list, Bundle options);
+        void onChildrenRangeChanged(Messenger callback, String parentId, int changeType,
+                int position, int itemCount, List list);
     }
 
     static class MediaBrowserImplBase
@@ -1171,7 +1267,7 @@ public final class MediaBrowserCompat {
             if (isConnected()) {
                 try {
                     mServiceBinderWrapper.addSubscription(parentId, callback.mToken, copiedOptions,
-                            mCallbacksMessenger);
+                            callback.mReceiveChildrenChanges, mCallbacksMessenger);
                 } catch (RemoteException e) {
                     // Process is crashing. We will disconnect, and upon reconnect we will
                     // automatically reregister. So nothing to do here.
@@ -1335,8 +1431,10 @@ public final class MediaBrowserCompat {
                     List<SubscriptionCallback> callbackList = sub.getCallbacks();
                     List<Bundle> optionsList = sub.getOptionsList();
                     for (int i = 0; i < callbackList.size(); ++i) {
-                        mServiceBinderWrapper.addSubscription(id, callbackList.get(i).mToken,
-                                optionsList.get(i), mCallbacksMessenger);
+                        SubscriptionCallback callback = callbackList.get(i);
+                        mServiceBinderWrapper.addSubscription(id, callback.mToken,
+                                optionsList.get(i), callback.mReceiveChildrenChanges,
+                                mCallbacksMessenger);
                     }
                 }
             } catch (RemoteException ex) {
@@ -1408,6 +1506,32 @@ public final class MediaBrowserCompat {
             }
         }
 
+        @Override
+        public void onChildrenRangeChanged(final Messenger callback, final String parentId,
+                final int changeType, final int position, final int itemCount, final List list) {
+            // Check that there hasn't been a disconnect or a different ServiceConnection.
+            if (!isCurrent(callback, "onChildrenRangeChanged")) {
+                return;
+            }
+
+            // Check that the subscription is still subscribed.
+            final Subscription subscription = mSubscriptions.get(parentId);
+            if (subscription == null) {
+                if (DEBUG) {
+                    Log.d(TAG, "onChildrenRangeChanged for id that isn't subscribed id="
+                            + parentId);
+                }
+                return;
+            }
+
+            // Tell the app. The changes are only sent for the subscriptions without options.
+            SubscriptionCallback subscriptionCallback = subscription.getCallback(mContext, null);
+            if (subscriptionCallback != null) {
+                subscriptionCallback.dispatchChildrenRangeChanged(
+                        parentId, changeType, position, itemCount, list);
+            }
+        }
+
         /**
          * For debugging.
          */
@@ -1669,8 +1793,8 @@ public final class MediaBrowserCompat {
                         mBrowserObj, parentId, callback.mSubscriptionCallbackObj);
             } else {
                 try {
-                    mServiceBinderWrapper.addSubscription(
-                            parentId, callback.mToken, copiedOptions, mCallbacksMessenger);
+                    mServiceBinderWrapper.addSubscription(parentId, callback.mToken,
+                            copiedOptions, callback.mReceiveChildrenChanges, mCallbacksMessenger);
                 } catch (RemoteException e) {
                     // Process is crashing. We will disconnect, and upon reconnect we will
                     // automatically reregister. So nothing to do here.
@@ -1929,6 +2053,32 @@ public final class MediaBrowserCompat {
                 }
             }
         }
+
+        @Override
+        @SuppressWarnings("ReferenceEquality")
+        public void onChildrenRangeChanged(Messenger callback, String parentId, int changeType,
+                int position, int itemCount, List list) {
+            if (mCallbacksMessenger != callback) {
+                return;
+            }
+
+            // Check that the subscription is still subscribed.
+            Subscription subscription = mSubscriptions.get(parentId);
+            if (subscription == null) {
+                if (DEBUG) {
+                    Log.d(TAG, "onChildrenRangeChanged for id that isn't subscribed id="
+                            + parentId);
+                }
+                return;
+            }
+
+            // Tell the app. The changes are only sent for the subscriptions without options.
+            SubscriptionCallback subscriptionCallback = subscription.getCallback(mContext, null);
+            if (subscriptionCallback != null) {
+                subscriptionCallback.dispatchChildrenRangeChanged(
+                        parentId, changeType, position, itemCount, list);
+            }
+        }
     }
 
     @RequiresApi(23)
@@ -2063,6 +2213,14 @@ public final class MediaBrowserCompat {
                                 data.getParcelableArrayList(DATA_MEDIA_ITEM_LIST),
                                 data.getBundle(DATA_OPTIONS));
                         break;
+                    case SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED:
+                        serviceCallback.onChildrenRangeChanged(callbacksMessenger,
+                                data.getString(DATA_MEDIA_ITEM_ID),
+                                data.getInt(DATA_CHANGE_TYPE),
+                                data.getInt(DATA_CHANGE_POSITION),
+                                data.getInt(DATA_CHANGE_ITEM_COUNT),
+                                data.getParcelableArrayList(DATA_MEDIA_ITEM_LIST));
+                        break;
                     default:
                         Log.w(TAG, "Unhandled message: " + msg
                                 + "\n  Client version: " + CLIENT_VERSION_CURRENT
@@ -2105,12 +2263,13 @@ public final class MediaBrowserCompat {
         }
 
         void addSubscription(String parentId, IBinder callbackToken, Bundle options,
-                Messenger callbacksMessenger)
+                boolean receiveChildrenChanges, Messenger callbacksMessenger)
                 throws RemoteException {
             Bundle data = new Bundle();
             data.putString(DATA_MEDIA_ITEM_ID, parentId);
             BundleCompat.putBinder(data, DATA_CALLBACK_TOKEN, callbackToken);
             data.putBundle(DATA_OPTIONS, options);
+            data.putBoolean(DATA_RECEIVE_CHILDREN_CHANGES, receiveChildrenChanges);
             sendRequest(CLIENT_MSG_ADD_SUBSCRIPTION, data, callbacksMessenger);
         }
 
@@ -33,6 +33,10 @@ class MediaBrowserProtocol {
     public static final String DATA_SEARCH_QUERY = "data_search_query";
     public static final String DATA_CUSTOM_ACTION = "data_custom_action";
     public static final String DATA_CUSTOM_ACTION_EXTRAS = "data_custom_action_extras";
+    public static final String DATA_RECEIVE_CHILDREN_CHANGES = "data_receive_children_changes";
+    public static final String DATA_CHANGE_TYPE = "data_change_type";
+    public static final String DATA_CHANGE_POSITION = "data_change_position";
+    public static final String DATA_CHANGE_ITEM_COUNT = "data_change_item_count";
 
     public static final String EXTRA_CLIENT_VERSION = "extra_client_version";
     public static final String EXTRA_SERVICE_VERSION = "extra_service_version";
@@ -45,7 +49,16 @@ class MediaBrowserProtocol {
      * MediaBrowserServiceCompat.
      */
     public static final int SERVICE_VERSION_1 = 1;
-    public static final int SERVICE_VERSION_CURRENT = SERVICE_VERSION_1;
+    public static final int SERVICE_VERSION_2 = 2;
+    public static final int SERVICE_VERSION_CURRENT = SERVICE_VERSION_2;
+
+    /*
+     * The types of the changes sent with SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED.
+     * DO NOT RENUMBER THESE!
+     */
+    public static final int CHANGE_TYPE_INSERTED = 1;
+    public static final int CHANGE_TYPE_REMOVED = 2;
+    public static final int CHANGE_TYPE_UPDATED = 3;
 
     /*
      * Messages sent from the media browser service compat to the media browser compat.
@@ -82,12 +95,27 @@ class MediaBrowserProtocol {
      */
     public static final int SERVICE_MSG_ON_LOAD_CHILDREN = 3;
 
+    /** (service v2)
+     * Sent when a range of the children is inserted, removed or updated. Only sent for the
+     * subscriptions without options which were added with DATA_RECEIVE_CHILDREN_CHANGES.
+     * - arg1 : The service version
+     * - data
+     *     DATA_MEDIA_ITEM_ID : A string for the parent media item id
+     *     DATA_CHANGE_TYPE : One of the CHANGE_TYPE_* constants
+     *     DATA_CHANGE_POSITION : The position of the first changed child
+     *     DATA_CHANGE_ITEM_COUNT : The number of children removed, for CHANGE_TYPE_REMOVED
+     *     DATA_MEDIA_ITEM_LIST : An array list for the inserted or updated media items, for
+     *                            CHANGE_TYPE_INSERTED and CHANGE_TYPE_UPDATED
+     */
+    public static final int SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED = 4;
+
     /**
      * MediaBrowserServiceCompat will check the version of the MediaBrowserCompat, and it will not
      * send messages if they are introduced in the higher version of the MediaBrowserCompat.
      */
     public static final int CLIENT_VERSION_1 = 1;
-    public static final int CLIENT_VERSION_CURRENT = CLIENT_VERSION_1;
+    public static final int CLIENT_VERSION_2 = 2;
+    public static final int CLIENT_VERSION_CURRENT = CLIENT_VERSION_2;
 
     /*
      * Messages sent from the media browser compat to the media browser service compat.
@@ -121,6 +149,8 @@ class MediaBrowserProtocol {
      *                    the media browser service
      *     DATA_CALLBACK_TOKEN : An IBinder of service-specific arguments sent from the media
      *                           browser to the media browser service
+     *     DATA_RECEIVE_CHILDREN_CHANGES : (client v2) A boolean, true if the subscription
+     *                                     accepts SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED
      * - replyTo : Callback messenger
      */
     public static final int CLIENT_MSG_ADD_SUBSCRIPTION = 3;
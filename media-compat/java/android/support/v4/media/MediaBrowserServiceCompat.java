@@ -17,6 +17,9 @@
 package android.support.v4.media;
 
 import static android.support.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_INSERTED;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_REMOVED;
+import static android.support.v4.media.MediaBrowserProtocol.CHANGE_TYPE_UPDATED;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_ADD_SUBSCRIPTION;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_CONNECT;
 import static android.support.v4.media.MediaBrowserProtocol.CLIENT_MSG_DISCONNECT;
@@ -29,6 +32,9 @@ import static android.support.v4.media.MediaBrowserProtocol
         .CLIENT_MSG_UNREGISTER_CALLBACK_MESSENGER;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CALLBACK_TOKEN;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CALLING_UID;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_ITEM_COUNT;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_POSITION;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_CHANGE_TYPE;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CUSTOM_ACTION;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_CUSTOM_ACTION_EXTRAS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_ITEM_ID;
@@ -36,6 +42,7 @@ import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_ITEM_LIST
 import static android.support.v4.media.MediaBrowserProtocol.DATA_MEDIA_SESSION_TOKEN;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_OPTIONS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_PACKAGE_NAME;
+import static android.support.v4.media.MediaBrowserProtocol.DATA_RECEIVE_CHILDREN_CHANGES;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_RESULT_RECEIVER;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_ROOT_HINTS;
 import static android.support.v4.media.MediaBrowserProtocol.DATA_SEARCH_EXTRAS;
@@ -44,6 +51,7 @@ import static android.support.v4.media.MediaBrowserProtocol.EXTRA_CLIENT_VERSION
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_MESSENGER_BINDER;
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_SERVICE_VERSION;
 import static android.support.v4.media.MediaBrowserProtocol.EXTRA_SESSION_BINDER;
+import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CONNECT;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_CONNECT_FAILED;
 import static android.support.v4.media.MediaBrowserProtocol.SERVICE_MSG_ON_LOAD_CHILDREN;
@@ -82,8 +90,11 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Base class for media browse services.
@@ -160,12 +171,15 @@ public abstract class MediaBrowserServiceCompat extends Service {
     ConnectionRecord mCurConnection;
     final ServiceHandler mHandler = new ServiceHandler();
     MediaSessionCompat.Token mSession;
+    ChildrenCache mChildrenCache;
 
     interface MediaBrowserServiceImpl {
         void onCreate();
         IBinder onBind(Intent intent);
         void setSessionToken(MediaSessionCompat.Token token);
         void notifyChildrenChanged(final String parentId, final Bundle options);
+        void notifyChildrenRangeChanged(String parentId, int changeType, int position,
+                int itemCount, List<MediaBrowserCompat.MediaItem> items);
         Bundle getBrowserRootHints();
     }
 
@@ -227,6 +241,19 @@ public abstract class MediaBrowserServiceCompat extends Service {
             });
         }
 
+        @Override
+        public void notifyChildrenRangeChanged(final String parentId, final int changeType,
+                final int position, final int itemCount,
+                final List<MediaBrowserCompat.MediaItem> items) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    performNotifyChildrenRangeChanged(
+                            parentId, changeType, position, itemCount, items);
+                }
+            });
+        }
+
         @Override
         public Bundle getBrowserRootHints() {
             if (mCurConnection == null) {
@@ -302,6 +329,24 @@ public abstract class MediaBrowserServiceCompat extends Service {
             }
         }
 
+        @Override
+        public void notifyChildrenRangeChanged(final String parentId, final int changeType,
+                final int position, final int itemCount,
+                final List<MediaBrowserCompat.MediaItem> items) {
+            if (mMessenger == null) {
+                // The framework MediaBrowser only receives complete lists.
+                MediaBrowserServiceCompatApi21.notifyChildrenChanged(mServiceObj, parentId);
+            } else {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        performNotifyChildrenRangeChanged(
+                                parentId, changeType, position, itemCount, items);
+                    }
+                });
+            }
+        }
+
         @Override
         public Bundle getBrowserRootHints() {
             if (mMessenger == null) {
@@ -350,20 +395,22 @@ public abstract class MediaBrowserServiceCompat extends Service {
         @Override
         public void onLoadChildren(String parentId,
                 final MediaBrowserServiceCompatApi21.ResultWrapper<List<Parcel>> resultWrapper) {
+            if (mChildrenCache != null) {
+                resultWrapper.detach();
+                mChildrenCache.loadChildren(parentId, null, null, new ChildrenCallback() {
+                    @Override
+                    public void onChildrenLoaded(List<MediaBrowserCompat.MediaItem> list,
+                            int flags) {
+                        resultWrapper.sendResult(toParcelList(list));
+                    }
+                });
+                return;
+            }
             final Result<List<MediaBrowserCompat.MediaItem>> result
                     = new Result<List<MediaBrowserCompat.MediaItem>>(parentId) {
                 @Override
                 void onResultSent(List<MediaBrowserCompat.MediaItem> list) {
-                    List<Parcel> parcelList = null;
-                    if (list != null) {
-                        parcelList = new ArrayList<>();
-                        for (MediaBrowserCompat.MediaItem item : list) {
-                            Parcel parcel = Parcel.obtain();
-                            item.writeToParcel(parcel, 0);
-                            parcelList.add(parcel);
-                        }
-                    }
-                    resultWrapper.sendResult(parcelList);
+                    resultWrapper.sendResult(toParcelList(list));
                 }
 
                 @Override
@@ -430,23 +477,32 @@ public abstract class MediaBrowserServiceCompat extends Service {
             }
         }
 
+        @Override
+        public void notifyChildrenRangeChanged(String parentId, int changeType, int position,
+                int itemCount, List<MediaBrowserCompat.MediaItem> items) {
+            // The subscriptions are made through the framework, which only sends complete lists.
+            MediaBrowserServiceCompatApi21.notifyChildrenChanged(mServiceObj, parentId);
+        }
+
         @Override
         public void onLoadChildren(String parentId,
                 final MediaBrowserServiceCompatApi26.ResultWrapper resultWrapper, Bundle options) {
+            if (mChildrenCache != null) {
+                resultWrapper.detach();
+                mChildrenCache.loadChildren(parentId, options, null, new ChildrenCallback() {
+                    @Override
+                    public void onChildrenLoaded(List<MediaBrowserCompat.MediaItem> list,
+                            int flags) {
+                        resultWrapper.sendResult(toParcelList(list), flags);
+                    }
+                });
+                return;
+            }
             final Result<List<MediaBrowserCompat.MediaItem>> result
                     = new Result<List<MediaBrowserCompat.MediaItem>>(parentId) {
                 @Override
                 void onResultSent(List<MediaBrowserCompat.MediaItem> list) {
-                    List<Parcel> parcelList = null;
-                    if (list != null) {
-                        parcelList = new ArrayList<>();
-                        for (MediaBrowserCompat.MediaItem item : list) {
-                            Parcel parcel = Parcel.obtain();
-                            item.writeToParcel(parcel, 0);
-                            parcelList.add(parcel);
-                        }
-                    }
-                    resultWrapper.sendResult(parcelList, getFlags());
+                    resultWrapper.sendResult(toParcelList(list), getFlags());
                 }
 
                 @Override
@@ -490,6 +546,7 @@ public abstract class MediaBrowserServiceCompat extends Service {
                     mServiceBinderImpl.addSubscription(data.getString(DATA_MEDIA_ITEM_ID),
                             BundleCompat.getBinder(data, DATA_CALLBACK_TOKEN),
                             data.getBundle(DATA_OPTIONS),
+                            data.getBoolean(DATA_RECEIVE_CHILDREN_CHANGES),
                             new ServiceCallbacksCompat(msg.replyTo));
                     break;
                 case CLIENT_MSG_REMOVE_SUBSCRIPTION:
@@ -556,6 +613,10 @@ public abstract class MediaBrowserServiceCompat extends Service {
         ServiceCallbacks callbacks;
         BrowserRoot root;
         HashMap<String, List<Pair<IBinder, Bundle>>> subscriptions = new HashMap<>();
+        // The tokens of the subscriptions which receive the changes of the children as ranges.
+        HashSet<IBinder> childrenChangesTokens = new HashSet<>();
+        // The number of onLoadChildren results which are not sent yet, by parent id.
+        HashMap<String, Integer> pendingLoadCounts = new HashMap<>();
 
         ConnectionRecord() {
         }
@@ -571,6 +632,189 @@ public abstract class MediaBrowserServiceCompat extends Service {
         }
     }
 
+    interface ChildrenCallback {
+        void onChildrenLoaded(List<MediaBrowserCompat.MediaItem> list, @ResultFlags int flags);
+    }
+
+    /**
+     * Caches the children sent by {@link #onLoadChildren}, and shares a load in progress with all
+     * the requests for the same parent id and options. Accessed only on the thread of
+     * {@link #mHandler}.
+     */
+    final class ChildrenCache {
+        static final int MAX_CACHED_PARENT_IDS = 32;
+
+        // The most recently used parent ids are last.
+        private final LinkedHashMap<String, List<CachedChildren>> mCachedChildren =
+                new LinkedHashMap<String, List<CachedChildren>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, List<CachedChildren>> eldest) {
+                        return size() > MAX_CACHED_PARENT_IDS;
+                    }
+                };
+        private final HashMap<String, List<PendingLoad>> mPendingLoads = new HashMap<>();
+        volatile int mLoadCount;
+        volatile int mLoadsAvoidedCount;
+
+        ChildrenCache() {
+        }
+
+        /**
+         * Sends the children of the parent id to the callback, from the cache, from a load in
+         * progress for the same options, or from a new call to {@link #onLoadChildren}.
+         */
+        void loadChildren(final String parentId, Bundle options, ConnectionRecord connection,
+                ChildrenCallback callback) {
+            if (sendCachedChildren(parentId, options, callback)) {
+                mLoadsAvoidedCount++;
+                return;
+            }
+            List<PendingLoad> pendingLoads = mPendingLoads.get(parentId);
+            if (pendingLoads == null) {
+                pendingLoads = new ArrayList<>();
+                mPendingLoads.put(parentId, pendingLoads);
+            }
+            for (PendingLoad pendingLoad : pendingLoads) {
+                if (MediaBrowserCompatUtils.areSameOptions(pendingLoad.mOptions, options)) {
+                    pendingLoad.mCallbacks.add(callback);
+                    mLoadsAvoidedCount++;
+                    return;
+                }
+            }
+            final PendingLoad pendingLoad = new PendingLoad(options);
+            pendingLoad.mCallbacks.add(callback);
+            pendingLoads.add(pendingLoad);
+            mLoadCount++;
+
+            final Result<List<MediaBrowserCompat.MediaItem>> result =
+                    new Result<List<MediaBrowserCompat.MediaItem>>(parentId) {
+                        @Override
+                        void onResultSent(final List<MediaBrowserCompat.MediaItem> list) {
+                            final int flags = getFlags();
+                            mHandler.postOrRun(new Runnable() {
+                                @Override
+                                public void run() {
+                                    onChildrenLoaded(parentId, pendingLoad, list, flags);
+                                }
+                            });
+                        }
+                    };
+
+            mCurConnection = connection;
+            if (options == null) {
+                onLoadChildren(parentId, result);
+            } else {
+                onLoadChildren(parentId, result, options);
+            }
+            mCurConnection = null;
+
+            if (!result.isDone()) {
+                throw new IllegalStateException("onLoadChildren must call detach() or sendResult()"
+                        + " before returning for id=" + parentId);
+            }
+        }
+
+        /**
+         * Forgets the children of the parent id. A load in progress is still sent to its
+         * callbacks, but is not cached.
+         */
+        void invalidate(String parentId) {
+            mCachedChildren.remove(parentId);
+            mPendingLoads.remove(parentId);
+        }
+
+        void clear() {
+            mCachedChildren.clear();
+            mPendingLoads.clear();
+        }
+
+        private boolean sendCachedChildren(String parentId, Bundle options,
+                ChildrenCallback callback) {
+            List<CachedChildren> cachedChildrenList = mCachedChildren.get(parentId);
+            if (cachedChildrenList == null) {
+                return false;
+            }
+            CachedChildren match = null;
+            for (CachedChildren cachedChildren : cachedChildrenList) {
+                if (MediaBrowserCompatUtils.areSameOptions(cachedChildren.mOptions, options)) {
+                    match = cachedChildren;
+                    break;
+                }
+            }
+            if (match == null) {
+                // The full list can be paged for any options if the service does not handle them.
+                for (CachedChildren cachedChildren : cachedChildrenList) {
+                    if (cachedChildren.mOptionsNotHandled) {
+                        match = cachedChildren;
+                        break;
+                    }
+                }
+            }
+            if (match == null) {
+                return false;
+            }
+            callback.onChildrenLoaded(match.mChildren,
+                    match.mOptionsNotHandled && options != null
+                            ? RESULT_FLAG_OPTION_NOT_HANDLED : 0);
+            return true;
+        }
+
+        void onChildrenLoaded(String parentId, PendingLoad pendingLoad,
+                List<MediaBrowserCompat.MediaItem> list, int flags) {
+            List<PendingLoad> pendingLoads = mPendingLoads.get(parentId);
+            if (pendingLoads != null && pendingLoads.remove(pendingLoad)) {
+                if (pendingLoads.isEmpty()) {
+                    mPendingLoads.remove(parentId);
+                }
+                // A null list means an error, which is not cached.
+                if (list != null) {
+                    List<CachedChildren> cachedChildrenList = mCachedChildren.get(parentId);
+                    if (cachedChildrenList == null) {
+                        cachedChildrenList = new ArrayList<>();
+                        mCachedChildren.put(parentId, cachedChildrenList);
+                    }
+                    Iterator<CachedChildren> iter = cachedChildrenList.iterator();
+                    while (iter.hasNext()) {
+                        if (MediaBrowserCompatUtils.areSameOptions(
+                                iter.next().mOptions, pendingLoad.mOptions)) {
+                            iter.remove();
+                        }
+                    }
+                    list = new ArrayList<>(list);
+                    cachedChildrenList.add(new CachedChildren(pendingLoad.mOptions, list,
+                            (flags & RESULT_FLAG_OPTION_NOT_HANDLED) != 0));
+                }
+            }
+            for (ChildrenCallback callback : pendingLoad.mCallbacks) {
+                callback.onChildrenLoaded(list, flags);
+            }
+        }
+    }
+
+    private static final class CachedChildren {
+        final Bundle mOptions;
+        final List<MediaBrowserCompat.MediaItem> mChildren;
+        // Whether the children are the full list, to which the options are not applied yet.
+        final boolean mOptionsNotHandled;
+
+        CachedChildren(Bundle options, List<MediaBrowserCompat.MediaItem> children,
+                boolean optionsNotHandled) {
+            mOptions = options;
+            mChildren = children;
+            mOptionsNotHandled = optionsNotHandled;
+        }
+    }
+
+    private static final class PendingLoad {
+        final Bundle mOptions;
+        final List<ChildrenCallback> mCallbacks = new ArrayList<>();
+
+        PendingLoad(Bundle options) {
+            mOptions = options;
+        }
+    }
+
     /**
      * Completion handler for asynchronous callback methods in {@link MediaBrowserServiceCompat}.
      * <p>
@@ -789,7 +1033,7 @@ public abstract class MediaBrowserServiceCompat extends Service {
         }
 
         public void addSubscription(final String id, final IBinder token, final Bundle options,
-                final ServiceCallbacks callbacks) {
+                final boolean receiveChildrenChanges, final ServiceCallbacks callbacks) {
             mHandler.postOrRun(new Runnable() {
                 @Override
                 public void run() {
@@ -803,7 +1047,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
                         return;
                     }
 
-                    MediaBrowserServiceCompat.this.addSubscription(id, connection, token, options);
+                    MediaBrowserServiceCompat.this.addSubscription(id, connection, token, options,
+                            receiveChildrenChanges);
                 }
             });
         }
@@ -938,6 +1183,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
         void onConnectFailed() throws RemoteException;
         void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list, Bundle options)
                 throws RemoteException;
+        void onChildrenRangeChanged(String mediaId, int changeType, int position, int itemCount,
+                List<MediaBrowserCompat.MediaItem> list) throws RemoteException;
     }
 
     private static class ServiceCallbacksCompat implements ServiceCallbacks {
@@ -984,6 +1231,21 @@ public abstract class MediaBrowserServiceCompat extends Service {
             sendRequest(SERVICE_MSG_ON_LOAD_CHILDREN, data);
         }
 
+        @Override
+        public void onChildrenRangeChanged(String mediaId, int changeType, int position,
+                int itemCount, List<MediaBrowserCompat.MediaItem> list) throws RemoteException {
+            Bundle data = new Bundle();
+            data.putString(DATA_MEDIA_ITEM_ID, mediaId);
+            data.putInt(DATA_CHANGE_TYPE, changeType);
+            data.putInt(DATA_CHANGE_POSITION, position);
+            data.putInt(DATA_CHANGE_ITEM_COUNT, itemCount);
+            if (list != null) {
+                data.putParcelableArrayList(DATA_MEDIA_ITEM_LIST,
+                        list instanceof ArrayList ? (ArrayList) list : new ArrayList<>(list));
+            }
+            sendRequest(SERVICE_MSG_ON_CHILDREN_RANGE_CHANGED, data);
+        }
+
         private void sendRequest(int what, Bundle data) throws RemoteException {
             Message msg = Message.obtain();
             msg.what = what;
@@ -1229,6 +1491,7 @@ public abstract class MediaBrowserServiceCompat extends Service {
         if (parentId == null) {
             throw new IllegalArgumentException("parentId cannot be null in notifyChildrenChanged");
         }
+        invalidateCachedChildren(parentId);
         mImpl.notifyChildrenChanged(parentId, null);
     }
 
@@ -1250,9 +1513,154 @@ public abstract class MediaBrowserServiceCompat extends Service {
         if (options == null) {
             throw new IllegalArgumentException("options cannot be null in notifyChildrenChanged");
         }
+        invalidateCachedChildren(parentId);
         mImpl.notifyChildrenChanged(parentId, options);
     }
 
+    /**
+     * Notifies all connected media browsers that children were inserted under the specified
+     * parent id.
+     * <p>
+     * The browsers subscribed without options with a
+     * {@link MediaBrowserCompat.SubscriptionCallback} which receives the changes of the children
+     * only receive the inserted items. The other browsers fetch the subscribed content again, as
+     * with {@link #notifyChildrenChanged(String)}, so {@link #onLoadChildren} must already
+     * return the children with the inserted items when this is called.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose children changed.
+     * @param position The position of the first inserted child.
+     * @param items The inserted children.
+     * @see MediaBrowserCompat.SubscriptionCallback#SubscriptionCallback(boolean)
+     */
+    public void notifyChildrenInserted(@NonNull String parentId, int position,
+            @NonNull List<MediaBrowserCompat.MediaItem> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("items cannot be null in notifyChildrenInserted");
+        }
+        notifyChildrenRangeChanged(parentId, CHANGE_TYPE_INSERTED, position, items.size(),
+                items);
+    }
+
+    /**
+     * Notifies all connected media browsers that children were removed under the specified
+     * parent id.
+     * <p>
+     * The browsers subscribed without options with a
+     * {@link MediaBrowserCompat.SubscriptionCallback} which receives the changes of the children
+     * only receive the removed range. The other browsers fetch the subscribed content again, as
+     * with {@link #notifyChildrenChanged(String)}, so {@link #onLoadChildren} must already
+     * return the children without the removed items when this is called.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose children changed.
+     * @param position The position of the first removed child.
+     * @param itemCount The number of removed children.
+     * @see MediaBrowserCompat.SubscriptionCallback#SubscriptionCallback(boolean)
+     */
+    public void notifyChildrenRemoved(@NonNull String parentId, int position, int itemCount) {
+        notifyChildrenRangeChanged(parentId, CHANGE_TYPE_REMOVED, position, itemCount, null);
+    }
+
+    /**
+     * Notifies all connected media browsers that children were updated under the specified
+     * parent id.
+     * <p>
+     * The browsers subscribed without options with a
+     * {@link MediaBrowserCompat.SubscriptionCallback} which receives the changes of the children
+     * only receive the updated items. The other browsers fetch the subscribed content again, as
+     * with {@link #notifyChildrenChanged(String)}, so {@link #onLoadChildren} must already
+     * return the updated children when this is called.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose children changed.
+     * @param position The position of the first updated child.
+     * @param items The updated children, which replace the children from {@code position}.
+     * @see MediaBrowserCompat.SubscriptionCallback#SubscriptionCallback(boolean)
+     */
+    public void notifyChildrenUpdated(@NonNull String parentId, int position,
+            @NonNull List<MediaBrowserCompat.MediaItem> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("items cannot be null in notifyChildrenUpdated");
+        }
+        notifyChildrenRangeChanged(parentId, CHANGE_TYPE_UPDATED, position, items.size(),
+                items);
+    }
+
+    private void notifyChildrenRangeChanged(String parentId, int changeType, int position,
+            int itemCount, List<MediaBrowserCompat.MediaItem> items) {
+        if (parentId == null) {
+            throw new IllegalArgumentException("parentId cannot be null");
+        }
+        if (position < 0 || itemCount < 0) {
+            throw new IllegalArgumentException("Invalid range: position=" + position
+                    + ", itemCount=" + itemCount);
+        }
+        invalidateCachedChildren(parentId);
+        mImpl.notifyChildrenRangeChanged(parentId, changeType, position, itemCount,
+                items == null ? null : new ArrayList<>(items));
+    }
+
+    private void invalidateCachedChildren(final String parentId) {
+        // Runs before the browsers are notified, which also happens on the thread of mHandler.
+        mHandler.postOrRun(new Runnable() {
+            @Override
+            public void run() {
+                if (mChildrenCache != null) {
+                    mChildrenCache.invalidate(parentId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets whether the children sent by {@link #onLoadChildren} are cached and shared between the
+     * connected media browsers. The cache is disabled by default.
+     * <p>
+     * When enabled, the children of a parent id are loaded once and sent to all the browsers
+     * subscribed to it, including the ones which subscribed while the load was in progress. If
+     * {@link #onLoadChildren(String, Result, Bundle)} is not overridden, the pages requested with
+     * {@link MediaBrowserCompat#EXTRA_PAGE} and {@link MediaBrowserCompat#EXTRA_PAGE_SIZE} are
+     * all served from the same list. The cached children of a parent id are discarded by
+     * {@link #notifyChildrenChanged}.
+     * </p><p>
+     * Only enable the cache if the children do not depend on the browser which requested them,
+     * for example through {@link #getBrowserRootHints}. This should be called on the main thread,
+     * typically in {@link #onCreate}.
+     * </p>
+     *
+     * @param enabled Whether to cache the children.
+     * @see #getChildrenCacheStats
+     */
+    public void setChildrenCacheEnabled(boolean enabled) {
+        if (enabled && mChildrenCache == null) {
+            mChildrenCache = new ChildrenCache();
+        } else if (!enabled && mChildrenCache != null) {
+            mChildrenCache.clear();
+            mChildrenCache = null;
+        }
+    }
+
+    /**
+     * Returns whether the children sent by {@link #onLoadChildren} are cached.
+     *
+     * @see #setChildrenCacheEnabled
+     */
+    public boolean isChildrenCacheEnabled() {
+        return mChildrenCache != null;
+    }
+
+    /**
+     * Returns the statistics of the children cache, or {@code null} if it is not enabled.
+     *
+     * @see #setChildrenCacheEnabled
+     */
+    public @Nullable ChildrenCacheStats getChildrenCacheStats() {
+        final ChildrenCache cache = mChildrenCache;
+        return cache == null ? null
+                : new ChildrenCacheStats(cache.mLoadCount, cache.mLoadsAvoidedCount);
+    }
+
     /**
      * Return whether the given package is one of the ones that is owned by the uid.
      */
@@ -1275,12 +1683,17 @@ public abstract class MediaBrowserServiceCompat extends Service {
      * Save the subscription and if it is a new subscription send the results.
      */
     void addSubscription(String id, ConnectionRecord connection, IBinder token,
-            Bundle options) {
+            Bundle options, boolean receiveChildrenChanges) {
         // Save the subscription
         List<Pair<IBinder, Bundle>> callbackList = connection.subscriptions.get(id);
         if (callbackList == null) {
             callbackList = new ArrayList<>();
         }
+        if (receiveChildrenChanges) {
+            connection.childrenChangesTokens.add(token);
+        } else {
+            connection.childrenChangesTokens.remove(token);
+        }
         for (Pair<IBinder, Bundle> callback : callbackList) {
             if (token == callback.first
                     && MediaBrowserCompatUtils.areSameOptions(options, callback.second)) {
@@ -1298,7 +1711,14 @@ public abstract class MediaBrowserServiceCompat extends Service {
      */
     boolean removeSubscription(String id, ConnectionRecord connection, IBinder token) {
         if (token == null) {
-            return connection.subscriptions.remove(id) != null;
+            List<Pair<IBinder, Bundle>> callbackList = connection.subscriptions.remove(id);
+            if (callbackList == null) {
+                return false;
+            }
+            for (Pair<IBinder, Bundle> callback : callbackList) {
+                removeChildrenChangesToken(connection, callback.first);
+            }
+            return true;
         }
         boolean removed = false;
         List<Pair<IBinder, Bundle>> callbackList = connection.subscriptions.get(id);
@@ -1314,9 +1734,30 @@ public abstract class MediaBrowserServiceCompat extends Service {
                 connection.subscriptions.remove(id);
             }
         }
+        if (removed) {
+            removeChildrenChangesToken(connection, token);
+        }
         return removed;
     }
 
+    /**
+     * Forgets that a subscription token receives the changes of the children, unless it is still
+     * subscribed to another parent.
+     */
+    private void removeChildrenChangesToken(ConnectionRecord connection, IBinder token) {
+        if (!connection.childrenChangesTokens.contains(token)) {
+            return;
+        }
+        for (List<Pair<IBinder, Bundle>> callbackList : connection.subscriptions.values()) {
+            for (Pair<IBinder, Bundle> callback : callbackList) {
+                if (callback.first == token) {
+                    return;
+                }
+            }
+        }
+        connection.childrenChangesTokens.remove(token);
+    }
+
     /**
      * Call onLoadChildren and then send the results back to the connection.
      * <p>
@@ -1324,28 +1765,25 @@ public abstract class MediaBrowserServiceCompat extends Service {
      */
     void performLoadChildren(final String parentId, final ConnectionRecord connection,
             final Bundle options) {
+        Integer pendingLoadCount = connection.pendingLoadCounts.get(parentId);
+        connection.pendingLoadCounts.put(parentId,
+                pendingLoadCount == null ? 1 : pendingLoadCount + 1);
+
+        if (mChildrenCache != null) {
+            mChildrenCache.loadChildren(parentId, options, connection, new ChildrenCallback() {
+                @Override
+                public void onChildrenLoaded(List<MediaBrowserCompat.MediaItem> list, int flags) {
+                    sendChildren(parentId, connection, options, list, flags);
+                }
+            });
+            return;
+        }
+
         final Result<List<MediaBrowserCompat.MediaItem>> result
                 = new Result<List<MediaBrowserCompat.MediaItem>>(parentId) {
             @Override
             void onResultSent(List<MediaBrowserCompat.MediaItem> list) {
-                if (mConnections.get(connection.callbacks.asBinder()) != connection) {
-                    if (DEBUG) {
-                        Log.d(TAG, "Not sending onLoadChildren result for connection that has"
-                                + " been disconnected. pkg=" + connection.pkg + " id=" + parentId);
-                    }
-                    return;
-                }
-
-                List<MediaBrowserCompat.MediaItem> filteredList =
-                        (getFlags() & RESULT_FLAG_OPTION_NOT_HANDLED) != 0
-                                ? applyOptions(list, options) : list;
-                try {
-                    connection.callbacks.onLoadChildren(parentId, filteredList, options);
-                } catch (RemoteException ex) {
-                    // The other side is in the process of crashing.
-                    Log.w(TAG, "Calling onLoadChildren() failed for id=" + parentId
-                            + " package=" + connection.pkg);
-                }
+                sendChildren(parentId, connection, options, list, getFlags());
             }
         };
 
@@ -1363,6 +1801,87 @@ public abstract class MediaBrowserServiceCompat extends Service {
         }
     }
 
+    /**
+     * Sends the children loaded by {@link #onLoadChildren} to the connection, if it is still
+     * connected.
+     */
+    void sendChildren(final String parentId, final ConnectionRecord connection, Bundle options,
+            List<MediaBrowserCompat.MediaItem> list, @ResultFlags int flags) {
+        // The result may be sent from any thread, but the count is only accessed on the thread
+        // of mHandler. Until it is decremented, the changes of the children are sent as complete
+        // lists, which is always correct.
+        mHandler.postOrRun(new Runnable() {
+            @Override
+            public void run() {
+                Integer pendingLoadCount = connection.pendingLoadCounts.get(parentId);
+                if (pendingLoadCount == null || pendingLoadCount <= 1) {
+                    connection.pendingLoadCounts.remove(parentId);
+                } else {
+                    connection.pendingLoadCounts.put(parentId, pendingLoadCount - 1);
+                }
+            }
+        });
+
+        if (mConnections.get(connection.callbacks.asBinder()) != connection) {
+            if (DEBUG) {
+                Log.d(TAG, "Not sending onLoadChildren result for connection that has"
+                        + " been disconnected. pkg=" + connection.pkg + " id=" + parentId);
+            }
+            return;
+        }
+
+        List<MediaBrowserCompat.MediaItem> filteredList =
+                (flags & RESULT_FLAG_OPTION_NOT_HANDLED) != 0
+                        ? applyOptions(list, options) : list;
+        try {
+            connection.callbacks.onLoadChildren(parentId, filteredList, options);
+        } catch (RemoteException ex) {
+            // The other side is in the process of crashing.
+            Log.w(TAG, "Calling onLoadChildren() failed for id=" + parentId
+                    + " package=" + connection.pkg);
+        }
+    }
+
+    /**
+     * Sends a change of the children to the connections which can apply it, and sends the
+     * children again to the other ones. Called on the thread of {@link #mHandler}.
+     */
+    void performNotifyChildrenRangeChanged(String parentId, int changeType, int position,
+            int itemCount, List<MediaBrowserCompat.MediaItem> items) {
+        for (ConnectionRecord connection : new ArrayList<>(mConnections.values())) {
+            List<Pair<IBinder, Bundle>> callbackList = connection.subscriptions.get(parentId);
+            if (callbackList == null) {
+                continue;
+            }
+            // A change is sent at most once per connection, since the browser applies each
+            // change it receives. It can only be applied to the children without options, and if
+            // no result sent later could already contain it.
+            boolean canSendChange = !connection.pendingLoadCounts.containsKey(parentId);
+            for (Pair<IBinder, Bundle> callback : callbackList) {
+                if (callback.second == null
+                        && !connection.childrenChangesTokens.contains(callback.first)) {
+                    canSendChange = false;
+                }
+            }
+            boolean changeSent = false;
+            for (Pair<IBinder, Bundle> callback : new ArrayList<>(callbackList)) {
+                if (callback.second != null || !canSendChange) {
+                    performLoadChildren(parentId, connection, callback.second);
+                } else if (!changeSent) {
+                    changeSent = true;
+                    try {
+                        connection.callbacks.onChildrenRangeChanged(
+                                parentId, changeType, position, itemCount, items);
+                    } catch (RemoteException ex) {
+                        // The other side is in the process of crashing.
+                        Log.w(TAG, "Calling onChildrenRangeChanged() failed for id=" + parentId
+                                + " package=" + connection.pkg);
+                    }
+                }
+            }
+        }
+    }
+
     List<MediaBrowserCompat.MediaItem> applyOptions(List<MediaBrowserCompat.MediaItem> list,
             final Bundle options) {
         if (list == null) {
@@ -1384,6 +1903,19 @@ public abstract class MediaBrowserServiceCompat extends Service {
         return list.subList(fromIndex, toIndex);
     }
 
+    static List<Parcel> toParcelList(List<MediaBrowserCompat.MediaItem> list) {
+        if (list == null) {
+            return null;
+        }
+        List<Parcel> parcelList = new ArrayList<>();
+        for (MediaBrowserCompat.MediaItem item : list) {
+            Parcel parcel = Parcel.obtain();
+            item.writeToParcel(parcel, 0);
+            parcelList.add(parcel);
+        }
+        return parcelList;
+    }
+
     void performLoadItem(String itemId, ConnectionRecord connection,
             final ResultReceiver receiver) {
         final Result<MediaBrowserCompat.MediaItem> result =
@@ -1468,6 +2000,43 @@ public abstract class MediaBrowserServiceCompat extends Service {
         }
     }
 
+    /**
+     * Statistics of the children cache of a {@link MediaBrowserServiceCompat}.
+     *
+     * @see MediaBrowserServiceCompat#setChildrenCacheEnabled
+     */
+    public static final class ChildrenCacheStats {
+        private final int mLoadCount;
+        private final int mLoadsAvoidedCount;
+
+        ChildrenCacheStats(int loadCount, int loadsAvoidedCount) {
+            mLoadCount = loadCount;
+            mLoadsAvoidedCount = loadsAvoidedCount;
+        }
+
+        /**
+         * Returns the number of times {@link MediaBrowserServiceCompat#onLoadChildren} was called
+         * since the cache was enabled.
+         */
+        public int getLoadCount() {
+            return mLoadCount;
+        }
+
+        /**
+         * Returns the number of requests for children which were served from the cache or from a
+         * load in progress, instead of calling {@link MediaBrowserServiceCompat#onLoadChildren}.
+         */
+        public int getLoadsAvoidedCount() {
+            return mLoadsAvoidedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "ChildrenCacheStats{loads=" + mLoadCount + ", loadsAvoided="
+                    + mLoadsAvoidedCount + "}";
+        }
+    }
+
     /**
      * Contains information that the browser service needs to send to the client
      * when first connected.
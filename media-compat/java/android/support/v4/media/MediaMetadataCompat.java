@@ -27,12 +27,16 @@ import android.support.annotation.RestrictTo;
 import android.support.annotation.StringDef;
 import android.support.v4.media.session.MediaControllerCompat.TransportControls;
 import android.support.v4.util.ArrayMap;
+import android.support.v4.util.LruCache;
+import android.support.v4.util.Pair;
 import android.text.TextUtils;
 import android.util.Log;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Contains metadata about an item, such as the title, artist, etc.
@@ -359,7 +363,31 @@ public final class MediaMetadataCompat implements Parcelable {
             METADATA_KEY_ALBUM_ART_URI
     };
 
+    // The maximum total size of the bitmaps kept for the URIs which replaced them.
+    static final int MAX_URI_BITMAP_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The bitmaps removed from metadata built with {@link Builder#setPreferBitmapUris}, keyed by
+     * the URI which replaced them. Shared by all the metadata of this process, so that copies
+     * parceled within the process still find them.
+     */
+    static final LruCache<String, Bitmap> sUriBitmapCache =
+            new LruCache<String, Bitmap>(MAX_URI_BITMAP_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+
+    /**
+     * The scaled down copies of the bitmaps with the generation id of the original bitmap, so
+     * that the same artwork is not scaled again when the metadata is updated. Guarded by itself.
+     */
+    static final Map<Bitmap, Pair<Integer, Bitmap>> sScaledBitmaps = new WeakHashMap<>();
+
     final Bundle mBundle;
+    // The bitmaps left out of mBundle for their URIs, or null. Not parceled.
+    Bundle mUriBitmaps;
     private Object mMetadataObj;
     private MediaDescriptionCompat mDescription;
 
@@ -459,6 +487,24 @@ public final class MediaMetadataCompat implements Parcelable {
             // ignore, value was not a bitmap
             Log.w(TAG, "Failed to retrieve a key as Bitmap.", e);
         }
+        if (bmp == null && !mBundle.containsKey(key)) {
+            // The bitmap may have been replaced by its URI in this process.
+            if (mUriBitmaps != null) {
+                bmp = mUriBitmaps.getParcelable(key);
+                if (bmp != null) {
+                    return bmp;
+                }
+            }
+            for (int i = 0; i < PREFERRED_BITMAP_ORDER.length; i++) {
+                if (PREFERRED_BITMAP_ORDER[i].equals(key)) {
+                    String uri = getString(PREFERRED_URI_ORDER[i]);
+                    if (uri != null) {
+                        bmp = sUriBitmapCache.get(uri);
+                    }
+                    break;
+                }
+            }
+        }
         return bmp;
     }
 
@@ -587,6 +633,25 @@ public final class MediaMetadataCompat implements Parcelable {
         return mBundle;
     }
 
+    /**
+     * Gets the bundle of the metadata with the bitmaps left out by
+     * {@link Builder#setPreferBitmapUris} put back. The framework session and the remote control
+     * client are given this bundle, as the lock screen and the media notifications do not load
+     * the URIs.
+     *
+     * @return The Bundle backing this metadata, or a copy of it with the bitmaps.
+     * @hide
+     */
+    @RestrictTo(LIBRARY_GROUP)
+    public Bundle getBundleWithBitmaps() {
+        if (mUriBitmaps == null) {
+            return mBundle;
+        }
+        Bundle bundle = new Bundle(mBundle);
+        bundle.putAll(mUriBitmaps);
+        return bundle;
+    }
+
     /**
      * Creates an instance from a framework {@link android.media.MediaMetadata}
      * object.
@@ -627,7 +692,9 @@ public final class MediaMetadataCompat implements Parcelable {
     public Object getMediaMetadata() {
         if (mMetadataObj == null && Build.VERSION.SDK_INT >= 21) {
             Parcel p = Parcel.obtain();
-            writeToParcel(p, 0);
+            // The framework session sends the same metadata to all the controllers, so the bitmaps
+            // are put back for the lock screen and the notifications. The session scales them.
+            p.writeBundle(getBundleWithBitmaps());
             p.setDataPosition(0);
             mMetadataObj = MediaMetadataCompatApi21.createFromParcel(p);
             p.recycle();
@@ -654,6 +721,8 @@ public final class MediaMetadataCompat implements Parcelable {
      */
     public static final class Builder {
         private final Bundle mBundle;
+        private int mMaxBitmapSize;
+        private boolean mPreferBitmapUris;
 
         /**
          * Create an empty Builder. Any field that should be included in the
@@ -667,11 +736,18 @@ public final class MediaMetadataCompat implements Parcelable {
          * Create a Builder using a {@link MediaMetadataCompat} instance to set the
          * initial values. All fields in the source metadata will be included in
          * the new metadata. Fields can be overwritten by adding the same key.
+         * <p>
+         * The bitmaps which the source metadata left out for their URIs are included, and left
+         * out of the new metadata again, as if {@link #setPreferBitmapUris} was called.
          *
          * @param source
          */
         public Builder(MediaMetadataCompat source) {
             mBundle = new Bundle(source.mBundle);
+            if (source.mUriBitmaps != null) {
+                mBundle.putAll(source.mUriBitmaps);
+                mPreferBitmapUris = true;
+            }
         }
 
         /**
@@ -687,15 +763,57 @@ public final class MediaMetadataCompat implements Parcelable {
         @RestrictTo(LIBRARY_GROUP)
         public Builder(MediaMetadataCompat source, int maxBitmapSize) {
             this(source);
-            for (String key : mBundle.keySet()) {
-                Object value = mBundle.get(key);
-                if (value instanceof Bitmap) {
-                    Bitmap bmp = (Bitmap) value;
-                    if (bmp.getHeight() > maxBitmapSize || bmp.getWidth() > maxBitmapSize) {
-                        putBitmap(key, scaleBitmap(bmp, maxBitmapSize));
-                    }
-                }
+            scaleBitmaps(mBundle, maxBitmapSize);
+        }
+
+        /**
+         * Sets the maximum width and height of the bitmaps in the built metadata. The larger
+         * bitmaps are replaced with a copy scaled down to fit, which reduces the size of the
+         * metadata sent to the controllers. The copies are reused as long as the original
+         * bitmaps are, so that updating the metadata with the same artwork does not scale it
+         * again.
+         *
+         * @param maxBitmapSize The maximum height/width of the bitmaps, or 0 to keep them
+         *            unchanged, which is the default.
+         * @return The Builder to allow chaining
+         */
+        public Builder setMaxBitmapSize(int maxBitmapSize) {
+            if (maxBitmapSize < 0) {
+                throw new IllegalArgumentException("maxBitmapSize can not be negative");
             }
+            mMaxBitmapSize = maxBitmapSize;
+            return this;
+        }
+
+        /**
+         * Sets whether a bitmap is left out of the built metadata when the URI of the same image
+         * is set, so that only the URI is parceled with it:
+         * <ul>
+         * <li>{@link #METADATA_KEY_ART} with {@link #METADATA_KEY_ART_URI}</li>
+         * <li>{@link #METADATA_KEY_ALBUM_ART} with {@link #METADATA_KEY_ALBUM_ART_URI}</li>
+         * <li>{@link #METADATA_KEY_DISPLAY_ICON} with {@link #METADATA_KEY_DISPLAY_ICON_URI}</li>
+         * </ul>
+         * The bitmaps left out are kept with the built metadata, so that
+         * {@link MediaMetadataCompat#getBitmap} still returns them, and in a bounded cache of this
+         * process for the copies parceled within it.
+         * <p>
+         * Only the metadata sent by the compat session to the compat controllers leaves the
+         * bitmaps out, which is the case below {@link android.os.Build.VERSION_CODES#LOLLIPOP}.
+         * From {@link android.os.Build.VERSION_CODES#LOLLIPOP}, all the controllers, including
+         * those of other apps, read the metadata through the framework session, which has to
+         * carry scaled down copies of the bitmaps for the lock screen and the media
+         * notifications, so leaving them out saves nothing there. Below
+         * {@link android.os.Build.VERSION_CODES#LOLLIPOP}, the remote control client is still
+         * given scaled down copies, and the compat controllers should load the image from the URI.
+         * </p>
+         *
+         * @param preferBitmapUris Whether to leave out the bitmaps which have a URI. The default is
+         *            false.
+         * @return The Builder to allow chaining
+         */
+        public Builder setPreferBitmapUris(boolean preferBitmapUris) {
+            mPreferBitmapUris = preferBitmapUris;
+            return this;
         }
 
         /**
@@ -867,17 +985,67 @@ public final class MediaMetadataCompat implements Parcelable {
          * @return The new MediaMetadata instance
          */
         public MediaMetadataCompat build() {
-            return new MediaMetadataCompat(mBundle);
+            if (mMaxBitmapSize == 0 && !mPreferBitmapUris) {
+                return new MediaMetadataCompat(mBundle);
+            }
+            // Keep the bitmaps of the builder unchanged, in case it is used again.
+            Bundle bundle = new Bundle(mBundle);
+            if (mMaxBitmapSize > 0) {
+                scaleBitmaps(bundle, mMaxBitmapSize);
+            }
+            Bundle uriBitmaps = null;
+            if (mPreferBitmapUris) {
+                for (int i = 0; i < PREFERRED_BITMAP_ORDER.length; i++) {
+                    Object bmp = bundle.get(PREFERRED_BITMAP_ORDER[i]);
+                    CharSequence uri = bundle.getCharSequence(PREFERRED_URI_ORDER[i]);
+                    if (bmp instanceof Bitmap && !TextUtils.isEmpty(uri)) {
+                        if (uriBitmaps == null) {
+                            uriBitmaps = new Bundle();
+                        }
+                        uriBitmaps.putParcelable(PREFERRED_BITMAP_ORDER[i], (Bitmap) bmp);
+                        sUriBitmapCache.put(uri.toString(), (Bitmap) bmp);
+                        bundle.remove(PREFERRED_BITMAP_ORDER[i]);
+                    }
+                }
+            }
+            MediaMetadataCompat metadata = new MediaMetadataCompat(bundle);
+            metadata.mUriBitmaps = uriBitmaps;
+            return metadata;
         }
 
-        private Bitmap scaleBitmap(Bitmap bmp, int maxSize) {
+        private static void scaleBitmaps(Bundle bundle, int maxSize) {
+            for (String key : bundle.keySet()) {
+                Object value = bundle.get(key);
+                if (value instanceof Bitmap) {
+                    Bitmap bmp = (Bitmap) value;
+                    if (bmp.getHeight() > maxSize || bmp.getWidth() > maxSize) {
+                        bundle.putParcelable(key, scaleBitmap(bmp, maxSize));
+                    }
+                }
+            }
+        }
+
+        private static Bitmap scaleBitmap(Bitmap bmp, int maxSize) {
             float maxSizeF = maxSize;
             float widthScale = maxSizeF / bmp.getWidth();
             float heightScale = maxSizeF / bmp.getHeight();
             float scale = Math.min(widthScale, heightScale);
             int height = (int) (bmp.getHeight() * scale);
             int width = (int) (bmp.getWidth() * scale);
-            return Bitmap.createScaledBitmap(bmp, width, height, true);
+            final int generationId = bmp.getGenerationId();
+            synchronized (sScaledBitmaps) {
+                Pair<Integer, Bitmap> scaled = sScaledBitmaps.get(bmp);
+                if (scaled != null && scaled.first == generationId
+                        && scaled.second.getWidth() == width && scaled.second.getHeight() == height
+                        && !scaled.second.isRecycled()) {
+                    return scaled.second;
+                }
+            }
+            Bitmap scaled = Bitmap.createScaledBitmap(bmp, width, height, true);
+            synchronized (sScaledBitmaps) {
+                sScaledBitmaps.put(bmp, new Pair<>(generationId, scaled));
+            }
+            return scaled;
         }
     }
 
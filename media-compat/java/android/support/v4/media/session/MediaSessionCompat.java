@@ -62,6 +62,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -102,6 +103,7 @@ public class MediaSessionCompat {
     private final MediaSessionImpl mImpl;
     private final MediaControllerCompat mController;
     private final ArrayList<OnActiveChangeListener> mActiveListeners = new ArrayList<>();
+    private PlaybackStateCoalescer mPlaybackStateCoalescer;
 
     /**
      * @hide
@@ -568,6 +570,10 @@ public class MediaSessionCompat {
      * but it must be released if your activity or service is being destroyed.
      */
     public void release() {
+        if (mPlaybackStateCoalescer != null) {
+            mPlaybackStateCoalescer.cancel();
+            mPlaybackStateCoalescer = null;
+        }
         mImpl.release();
     }
 
@@ -605,7 +611,57 @@ public class MediaSessionCompat {
      * @param state The current state of playback
      */
     public void setPlaybackState(PlaybackStateCompat state) {
-        mImpl.setPlaybackState(state);
+        final PlaybackStateCoalescer coalescer = mPlaybackStateCoalescer;
+        if (coalescer != null) {
+            coalescer.setPlaybackState(state);
+        } else {
+            mImpl.setPlaybackState(state);
+        }
+    }
+
+    /**
+     * Sets the minimum interval between two playback states sent to the controllers when only
+     * the positions have changed. Coalescing is disabled by default.
+     * <p>
+     * When enabled, a playback state passed to {@link #setPlaybackState} is sent immediately if
+     * its state, actions, playback speed, error, active queue item, custom actions or extras
+     * differ from the last state sent, or if its position is not the one extrapolated from the
+     * last state sent. Otherwise, for example when only the position advances as expected or the
+     * buffered position changes, it is sent at most once per {@code minIntervalMs}, and only the
+     * latest of such states is sent. Controllers are expected to extrapolate the position from
+     * {@link PlaybackStateCompat#getLastPositionUpdateTime()} and
+     * {@link PlaybackStateCompat#getPlaybackSpeed()} in between.
+     * </p><p>
+     * The delayed states are sent on the thread which called {@link #setPlaybackState}, which
+     * must have a {@link Looper}, or on the main thread otherwise.
+     * </p>
+     *
+     * @param minIntervalMs The minimum interval in milliseconds, or 0 to send every state
+     *            immediately.
+     * @see #getPlaybackStateDispatchStats
+     */
+    public void setPlaybackStateCoalescingInterval(long minIntervalMs) {
+        if (minIntervalMs < 0) {
+            throw new IllegalArgumentException("minIntervalMs can not be negative");
+        }
+        if (mPlaybackStateCoalescer != null) {
+            // Send the pending state, if any, before changing the interval.
+            mPlaybackStateCoalescer.flush();
+        }
+        mPlaybackStateCoalescer =
+                minIntervalMs == 0 ? null : new PlaybackStateCoalescer(mImpl, minIntervalMs);
+    }
+
+    /**
+     * Returns the numbers of playback states sent to the controllers and coalesced since
+     * coalescing was enabled, or {@code null} if it is not enabled.
+     *
+     * @see #setPlaybackStateCoalescingInterval
+     */
+    public PlaybackStateDispatchStats getPlaybackStateDispatchStats() {
+        final PlaybackStateCoalescer coalescer = mPlaybackStateCoalescer;
+        return coalescer == null ? null : new PlaybackStateDispatchStats(
+                coalescer.mDispatchedCount, coalescer.mCoalescedCount);
     }
 
     /**
@@ -1730,6 +1786,224 @@ public class MediaSessionCompat {
         void onActiveChanged();
     }
 
+    /**
+     * The numbers of playback states sent to the controllers and coalesced by a
+     * {@link MediaSessionCompat}.
+     *
+     * @see MediaSessionCompat#setPlaybackStateCoalescingInterval
+     */
+    public static final class PlaybackStateDispatchStats {
+        private final int mDispatchedCount;
+        private final int mCoalescedCount;
+
+        PlaybackStateDispatchStats(int dispatchedCount, int coalescedCount) {
+            mDispatchedCount = dispatchedCount;
+            mCoalescedCount = coalescedCount;
+        }
+
+        /**
+         * Returns the number of playback states sent to the controllers.
+         */
+        public int getDispatchedCount() {
+            return mDispatchedCount;
+        }
+
+        /**
+         * Returns the number of playback states which were not sent because a later state
+         * replaced them.
+         */
+        public int getCoalescedCount() {
+            return mCoalescedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "PlaybackStateDispatchStats{dispatched=" + mDispatchedCount
+                    + ", coalesced=" + mCoalescedCount + "}";
+        }
+    }
+
+    /**
+     * Limits the rate of the playback states sent to the controllers when only the positions
+     * change. See {@link MediaSessionCompat#setPlaybackStateCoalescingInterval}.
+     */
+    static final class PlaybackStateCoalescer implements Runnable {
+        // The difference from the extrapolated position above which a position is a seek.
+        static final long POSITION_DISCONTINUITY_THRESHOLD_MS = 500;
+
+        private final MediaSessionImpl mImpl;
+        private final long mMinIntervalMs;
+        private final Object mLock = new Object();
+        private Handler mHandler;
+        private boolean mHasDispatched;
+        private PlaybackStateCompat mLastDispatchedState;
+        private long mLastDispatchTimeMs;
+        private boolean mHasPendingState;
+        private PlaybackStateCompat mPendingState;
+        volatile int mDispatchedCount;
+        volatile int mCoalescedCount;
+
+        PlaybackStateCoalescer(MediaSessionImpl impl, long minIntervalMs) {
+            mImpl = impl;
+            mMinIntervalMs = minIntervalMs;
+        }
+
+        void setPlaybackState(PlaybackStateCompat state) {
+            synchronized (mLock) {
+                final long now = SystemClock.elapsedRealtime();
+                if (mHasDispatched && now - mLastDispatchTimeMs < mMinIntervalMs
+                        && !isTransition(mLastDispatchedState, state)) {
+                    if (mHasPendingState) {
+                        mCoalescedCount++;
+                    } else {
+                        if (mHandler == null) {
+                            Looper looper = Looper.myLooper();
+                            mHandler = new Handler(
+                                    looper == null ? Looper.getMainLooper() : looper);
+                        }
+                        mHandler.postDelayed(this, mLastDispatchTimeMs + mMinIntervalMs - now);
+                    }
+                    mHasPendingState = true;
+                    mPendingState = state;
+                    return;
+                }
+                if (mHasPendingState) {
+                    // The pending state is replaced by this one, which is sent now.
+                    mHandler.removeCallbacks(this);
+                    mHasPendingState = false;
+                    mPendingState = null;
+                    mCoalescedCount++;
+                }
+                onDispatch(state, now);
+                // Sent under the lock, so that a delayed flush of an older state can not be sent
+                // after this one.
+                mImpl.setPlaybackState(state);
+            }
+        }
+
+        @Override
+        public void run() {
+            flush();
+        }
+
+        /**
+         * Sends the pending state, if any.
+         */
+        void flush() {
+            synchronized (mLock) {
+                if (!mHasPendingState) {
+                    return;
+                }
+                if (mHandler != null) {
+                    mHandler.removeCallbacks(this);
+                }
+                final PlaybackStateCompat state = mPendingState;
+                mHasPendingState = false;
+                mPendingState = null;
+                onDispatch(state, SystemClock.elapsedRealtime());
+                mImpl.setPlaybackState(state);
+            }
+        }
+
+        void cancel() {
+            synchronized (mLock) {
+                if (mHandler != null) {
+                    mHandler.removeCallbacks(this);
+                }
+                mHasPendingState = false;
+                mPendingState = null;
+            }
+        }
+
+        private void onDispatch(PlaybackStateCompat state, long now) {
+            mHasDispatched = true;
+            mLastDispatchedState = state;
+            mLastDispatchTimeMs = now;
+            mDispatchedCount++;
+        }
+
+        /**
+         * @return {@code true} if the controllers can not extrapolate {@code state} from
+         *         {@code last}.
+         */
+        static boolean isTransition(PlaybackStateCompat last, PlaybackStateCompat state) {
+            if (last == null || state == null) {
+                return last != state;
+            }
+            if (last.getState() != state.getState()
+                    || last.getActions() != state.getActions()
+                    || last.getPlaybackSpeed() != state.getPlaybackSpeed()
+                    || last.getErrorCode() != state.getErrorCode()
+                    || !TextUtils.equals(last.getErrorMessage(), state.getErrorMessage())
+                    || last.getActiveQueueItemId() != state.getActiveQueueItemId()
+                    || !areExtrasEqual(last.getExtras(), state.getExtras())) {
+                return true;
+            }
+            List<PlaybackStateCompat.CustomAction> lastActions = last.getCustomActions();
+            List<PlaybackStateCompat.CustomAction> actions = state.getCustomActions();
+            if (lastActions.size() != actions.size()) {
+                return true;
+            }
+            for (int i = 0; i < actions.size(); i++) {
+                if (!areCustomActionsEqual(lastActions.get(i), actions.get(i))) {
+                    return true;
+                }
+            }
+            long expectedPosition = last.getPosition();
+            switch (last.getState()) {
+                case PlaybackStateCompat.STATE_PLAYING:
+                case PlaybackStateCompat.STATE_FAST_FORWARDING:
+                case PlaybackStateCompat.STATE_REWINDING:
+                    expectedPosition += (long) (last.getPlaybackSpeed()
+                            * (state.getLastPositionUpdateTime()
+                            - last.getLastPositionUpdateTime()));
+                    break;
+            }
+            return Math.abs(state.getPosition() - expectedPosition)
+                    > POSITION_DISCONTINUITY_THRESHOLD_MS;
+        }
+
+        private static boolean areCustomActionsEqual(PlaybackStateCompat.CustomAction a,
+                PlaybackStateCompat.CustomAction b) {
+            if (a == b) {
+                return true;
+            }
+            return TextUtils.equals(a.getAction(), b.getAction())
+                    && TextUtils.equals(a.getName(), b.getName())
+                    && a.getIcon() == b.getIcon()
+                    && areExtrasEqual(a.getExtras(), b.getExtras());
+        }
+
+        /**
+         * @return {@code true} if both extras hold equal values under the same keys. Nested
+         *         bundles are compared by content, and a {@code null} bundle equals an empty one.
+         */
+        static boolean areExtrasEqual(Bundle a, Bundle b) {
+            if (a == b) {
+                return true;
+            }
+            if (a == null || b == null) {
+                return (a == null ? b : a).isEmpty();
+            }
+            if (a.size() != b.size() || !a.keySet().equals(b.keySet())) {
+                return false;
+            }
+            for (String key : a.keySet()) {
+                Object value = a.get(key);
+                Object otherValue = b.get(key);
+                if (value instanceof Bundle && otherValue instanceof Bundle) {
+                    if (!areExtrasEqual((Bundle) value, (Bundle) otherValue)) {
+                        return false;
+                    }
+                } else if (!Arrays.deepEquals(new Object[] {value}, new Object[] {otherValue})) {
+                    // deepEquals() also compares arrays, including primitive ones, by content.
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     interface MediaSessionImpl {
         void setCallback(Callback callback, Handler handler);
         void setFlags(@SessionFlags int flags);
@@ -2067,7 +2341,7 @@ public class MediaSessionCompat {
                 return;
             }
             RemoteControlClient.MetadataEditor editor = buildRccMetadata(
-                    metadata == null ? null : metadata.getBundle());
+                    metadata == null ? null : metadata.getBundleWithBitmaps());
             editor.apply();
         }
 
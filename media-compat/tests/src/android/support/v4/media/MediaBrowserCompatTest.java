@@ -26,6 +26,7 @@ import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 import android.content.ComponentName;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.test.filters.LargeTest;
@@ -42,6 +43,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -332,6 +334,80 @@ public class MediaBrowserCompatTest {
         assertEquals(0, mSubscriptionCallback.mChildrenLoadedCount);
     }
 
+    @Test
+    @SmallTest
+    public void testSubscribeWithChildrenChanges() throws Exception {
+        createMediaBrowser(TEST_BROWSER_SERVICE);
+        connectMediaBrowserService();
+        final StubSubscriptionCallback subscriptionCallback = new StubSubscriptionCallback(true);
+        final List<MediaItem> items = Arrays.asList(new MediaItem(
+                new MediaDescriptionCompat.Builder().setMediaId("inserted_media_id").build(),
+                MediaItem.FLAG_PLAYABLE));
+
+        synchronized (subscriptionCallback.mWaitLock) {
+            mMediaBrowser.subscribe(
+                    StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, subscriptionCallback);
+            subscriptionCallback.mWaitLock.wait(TIME_OUT_MS);
+            assertEquals(1, subscriptionCallback.mChildrenLoadedCount);
+
+            subscriptionCallback.reset();
+            StubMediaBrowserServiceCompat.sInstance.notifyChildrenInserted(
+                    StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, 1, items);
+            subscriptionCallback.mWaitLock.wait(TIME_OUT_MS);
+            if (Build.VERSION.SDK_INT >= 26) {
+                // The framework MediaBrowser only receives complete lists.
+                assertEquals(1, subscriptionCallback.mChildrenLoadedCount);
+            } else {
+                assertEquals(0, subscriptionCallback.mChildrenLoadedCount);
+                assertEquals(1, subscriptionCallback.mChildrenChangedCount);
+                assertEquals(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT,
+                        subscriptionCallback.mLastParentId);
+                assertEquals(1, subscriptionCallback.mLastChangePosition);
+                assertEquals(1, subscriptionCallback.mLastChildMediaItems.size());
+                assertEquals("inserted_media_id",
+                        subscriptionCallback.mLastChildMediaItems.get(0).getMediaId());
+            }
+
+            subscriptionCallback.reset();
+            StubMediaBrowserServiceCompat.sInstance.notifyChildrenRemoved(
+                    StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, 1, 1);
+            subscriptionCallback.mWaitLock.wait(TIME_OUT_MS);
+            if (Build.VERSION.SDK_INT >= 26) {
+                assertEquals(1, subscriptionCallback.mChildrenLoadedCount);
+            } else {
+                assertEquals(1, subscriptionCallback.mChildrenChangedCount);
+                assertEquals(1, subscriptionCallback.mLastChangePosition);
+                assertEquals(1, subscriptionCallback.mLastChangeItemCount);
+            }
+        }
+        mMediaBrowser.unsubscribe(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT);
+    }
+
+    @Test
+    @SmallTest
+    public void testSubscribeWithoutChildrenChanges() throws Exception {
+        createMediaBrowser(TEST_BROWSER_SERVICE);
+        connectMediaBrowserService();
+
+        synchronized (mSubscriptionCallback.mWaitLock) {
+            mMediaBrowser.subscribe(
+                    StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, mSubscriptionCallback);
+            mSubscriptionCallback.mWaitLock.wait(TIME_OUT_MS);
+            assertEquals(1, mSubscriptionCallback.mChildrenLoadedCount);
+
+            // The complete list is sent to a callback which does not receive the changes.
+            mSubscriptionCallback.reset();
+            StubMediaBrowserServiceCompat.sInstance.notifyChildrenRemoved(
+                    StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, 0, 1);
+            mSubscriptionCallback.mWaitLock.wait(TIME_OUT_MS);
+            assertEquals(1, mSubscriptionCallback.mChildrenLoadedCount);
+            assertEquals(0, mSubscriptionCallback.mChildrenChangedCount);
+            assertEquals(StubMediaBrowserServiceCompat.MEDIA_ID_CHILDREN.length,
+                    mSubscriptionCallback.mLastChildMediaItems.size());
+        }
+        mMediaBrowser.unsubscribe(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT);
+    }
+
     @Test
     @SmallTest
     public void testSubscribeWithOptions() throws Exception {
@@ -650,10 +726,23 @@ public class MediaBrowserCompatTest {
         private volatile String mLastParentId;
         private volatile Bundle mLastOptions;
         private volatile List<MediaItem> mLastChildMediaItems;
+        private volatile int mChildrenChangedCount;
+        private volatile int mLastChangePosition;
+        private volatile int mLastChangeItemCount;
+
+        StubSubscriptionCallback() {
+        }
+
+        StubSubscriptionCallback(boolean receiveChildrenChanges) {
+            super(receiveChildrenChanges);
+        }
 
         public void reset() {
             mChildrenLoadedCount = 0;
             mChildrenLoadedWithOptionCount = 0;
+            mChildrenChangedCount = 0;
+            mLastChangePosition = -1;
+            mLastChangeItemCount = -1;
             mLastErrorId = null;
             mLastParentId = null;
             mLastOptions = null;
@@ -681,6 +770,33 @@ public class MediaBrowserCompatTest {
             }
         }
 
+        @Override
+        public void onChildrenInserted(String parentId, int position, List<MediaItem> children) {
+            onChildrenChanged(parentId, position, children.size(), children);
+        }
+
+        @Override
+        public void onChildrenRemoved(String parentId, int position, int itemCount) {
+            onChildrenChanged(parentId, position, itemCount, null);
+        }
+
+        @Override
+        public void onChildrenUpdated(String parentId, int position, List<MediaItem> children) {
+            onChildrenChanged(parentId, position, children.size(), children);
+        }
+
+        private void onChildrenChanged(String parentId, int position, int itemCount,
+                List<MediaItem> children) {
+            synchronized (mWaitLock) {
+                mChildrenChangedCount++;
+                mLastParentId = parentId;
+                mLastChangePosition = position;
+                mLastChangeItemCount = itemCount;
+                mLastChildMediaItems = children;
+                mWaitLock.notify();
+            }
+        }
+
         @Override
         public void onError(String id) {
             synchronized (mWaitLock) {
@@ -143,6 +143,70 @@ public class MediaBrowserServiceCompatTest {
         }
     }
 
+    @Test
+    @MediumTest
+    public void testChildrenCache() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mMediaBrowserService.setChildrenCacheEnabled(true);
+            }
+        });
+        final SubscriptionCallback otherSubscriptionCallback = new SubscriptionCallback();
+        try {
+            synchronized (mWaitLock) {
+                Bundle options = new Bundle();
+                options.putInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, 2);
+                options.putInt(MediaBrowserCompat.EXTRA_PAGE, 0);
+                mSubscriptionCallback.reset();
+                mMediaBrowser.subscribe(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, options,
+                        mSubscriptionCallback);
+                mWaitLock.wait(TIME_OUT_MS);
+                assertTrue(mSubscriptionCallback.mOnChildrenLoadedWithOptions);
+
+                // The second page is served from the list loaded for the first one.
+                Bundle otherOptions = new Bundle();
+                otherOptions.putInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, 2);
+                otherOptions.putInt(MediaBrowserCompat.EXTRA_PAGE, 1);
+                otherSubscriptionCallback.reset();
+                mMediaBrowser.subscribe(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT, otherOptions,
+                        otherSubscriptionCallback);
+                mWaitLock.wait(TIME_OUT_MS);
+                assertTrue(otherSubscriptionCallback.mOnChildrenLoadedWithOptions);
+
+                MediaBrowserServiceCompat.ChildrenCacheStats stats =
+                        mMediaBrowserService.getChildrenCacheStats();
+                assertEquals(1, stats.getLoadCount());
+                assertEquals(1, stats.getLoadsAvoidedCount());
+
+                // Both subscriptions are reloaded with a single call to onLoadChildren.
+                mSubscriptionCallback.reset();
+                otherSubscriptionCallback.reset();
+                mMediaBrowserService.notifyChildrenChanged(
+                        StubMediaBrowserServiceCompat.MEDIA_ID_ROOT);
+                mWaitLock.wait(TIME_OUT_MS);
+                if (!mSubscriptionCallback.mOnChildrenLoadedWithOptions
+                        || !otherSubscriptionCallback.mOnChildrenLoadedWithOptions) {
+                    mWaitLock.wait(TIME_OUT_MS);
+                }
+                assertTrue(mSubscriptionCallback.mOnChildrenLoadedWithOptions);
+                assertTrue(otherSubscriptionCallback.mOnChildrenLoadedWithOptions);
+
+                stats = mMediaBrowserService.getChildrenCacheStats();
+                assertEquals(2, stats.getLoadCount());
+                assertEquals(2, stats.getLoadsAvoidedCount());
+            }
+        } finally {
+            mMediaBrowser.unsubscribe(StubMediaBrowserServiceCompat.MEDIA_ID_ROOT);
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mMediaBrowserService.setChildrenCacheEnabled(false);
+                }
+            });
+        }
+    }
+
     @Test
     @MediumTest
     public void testDelayedNotifyChildrenChanged() throws Exception {
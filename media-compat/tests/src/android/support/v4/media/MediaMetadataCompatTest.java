@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v4.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+import android.os.Parcel;
+import android.support.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the bitmap handling of {@link MediaMetadataCompat.Builder}.
+ */
+public class MediaMetadataCompatTest {
+    private static final String ART_URI = "content://test/art";
+    private static final int MAX_BITMAP_SIZE = 100;
+
+    @After
+    public void tearDown() {
+        MediaMetadataCompat.sUriBitmapCache.evictAll();
+    }
+
+    @Test
+    @SmallTest
+    public void testSetMaxBitmapSize() {
+        Bitmap art = Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888);
+        Bitmap icon = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        MediaMetadataCompat.Builder builder = new MediaMetadataCompat.Builder()
+                .putBitmap(MediaMetadataCompat.METADATA_KEY_ART, art)
+                .putBitmap(MediaMetadataCompat.METADATA_KEY_DISPLAY_ICON, icon)
+                .setMaxBitmapSize(MAX_BITMAP_SIZE);
+        MediaMetadataCompat metadata = builder.build();
+
+        Bitmap scaledArt = metadata.getBitmap(MediaMetadataCompat.METADATA_KEY_ART);
+        assertEquals(MAX_BITMAP_SIZE, scaledArt.getWidth());
+        assertEquals(MAX_BITMAP_SIZE / 2, scaledArt.getHeight());
+        assertSame(icon, metadata.getBitmap(MediaMetadataCompat.METADATA_KEY_DISPLAY_ICON));
+
+        // The same artwork is not scaled again.
+        assertSame(scaledArt, builder.build().getBitmap(MediaMetadataCompat.METADATA_KEY_ART));
+        assertSame(scaledArt, new MediaMetadataCompat.Builder()
+                .putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, art)
+                .setMaxBitmapSize(MAX_BITMAP_SIZE)
+                .build()
+                .getBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART));
+
+        try {
+            builder.setMaxBitmapSize(-1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testSetPreferBitmapUris() {
+        Bitmap art = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        Bitmap albumArt = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        MediaMetadataCompat metadata = new MediaMetadataCompat.Builder()
+                .putBitmap(MediaMetadataCompat.METADATA_KEY_ART, art)
+                .putString(MediaMetadataCompat.METADATA_KEY_ART_URI, ART_URI)
+                .putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, albumArt)
+                .setPreferBitmapUris(true)
+                .build();
+
+        // Only the bitmap with a URI is left out, and it is still returned in this process.
+        assertFalse(metadata.containsKey(MediaMetadataCompat.METADATA_KEY_ART));
+        assertTrue(metadata.containsKey(MediaMetadataCompat.METADATA_KEY_ALBUM_ART));
+        assertSame(art, metadata.getBitmap(MediaMetadataCompat.METADATA_KEY_ART));
+        assertSame(art, metadata.getDescription().getIconBitmap());
+
+        // The system controllers, which do not load the URIs, are still given the bitmap.
+        assertSame(art, metadata.getBundleWithBitmaps()
+                .getParcelable(MediaMetadataCompat.METADATA_KEY_ART));
+        MediaMetadataCompat scaled = new MediaMetadataCompat.Builder(metadata, 25).build();
+        assertFalse(scaled.containsKey(MediaMetadataCompat.METADATA_KEY_ART));
+        assertEquals(25, scaled.getBitmap(MediaMetadataCompat.METADATA_KEY_ART).getWidth());
+
+        Parcel parcel = Parcel.obtain();
+        metadata.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        MediaMetadataCompat unparceled = MediaMetadataCompat.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+        assertSame(art, unparceled.getBitmap(MediaMetadataCompat.METADATA_KEY_ART));
+
+        // Another process has to load the bitmap from the URI.
+        MediaMetadataCompat.sUriBitmapCache.evictAll();
+        assertNull(unparceled.getBitmap(MediaMetadataCompat.METADATA_KEY_ART));
+        assertEquals(ART_URI, unparceled.getString(MediaMetadataCompat.METADATA_KEY_ART_URI));
+    }
+}
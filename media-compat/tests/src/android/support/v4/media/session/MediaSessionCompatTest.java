@@ -334,6 +334,97 @@ public class MediaSessionCompatTest {
         }
     }
 
+    /**
+     * Tests {@link MediaSessionCompat#setPlaybackStateCoalescingInterval}.
+     */
+    @Test
+    @SmallTest
+    public void testSetPlaybackStateCoalescingInterval() throws Exception {
+        MediaControllerCompat controller = mSession.getController();
+        assertNull(mSession.getPlaybackStateDispatchStats());
+        try {
+            mSession.setPlaybackStateCoalescingInterval(-1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        // A long interval, so that no pending state is sent during the test.
+        mSession.setPlaybackStateCoalescingInterval(60000L);
+
+        final long updateTime = 1000L;
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PLAYING, 0L, 1.0f, updateTime).build());
+        assertPlaybackStateDispatchStats(1, 0);
+
+        // The positions follow the extrapolated ones, so these states are coalesced.
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PLAYING, 100L, 1.0f, updateTime + 100L)
+                .build());
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PLAYING, 200L, 1.0f, updateTime + 200L)
+                .build());
+        assertPlaybackStateDispatchStats(1, 1);
+        assertEquals(0L, controller.getPlaybackState().getPosition());
+
+        // A seek is sent immediately, and replaces the pending state.
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PLAYING, 5000L, 1.0f, updateTime + 300L)
+                .build());
+        assertPlaybackStateDispatchStats(2, 2);
+        assertEquals(5000L, controller.getPlaybackState().getPosition());
+
+        // So is a state transition.
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PAUSED, 5100L, 0.0f, updateTime + 400L)
+                .build());
+        assertPlaybackStateDispatchStats(3, 2);
+        assertEquals(PlaybackStateCompat.STATE_PAUSED, controller.getPlaybackState().getState());
+
+        // Disabling the coalescing sends the pending state.
+        mSession.setPlaybackState(new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PAUSED, 5100L, 0.0f, updateTime + 500L)
+                .setBufferedPosition(10000L)
+                .build());
+        assertPlaybackStateDispatchStats(3, 2);
+        mSession.setPlaybackStateCoalescingInterval(0);
+        assertNull(mSession.getPlaybackStateDispatchStats());
+        assertEquals(10000L, controller.getPlaybackState().getBufferedPosition());
+    }
+
+    /**
+     * Tests that equal extras and custom actions in different objects are not a transition.
+     */
+    @Test
+    @SmallTest
+    public void testPlaybackStateTransitionComparesByValue() {
+        PlaybackStateCompat last = createStateWithExtras("value");
+        assertFalse(MediaSessionCompat.PlaybackStateCoalescer.isTransition(last,
+                createStateWithExtras("value")));
+        assertTrue(MediaSessionCompat.PlaybackStateCoalescer.isTransition(last,
+                createStateWithExtras("other value")));
+    }
+
+    private static PlaybackStateCompat createStateWithExtras(String value) {
+        Bundle extras = new Bundle();
+        extras.putString("key", value);
+        extras.putIntArray("array", new int[] {1, 2});
+        Bundle actionExtras = new Bundle();
+        actionExtras.putString("key", value);
+        return new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_PLAYING, 0L, 1.0f, 1000L)
+                .setExtras(extras)
+                .addCustomAction(new PlaybackStateCompat.CustomAction.Builder(
+                        "action", "name", 1).setExtras(actionExtras).build())
+                .build();
+    }
+
+    private void assertPlaybackStateDispatchStats(int dispatchedCount, int coalescedCount) {
+        MediaSessionCompat.PlaybackStateDispatchStats stats =
+                mSession.getPlaybackStateDispatchStats();
+        assertNotNull(stats);
+        assertEquals(dispatchedCount, stats.getDispatchedCount());
+        assertEquals(coalescedCount, stats.getCoalescedCount());
+    }
+
     /**
      * Tests {@link MediaSessionCompat#setQueue} and {@link MediaSessionCompat#setQueueTitle}.
      */
@@ -17,9 +17,11 @@
 package com.example.android.leanback;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.support.v17.leanback.widget.PlaybackSeekAsyncDataProvider;
 
 /**
  * Sample PlaybackSeekDataProvider render time label as thumb.
@@ -40,16 +42,17 @@ class PlaybackSeekDataProviderSample extends PlaybackSeekAsyncDataProvider {
         mPaint.setColor(Color.BLUE);
     }
 
-    protected Bitmap doInBackground(Object task, int index, long position) {
+    @Override
+    protected Bitmap loadThumbnail(int index, long position, BitmapFactory.Options options) {
         try {
             Thread.sleep(100);
         } catch (InterruptedException ex) {
-            // Thread might be interrupted by cancel() call.
-        }
-        if (isCancelled(task)) {
+            // Thread is interrupted by cancel() call.
             return null;
         }
-        Bitmap bmp = Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
+        Bitmap bmp = options.inBitmap != null && options.inBitmap.getWidth() == 160
+                && options.inBitmap.getHeight() == 160 ? options.inBitmap
+                : Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(bmp);
         canvas.drawColor(Color.YELLOW);
         canvas.drawText(formatTime(position), 10, 80, mPaint);
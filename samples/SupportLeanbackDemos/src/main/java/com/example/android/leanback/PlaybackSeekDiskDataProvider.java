@@ -21,6 +21,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.support.v17.leanback.widget.PlaybackSeekAsyncDataProvider;
 
 import java.io.File;
 
@@ -47,20 +48,21 @@ class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider {
         mPaint.setColor(Color.BLUE);
     }
 
-    protected Bitmap doInBackground(Object task, int index, long position) {
+    @Override
+    protected Bitmap loadThumbnail(int index, long position, BitmapFactory.Options options) {
         try {
             Thread.sleep(100);
         } catch (InterruptedException ex) {
-            // Thread might be interrupted by cancel() call.
-        }
-        if (isCancelled(task)) {
+            // Thread is interrupted by cancel() call.
             return null;
         }
         String path = String.format(mPathPattern, (index + 1));
         if (new File(path).exists()) {
-            return BitmapFactory.decodeFile(path);
+            return BitmapFactory.decodeFile(path, options);
         } else {
-            Bitmap bmp = Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
+            Bitmap bmp = options.inBitmap != null && options.inBitmap.getWidth() == 160
+                    && options.inBitmap.getHeight() == 160 ? options.inBitmap
+                    : Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bmp);
             canvas.drawColor(Color.YELLOW);
             canvas.drawText(path, 10, 80, mPaint);
@@ -360,121 +360,134 @@ public abstract class BasePreviewProgram extends BaseProgram {
      * Sets the fields in the cursor to the given builder instance.
      *
      * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
      * @param builder A Builder to set the fields.
      */
-    static void setFieldsFromCursor(Cursor cursor, Builder builder) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
-        BaseProgram.setFieldsFromCursor(cursor, builder);
+    static void setFieldsFromCursor(Cursor cursor, ColumnIndexMap columnIndexMap,
+            Builder builder) {
+        BaseProgram.setFieldsFromCursor(cursor, columnIndexMap, builder);
         int index;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            if ((index =
-                    cursor.getColumnIndex(PreviewProgramColumns.COLUMN_INTERNAL_PROVIDER_ID)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_INTERNAL_PROVIDER_ID)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderId(cursor.getString(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(PreviewProgramColumns.COLUMN_PREVIEW_VIDEO_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_PREVIEW_VIDEO_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setPreviewVideoUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(
+            if ((index = columnIndexMap.getColumnIndex(
                     PreviewProgramColumns.COLUMN_LAST_PLAYBACK_POSITION_MILLIS)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setLastPlaybackPositionMillis(cursor.getInt(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(PreviewProgramColumns.COLUMN_DURATION_MILLIS)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_DURATION_MILLIS)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setDurationMillis(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_INTENT_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_INTENT_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setIntentUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_TRANSIENT)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_TRANSIENT)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setTransient(cursor.getInt(index) == IS_TRANSIENT);
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_TYPE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_TYPE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setType(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(
+            if ((index = columnIndexMap.getColumnIndex(
                     PreviewProgramColumns.COLUMN_POSTER_ART_ASPECT_RATIO)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setPosterArtAspectRatio(cursor.getInt(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(PreviewProgramColumns.COLUMN_THUMBNAIL_ASPECT_RATIO)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_THUMBNAIL_ASPECT_RATIO)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setThumbnailAspectRatio(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_LOGO_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_LOGO_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setLogoUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_AVAILABILITY)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_AVAILABILITY)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAvailability(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_STARTING_PRICE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_STARTING_PRICE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setStartingPrice(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_OFFER_PRICE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_OFFER_PRICE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setOfferPrice(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_RELEASE_DATE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_RELEASE_DATE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setReleaseDate(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_ITEM_COUNT)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_ITEM_COUNT)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setItemCount(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_LIVE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_LIVE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setLive(cursor.getInt(index) == IS_LIVE);
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_INTERACTION_TYPE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_INTERACTION_TYPE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInteractionType(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_INTERACTION_COUNT)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_INTERACTION_COUNT)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInteractionCount(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_AUTHOR)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_AUTHOR)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAuthor(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_BROWSABLE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_BROWSABLE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setBrowsable(cursor.getInt(index) == IS_BROWSABLE);
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_CONTENT_ID)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_CONTENT_ID)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setContentId(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(
+            if ((index = columnIndexMap.getColumnIndex(
                     PreviewProgramColumns.COLUMN_LOGO_CONTENT_DESCRIPTION)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setLogoContentDescription(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_GENRE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(PreviewProgramColumns.COLUMN_GENRE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setGenre(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_START_TIME_UTC_MILLIS))
-                    >= 0 && !cursor.isNull(index)) {
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_START_TIME_UTC_MILLIS)) >= 0
+                    && !cursor.isNull(index)) {
                 builder.setStartTimeUtcMillis(cursor.getLong(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_END_TIME_UTC_MILLIS))
-                    >= 0 && !cursor.isNull(index)) {
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_END_TIME_UTC_MILLIS)) >= 0
+                    && !cursor.isNull(index)) {
                 builder.setEndTimeUtcMillis(cursor.getLong(index));
             }
-            if ((index = cursor.getColumnIndex(PreviewProgramColumns.COLUMN_PREVIEW_AUDIO_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    PreviewProgramColumns.COLUMN_PREVIEW_AUDIO_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setPreviewAudioUri(Uri.parse(cursor.getString(index)));
             }
@@ -310,132 +310,135 @@ public abstract class BaseProgram {
      * Sets the fields in the cursor to the given builder instance.
      *
      * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
      * @param builder A Builder to set the fields.
      */
-    static void setFieldsFromCursor(Cursor cursor, Builder builder) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
+    static void setFieldsFromCursor(Cursor cursor, ColumnIndexMap columnIndexMap,
+            Builder builder) {
         int index;
-        if ((index = cursor.getColumnIndex(BaseTvColumns._ID)) >= 0 && !cursor.isNull(index)) {
+        if ((index = columnIndexMap.getColumnIndex(BaseTvColumns._ID)) >= 0
+                && !cursor.isNull(index)) {
             builder.setId(cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(BaseTvColumns.COLUMN_PACKAGE_NAME)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(BaseTvColumns.COLUMN_PACKAGE_NAME)) >= 0
                 && !cursor.isNull(index)) {
             builder.setPackageName(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_TITLE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_TITLE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setTitle(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_EPISODE_TITLE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_EPISODE_TITLE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setEpisodeTitle(cursor.getString(index));
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
             if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_SEASON_DISPLAY_NUMBER)) >= 0
+                    columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_SEASON_DISPLAY_NUMBER)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setSeasonNumber(cursor.getString(index), INVALID_INT_VALUE);
             }
         } else {
-            if ((index = cursor.getColumnIndex(Programs.COLUMN_SEASON_NUMBER)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_SEASON_NUMBER)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setSeasonNumber(cursor.getInt(index));
             }
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_EPISODE_DISPLAY_NUMBER)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    ProgramColumns.COLUMN_EPISODE_DISPLAY_NUMBER)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setEpisodeNumber(cursor.getString(index), INVALID_INT_VALUE);
             }
         } else {
-            if ((index = cursor.getColumnIndex(Programs.COLUMN_EPISODE_NUMBER)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_EPISODE_NUMBER)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setEpisodeNumber(cursor.getInt(index));
             }
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_SHORT_DESCRIPTION)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_SHORT_DESCRIPTION)) >= 0
                 && !cursor.isNull(index)) {
             builder.setDescription(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_LONG_DESCRIPTION)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_LONG_DESCRIPTION)) >= 0
                 && !cursor.isNull(index)) {
             builder.setLongDescription(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_POSTER_ART_URI)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_POSTER_ART_URI)) >= 0
                 && !cursor.isNull(index)) {
             builder.setPosterArtUri(Uri.parse(cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_THUMBNAIL_URI)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_THUMBNAIL_URI)) >= 0
                 && !cursor.isNull(index)) {
             builder.setThumbnailUri(Uri.parse(cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_AUDIO_LANGUAGE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_AUDIO_LANGUAGE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setAudioLanguages(
                     TvContractUtils.stringToAudioLanguages(cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_CANONICAL_GENRE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_CANONICAL_GENRE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setCanonicalGenres(Programs.Genres.decode(
                     cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_CONTENT_RATING)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_CONTENT_RATING)) >= 0
                 && !cursor.isNull(index)) {
             builder.setContentRatings(
                     TvContractUtils.stringToContentRatings(cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_VIDEO_WIDTH)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_VIDEO_WIDTH)) >= 0
                 && !cursor.isNull(index)) {
             builder.setVideoWidth((int) cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_VIDEO_HEIGHT)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_VIDEO_HEIGHT)) >= 0
                 && !cursor.isNull(index)) {
             builder.setVideoHeight((int) cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_INTERNAL_PROVIDER_DATA)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(
+                ProgramColumns.COLUMN_INTERNAL_PROVIDER_DATA)) >= 0
                 && !cursor.isNull(index)) {
             builder.setInternalProviderData(cursor.getBlob(index));
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_SEARCHABLE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_SEARCHABLE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setSearchable(cursor.getInt(index) == IS_SEARCHABLE);
             }
-            if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG1)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG1)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag1(cursor.getLong(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG2)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG2)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag2(cursor.getLong(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG3)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG3)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag3(cursor.getLong(index));
             }
-            if ((index =
-                    cursor.getColumnIndex(ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG4)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    ProgramColumns.COLUMN_INTERNAL_PROVIDER_FLAG4)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag4(cursor.getLong(index));
             }
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_SEASON_TITLE)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_SEASON_TITLE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setSeasonTitle(cursor.getString(index));
             }
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            if ((index = cursor.getColumnIndex(
+            if ((index = columnIndexMap.getColumnIndex(
                     ProgramColumns.COLUMN_REVIEW_RATING_STYLE)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setReviewRatingStyle(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(ProgramColumns.COLUMN_REVIEW_RATING)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(ProgramColumns.COLUMN_REVIEW_RATING)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setReviewRating(cursor.getString(index));
             }
@@ -31,6 +31,7 @@ import android.support.media.tv.TvContractCompat.Channels.VideoFormat;
 
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.Iterator;
 
 /**
  * A convenience class to access {@link TvContractCompat.Channels} entries in the system content
@@ -395,123 +396,143 @@ public final class Channel {
      * @return A channel with the values taken from the cursor.
      */
     public static Channel fromCursor(Cursor cursor) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
+        return fromCursor(cursor, new ColumnIndexMap(cursor));
+    }
+
+    /**
+     * Creates a Channel object from a cursor including the fields defined in {@link Channels},
+     * using the given column indices.
+     *
+     * <p>Reuse the same {@link ColumnIndexMap} for all the rows of a cursor, so that the
+     * indices of the columns are only resolved once.
+     *
+     * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
+     * @return A channel with the values taken from the cursor.
+     */
+    public static Channel fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
         Builder builder = new Builder();
         int index;
-        if ((index = cursor.getColumnIndex(Channels._ID)) >= 0 && !cursor.isNull(index)) {
+        if ((index = columnIndexMap.getColumnIndex(Channels._ID)) >= 0 && !cursor.isNull(index)) {
             builder.setId(cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_DESCRIPTION)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_DESCRIPTION)) >= 0
                 && !cursor.isNull(index)) {
             builder.setDescription(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_DISPLAY_NAME)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_DISPLAY_NAME)) >= 0
                 && !cursor.isNull(index)) {
             builder.setDisplayName(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_DISPLAY_NUMBER)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_DISPLAY_NUMBER)) >= 0
                 && !cursor.isNull(index)) {
             builder.setDisplayNumber(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_INPUT_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_INPUT_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setInputId(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_DATA)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_DATA)) >= 0
                 && !cursor.isNull(index)) {
             builder.setInternalProviderData(cursor.getBlob(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_NETWORK_AFFILIATION)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_NETWORK_AFFILIATION)) >= 0
                 && !cursor.isNull(index)) {
             builder.setNetworkAffiliation(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_ORIGINAL_NETWORK_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_ORIGINAL_NETWORK_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setOriginalNetworkId(cursor.getInt(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_PACKAGE_NAME)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_PACKAGE_NAME)) >= 0
                 && !cursor.isNull(index)) {
             builder.setPackageName(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_SEARCHABLE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_SEARCHABLE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setSearchable(cursor.getInt(index) == IS_SEARCHABLE);
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_SERVICE_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_SERVICE_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setServiceId(cursor.getInt(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_SERVICE_TYPE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_SERVICE_TYPE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setServiceType(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_TRANSPORT_STREAM_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_TRANSPORT_STREAM_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setTransportStreamId(cursor.getInt(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_TYPE)) >= 0 && !cursor.isNull(index)) {
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_TYPE)) >= 0
+                && !cursor.isNull(index)) {
             builder.setType(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_VIDEO_FORMAT)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_VIDEO_FORMAT)) >= 0
                 && !cursor.isNull(index)) {
             builder.setVideoFormat(cursor.getString(index));
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_BROWSABLE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_BROWSABLE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setBrowsable(cursor.getInt(index) == IS_BROWSABLE);
         }
-        if ((index = cursor.getColumnIndex(Channels.COLUMN_LOCKED)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_LOCKED)) >= 0
                 && !cursor.isNull(index)) {
             builder.setLocked(cursor.getInt(index) == IS_LOCKED);
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_APP_LINK_COLOR)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_APP_LINK_COLOR)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAppLinkColor(cursor.getInt(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_APP_LINK_ICON_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_APP_LINK_ICON_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAppLinkIconUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_APP_LINK_INTENT_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_APP_LINK_INTENT_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAppLinkIntentUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_APP_LINK_POSTER_ART_URI)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    Channels.COLUMN_APP_LINK_POSTER_ART_URI)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAppLinkPosterArtUri(Uri.parse(cursor.getString(index)));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_APP_LINK_TEXT)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_APP_LINK_TEXT)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setAppLinkText(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_FLAG1)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    Channels.COLUMN_INTERNAL_PROVIDER_FLAG1)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag1(cursor.getLong(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_FLAG2)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    Channels.COLUMN_INTERNAL_PROVIDER_FLAG2)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag2(cursor.getLong(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_FLAG3)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    Channels.COLUMN_INTERNAL_PROVIDER_FLAG3)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag3(cursor.getLong(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_FLAG4)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(
+                    Channels.COLUMN_INTERNAL_PROVIDER_FLAG4)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderFlag4(cursor.getLong(index));
             }
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_ID)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_INTERNAL_PROVIDER_ID)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setInternalProviderId(cursor.getString(index));
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_TRANSIENT)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_TRANSIENT)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setTransient(cursor.getInt(index) == IS_TRANSIENT);
             }
-            if ((index = cursor.getColumnIndex(Channels.COLUMN_SYSTEM_APPROVED)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Channels.COLUMN_SYSTEM_APPROVED)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setSystemApproved(cursor.getInt(index) == IS_SYSTEM_APPROVED);
             }
@@ -519,6 +540,23 @@ public final class Channel {
         return builder.build();
     }
 
+    /**
+     * Returns an iterator which creates a Channel object from each row of the cursor after its
+     * current position, resolving the column indices only once for all the rows. The iterator
+     * moves the cursor, and does not close it.
+     *
+     * @param cursor The channels from the TV Input Framework database.
+     * @return An iterator over the channels in the cursor.
+     */
+    public static Iterator<Channel> iterateFromCursor(Cursor cursor) {
+        return new CursorRowIterator<Channel>(cursor) {
+            @Override
+            Channel fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
+                return Channel.fromCursor(cursor, columnIndexMap);
+            }
+        };
+    }
+
     private static String[] getProjection() {
         String[] baseColumns = new String[] {
                 Channels._ID,
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.media.tv;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Maps the column names of a {@link Cursor} to their indices, so that they are resolved once per
+ * cursor rather than once per row.
+ *
+ * <p>{@link Cursor#getColumnIndex(String)} searches the column names on every call for most
+ * cursors returned by a content provider. Reuse a ColumnIndexMap for all the rows of a cursor:
+ * <pre>
+ * ColumnIndexMap columnIndexMap = new ColumnIndexMap(cursor);
+ * while (cursor.moveToNext()) {
+ *     PreviewProgram program = PreviewProgram.fromCursor(cursor, columnIndexMap);
+ *     ...
+ * }
+ * </pre>
+ */
+public final class ColumnIndexMap {
+    private final String[] mColumnNames;
+    private final HashMap<String, Integer> mIndices;
+
+    /**
+     * Creates a map of the columns of the given cursor.
+     *
+     * @param cursor The cursor to read the column names from.
+     */
+    public ColumnIndexMap(@NonNull Cursor cursor) {
+        if (cursor == null) {
+            throw new IllegalArgumentException("cursor can not be null");
+        }
+        mColumnNames = cursor.getColumnNames();
+        mIndices = new HashMap<>(mColumnNames.length * 2);
+        for (int i = 0; i < mColumnNames.length; i++) {
+            // Column names are case insensitive, and the first match wins, as in
+            // Cursor#getColumnIndex().
+            final String key = mColumnNames[i].toLowerCase(Locale.US);
+            if (!mIndices.containsKey(key)) {
+                mIndices.put(key, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the zero-based index for the given column name, or -1 if the column doesn't
+     * exist.
+     *
+     * @param columnName The name of the target column.
+     * @see Cursor#getColumnIndex(String)
+     */
+    public int getColumnIndex(@NonNull String columnName) {
+        Integer index = mIndices.get(columnName);
+        if (index == null) {
+            index = mIndices.get(columnName.toLowerCase(Locale.US));
+        }
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns whether this map can be used for the given cursor, which is when the cursor has
+     * the same columns as the one this map was created for.
+     *
+     * @param cursor The cursor to check.
+     */
+    public boolean matches(@NonNull Cursor cursor) {
+        return Arrays.equals(mColumnNames, cursor.getColumnNames());
+    }
+}
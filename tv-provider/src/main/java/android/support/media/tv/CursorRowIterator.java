@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.media.tv;
+
+import android.database.Cursor;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the rows of a cursor after its current position, converting each row with a
+ * {@link ColumnIndexMap} resolved once for the whole cursor.
+ *
+ * @param <T> The type of the objects created from the rows.
+ */
+abstract class CursorRowIterator<T> implements Iterator<T> {
+    private final Cursor mCursor;
+    private final ColumnIndexMap mColumnIndexMap;
+
+    CursorRowIterator(Cursor cursor) {
+        mCursor = cursor;
+        mColumnIndexMap = new ColumnIndexMap(cursor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return mCursor.getPosition() < mCursor.getCount() - 1;
+    }
+
+    @Override
+    public T next() {
+        if (!mCursor.moveToNext()) {
+            throw new NoSuchElementException();
+        }
+        return fromCursor(mCursor, mColumnIndexMap);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    abstract T fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap);
+}
@@ -27,6 +27,8 @@ import android.support.media.tv.TvContractCompat.PreviewPrograms;
 import android.support.media.tv.TvContractCompat.Programs;  // For javadoc gen of super class
 import android.support.media.tv.TvContractCompat.Programs.Genres;  // For javadoc gen of super class
 
+import java.util.Iterator;
+
 /**
  * A convenience class to access {@link PreviewPrograms} entries in the system content
  * provider.
@@ -153,21 +155,52 @@ public final class PreviewProgram extends BasePreviewProgram {
      * @return A Program with the values taken from the cursor.
      */
     public static PreviewProgram fromCursor(Cursor cursor) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
+        return fromCursor(cursor, new ColumnIndexMap(cursor));
+    }
+
+    /**
+     * Creates a Program object from a cursor including the fields defined in
+     * {@link PreviewPrograms}, using the given column indices.
+     *
+     * <p>Reuse the same {@link ColumnIndexMap} for all the rows of a cursor, so that the
+     * indices of the columns are only resolved once.
+     *
+     * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
+     * @return A Program with the values taken from the cursor.
+     */
+    public static PreviewProgram fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
         Builder builder = new Builder();
-        BasePreviewProgram.setFieldsFromCursor(cursor, builder);
+        BasePreviewProgram.setFieldsFromCursor(cursor, columnIndexMap, builder);
         int index;
-        if ((index = cursor.getColumnIndex(PreviewPrograms.COLUMN_CHANNEL_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(PreviewPrograms.COLUMN_CHANNEL_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setChannelId(cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(PreviewPrograms.COLUMN_WEIGHT)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(PreviewPrograms.COLUMN_WEIGHT)) >= 0
                 && !cursor.isNull(index)) {
             builder.setWeight(cursor.getInt(index));
         }
         return builder.build();
     }
 
+    /**
+     * Returns an iterator which creates a PreviewProgram object from each row of the cursor after its
+     * current position, resolving the column indices only once for all the rows. The iterator
+     * moves the cursor, and does not close it.
+     *
+     * @param cursor The preview programs from the TV Input Framework database.
+     * @return An iterator over the preview programs in the cursor.
+     */
+    public static Iterator<PreviewProgram> iterateFromCursor(Cursor cursor) {
+        return new CursorRowIterator<PreviewProgram>(cursor) {
+            @Override
+            PreviewProgram fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
+                return PreviewProgram.fromCursor(cursor, columnIndexMap);
+            }
+        };
+    }
+
     private static String[] getProjection() {
         String[] oColumns = new String[] {
                 PreviewPrograms.COLUMN_CHANNEL_ID,
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.media.tv;
+
+import android.annotation.TargetApi;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.support.media.tv.TvContractCompat.BaseTvColumns;
+import android.support.media.tv.TvContractCompat.PreviewPrograms;
+import android.support.media.tv.TvContractCompat.WatchNextPrograms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A utility class which synchronizes the preview programs of a channel, or the watch next
+ * programs of the app, in the system content provider with a desired list of programs.
+ *
+ * <p>The current rows are read with a single query and matched to the desired programs by
+ * {@link PreviewPrograms#COLUMN_INTERNAL_PROVIDER_ID}. A desired program without a matching row
+ * is inserted, a matching row is updated only if one of the fields set in the desired program
+ * has changed, and a row without a matching desired program is deleted. The changes are applied
+ * with {@link ContentResolver#applyBatch} in batches of at most {@link #getBatchSize()}
+ * operations.
+ *
+ * <p>As with {@link ContentResolver#update}, the fields which are not set in a desired program
+ * are left unchanged in the matching row.
+ *
+ * <p>Usage example when synchronizing the preview programs of a channel:
+ * <pre>
+ * List&lt;PreviewProgram&gt; programs = new ArrayList&lt;&gt;();
+ * programs.add(new PreviewProgram.Builder()
+ *         .setInternalProviderId("movie-1")
+ *         .setTitle("Movie")
+ *         // Set more attributes...
+ *         .build());
+ * PreviewProgramSyncHelper.Result result =
+ *         new PreviewProgramSyncHelper(context).syncPreviewPrograms(channelId, programs);
+ * </pre>
+ */
+@WorkerThread
+@TargetApi(26)
+public class PreviewProgramSyncHelper {
+    /** The default maximum number of operations applied in a single batch. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final ContentResolver mResolver;
+    private final int mBatchSize;
+
+    /**
+     * Creates a helper which applies the changes in batches of {@link #DEFAULT_BATCH_SIZE}
+     * operations.
+     *
+     * @param context The context used to access the system content provider.
+     */
+    public PreviewProgramSyncHelper(@NonNull Context context) {
+        this(context, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a helper which applies the changes in batches of the given size.
+     *
+     * @param context The context used to access the system content provider.
+     * @param batchSize The maximum number of operations applied in a single batch.
+     */
+    public PreviewProgramSyncHelper(@NonNull Context context, int batchSize) {
+        if (context == null) {
+            throw new IllegalArgumentException("context can not be null");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        mResolver = context.getContentResolver();
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * @return The maximum number of operations applied in a single batch.
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * Synchronizes the preview programs of the given channel with the given programs. The
+     * channel ID of the given programs is replaced by {@code channelId}.
+     *
+     * <p>If a batch fails, the batches which were applied before it stay applied. Synchronizing
+     * the same programs again completes the synchronization.
+     *
+     * @param channelId The ID of the channel whose preview programs are synchronized.
+     * @param programs The desired preview programs of the channel. Each of them must have a
+     *                 unique internal provider ID.
+     * @return The numbers of programs inserted, updated, deleted and left unchanged.
+     * @throws IllegalArgumentException if a program has no internal provider ID, or if two
+     *                                  programs have the same one.
+     */
+    public Result syncPreviewPrograms(long channelId, @NonNull List<PreviewProgram> programs)
+            throws RemoteException, OperationApplicationException {
+        checkPrograms(programs);
+        Uri uri = TvContractCompat.buildPreviewProgramsUriForChannel(channelId);
+        Map<String, BasePreviewProgram> currentPrograms = new HashMap<>();
+        List<Long> staleIds = new ArrayList<>();
+        try (Cursor cursor = query(uri, PreviewProgram.PROJECTION)) {
+            readCurrentPrograms(PreviewProgram.iterateFromCursor(cursor), currentPrograms,
+                    staleIds);
+        }
+        ContentValues channelValues = new ContentValues();
+        channelValues.put(PreviewPrograms.COLUMN_CHANNEL_ID, channelId);
+        return applyChanges(PreviewPrograms.CONTENT_URI, programs, channelValues,
+                currentPrograms, staleIds);
+    }
+
+    /**
+     * Synchronizes the watch next programs of the app with the given programs.
+     *
+     * <p>If a batch fails, the batches which were applied before it stay applied. Synchronizing
+     * the same programs again completes the synchronization.
+     *
+     * @param programs The desired watch next programs. Each of them must have a unique internal
+     *                 provider ID.
+     * @return The numbers of programs inserted, updated, deleted and left unchanged.
+     * @throws IllegalArgumentException if a program has no internal provider ID, or if two
+     *                                  programs have the same one.
+     */
+    public Result syncWatchNextPrograms(@NonNull List<WatchNextProgram> programs)
+            throws RemoteException, OperationApplicationException {
+        checkPrograms(programs);
+        Map<String, BasePreviewProgram> currentPrograms = new HashMap<>();
+        List<Long> staleIds = new ArrayList<>();
+        try (Cursor cursor = query(WatchNextPrograms.CONTENT_URI, WatchNextProgram.PROJECTION)) {
+            readCurrentPrograms(WatchNextProgram.iterateFromCursor(cursor), currentPrograms,
+                    staleIds);
+        }
+        return applyChanges(WatchNextPrograms.CONTENT_URI, programs, null, currentPrograms,
+                staleIds);
+    }
+
+    private static void checkPrograms(List<? extends BasePreviewProgram> programs) {
+        if (programs == null) {
+            throw new IllegalArgumentException("programs can not be null");
+        }
+        Set<String> internalProviderIds = new HashSet<>();
+        for (BasePreviewProgram program : programs) {
+            String internalProviderId = program.getInternalProviderId();
+            if (internalProviderId == null) {
+                throw new IllegalArgumentException("internal provider ID can not be null");
+            }
+            if (!internalProviderIds.add(internalProviderId)) {
+                throw new IllegalArgumentException(
+                        "Duplicate internal provider ID: " + internalProviderId);
+            }
+        }
+    }
+
+    private Cursor query(Uri uri, String[] projection) throws OperationApplicationException {
+        Cursor cursor = mResolver.query(uri, projection, null, null, null);
+        if (cursor == null) {
+            throw new OperationApplicationException("Unable to query " + uri);
+        }
+        return cursor;
+    }
+
+    /**
+     * Reads the current rows keyed by internal provider ID. The rows without an internal
+     * provider ID and the duplicates of a previous row are collected as stale.
+     */
+    private static void readCurrentPrograms(Iterator<? extends BasePreviewProgram> rows,
+            Map<String, BasePreviewProgram> currentPrograms, List<Long> staleIds) {
+        while (rows.hasNext()) {
+            BasePreviewProgram program = rows.next();
+            String internalProviderId = program.getInternalProviderId();
+            if (internalProviderId == null || currentPrograms.containsKey(internalProviderId)) {
+                staleIds.add(program.getId());
+            } else {
+                currentPrograms.put(internalProviderId, program);
+            }
+        }
+    }
+
+    private Result applyChanges(Uri contentUri, List<? extends BasePreviewProgram> programs,
+            ContentValues extraValues, Map<String, BasePreviewProgram> currentPrograms,
+            List<Long> staleIds) throws RemoteException, OperationApplicationException {
+        Result result = new Result();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(mBatchSize);
+        for (BasePreviewProgram program : programs) {
+            String internalProviderId = program.getInternalProviderId();
+            ContentValues values = program.toContentValues();
+            values.remove(BaseTvColumns._ID);
+            if (extraValues != null) {
+                values.putAll(extraValues);
+            }
+            BasePreviewProgram currentProgram = currentPrograms.remove(internalProviderId);
+            if (currentProgram == null) {
+                operations.add(ContentProviderOperation.newInsert(contentUri)
+                        .withValues(values)
+                        .build());
+                result.mInsertedCount++;
+            } else if (containsValues(currentProgram.toContentValues(true), values)) {
+                result.mUnchangedCount++;
+            } else {
+                operations.add(ContentProviderOperation.newUpdate(
+                        ContentUris.withAppendedId(contentUri, currentProgram.getId()))
+                        .withValues(values)
+                        .build());
+                result.mUpdatedCount++;
+            }
+            applyBatchIfFull(operations);
+        }
+        for (BasePreviewProgram currentProgram : currentPrograms.values()) {
+            staleIds.add(currentProgram.getId());
+        }
+        for (long id : staleIds) {
+            operations.add(ContentProviderOperation.newDelete(
+                    ContentUris.withAppendedId(contentUri, id)).build());
+            result.mDeletedCount++;
+            applyBatchIfFull(operations);
+        }
+        if (!operations.isEmpty()) {
+            mResolver.applyBatch(TvContractCompat.AUTHORITY, operations);
+        }
+        return result;
+    }
+
+    private void applyBatchIfFull(ArrayList<ContentProviderOperation> operations)
+            throws RemoteException, OperationApplicationException {
+        if (operations.size() >= mBatchSize) {
+            mResolver.applyBatch(TvContractCompat.AUTHORITY, operations);
+            operations.clear();
+        }
+    }
+
+    /**
+     * @return {@code true} if each of the given values is equal to the current value of the
+     *         same column.
+     */
+    private static boolean containsValues(ContentValues current, ContentValues values) {
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            Object value = entry.getValue();
+            Object currentValue = current.get(entry.getKey());
+            if (value instanceof byte[] && currentValue instanceof byte[]) {
+                if (!Arrays.equals((byte[]) value, (byte[]) currentValue)) {
+                    return false;
+                }
+            } else if (value == null ? currentValue != null : !value.equals(currentValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The numbers of programs changed by a synchronization.
+     */
+    public static final class Result {
+        int mInsertedCount;
+        int mUpdatedCount;
+        int mDeletedCount;
+        int mUnchangedCount;
+
+        Result() {
+        }
+
+        /**
+         * @return The number of programs inserted.
+         */
+        public int getInsertedCount() {
+            return mInsertedCount;
+        }
+
+        /**
+         * @return The number of programs updated.
+         */
+        public int getUpdatedCount() {
+            return mUpdatedCount;
+        }
+
+        /**
+         * @return The number of programs deleted.
+         */
+        public int getDeletedCount() {
+            return mDeletedCount;
+        }
+
+        /**
+         * @return The number of programs which were already up to date.
+         */
+        public int getUnchangedCount() {
+            return mUnchangedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{inserted=" + mInsertedCount + ", updated=" + mUpdatedCount
+                    + ", deleted=" + mDeletedCount + ", unchanged=" + mUnchangedCount + "}";
+        }
+    }
+}
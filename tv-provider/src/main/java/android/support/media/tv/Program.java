@@ -26,6 +26,8 @@ import android.support.annotation.NonNull;
 import android.support.annotation.RestrictTo;
 import android.support.media.tv.TvContractCompat.Programs;
 
+import java.util.Iterator;
+
 /**
  * A convenience class to access {@link TvContractCompat.Programs} entries in the system content
  * provider.
@@ -173,29 +175,43 @@ public final class Program extends BaseProgram implements Comparable<Program> {
      * @return A Program with the values taken from the cursor.
      */
     public static Program fromCursor(Cursor cursor) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
+        return fromCursor(cursor, new ColumnIndexMap(cursor));
+    }
+
+    /**
+     * Creates a Program object from a cursor including the fields defined in {@link Programs},
+     * using the given column indices.
+     *
+     * <p>Reuse the same {@link ColumnIndexMap} for all the rows of a cursor, so that the
+     * indices of the columns are only resolved once.
+     *
+     * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
+     * @return A Program with the values taken from the cursor.
+     */
+    public static Program fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
         Builder builder = new Builder();
-        BaseProgram.setFieldsFromCursor(cursor, builder);
+        BaseProgram.setFieldsFromCursor(cursor, columnIndexMap, builder);
         int index;
-        if ((index = cursor.getColumnIndex(Programs.COLUMN_CHANNEL_ID)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_CHANNEL_ID)) >= 0
                 && !cursor.isNull(index)) {
             builder.setChannelId(cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(Programs.COLUMN_BROADCAST_GENRE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_BROADCAST_GENRE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setBroadcastGenres(Programs.Genres.decode(
                     cursor.getString(index)));
         }
-        if ((index = cursor.getColumnIndex(Programs.COLUMN_START_TIME_UTC_MILLIS)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_START_TIME_UTC_MILLIS)) >= 0
                 && !cursor.isNull(index)) {
             builder.setStartTimeUtcMillis(cursor.getLong(index));
         }
-        if ((index = cursor.getColumnIndex(Programs.COLUMN_END_TIME_UTC_MILLIS)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_END_TIME_UTC_MILLIS)) >= 0
                 && !cursor.isNull(index)) {
             builder.setEndTimeUtcMillis(cursor.getLong(index));
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            if ((index = cursor.getColumnIndex(Programs.COLUMN_RECORDING_PROHIBITED)) >= 0
+            if ((index = columnIndexMap.getColumnIndex(Programs.COLUMN_RECORDING_PROHIBITED)) >= 0
                     && !cursor.isNull(index)) {
                 builder.setRecordingProhibited(cursor.getInt(index) == IS_RECORDING_PROHIBITED);
             }
@@ -203,6 +219,23 @@ public final class Program extends BaseProgram implements Comparable<Program> {
         return builder.build();
     }
 
+    /**
+     * Returns an iterator which creates a Program object from each row of the cursor after its
+     * current position, resolving the column indices only once for all the rows. The iterator
+     * moves the cursor, and does not close it.
+     *
+     * @param cursor The programs from the TV Input Framework database.
+     * @return An iterator over the programs in the cursor.
+     */
+    public static Iterator<Program> iterateFromCursor(Cursor cursor) {
+        return new CursorRowIterator<Program>(cursor) {
+            @Override
+            Program fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
+                return Program.fromCursor(cursor, columnIndexMap);
+            }
+        };
+    }
+
     private static String[] getProjection() {
         String[] baseColumns = new String[] {
                 Programs.COLUMN_CHANNEL_ID,
@@ -29,6 +29,8 @@ import android.support.media.tv.TvContractCompat.Programs.Genres;  // For javado
 import android.support.media.tv.TvContractCompat.WatchNextPrograms;
 import android.support.media.tv.TvContractCompat.WatchNextPrograms.WatchNextType;
 
+import java.util.Iterator;
+
 /**
  * A convenience class to access {@link WatchNextPrograms} entries in the system content
  * provider.
@@ -156,15 +158,29 @@ public final class WatchNextProgram extends BasePreviewProgram {
      * @return A Program with the values taken from the cursor.
      */
     public static WatchNextProgram fromCursor(Cursor cursor) {
-        // TODO: Add additional API which does not use costly getColumnIndex().
+        return fromCursor(cursor, new ColumnIndexMap(cursor));
+    }
+
+    /**
+     * Creates a WatchNextProgram object from a cursor including the fields defined in
+     * {@link WatchNextPrograms}, using the given column indices.
+     *
+     * <p>Reuse the same {@link ColumnIndexMap} for all the rows of a cursor, so that the
+     * indices of the columns are only resolved once.
+     *
+     * @param cursor A row from the TV Input Framework database.
+     * @param columnIndexMap The column indices of the cursor.
+     * @return A Program with the values taken from the cursor.
+     */
+    public static WatchNextProgram fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
         Builder builder = new Builder();
-        BasePreviewProgram.setFieldsFromCursor(cursor, builder);
+        BasePreviewProgram.setFieldsFromCursor(cursor, columnIndexMap, builder);
         int index;
-        if ((index = cursor.getColumnIndex(WatchNextPrograms.COLUMN_WATCH_NEXT_TYPE)) >= 0
+        if ((index = columnIndexMap.getColumnIndex(WatchNextPrograms.COLUMN_WATCH_NEXT_TYPE)) >= 0
                 && !cursor.isNull(index)) {
             builder.setWatchNextType(cursor.getInt(index));
         }
-        if ((index = cursor.getColumnIndex(
+        if ((index = columnIndexMap.getColumnIndex(
                 WatchNextPrograms.COLUMN_LAST_ENGAGEMENT_TIME_UTC_MILLIS)) >= 0
                 && !cursor.isNull(index)) {
             builder.setLastEngagementTimeUtcMillis(cursor.getLong(index));
@@ -172,6 +188,23 @@ public final class WatchNextProgram extends BasePreviewProgram {
         return builder.build();
     }
 
+    /**
+     * Returns an iterator which creates a WatchNextProgram object from each row of the cursor after its
+     * current position, resolving the column indices only once for all the rows. The iterator
+     * moves the cursor, and does not close it.
+     *
+     * @param cursor The watch next programs from the TV Input Framework database.
+     * @return An iterator over the watch next programs in the cursor.
+     */
+    public static Iterator<WatchNextProgram> iterateFromCursor(Cursor cursor) {
+        return new CursorRowIterator<WatchNextProgram>(cursor) {
+            @Override
+            WatchNextProgram fromCursor(Cursor cursor, ColumnIndexMap columnIndexMap) {
+                return WatchNextProgram.fromCursor(cursor, columnIndexMap);
+            }
+        };
+    }
+
     private static String[] getProjection() {
         String[] oColumns = new String[] {
                 WatchNextPrograms.COLUMN_WATCH_NEXT_TYPE,
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.media.tv;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.support.media.tv.TvContractCompat.Channels;
+import android.support.media.tv.TvContractCompat.PreviewPrograms;
+import android.support.media.tv.TvContractCompat.WatchNextPrograms;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.filters.SmallTest;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Tests that {@link ColumnIndexMap} resolves the same indices as {@link MatrixCursor}, and that
+ * the bulk conversions from a cursor create the same objects as converting row by row.
+ */
+@SdkSuppress(minSdkVersion = 26)
+@TargetApi(26)
+public class ColumnIndexMapTest extends TestCase {
+    private static final String TAG = "ColumnIndexMapTest";
+
+    @Test
+    @SmallTest
+    public void testGetColumnIndex() {
+        MatrixCursor cursor = new MatrixCursor(PreviewProgram.PROJECTION);
+        ColumnIndexMap columnIndexMap = new ColumnIndexMap(cursor);
+        for (String column : PreviewProgram.PROJECTION) {
+            assertEquals(cursor.getColumnIndex(column), columnIndexMap.getColumnIndex(column));
+        }
+        String upperCaseTitle = PreviewPrograms.COLUMN_TITLE.toUpperCase(Locale.US);
+        assertEquals(cursor.getColumnIndex(upperCaseTitle),
+                columnIndexMap.getColumnIndex(upperCaseTitle));
+        assertEquals(-1, columnIndexMap.getColumnIndex(Channels.COLUMN_DISPLAY_NUMBER));
+    }
+
+    @Test
+    @SmallTest
+    public void testMatches() {
+        ColumnIndexMap columnIndexMap =
+                new ColumnIndexMap(new MatrixCursor(PreviewProgram.PROJECTION));
+        assertTrue(columnIndexMap.matches(new MatrixCursor(PreviewProgram.PROJECTION)));
+        assertFalse(columnIndexMap.matches(new MatrixCursor(WatchNextProgram.PROJECTION)));
+    }
+
+    @Test
+    @SmallTest
+    public void testIterateFromCursor() {
+        MatrixCursor cursor = new MatrixCursor(PreviewProgram.PROJECTION);
+        for (int i = 0; i < 5; i++) {
+            addRow(cursor, createPreviewProgram(i).toContentValues(true));
+        }
+
+        Iterator<PreviewProgram> iterator = PreviewProgram.iterateFromCursor(cursor);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(iterator.hasNext());
+            PreviewProgram program = iterator.next();
+            assertEquals(PreviewProgram.fromCursor(cursor), program);
+            assertEquals(createPreviewProgram(i), program);
+        }
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testIterateWatchNextProgramsFromCursor() {
+        MatrixCursor cursor = new MatrixCursor(WatchNextProgram.PROJECTION);
+        for (int i = 0; i < 3; i++) {
+            addRow(cursor, new WatchNextProgram.Builder()
+                    .setId(i)
+                    .setTitle("Program " + i)
+                    .setWatchNextType(WatchNextPrograms.WATCH_NEXT_TYPE_CONTINUE)
+                    .setLastEngagementTimeUtcMillis(1000L * i)
+                    .build()
+                    .toContentValues(true));
+        }
+        // Only the rows after the current position are returned.
+        cursor.moveToFirst();
+
+        Iterator<WatchNextProgram> iterator = WatchNextProgram.iterateFromCursor(cursor);
+        int count = 0;
+        while (iterator.hasNext()) {
+            WatchNextProgram program = iterator.next();
+            assertEquals(WatchNextProgram.fromCursor(cursor), program);
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    @Test
+    @LargeTest
+    public void testFromCursor_benchmark() {
+        final int rowCount = 10000;
+        MatrixCursor cursor = new MatrixCursor(PreviewProgram.PROJECTION, rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            addRow(cursor, createPreviewProgram(i).toContentValues(true));
+        }
+
+        cursor.moveToPosition(-1);
+        long start = System.nanoTime();
+        while (cursor.moveToNext()) {
+            PreviewProgram.fromCursor(cursor);
+        }
+        final long rowNanos = System.nanoTime() - start;
+
+        cursor.moveToPosition(-1);
+        start = System.nanoTime();
+        ColumnIndexMap columnIndexMap = new ColumnIndexMap(cursor);
+        while (cursor.moveToNext()) {
+            PreviewProgram.fromCursor(cursor, columnIndexMap);
+        }
+        final long mapNanos = System.nanoTime() - start;
+
+        cursor.moveToPosition(-1);
+        start = System.nanoTime();
+        Iterator<PreviewProgram> iterator = PreviewProgram.iterateFromCursor(cursor);
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        final long iteratorNanos = System.nanoTime() - start;
+
+        Log.d(TAG, rowCount + " preview programs: per row " + rowNanos / 1000000
+                + "ms, column index map " + mapNanos / 1000000 + "ms, iterator "
+                + iteratorNanos / 1000000 + "ms");
+    }
+
+    private static PreviewProgram createPreviewProgram(long id) {
+        return new PreviewProgram.Builder()
+                .setId(id)
+                .setChannelId(3)
+                .setWeight((int) id)
+                .setTitle("Program " + id)
+                .setDescription("This is a sample program")
+                .setInternalProviderId("ID-" + id)
+                .setType(PreviewPrograms.TYPE_MOVIE)
+                .setPosterArtAspectRatio(PreviewPrograms.ASPECT_RATIO_2_3)
+                .setPosterArtUri(Uri.parse("http://example.com/poster" + id + ".png"))
+                .setDurationMillis(60 * 1000)
+                .build();
+    }
+
+    private static void addRow(MatrixCursor cursor, ContentValues contentValues) {
+        MatrixCursor.RowBuilder builder = cursor.newRow();
+        for (String col : cursor.getColumnNames()) {
+            builder.add(col, contentValues.get(col));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.media.tv;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.media.tv.TvContractCompat.Channels;
+import android.support.media.tv.TvContractCompat.PreviewPrograms;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.filters.SmallTest;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests that {@link PreviewProgramSyncHelper} applies the difference between the desired and the
+ * current programs to the system content provider.
+ */
+@SdkSuppress(minSdkVersion = 26)
+@TargetApi(26)
+public class PreviewProgramSyncHelperTest extends TestCase {
+    private static final String TAG = "PreviewProgramSyncHelperTest";
+
+    @Override
+    protected void tearDown() {
+        if (!Utils.hasTvInputFramework(InstrumentationRegistry.getContext())) {
+            return;
+        }
+        ContentResolver resolver = InstrumentationRegistry.getContext().getContentResolver();
+        resolver.delete(Channels.CONTENT_URI, null, null);
+    }
+
+    @Test
+    @SmallTest
+    public void testInvalidPrograms() throws Exception {
+        PreviewProgramSyncHelper helper =
+                new PreviewProgramSyncHelper(InstrumentationRegistry.getContext());
+        try {
+            helper.syncPreviewPrograms(1, Arrays.asList(new PreviewProgram.Builder().build()));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            helper.syncPreviewPrograms(1, Arrays.asList(createPreviewProgram("a", "Title"),
+                    createPreviewProgram("a", "Other title")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new PreviewProgramSyncHelper(InstrumentationRegistry.getContext(), 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    @SmallTest
+    public void testSyncPreviewPrograms() throws Exception {
+        Context context = InstrumentationRegistry.getContext();
+        if (!Utils.hasTvInputFramework(context)) {
+            return;
+        }
+        long channelId = insertChannel(context.getContentResolver());
+        // A small batch size so that the changes are split into several batches.
+        PreviewProgramSyncHelper helper = new PreviewProgramSyncHelper(context, 2);
+
+        List<PreviewProgram> programs = new ArrayList<>();
+        programs.add(createPreviewProgram("a", "Title A"));
+        programs.add(createPreviewProgram("b", "Title B"));
+        programs.add(createPreviewProgram("c", "Title C"));
+        assertResult(helper.syncPreviewPrograms(channelId, programs), 3, 0, 0, 0);
+        assertPrograms(context.getContentResolver(), channelId, programs);
+
+        // Nothing changed.
+        assertResult(helper.syncPreviewPrograms(channelId, programs), 0, 0, 0, 3);
+
+        programs.remove(0);
+        programs.set(0, createPreviewProgram("b", "New title B"));
+        programs.add(createPreviewProgram("d", "Title D"));
+        assertResult(helper.syncPreviewPrograms(channelId, programs), 1, 1, 1, 1);
+        assertPrograms(context.getContentResolver(), channelId, programs);
+
+        assertResult(helper.syncPreviewPrograms(channelId, new ArrayList<PreviewProgram>()),
+                0, 0, 3, 0);
+        assertPrograms(context.getContentResolver(), channelId, new ArrayList<PreviewProgram>());
+    }
+
+    @Test
+    @LargeTest
+    public void testSyncPreviewPrograms_benchmark() throws Exception {
+        Context context = InstrumentationRegistry.getContext();
+        if (!Utils.hasTvInputFramework(context)) {
+            return;
+        }
+        final int programCount = 500;
+        ContentResolver resolver = context.getContentResolver();
+        long channelId = insertChannel(resolver);
+
+        List<PreviewProgram> programs = new ArrayList<>();
+        for (int i = 0; i < programCount; i++) {
+            programs.add(createPreviewProgram("id-" + i, "Title " + i));
+        }
+        long start = System.nanoTime();
+        for (PreviewProgram program : programs) {
+            ContentValues values = program.toContentValues();
+            values.put(PreviewPrograms.COLUMN_CHANNEL_ID, channelId);
+            resolver.insert(PreviewPrograms.CONTENT_URI, values);
+        }
+        final long insertNanos = System.nanoTime() - start;
+        resolver.delete(TvContractCompat.buildPreviewProgramsUriForChannel(channelId), null, null);
+
+        PreviewProgramSyncHelper helper = new PreviewProgramSyncHelper(context);
+        start = System.nanoTime();
+        helper.syncPreviewPrograms(channelId, programs);
+        final long syncNanos = System.nanoTime() - start;
+
+        // Update one program in ten.
+        for (int i = 0; i < programCount; i += 10) {
+            programs.set(i, createPreviewProgram("id-" + i, "New title " + i));
+        }
+        start = System.nanoTime();
+        PreviewProgramSyncHelper.Result result = helper.syncPreviewPrograms(channelId, programs);
+        final long resyncNanos = System.nanoTime() - start;
+
+        Log.d(TAG, programCount + " preview programs: single inserts " + insertNanos / 1000000
+                + "ms, sync " + syncNanos / 1000000 + "ms, resync " + resyncNanos / 1000000
+                + "ms (" + result + ")");
+    }
+
+    private static long insertChannel(ContentResolver resolver) {
+        Channel channel = new Channel.Builder()
+                .setInputId("TestInputService")
+                .setType(TvContractCompat.Channels.TYPE_PREVIEW)
+                .build();
+        Uri channelUri = resolver.insert(Channels.CONTENT_URI, channel.toContentValues());
+        assertNotNull(channelUri);
+        return ContentUris.parseId(channelUri);
+    }
+
+    private static PreviewProgram createPreviewProgram(String internalProviderId, String title) {
+        return new PreviewProgram.Builder()
+                .setInternalProviderId(internalProviderId)
+                .setTitle(title)
+                .setType(PreviewPrograms.TYPE_MOVIE)
+                .setPosterArtUri(Uri.parse("http://example.com/" + internalProviderId + ".png"))
+                .setPosterArtAspectRatio(PreviewPrograms.ASPECT_RATIO_2_3)
+                .setInternalProviderData(internalProviderId.getBytes())
+                .setDurationMillis(60 * 1000)
+                .build();
+    }
+
+    private static void assertResult(PreviewProgramSyncHelper.Result result, int insertedCount,
+            int updatedCount, int deletedCount, int unchangedCount) {
+        assertEquals(insertedCount, result.getInsertedCount());
+        assertEquals(updatedCount, result.getUpdatedCount());
+        assertEquals(deletedCount, result.getDeletedCount());
+        assertEquals(unchangedCount, result.getUnchangedCount());
+    }
+
+    private static void assertPrograms(ContentResolver resolver, long channelId,
+            List<PreviewProgram> expectedPrograms) {
+        Map<String, PreviewProgram> programs = new HashMap<>();
+        try (Cursor cursor = resolver.query(
+                TvContractCompat.buildPreviewProgramsUriForChannel(channelId),
+                PreviewProgram.PROJECTION, null, null, null)) {
+            assertNotNull(cursor);
+            Iterator<PreviewProgram> iterator = PreviewProgram.iterateFromCursor(cursor);
+            while (iterator.hasNext()) {
+                PreviewProgram program = iterator.next();
+                programs.put(program.getInternalProviderId(), program);
+            }
+        }
+        assertEquals(expectedPrograms.size(), programs.size());
+        for (PreviewProgram expected : expectedPrograms) {
+            PreviewProgram program = programs.get(expected.getInternalProviderId());
+            assertNotNull(program);
+            assertEquals(channelId, program.getChannelId());
+            assertEquals(expected.getTitle(), program.getTitle());
+            assertEquals(expected.getPosterArtUri(), program.getPosterArtUri());
+            assertTrue(Arrays.equals(expected.getInternalProviderDataByteArray(),
+                    program.getInternalProviderDataByteArray()));
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v4.graphics.BitmapCompat;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Loads the background images of a {@link BackgroundManager} from URIs. The images are decoded
+ * on a background thread at the size which just covers the screen, optionally at a lower
+ * resolution and blurred. The recently loaded images are kept in a cache bounded by the number
+ * of bytes of the bitmaps, and the memory of the bitmaps evicted from it is reused to decode the
+ * next images. A decode only starts once the requested URI has not changed for the load delay,
+ * so quickly moving through items does not decode the image of each of them.
+ */
+final class BackgroundBitmapLoader {
+
+    static final String TAG = "BackgroundBitmapLoader";
+    static final boolean DEBUG = BackgroundManager.DEBUG;
+
+    static final long DEFAULT_LOAD_DELAY_MS = 200;
+    // Number of backgrounds decoded at the target size kept in the cache by default.
+    static final int DEFAULT_CACHE_SIZE_SCREENS = 3;
+    // Maximum number of bitmaps kept for reuse.
+    static final int MAX_REUSABLE_BITMAPS = 2;
+    // Number of box blur passes, three passes approximate a gaussian blur.
+    static final int BLUR_PASSES = 3;
+
+    final BackgroundManager mManager;
+    final ContentResolver mContentResolver;
+    final Handler mHandler;
+    final int mScreenWidth;
+    final int mScreenHeight;
+    final LruCache<Uri, Bitmap> mCache;
+    // Bitmaps which can be reused to decode the next images, accessed from the loading threads.
+    final ArrayList<Bitmap> mReusableBitmaps = new ArrayList<>();
+    long mLoadDelayMs = DEFAULT_LOAD_DELAY_MS;
+    // Whether the cache size was set by the app, otherwise it follows the target size.
+    boolean mCacheSizeSet;
+    float mScale = 1f;
+    int mBlurRadius;
+    Uri mRequestedUri;
+    LoadBitmapTask mTask;
+
+    int mCacheHitCount;
+    int mDecodeCount;
+    long mLastDecodeTimeMs;
+    long mTotalDecodeTimeMs;
+
+    final Runnable mLoadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mRequestedUri == null) {
+                return;
+            }
+            mTask = new LoadBitmapTask(mRequestedUri, getTargetWidth(), getTargetHeight(),
+                    mBlurRadius);
+            mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    };
+
+    final class LoadBitmapTask extends AsyncTask<Object, Object, Bitmap> {
+        final Uri mUri;
+        final int mWidth;
+        final int mHeight;
+        final int mRadius;
+        long mDecodeTimeMs;
+
+        LoadBitmapTask(Uri uri, int width, int height, int radius) {
+            mUri = uri;
+            mWidth = width;
+            mHeight = height;
+            mRadius = radius;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Object... params) {
+            final long startTime = SystemClock.uptimeMillis();
+            try {
+                final Bitmap bitmap = decode(mUri, mWidth, mHeight);
+                if (bitmap != null && mRadius > 0 && !isCancelled()) {
+                    blur(bitmap, mRadius);
+                }
+                mDecodeTimeMs = SystemClock.uptimeMillis() - startTime;
+                return bitmap;
+            } catch (IOException | RuntimeException e) {
+                // openInputStream() throws a SecurityException for a URI without permission,
+                // and the decoder an IllegalArgumentException for some malformed images.
+                Log.w(TAG, "Can not load background " + mUri, e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            if (mTask == this) {
+                mTask = null;
+            }
+            if (bitmap == null) {
+                return;
+            }
+            mDecodeCount++;
+            mLastDecodeTimeMs = mDecodeTimeMs;
+            mTotalDecodeTimeMs += mDecodeTimeMs;
+            if (DEBUG) {
+                Log.v(TAG, "decoded " + mUri + " " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                        + " in " + mDecodeTimeMs + "ms");
+            }
+            mCache.put(mUri, bitmap);
+            if (mUri.equals(mRequestedUri)) {
+                mManager.onBitmapLoaded(bitmap);
+            }
+        }
+
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (bitmap != null) {
+                releaseReusableBitmap(bitmap);
+            }
+        }
+    }
+
+    BackgroundBitmapLoader(BackgroundManager manager, ContentResolver contentResolver,
+            int screenWidth, int screenHeight) {
+        mManager = manager;
+        mContentResolver = contentResolver;
+        mHandler = new Handler();
+        mScreenWidth = screenWidth;
+        mScreenHeight = screenHeight;
+        mCache = new LruCache<Uri, Bitmap>(getDefaultCacheSize()) {
+            @Override
+            protected int sizeOf(Uri key, Bitmap value) {
+                return BitmapCompat.getAllocationByteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Uri key, Bitmap oldValue,
+                    Bitmap newValue) {
+                // A bitmap still displayed, or shared with other activities through the
+                // continuity service, must not be overwritten.
+                if (oldValue != newValue && !mManager.isBitmapInUse(oldValue)) {
+                    releaseReusableBitmap(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Requests the image of the given URI. The image is delivered to
+     * {@link BackgroundManager#onBitmapLoaded(Bitmap)} right away if it is cached, otherwise after
+     * it is decoded.
+     */
+    void load(Uri uri) {
+        if (uri.equals(mRequestedUri)) {
+            return;
+        }
+        cancel();
+        mRequestedUri = uri;
+        final Bitmap bitmap = mCache.get(uri);
+        if (bitmap != null) {
+            mCacheHitCount++;
+            mManager.onBitmapLoaded(bitmap);
+            return;
+        }
+        mHandler.postDelayed(mLoadRunnable, mLoadDelayMs);
+    }
+
+    /**
+     * Cancels the pending request, if any.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mLoadRunnable);
+        if (mTask != null) {
+            mTask.cancel(true);
+            mTask = null;
+        }
+        mRequestedUri = null;
+    }
+
+    /**
+     * Cancels the pending request and releases the cached and reusable bitmaps.
+     */
+    void release() {
+        cancel();
+        mCache.evictAll();
+        synchronized (mReusableBitmaps) {
+            mReusableBitmaps.clear();
+        }
+    }
+
+    /**
+     * Returns the width of the images decoded at the current scale, unless the image is smaller.
+     */
+    int getTargetWidth() {
+        return Math.max(1, (int) (mScreenWidth * mScale));
+    }
+
+    /**
+     * Returns the height of the images decoded at the current scale, unless the image is smaller.
+     */
+    int getTargetHeight() {
+        return Math.max(1, (int) (mScreenHeight * mScale));
+    }
+
+    private int getDefaultCacheSize() {
+        return Math.max(1, getTargetWidth() * getTargetHeight() * 4 * DEFAULT_CACHE_SIZE_SCREENS);
+    }
+
+    void setCacheSize(int maxSizeBytes) {
+        mCacheSizeSet = true;
+        mCache.resize(maxSizeBytes);
+    }
+
+    void setScale(float scale) {
+        if (mScale != scale) {
+            mScale = scale;
+            if (!mCacheSizeSet) {
+                mCache.resize(getDefaultCacheSize());
+            }
+            discardDecodedBitmaps();
+        }
+    }
+
+    void setBlurRadius(int radius) {
+        if (mBlurRadius != radius) {
+            mBlurRadius = radius;
+            discardDecodedBitmaps();
+        }
+    }
+
+    private void discardDecodedBitmaps() {
+        // The cached bitmaps no longer match the decoding parameters.
+        final Uri uri = mRequestedUri;
+        cancel();
+        mCache.evictAll();
+        if (uri != null) {
+            load(uri);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the cached and reusable bitmaps.
+     */
+    int getMemoryUsage() {
+        int bytes = mCache.size();
+        synchronized (mReusableBitmaps) {
+            for (int i = 0; i < mReusableBitmaps.size(); i++) {
+                bytes += BitmapCompat.getAllocationByteCount(mReusableBitmaps.get(i));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes the image at the smallest size which covers the given size, keeping its aspect
+     * ratio, or at its own size if it is smaller. The power of two sampling alone could leave
+     * the image almost twice as large in each dimension, so the sampled image is scaled down by
+     * the decoder to the exact size.
+     */
+    Bitmap decode(Uri uri, int width, int height) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(uri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                width, height);
+        final int sampledWidth = divideRoundUp(options.outWidth, options.inSampleSize);
+        final int sampledHeight = divideRoundUp(options.outHeight, options.inSampleSize);
+        int decodedWidth = sampledWidth;
+        int decodedHeight = sampledHeight;
+        if (sampledWidth > width && sampledHeight > height) {
+            // The dimension which needs the least scaling down to cover the size sets the scale.
+            options.inScaled = true;
+            if ((long) width * sampledHeight >= (long) height * sampledWidth) {
+                options.inDensity = sampledWidth;
+                options.inTargetDensity = width;
+            } else {
+                options.inDensity = sampledHeight;
+                options.inTargetDensity = height;
+            }
+            final float scale = (float) options.inTargetDensity / options.inDensity;
+            decodedWidth = (int) (sampledWidth * scale + 0.5f);
+            decodedHeight = (int) (sampledHeight * scale + 0.5f);
+        }
+        options.inMutable = true;
+        // Before KitKat a bitmap can only be reused to decode an image of the same size.
+        final Bitmap reusableBitmap = Build.VERSION.SDK_INT >= 19
+                ? obtainReusableBitmap(4 * decodedWidth * decodedHeight)
+                : null;
+        options.inBitmap = reusableBitmap;
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(uri, options);
+        } catch (IllegalArgumentException e) {
+            if (reusableBitmap == null) {
+                throw e;
+            }
+            // The reusable bitmap does not fit this image, drop it.
+            options.inBitmap = null;
+            bitmap = decodeStream(uri, options);
+        }
+        if (reusableBitmap != null && bitmap != reusableBitmap) {
+            releaseReusableBitmap(reusableBitmap);
+        }
+        if (bitmap != null && options.inScaled) {
+            // The densities only set the scale, the bitmap is drawn by its size in pixels.
+            bitmap.setDensity(Bitmap.DENSITY_NONE);
+        }
+        return bitmap;
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        final InputStream in = mContentResolver.openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size which keeps the image at least as large as the
+     * requested size, so that it still covers the screen once scaled.
+     */
+    static int calculateInSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int inSampleSize = 1;
+        while (imageWidth / (inSampleSize * 2) >= width
+                && imageHeight / (inSampleSize * 2) >= height) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static int divideRoundUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    Bitmap obtainReusableBitmap(int byteCount) {
+        synchronized (mReusableBitmaps) {
+            int bestIndex = -1;
+            int bestByteCount = Integer.MAX_VALUE;
+            for (int i = 0; i < mReusableBitmaps.size(); i++) {
+                final int count = BitmapCompat.getAllocationByteCount(mReusableBitmaps.get(i));
+                if (count >= byteCount && count < bestByteCount) {
+                    bestIndex = i;
+                    bestByteCount = count;
+                }
+            }
+            return bestIndex == -1 ? null : mReusableBitmaps.remove(bestIndex);
+        }
+    }
+
+    void releaseReusableBitmap(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (mReusableBitmaps) {
+            if (mReusableBitmaps.size() >= MAX_REUSABLE_BITMAPS) {
+                mReusableBitmaps.remove(0);
+            }
+            mReusableBitmaps.add(bitmap);
+        }
+    }
+
+    /**
+     * Blurs the bitmap in place with successive box blurs of the given radius.
+     */
+    static void blur(Bitmap bitmap, int radius) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] pixels = new int[width * height];
+        final int[] transposed = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        for (int pass = 0; pass < BLUR_PASSES; pass++) {
+            // Each call blurs the rows and transposes, so the second call blurs the columns.
+            boxBlurRowsAndTranspose(pixels, transposed, width, height, radius);
+            boxBlurRowsAndTranspose(transposed, pixels, height, width, radius);
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    static void boxBlurRowsAndTranspose(int[] src, int[] dst, int width, int height,
+            int radius) {
+        final int divisor = 2 * radius + 1;
+        final int lastX = width - 1;
+        for (int y = 0; y < height; y++) {
+            final int rowStart = y * width;
+            int a = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            // The edge pixels are repeated outside of the row.
+            for (int i = -radius; i <= radius; i++) {
+                final int pixel = src[rowStart + Math.min(Math.max(i, 0), lastX)];
+                a += pixel >>> 24;
+                r += (pixel >> 16) & 0xff;
+                g += (pixel >> 8) & 0xff;
+                b += pixel & 0xff;
+            }
+            for (int x = 0; x < width; x++) {
+                dst[x * height + y] = ((a / divisor) << 24) | ((r / divisor) << 16)
+                        | ((g / divisor) << 8) | (b / divisor);
+                final int in = src[rowStart + Math.min(x + radius + 1, lastX)];
+                final int out = src[rowStart + Math.max(x - radius, 0)];
+                a += (in >>> 24) - (out >>> 24);
+                r += ((in >> 16) & 0xff) - ((out >> 16) & 0xff);
+                g += ((in >> 8) & 0xff) - ((out >> 8) & 0xff);
+                b += (in & 0xff) - (out & 0xff);
+            }
+        }
+    }
+}
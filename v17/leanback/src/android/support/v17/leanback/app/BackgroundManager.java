@@ -29,6 +29,7 @@ import android.graphics.PixelFormat;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.support.annotation.ColorInt;
@@ -75,6 +76,11 @@ import java.lang.ref.WeakReference;
  * <p>BackgroundManager holds references to potentially large bitmap Drawables.
  * Call {@link #release} to release these references when the Activity is not
  * visible.
+ *
+ * <p>Backgrounds which change often, for example with the selected item of a
+ * list, should be set with {@link #setBitmapUri}: the images are decoded on a
+ * background thread once the selection settles, no larger than the screen, and
+ * the recently shown ones are cached.
  */
 // TODO: support for multiple app processes requires a proper android service
 // instead of the shared memory "service" implemented here. Such a service could
@@ -104,6 +110,7 @@ public final class BackgroundManager {
     Drawable mBackgroundDrawable;
     private boolean mAttached;
     private long mLastSetTime;
+    private BackgroundBitmapLoader mBitmapLoader;
 
     private final Interpolator mAccelerateInterpolator;
     private final Interpolator mDecelerateInterpolator;
@@ -731,6 +738,9 @@ public final class BackgroundManager {
             mLayerDrawable = null;
         }
         mBackgroundDrawable = null;
+        if (mBitmapLoader != null) {
+            mBitmapLoader.release();
+        }
     }
 
     /**
@@ -820,6 +830,7 @@ public final class BackgroundManager {
     public void setColor(@ColorInt int color) {
         if (DEBUG) Log.v(TAG, "setColor " + Integer.toHexString(color));
 
+        cancelBitmapLoad();
         mService.setColor(color);
         mBackgroundColor = color;
         mBackgroundDrawable = null;
@@ -836,6 +847,11 @@ public final class BackgroundManager {
      * undefined and may take place after a small delay.
      */
     public void setDrawable(Drawable drawable) {
+        cancelBitmapLoad();
+        setDrawableImpl(drawable);
+    }
+
+    private void setDrawableImpl(Drawable drawable) {
         if (DEBUG) Log.v(TAG, "setBackgroundDrawable " + drawable);
 
         mService.setDrawable(drawable);
@@ -899,11 +915,22 @@ public final class BackgroundManager {
             return;
         }
 
+        BitmapDrawable bitmapDrawable = createBitmapDrawable(bitmap);
+        if (bitmapDrawable != null) {
+            setDrawable(bitmapDrawable);
+        }
+    }
+
+    /**
+     * Returns a drawable which scales and crops the bitmap to fit within the dimensions of the
+     * view, or null if the bitmap is empty.
+     */
+    private BitmapDrawable createBitmapDrawable(Bitmap bitmap) {
         if (bitmap.getWidth() <= 0 || bitmap.getHeight() <= 0) {
             if (DEBUG) {
                 Log.v(TAG, "invalid bitmap width or height");
             }
-            return;
+            return null;
         }
 
         Matrix matrix = null;
@@ -933,9 +960,235 @@ public final class BackgroundManager {
             }
         }
 
-        BitmapDrawable bitmapDrawable = new BitmapDrawable(mContext.getResources(), bitmap, matrix);
+        return new BitmapDrawable(mContext.getResources(), bitmap, matrix);
+    }
+
+    /**
+     * Loads the image at the given URI and sets it into the background, scaled and cropped like
+     * {@link #setBitmap(Bitmap)}. The URI may use the {@link android.content.ContentResolver}
+     * schemes: content, android.resource and file.
+     * <p>
+     * The image is decoded on a background thread, at the smallest size which covers the screen
+     * (see {@link #setBitmapScale(float)}), and only once no other URI has been set for the load
+     * delay (see {@link #setBitmapLoadDelay(long)}), so that quickly moving through items does
+     * not decode the image of each of them. The recently loaded images are cached, and the memory
+     * of the bitmaps evicted from the cache is reused to decode the next ones. Setting a color, a
+     * drawable or a bitmap cancels the pending load.
+     * </p>
+     *
+     * @param uri The URI of the image, or null to clear the background drawable.
+     * @see #getBitmapLoadStats()
+     */
+    public void setBitmapUri(Uri uri) {
+        if (DEBUG) Log.v(TAG, "setBitmapUri " + uri);
+
+        if (uri == null) {
+            setDrawable(null);
+            return;
+        }
+        getBitmapLoader().load(uri);
+    }
+
+    /**
+     * Sets the time during which the URI set by {@link #setBitmapUri(Uri)} must not change
+     * before its image is decoded. Default is 200 milliseconds.
+     *
+     * @param delayMs The delay in milliseconds, 0 to decode right away.
+     */
+    public void setBitmapLoadDelay(long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("delayMs can not be negative");
+        }
+        getBitmapLoader().mLoadDelayMs = delayMs;
+    }
+
+    /**
+     * Returns the time during which the URI set by {@link #setBitmapUri(Uri)} must not change
+     * before its image is decoded.
+     */
+    public long getBitmapLoadDelay() {
+        return getBitmapLoader().mLoadDelayMs;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the images cached by {@link #setBitmapUri(Uri)}.
+     * Default is the size of three images of the screen size times the bitmap scale (see
+     * {@link #setBitmapScale(float)}), and follows the bitmap scale until this is called.
+     */
+    public void setBitmapCacheSize(int maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("maxSizeBytes must be positive");
+        }
+        getBitmapLoader().setCacheSize(maxSizeBytes);
+    }
+
+    /**
+     * Returns the maximum number of bytes of the images cached by {@link #setBitmapUri(Uri)}.
+     */
+    public int getBitmapCacheSize() {
+        return getBitmapLoader().mCache.maxSize();
+    }
+
+    /**
+     * Sets the resolution at which {@link #setBitmapUri(Uri)} decodes the images, relative to the
+     * screen size. The images larger than the screen size times the scale are decoded at the
+     * smallest size which covers it. A lower resolution, for example combined with
+     * {@link #setBitmapBlurRadius(int)}, reduces the memory and decoding time of the images.
+     * Default is 1. Changing it discards the cached images.
+     *
+     * @param scale The scale relative to the screen size, greater than 0 and at most 1.
+     */
+    public void setBitmapScale(float scale) {
+        if (!(scale > 0 && scale <= 1)) {
+            throw new IllegalArgumentException("scale must be greater than 0 and at most 1");
+        }
+        getBitmapLoader().setScale(scale);
+    }
+
+    /**
+     * Returns the resolution at which {@link #setBitmapUri(Uri)} decodes the images, relative to
+     * the screen size.
+     */
+    public float getBitmapScale() {
+        return getBitmapLoader().mScale;
+    }
+
+    /**
+     * Sets the radius of the blur applied to the images loaded by {@link #setBitmapUri(Uri)}, in
+     * pixels of the screen size times the bitmap scale (see {@link #setBitmapScale(float)}), at
+     * which the images are decoded. The blur therefore looks the same whatever the size of the
+     * source image, unless it is smaller than that. Default is 0, no blur. Changing it discards
+     * the cached images.
+     */
+    public void setBitmapBlurRadius(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius can not be negative");
+        }
+        getBitmapLoader().setBlurRadius(radius);
+    }
+
+    /**
+     * Returns the radius of the blur applied to the images loaded by
+     * {@link #setBitmapUri(Uri)}.
+     */
+    public int getBitmapBlurRadius() {
+        return getBitmapLoader().mBlurRadius;
+    }
+
+    /**
+     * Returns the statistics of the images loaded by {@link #setBitmapUri(Uri)}.
+     */
+    public BitmapLoadStats getBitmapLoadStats() {
+        final BackgroundBitmapLoader loader = getBitmapLoader();
+        return new BitmapLoadStats(loader.mCacheHitCount, loader.mDecodeCount,
+                loader.mLastDecodeTimeMs, loader.mTotalDecodeTimeMs, loader.getMemoryUsage());
+    }
+
+    /**
+     * Statistics of the images loaded by {@link BackgroundManager#setBitmapUri(Uri)}.
+     */
+    public static final class BitmapLoadStats {
+        private final int mCacheHitCount;
+        private final int mDecodeCount;
+        private final long mLastDecodeTimeMs;
+        private final long mTotalDecodeTimeMs;
+        private final int mMemoryUsageBytes;
+
+        BitmapLoadStats(int cacheHitCount, int decodeCount, long lastDecodeTimeMs,
+                long totalDecodeTimeMs, int memoryUsageBytes) {
+            mCacheHitCount = cacheHitCount;
+            mDecodeCount = decodeCount;
+            mLastDecodeTimeMs = lastDecodeTimeMs;
+            mTotalDecodeTimeMs = totalDecodeTimeMs;
+            mMemoryUsageBytes = memoryUsageBytes;
+        }
+
+        /**
+         * Returns the number of images which were found in the cache.
+         */
+        public int getCacheHitCount() {
+            return mCacheHitCount;
+        }
+
+        /**
+         * Returns the number of images which were decoded.
+         */
+        public int getDecodeCount() {
+            return mDecodeCount;
+        }
+
+        /**
+         * Returns the time in milliseconds taken to load the last decoded image.
+         */
+        public long getLastDecodeTimeMs() {
+            return mLastDecodeTimeMs;
+        }
+
+        /**
+         * Returns the average time in milliseconds taken to load an image which was not cached.
+         */
+        public long getAverageDecodeTimeMs() {
+            return mDecodeCount == 0 ? 0 : mTotalDecodeTimeMs / mDecodeCount;
+        }
+
+        /**
+         * Returns the number of bytes of the cached bitmaps and of the bitmaps kept for reuse.
+         */
+        public int getMemoryUsageBytes() {
+            return mMemoryUsageBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "BitmapLoadStats{cacheHits=" + mCacheHitCount + ", decodes=" + mDecodeCount
+                    + ", lastDecodeTimeMs=" + mLastDecodeTimeMs
+                    + ", averageDecodeTimeMs=" + getAverageDecodeTimeMs()
+                    + ", memoryUsageBytes=" + mMemoryUsageBytes + "}";
+        }
+    }
+
+    BackgroundBitmapLoader getBitmapLoader() {
+        if (mBitmapLoader == null) {
+            mBitmapLoader = new BackgroundBitmapLoader(this, mContext.getContentResolver(),
+                    mWidthPx, mHeightPx);
+        }
+        return mBitmapLoader;
+    }
+
+    private void cancelBitmapLoad() {
+        if (mBitmapLoader != null) {
+            mBitmapLoader.cancel();
+        }
+    }
+
+    /**
+     * Called by the {@link BackgroundBitmapLoader} with the image of the requested URI.
+     */
+    void onBitmapLoaded(Bitmap bitmap) {
+        BitmapDrawable bitmapDrawable = createBitmapDrawable(bitmap);
+        if (bitmapDrawable != null) {
+            setDrawableImpl(bitmapDrawable);
+        }
+    }
+
+    /**
+     * Returns true if the bitmap may be drawn by this BackgroundManager, or by another one which
+     * inherited it from the continuity service.
+     */
+    boolean isBitmapInUse(Bitmap bitmap) {
+        if (bitmap == getBitmap(mBackgroundDrawable)
+                || (mService != null && bitmap == getBitmap(mService.getDrawable()))
+                || (mChangeRunnable != null && bitmap == getBitmap(mChangeRunnable.mDrawable))) {
+            return true;
+        }
+        DrawableWrapper imageInWrapper = getImageInWrapper();
+        DrawableWrapper imageOutWrapper = getImageOutWrapper();
+        return (imageInWrapper != null && bitmap == getBitmap(imageInWrapper.getDrawable()))
+                || (imageOutWrapper != null && bitmap == getBitmap(imageOutWrapper.getDrawable()));
+    }
 
-        setDrawable(bitmapDrawable);
+    private static Bitmap getBitmap(Drawable drawable) {
+        return drawable instanceof BitmapDrawable ? ((BitmapDrawable) drawable).getBitmap() : null;
     }
 
     /**
@@ -976,7 +1229,10 @@ public final class BackgroundManager {
             return true;
         }
         if (first instanceof BitmapDrawable && second instanceof BitmapDrawable) {
-            if (((BitmapDrawable) first).getBitmap().sameAs(((BitmapDrawable) second).getBitmap())) {
+            final Bitmap firstBitmap = ((BitmapDrawable) first).getBitmap();
+            final Bitmap secondBitmap = ((BitmapDrawable) second).getBitmap();
+            // Avoid comparing the pixels of a bitmap shown again, e.g. from the cache.
+            if (firstBitmap == secondBitmap || firstBitmap.sameAs(secondBitmap)) {
                 return true;
             }
         }
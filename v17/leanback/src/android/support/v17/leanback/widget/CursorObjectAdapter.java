@@ -14,17 +14,143 @@
 package android.support.v17.leanback.widget;
 
 import android.database.Cursor;
+import android.os.AsyncTask;
+import android.support.annotation.Nullable;
 import android.support.v17.leanback.database.CursorMapper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.util.LruCache;
 
+import java.util.Map;
+
 /**
  * An {@link ObjectAdapter} implemented with a {@link Cursor}.
+ * <p>
+ * The objects converted by the {@link CursorMapper} are kept in a cache of
+ * {@link #setCacheSize(int)} rows. For large cursors, {@link #setPrefetchWindow(int)} converts
+ * the rows around the last requested one on a background thread, so that scrolling does not
+ * wait for the cursor to move and the rows to be converted.
+ * </p>
  */
 public class CursorObjectAdapter extends ObjectAdapter {
     private static final int CACHE_SIZE = 100;
     private Cursor mCursor;
     private CursorMapper mMapper;
-    private final LruCache<Integer, Object> mItemCache = new LruCache<Integer, Object>(CACHE_SIZE);
+    private volatile LruCache<Integer, Object> mItemCache =
+            new LruCache<Integer, Object>(CACHE_SIZE);
+    // Guards the cursor, the mapper and the cache while rows are converted in the background.
+    private final Object mLock = new Object();
+    private int mPrefetchWindow;
+    private PrefetchTask mPrefetchTask;
+    // The computation of the difference between the rows of the old cursor and the new one.
+    DiffTask mDiffTask;
+    // The rows of the old cursor, which back the adapter until the difference is dispatched.
+    Object[] mOldItems;
+    volatile int mLastRequestedIndex = -1;
+
+    /**
+     * Converts the rows of the prefetch window around the last requested index, nearest first,
+     * until all of them are cached.
+     */
+    private final class PrefetchTask extends AsyncTask<Object, Object, Object> {
+        private int mDoneIndex = -1;
+
+        @Override
+        protected Object doInBackground(Object[] params) {
+            while (!isCancelled()) {
+                final int index = mLastRequestedIndex;
+                if (!prefetchRow(index) && index == mLastRequestedIndex) {
+                    mDoneIndex = index;
+                    break;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Object result) {
+            if (mPrefetchTask == this) {
+                mPrefetchTask = null;
+                if (mLastRequestedIndex != mDoneIndex) {
+                    // get() was called after the window was completed.
+                    startPrefetch();
+                }
+            }
+        }
+
+        @Override
+        protected void onCancelled(Object result) {
+            if (mPrefetchTask == this) {
+                mPrefetchTask = null;
+            }
+        }
+    }
+
+    /**
+     * Converts the rows of the new cursor and computes their difference with the rows of the
+     * old cursor in the background, then dispatches the difference on the main thread.
+     */
+    private final class DiffTask extends AsyncTask<Object, Object, DiffUtil.DiffResult> {
+        private final Object[] mOldItems;
+        private final Cursor mNewCursor;
+        private final DiffCallback mCallback;
+        Object[] mNewItems;
+
+        DiffTask(Object[] oldItems, Cursor newCursor, DiffCallback callback) {
+            mOldItems = oldItems;
+            mNewCursor = newCursor;
+            mCallback = callback;
+        }
+
+        @Override
+        protected DiffUtil.DiffResult doInBackground(Object[] params) {
+            final Object[] oldItems = mOldItems;
+            final Object[] newItems = convertAll(this, mNewCursor);
+            if (newItems == null) {
+                // The new cursor was closed, the rows can not be compared.
+                return null;
+            }
+            mNewItems = newItems;
+            return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldItems.length;
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newItems.length;
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return mCallback.areItemsTheSame(oldItems[oldItemPosition],
+                            newItems[newItemPosition]);
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    return mCallback.areContentsTheSame(oldItems[oldItemPosition],
+                            newItems[newItemPosition]);
+                }
+
+                @Nullable
+                @Override
+                public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                    return mCallback.getChangePayload(oldItems[oldItemPosition],
+                            newItems[newItemPosition]);
+                }
+            });
+        }
+
+        @Override
+        protected void onPostExecute(DiffUtil.DiffResult result) {
+            if (mDiffTask == this) {
+                mDiffTask = null;
+                applyDiff(this, result);
+            }
+        }
+    }
 
     /**
      * Constructs an adapter with the given {@link PresenterSelector}.
@@ -55,17 +181,55 @@ public class CursorObjectAdapter extends ObjectAdapter {
      * @param cursor The new cursor to be used.
      */
     public void changeCursor(Cursor cursor) {
+        finishDiff();
         if (cursor == mCursor) {
             return;
         }
-        if (mCursor != null) {
-            mCursor.close();
+        synchronized (mLock) {
+            if (mCursor != null) {
+                mCursor.close();
+            }
+            mCursor = cursor;
+            mItemCache.evictAll();
         }
-        mCursor = cursor;
-        mItemCache.trimToSize(0);
         onCursorChanged();
     }
 
+    /**
+     * Changes the underlying cursor to a new cursor and dispatches the difference between the
+     * rows of the old and new cursors computed by {@link DiffUtil}, instead of calling
+     * {@link #onCursorChanged()}. If there is an existing cursor it will be closed if it is
+     * different than the new cursor.
+     * <p>
+     * The rows of the old cursor which are not cached are converted on the calling thread, and
+     * back the adapter until the difference is dispatched, so the old cursor is closed right
+     * away. The rows of the new cursor are converted by the {@link CursorMapper} and compared on
+     * a background thread, and the difference is dispatched on the main thread. If the old
+     * cursor is already closed, or the cursor is changed again in the meantime,
+     * {@link #onCursorChanged()} is called instead.
+     * </p>
+     *
+     * @param cursor The new cursor to be used.
+     * @param callback Optional DiffCallback Object to compute the difference between the rows of
+     *                 the old and new cursors. When null, this is the same as
+     *                 {@link #changeCursor(Cursor)}.
+     */
+    public void changeCursor(Cursor cursor, @Nullable DiffCallback callback) {
+        finishDiff();
+        if (cursor == mCursor) {
+            return;
+        }
+        final Cursor oldCursor = mCursor;
+        if (callback == null || !startDiff(cursor, callback)) {
+            changeCursor(cursor);
+            return;
+        }
+        // The old rows are converted, the old cursor is not used anymore.
+        if (oldCursor != null) {
+            oldCursor.close();
+        }
+    }
+
     /**
      * Swap in a new Cursor, returning the old Cursor. Unlike changeCursor(Cursor),
      * the returned old Cursor is not closed.
@@ -73,16 +237,173 @@ public class CursorObjectAdapter extends ObjectAdapter {
      * @param cursor The new cursor to be used.
      */
     public Cursor swapCursor(Cursor cursor) {
+        finishDiff();
         if (cursor == mCursor) {
             return mCursor;
         }
-        Cursor oldCursor = mCursor;
-        mCursor = cursor;
-        mItemCache.trimToSize(0);
+        Cursor oldCursor;
+        synchronized (mLock) {
+            oldCursor = mCursor;
+            mCursor = cursor;
+            mItemCache.evictAll();
+        }
         onCursorChanged();
         return oldCursor;
     }
 
+    /**
+     * Swap in a new Cursor, returning the old Cursor, and dispatches the difference between the
+     * rows of the old and new cursors computed by {@link DiffUtil}, instead of calling
+     * {@link #onCursorChanged()}. Unlike changeCursor(Cursor, DiffCallback), the returned old
+     * Cursor is not closed.
+     * <p>
+     * The rows of the old cursor which are not cached are converted on the calling thread, and
+     * back the adapter until the difference is dispatched, so the returned old cursor is not
+     * used anymore and may be closed right away. The rows of the new cursor are converted by the
+     * {@link CursorMapper} and compared on a background thread, and the difference is dispatched
+     * on the main thread. If the old cursor is already closed, or the cursor is changed again in
+     * the meantime, {@link #onCursorChanged()} is called instead.
+     * </p>
+     *
+     * @param cursor The new cursor to be used.
+     * @param callback Optional DiffCallback Object to compute the difference between the rows of
+     *                 the old and new cursors. When null, this is the same as
+     *                 {@link #swapCursor(Cursor)}.
+     */
+    public Cursor swapCursor(Cursor cursor, @Nullable DiffCallback callback) {
+        finishDiff();
+        if (cursor == mCursor) {
+            return mCursor;
+        }
+        final Cursor oldCursor = mCursor;
+        if (callback == null || !startDiff(cursor, callback)) {
+            return swapCursor(cursor);
+        }
+        return oldCursor;
+    }
+
+    /**
+     * Converts the rows of the current cursor, switches to the new cursor and starts computing
+     * the difference between their rows.
+     *
+     * @return false if the rows of the current cursor can not be converted.
+     */
+    private boolean startDiff(Cursor cursor, DiffCallback callback) {
+        final Object[] oldItems;
+        synchronized (mLock) {
+            if (mMapper == null || (mCursor != null && mCursor.isClosed())) {
+                return false;
+            }
+            oldItems = new Object[mCursor == null ? 0 : mCursor.getCount()];
+            for (int i = 0; i < oldItems.length; i++) {
+                Object item = mItemCache.get(i);
+                if (item == null) {
+                    if (!mCursor.moveToPosition(i)) {
+                        throw new ArrayIndexOutOfBoundsException();
+                    }
+                    item = mMapper.convert(mCursor);
+                }
+                oldItems[i] = item;
+            }
+            mCursor = cursor;
+            mOldItems = oldItems;
+            mItemCache.evictAll();
+        }
+        mDiffTask = new DiffTask(oldItems, cursor, callback);
+        mDiffTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    /**
+     * Stops backing the adapter with the rows of the old cursor if a difference is being
+     * computed, calling {@link #onCursorChanged()}.
+     */
+    private void finishDiff() {
+        final DiffTask task = mDiffTask;
+        if (task != null) {
+            mDiffTask = null;
+            task.cancel(false);
+            applyDiff(task, null);
+        }
+    }
+
+    /**
+     * Stops backing the adapter with the rows of the old cursor, and dispatches the difference
+     * if there is one. Otherwise calls {@link #onCursorChanged()}.
+     */
+    void applyDiff(DiffTask task, DiffUtil.DiffResult diffResult) {
+        synchronized (mLock) {
+            mOldItems = null;
+            final Object[] newItems = task.mNewItems;
+            if (diffResult != null && newItems != null) {
+                // Keep the new rows around the last requested one, which are likely to be bound.
+                final int cacheSize = mItemCache.maxSize();
+                final int start = Math.max(0, Math.min(mLastRequestedIndex - cacheSize / 2,
+                        newItems.length - cacheSize));
+                for (int i = start; i < newItems.length && i < start + cacheSize; i++) {
+                    mItemCache.put(i, newItems[i]);
+                }
+            }
+        }
+        if (diffResult == null) {
+            onCursorChanged();
+            return;
+        }
+        diffResult.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        });
+    }
+
+    /**
+     * Converts all the rows of the new cursor of a diff. The lock is taken for each row, so that
+     * {@link #get(int)} is not blocked for long.
+     *
+     * @return The converted rows, or null if the cursor was closed or the task cancelled.
+     */
+    Object[] convertAll(DiffTask task, Cursor cursor) {
+        if (cursor == null) {
+            return new Object[0];
+        }
+        final int count;
+        synchronized (mLock) {
+            if (task.isCancelled() || cursor.isClosed()) {
+                return null;
+            }
+            count = cursor.getCount();
+        }
+        final Object[] items = new Object[count];
+        for (int i = 0; i < count; i++) {
+            synchronized (mLock) {
+                if (task.isCancelled() || cursor.isClosed() || mMapper == null) {
+                    return null;
+                }
+                if (!cursor.moveToPosition(i)) {
+                    return null;
+                }
+                items[i] = mMapper.convert(cursor);
+            }
+        }
+        return items;
+    }
+
     /**
      * Called whenever the cursor changes.
      */
@@ -103,7 +424,9 @@ public class CursorObjectAdapter extends ObjectAdapter {
      */
     public final void setMapper(CursorMapper mapper) {
         boolean changed = mMapper != mapper;
-        mMapper = mapper;
+        synchronized (mLock) {
+            mMapper = mapper;
+        }
 
         if (changed) {
             onMapperChanged();
@@ -127,36 +450,171 @@ public class CursorObjectAdapter extends ObjectAdapter {
 
     @Override
     public int size() {
+        final Object[] oldItems = mOldItems;
+        if (oldItems != null) {
+            return oldItems.length;
+        }
         if (mCursor == null) {
             return 0;
         }
         return mCursor.getCount();
     }
 
+    /**
+     * Sets the maximum number of converted objects kept in the cache, 100 by default. The cache
+     * should hold at least the rows on screen and the prefetch window on both sides of them.
+     *
+     * @param cacheSize The maximum number of cached objects.
+     */
+    public final void setCacheSize(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("cacheSize must be positive");
+        }
+        synchronized (mLock) {
+            LruCache<Integer, Object> cache = new LruCache<Integer, Object>(cacheSize);
+            // The snapshot is ordered from least to most recently used.
+            for (Map.Entry<Integer, Object> entry : mItemCache.snapshot().entrySet()) {
+                cache.put(entry.getKey(), entry.getValue());
+            }
+            mItemCache = cache;
+        }
+    }
+
+    /**
+     * Returns the maximum number of converted objects kept in the cache.
+     */
+    public final int getCacheSize() {
+        return mItemCache.maxSize();
+    }
+
+    /**
+     * Sets the number of rows on each side of the last requested row which are converted on a
+     * background thread, so that {@link #get(int)} finds them in the cache. 0 disables the
+     * prefetching, which is the default. The prefetch window is limited by
+     * {@link #setCacheSize(int)}.
+     * <p>
+     * When the prefetching is enabled, the {@link CursorMapper} is called on a background thread,
+     * and the position of the {@link Cursor} is not defined after {@link #get(int)}.
+     * </p>
+     *
+     * @param rows The number of rows prefetched on each side of the last requested row.
+     */
+    public final void setPrefetchWindow(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows can not be negative");
+        }
+        synchronized (mLock) {
+            mPrefetchWindow = rows;
+        }
+        if (rows == 0 && mPrefetchTask != null) {
+            mPrefetchTask.cancel(false);
+            mPrefetchTask = null;
+        }
+    }
+
+    /**
+     * Returns the number of rows on each side of the last requested row which are converted on a
+     * background thread.
+     */
+    public final int getPrefetchWindow() {
+        return mPrefetchWindow;
+    }
+
     @Override
     public Object get(int index) {
+        final Object[] oldItems = mOldItems;
+        if (oldItems != null) {
+            // The difference with the new cursor is not dispatched yet.
+            mLastRequestedIndex = index;
+            return oldItems[index];
+        }
         if (mCursor == null) {
             return null;
         }
-        if (!mCursor.moveToPosition(index)) {
-            throw new ArrayIndexOutOfBoundsException();
+        mLastRequestedIndex = index;
+        if (mPrefetchWindow == 0) {
+            synchronized (mLock) {
+                if (!mCursor.moveToPosition(index)) {
+                    throw new ArrayIndexOutOfBoundsException();
+                }
+                Object item = mItemCache.get(index);
+                if (item != null) {
+                    return item;
+                }
+                item = mMapper.convert(mCursor);
+                mItemCache.put(index, item);
+                return item;
+            }
         }
         Object item = mItemCache.get(index);
-        if (item != null) {
-            return item;
+        if (item == null) {
+            synchronized (mLock) {
+                // The row may have been converted in the background in the meantime.
+                item = mItemCache.get(index);
+                if (item == null) {
+                    if (!mCursor.moveToPosition(index)) {
+                        throw new ArrayIndexOutOfBoundsException();
+                    }
+                    item = mMapper.convert(mCursor);
+                    mItemCache.put(index, item);
+                }
+            }
+        }
+        if (mPrefetchTask == null) {
+            startPrefetch();
         }
-        item = mMapper.convert(mCursor);
-        mItemCache.put(index, item);
         return item;
     }
 
+    void startPrefetch() {
+        if (mPrefetchWindow > 0) {
+            mPrefetchTask = new PrefetchTask();
+            mPrefetchTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+
+    /**
+     * Converts the nearest row of the prefetch window around the given index which is not
+     * cached.
+     *
+     * @return false if all the rows of the window are cached.
+     */
+    boolean prefetchRow(int index) {
+        synchronized (mLock) {
+            if (mCursor == null || mCursor.isClosed() || mMapper == null || index < 0
+                    || mOldItems != null) {
+                return false;
+            }
+            final LruCache<Integer, Object> cache = mItemCache;
+            // Leave room for the rows on screen, otherwise the window would evict itself.
+            final int window = Math.min(mPrefetchWindow, (cache.maxSize() - 1) / 2);
+            final int count = mCursor.getCount();
+            for (int distance = 0; distance <= window; distance++) {
+                for (int i = index - distance; i <= index + distance; i += Math.max(1,
+                        2 * distance)) {
+                    if (i >= 0 && i < count && cache.get(i) == null) {
+                        if (!mCursor.moveToPosition(i)) {
+                            return false;
+                        }
+                        cache.put(i, mMapper.convert(mCursor));
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * Closes this adapter, closing the backing {@link Cursor} as well.
      */
     public void close() {
-        if (mCursor != null) {
-            mCursor.close();
-            mCursor = null;
+        finishDiff();
+        synchronized (mLock) {
+            if (mCursor != null) {
+                mCursor.close();
+                mCursor = null;
+            }
         }
     }
 
@@ -173,15 +631,20 @@ public class CursorObjectAdapter extends ObjectAdapter {
      * from the data source the next time {@link #get(int)} is called.
      */
     protected final void invalidateCache(int index) {
-        mItemCache.remove(index);
+        // Taking the lock keeps a row being prefetched from being put back after its removal.
+        synchronized (mLock) {
+            mItemCache.remove(index);
+        }
     }
 
     /**
      * Removes {@code count} items starting at {@code index}.
      */
     protected final void invalidateCache(int index, int count) {
-        for (int limit = count + index; index < limit; index++) {
-            invalidateCache(index);
+        synchronized (mLock) {
+            for (int limit = count + index; index < limit; index++) {
+                mItemCache.remove(index);
+            }
         }
     }
 
@@ -267,7 +267,7 @@ abstract class Grid {
     /**
      * Gets the row index of item at given index.
      */
-    public final int getRowIndex(int index) {
+    public int getRowIndex(int index) {
         Location location = getLocation(index);
         if (location == null) {
             return -1;
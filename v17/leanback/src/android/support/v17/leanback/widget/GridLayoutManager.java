@@ -1918,13 +1918,13 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 invalidateAfter = true;
                 break;
             }
-            Grid.Location location = mGrid.getLocation(position);
-            if (location == null) {
+            final int row = mGrid.getRowIndex(position);
+            if (row < 0) {
                 invalidateAfter = true;
                 break;
             }
 
-            int startSecondary = getRowStartSecondary(location.row)
+            int startSecondary = getRowStartSecondary(row)
                     + mWindowAlignment.secondAxis().getPaddingMin() - mScrollOffsetSecondary;
             int primarySize, end;
             int start = getViewMin(view);
@@ -1945,7 +1945,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 primarySize = getDecoratedMeasuredHeightWithMargin(view);
                 end = start + primarySize;
             }
-            layoutChild(location.row, view, start, end, startSecondary);
+            layoutChild(row, view, start, end, startSecondary);
             if (oldPrimarySize != primarySize) {
                 // size changed invalidate remaining Locations
                 if (DEBUG) Log.d(getTag(), "fastRelayout: view size changed at " + position);
@@ -2047,9 +2047,9 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
             // Grid still maps to old positions at this point, use old position to get row infor
             int position = mBaseGridView.getChildViewHolder(getChildAt(i)).getOldPosition();
             if (position >= 0) {
-                Grid.Location loc = mGrid.getLocation(position);
-                if (loc != null) {
-                    mPositionToRowInPostLayout.put(position, loc.row);
+                final int row = mGrid.getRowIndex(position);
+                if (row >= 0) {
+                    mPositionToRowInPostLayout.put(position, row);
                 }
             }
         }
@@ -3154,11 +3154,11 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
         if (mGrid.getFirstVisibleIndex() > 0) {
             return true;
         }
-        final int focusedRow = mGrid.getLocation(pos).row;
+        final int focusedRow = mGrid.getRowIndex(pos);
         for (int i = getChildCount() - 1; i >= 0; i--) {
             int position = getAdapterPositionByIndex(i);
-            Grid.Location loc = mGrid.getLocation(position);
-            if (loc != null && loc.row == focusedRow) {
+            final int row = mGrid.getRowIndex(position);
+            if (row >= 0 && row == focusedRow) {
                 if (position < pos) {
                     return true;
                 }
@@ -3207,7 +3207,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
             }
             // Add focusables of neighbor depending on the focus search direction.
             final int focusedRow = mGrid != null && immediateFocusedChild != null
-                    ? mGrid.getLocation(focusedPos).row : NO_POSITION;
+                    ? mGrid.getRowIndex(focusedPos) : NO_POSITION;
             final int focusableCount = views.size();
             int inc = movement == NEXT_ITEM || movement == NEXT_ROW ? 1 : -1;
             int loop_end = inc > 0 ? getChildCount() - 1 : 0;
@@ -3232,13 +3232,13 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                     continue;
                 }
                 int position = getAdapterPositionByIndex(i);
-                Grid.Location loc = mGrid.getLocation(position);
-                if (loc == null) {
+                final int row = mGrid.getRowIndex(position);
+                if (row < 0) {
                     continue;
                 }
                 if (movement == NEXT_ITEM) {
                     // Add first focusable item on the same row
-                    if (loc.row == focusedRow && position > focusedPos) {
+                    if (row == focusedRow && position > focusedPos) {
                         child.addFocusables(views,  direction, focusableMode);
                         if (views.size() > focusableCount) {
                             break;
@@ -3246,7 +3246,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                     }
                 } else if (movement == PREV_ITEM) {
                     // Add first focusable item on the same row
-                    if (loc.row == focusedRow && position < focusedPos) {
+                    if (row == focusedRow && position < focusedPos) {
                         child.addFocusables(views,  direction, focusableMode);
                         if (views.size() > focusableCount) {
                             break;
@@ -3254,17 +3254,17 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                     }
                 } else if (movement == NEXT_ROW) {
                     // Add all focusable items after this item whose row index is bigger
-                    if (loc.row == focusedRow) {
+                    if (row == focusedRow) {
                         continue;
-                    } else if (loc.row < focusedRow) {
+                    } else if (row < focusedRow) {
                         break;
                     }
                     child.addFocusables(views,  direction, focusableMode);
                 } else if (movement == PREV_ROW) {
                     // Add all focusable items before this item whose row index is smaller
-                    if (loc.row == focusedRow) {
+                    if (row == focusedRow) {
                         continue;
-                    } else if (loc.row > focusedRow) {
+                    } else if (row > focusedRow) {
                         break;
                     }
                     child.addFocusables(views,  direction, focusableMode);
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v17.leanback.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.support.annotation.WorkerThread;
+import android.support.v4.graphics.BitmapCompat;
+import android.support.v4.util.LruCache;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A {@link PlaybackSeekDataProvider} that loads thumbnails on a background thread pool, caches
+ * them and prefetches the thumbnails ahead of the seek direction. Subclass implements
+ * {@link #loadThumbnail(int, long, BitmapFactory.Options)}, e.g. to decode a frame of the video
+ * or a region of a sprite sheet:
+ * <pre>
+ * protected Bitmap loadThumbnail(int index, long position, BitmapFactory.Options options) {
+ *     // mSpriteSheet is a BitmapRegionDecoder of a sheet of COLUMNS thumbnails per row.
+ *     int left = (index % COLUMNS) * THUMB_WIDTH;
+ *     int top = (index / COLUMNS) * THUMB_HEIGHT;
+ *     return mSpriteSheet.decodeRegion(
+ *             new Rect(left, top, left + THUMB_WIDTH, top + THUMB_HEIGHT), options);
+ * }
+ * </pre>
+ * <p>
+ * The loaded thumbnails are kept in a cache bounded by the number of bytes of the bitmaps, and
+ * are kept after {@link #reset()} so that seeking again around the same positions does not load
+ * them again. When seeking right, the thumbnails after the requested index are prefetched; when
+ * seeking left, the thumbnails before it. The bitmaps evicted from the cache, which are not
+ * displayed any more, are reused to decode the next thumbnails through
+ * {@link BitmapFactory.Options#inBitmap}.
+ * </p>
+ */
+public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProvider {
+
+    /**
+     * The default maximum number of bytes of the cached thumbnails.
+     */
+    public static final int DEFAULT_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * The default number of thumbnails prefetched ahead of the seek direction.
+     */
+    public static final int DEFAULT_PREFETCH_COUNT = 8;
+
+    final LruCache<Integer, Bitmap> mCache;
+    final int mPrefetchCount;
+    final SparseArray<LoadThumbnailTask> mRequests = new SparseArray<>();
+    // Bitmaps passed to a ResultCallback since the last reset(), which must not be reused while
+    // the UI may still display them.
+    final Set<Bitmap> mDeliveredBitmaps =
+            Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+    // Bitmaps which can be reused to decode the next thumbnails, accessed from the loading
+    // threads.
+    final ArrayList<Bitmap> mReusableBitmaps = new ArrayList<>();
+    long[] mSeekPositions;
+    int mLastRequestedIndex = -1;
+
+    class LoadThumbnailTask extends AsyncTask<Object, Object, Bitmap> {
+
+        final int mIndex;
+        final long mPosition;
+        ResultCallback mResultCallback;
+
+        LoadThumbnailTask(int index, long position, ResultCallback callback) {
+            mIndex = index;
+            mPosition = position;
+            mResultCallback = callback;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Object[] params) {
+            if (isCancelled()) {
+                return null;
+            }
+            return load(mIndex, mPosition);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            if (mRequests.get(mIndex) == this) {
+                mRequests.remove(mIndex);
+            }
+            if (bitmap == null) {
+                return;
+            }
+            if (mResultCallback != null) {
+                // Mark the bitmap as displayed before it is cached, so that it is not reused if
+                // it is evicted right away.
+                mDeliveredBitmaps.add(bitmap);
+            }
+            mCache.put(mIndex, bitmap);
+            if (mResultCallback != null) {
+                mResultCallback.onThumbnailLoaded(bitmap, mIndex);
+            }
+        }
+
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (bitmap != null) {
+                releaseReusableBitmap(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Creates a provider with a cache of {@link #DEFAULT_CACHE_SIZE_BYTES} bytes which prefetches
+     * {@link #DEFAULT_PREFETCH_COUNT} thumbnails.
+     */
+    public PlaybackSeekAsyncDataProvider() {
+        this(DEFAULT_CACHE_SIZE_BYTES, DEFAULT_PREFETCH_COUNT);
+    }
+
+    /**
+     * Creates a provider.
+     *
+     * @param cacheSizeBytes The maximum number of bytes of the cached thumbnails.
+     * @param prefetchCount The number of thumbnails prefetched ahead of the seek direction, 0 to
+     *                      disable prefetching.
+     */
+    public PlaybackSeekAsyncDataProvider(int cacheSizeBytes, int prefetchCount) {
+        if (cacheSizeBytes <= 0) {
+            throw new IllegalArgumentException("cacheSizeBytes must be positive");
+        }
+        if (prefetchCount < 0) {
+            throw new IllegalArgumentException("prefetchCount can not be negative");
+        }
+        mPrefetchCount = prefetchCount;
+        mCache = new LruCache<Integer, Bitmap>(cacheSizeBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return BitmapCompat.getAllocationByteCount(value);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                    Bitmap newValue) {
+                if (oldValue != newValue && !mDeliveredBitmaps.contains(oldValue)) {
+                    releaseReusableBitmap(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Sets the sorted seek positions. The cached thumbnails are discarded.
+     *
+     * @param positions The sorted seek positions.
+     */
+    public void setSeekPositions(long[] positions) {
+        reset();
+        mCache.evictAll();
+        mSeekPositions = positions;
+    }
+
+    @Override
+    public long[] getSeekPositions() {
+        return mSeekPositions;
+    }
+
+    /**
+     * Loads the thumbnail of a seek position. This method is called on a background thread, and
+     * may be called concurrently for different positions. The thread is interrupted when the
+     * request is cancelled.
+     * <p>
+     * {@link BitmapFactory.Options#inBitmap} of the given options may be set to a bitmap which is
+     * no longer used, in which case the implementation should pass the options to
+     * {@link BitmapFactory} or {@link android.graphics.BitmapRegionDecoder} so that the thumbnail
+     * is decoded into it. If the decoder throws an {@link IllegalArgumentException} because the
+     * bitmap can not be reused, this method is called again without it.
+     * </p>
+     *
+     * @param index Index of position in {@link #getSeekPositions()}.
+     * @param position The seek position.
+     * @param options The options to decode the thumbnail with.
+     * @return The thumbnail, or null if it can not be loaded.
+     */
+    @WorkerThread
+    protected abstract Bitmap loadThumbnail(int index, long position,
+            BitmapFactory.Options options);
+
+    Bitmap load(int index, long position) {
+        final Bitmap reusableBitmap = obtainReusableBitmap();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inBitmap = reusableBitmap;
+        Bitmap bitmap;
+        try {
+            bitmap = loadThumbnail(index, position, options);
+        } catch (IllegalArgumentException e) {
+            if (reusableBitmap == null) {
+                throw e;
+            }
+            // The reusable bitmap does not fit this thumbnail, drop it.
+            options.inBitmap = null;
+            return loadThumbnail(index, position, options);
+        }
+        if (reusableBitmap != null && bitmap != reusableBitmap) {
+            releaseReusableBitmap(reusableBitmap);
+        }
+        return bitmap;
+    }
+
+    Bitmap obtainReusableBitmap() {
+        synchronized (mReusableBitmaps) {
+            final int size = mReusableBitmaps.size();
+            return size == 0 ? null : mReusableBitmaps.remove(size - 1);
+        }
+    }
+
+    void releaseReusableBitmap(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (mReusableBitmaps) {
+            // Keep as many bitmaps as the thumbnails loaded ahead, let the others be collected.
+            if (mReusableBitmaps.size() < Math.max(mPrefetchCount, 1)) {
+                mReusableBitmaps.add(bitmap);
+            }
+        }
+    }
+
+    @Override
+    public void getThumbnail(int index, ResultCallback callback) {
+        if (mSeekPositions == null || index < 0 || index >= mSeekPositions.length) {
+            return;
+        }
+        Bitmap bitmap = mCache.get(index);
+        if (bitmap != null) {
+            mDeliveredBitmaps.add(bitmap);
+            callback.onThumbnailLoaded(bitmap, index);
+        } else {
+            LoadThumbnailTask task = mRequests.get(index);
+            if (task == null || task.isCancelled()) {
+                task = new LoadThumbnailTask(index, mSeekPositions[index], callback);
+                mRequests.put(index, task);
+                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            } else {
+                // update existing ResultCallback which might be normal task or prefetch
+                task.mResultCallback = callback;
+            }
+        }
+        if (mLastRequestedIndex != index) {
+            if (mLastRequestedIndex != -1) {
+                prefetch(index, index > mLastRequestedIndex);
+            }
+            mLastRequestedIndex = index;
+        }
+    }
+
+    /**
+     * Cancels the prefetches outside of the thumbnails ahead of the hint index, then starts
+     * loading the ones which are neither cached nor loading.
+     */
+    void prefetch(int hintIndex, boolean forward) {
+        final int inc = forward ? 1 : -1;
+        final int windowEnd = hintIndex + inc * mPrefetchCount;
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            final int index = mRequests.keyAt(i);
+            final LoadThumbnailTask task = mRequests.valueAt(i);
+            if (task.mResultCallback == null
+                    && (forward ? index <= hintIndex || index > windowEnd
+                            : index >= hintIndex || index < windowEnd)) {
+                task.cancel(true);
+                mRequests.removeAt(i);
+            }
+        }
+        for (int i = hintIndex + inc; inc > 0 ? i <= windowEnd && i < mSeekPositions.length
+                : i >= windowEnd && i >= 0; i += inc) {
+            if (mCache.get(i) == null && mRequests.get(i) == null) {
+                LoadThumbnailTask task = new LoadThumbnailTask(i, mSeekPositions[i], null);
+                mRequests.put(i, task);
+                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending requests. The cached thumbnails are kept, and the ones which were
+     * displayed may be reused afterwards.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < mRequests.size(); i++) {
+            mRequests.valueAt(i).cancel(true);
+        }
+        mRequests.clear();
+        mDeliveredBitmaps.clear();
+        mLastRequestedIndex = -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append("Requests<");
+        for (int i = 0; i < mRequests.size(); i++) {
+            b.append(mRequests.keyAt(i));
+            b.append(",");
+        }
+        b.append("> Cache<");
+        for (Integer key : mCache.snapshot().keySet()) {
+            b.append(key);
+            b.append(",");
+        }
+        b.append(">");
+        return b.toString();
+    }
+}
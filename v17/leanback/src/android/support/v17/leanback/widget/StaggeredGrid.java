@@ -13,7 +13,6 @@
  */
 package android.support.v17.leanback.widget;
 
-import android.support.v4.util.CircularArray;
 import android.support.v4.util.CircularIntArray;
 
 import java.io.PrintWriter;
@@ -31,7 +30,8 @@ import java.io.PrintWriter;
  * scrolls back to 0 and we don't keep history location information, edges of
  * the very beginning of rows will not be aligned. It is recommended to keep a
  * list of tens of thousands of {@link StaggeredGrid.Location}s which will be
- * big enough to remember a typical user's scroll history.
+ * big enough to remember a typical user's scroll history. The locations are stored in
+ * parallel int arrays rather than as one {@link StaggeredGrid.Location} object per item.
  *
  * <p>
  * This class is abstract and can be replaced with different implementations.
@@ -61,7 +61,117 @@ abstract class StaggeredGrid extends Grid {
         }
     }
 
-    protected CircularArray<Location> mLocations = new CircularArray<Location>(64);
+    /**
+     * Circular storage of the row, offset and size of cached items in three parallel int
+     * arrays, so that no object is allocated or dereferenced per item.
+     */
+    static final class LocationArray {
+        private int[] mRows;
+        private int[] mOffsets;
+        private int[] mSizes;
+        private int mHead;
+        private int mTail;
+        private int mCapacityBitmask;
+
+        LocationArray(int minCapacity) {
+            int arrayCapacity = Integer.highestOneBit(Math.max(minCapacity, 1));
+            if (arrayCapacity < minCapacity) {
+                arrayCapacity <<= 1;
+            }
+            mCapacityBitmask = arrayCapacity - 1;
+            mRows = new int[arrayCapacity];
+            mOffsets = new int[arrayCapacity];
+            mSizes = new int[arrayCapacity];
+        }
+
+        private void doubleCapacity() {
+            mRows = doubleCapacity(mRows);
+            mOffsets = doubleCapacity(mOffsets);
+            mSizes = doubleCapacity(mSizes);
+            mHead = 0;
+            mTail = mCapacityBitmask + 1;
+            mCapacityBitmask = (mCapacityBitmask << 1) | 1;
+        }
+
+        private int[] doubleCapacity(int[] elements) {
+            int n = elements.length;
+            int r = n - mHead;
+            int[] a = new int[n << 1];
+            System.arraycopy(elements, mHead, a, 0, r);
+            System.arraycopy(elements, 0, a, r, mHead);
+            return a;
+        }
+
+        void addFirst(int row, int offset, int size) {
+            mHead = (mHead - 1) & mCapacityBitmask;
+            mRows[mHead] = row;
+            mOffsets[mHead] = offset;
+            mSizes[mHead] = size;
+            if (mHead == mTail) {
+                doubleCapacity();
+            }
+        }
+
+        void addLast(int row, int offset, int size) {
+            mRows[mTail] = row;
+            mOffsets[mTail] = offset;
+            mSizes[mTail] = size;
+            mTail = (mTail + 1) & mCapacityBitmask;
+            if (mTail == mHead) {
+                doubleCapacity();
+            }
+        }
+
+        int getRow(int n) {
+            return mRows[(mHead + n) & mCapacityBitmask];
+        }
+
+        int getOffset(int n) {
+            return mOffsets[(mHead + n) & mCapacityBitmask];
+        }
+
+        int getSize(int n) {
+            return mSizes[(mHead + n) & mCapacityBitmask];
+        }
+
+        void setOffset(int n, int offset) {
+            mOffsets[(mHead + n) & mCapacityBitmask] = offset;
+        }
+
+        void setSize(int n, int size) {
+            mSizes[(mHead + n) & mCapacityBitmask] = size;
+        }
+
+        void removeFromStart(int numOfElements) {
+            if (numOfElements <= 0) {
+                return;
+            }
+            if (numOfElements > size()) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            mHead = (mHead + numOfElements) & mCapacityBitmask;
+        }
+
+        void removeFromEnd(int numOfElements) {
+            if (numOfElements <= 0) {
+                return;
+            }
+            if (numOfElements > size()) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            mTail = (mTail - numOfElements) & mCapacityBitmask;
+        }
+
+        void clear() {
+            mTail = mHead;
+        }
+
+        int size() {
+            return (mTail - mHead) & mCapacityBitmask;
+        }
+    }
+
+    protected LocationArray mLocations = new LocationArray(64);
 
     // mFirstIndex <= mFirstVisibleIndex <= mLastVisibleIndex
     //    <= mFirstIndex + mLocations.size() - 1
@@ -93,20 +203,58 @@ abstract class StaggeredGrid extends Grid {
         return mLocations.size();
     }
 
+    private final Location mTmpLocation = new Location(0, 0, 0);
+
     @Override
     public final Location getLocation(int index) {
         final int indexInArray = index - mFirstIndex;
         if (indexInArray < 0 || indexInArray >= mLocations.size()) {
             return null;
         }
-        return mLocations.get(indexInArray);
+        // The locations are not stored as objects, share the same Location object.
+        mTmpLocation.row = mLocations.getRow(indexInArray);
+        mTmpLocation.offset = mLocations.getOffset(indexInArray);
+        mTmpLocation.size = mLocations.getSize(indexInArray);
+        return mTmpLocation;
+    }
+
+    @Override
+    public int getRowIndex(int index) {
+        final int indexInArray = index - mFirstIndex;
+        if (indexInArray < 0 || indexInArray >= mLocations.size()) {
+            return -1;
+        }
+        return mLocations.getRow(indexInArray);
+    }
+
+    /**
+     * Returns the row of a cached item, which must be between {@link #getFirstIndex()} and
+     * {@link #getLastIndex()}.
+     */
+    protected final int getLocationRow(int index) {
+        return mLocations.getRow(index - mFirstIndex);
+    }
+
+    /**
+     * Returns the offset to the previous item of a cached item, which must be between
+     * {@link #getFirstIndex()} and {@link #getLastIndex()}.
+     */
+    protected final int getLocationOffset(int index) {
+        return mLocations.getOffset(index - mFirstIndex);
+    }
+
+    /**
+     * Returns the size of a cached item, which must be between {@link #getFirstIndex()} and
+     * {@link #getLastIndex()}.
+     */
+    protected final int getLocationSize(int index) {
+        return mLocations.getSize(index - mFirstIndex);
     }
 
     @Override
     public final void debugPrint(PrintWriter pw) {
         for (int i = 0, size = mLocations.size(); i < size; i++) {
-            Location loc = mLocations.get(i);
-            pw.print("<" + (mFirstIndex + i) + "," + loc.row + ">");
+            pw.print("<" + (mFirstIndex + i) + "," + mLocations.getRow(i) + ">");
             pw.print(" ");
             pw.println();
         }
@@ -145,7 +293,7 @@ abstract class StaggeredGrid extends Grid {
         if (mFirstVisibleIndex >= 0) {
             // prepend visible items from first visible index
             edge = mProvider.getEdge(mFirstVisibleIndex);
-            offset = getLocation(mFirstVisibleIndex).offset;
+            offset = getLocationOffset(mFirstVisibleIndex);
             itemIndex = mFirstVisibleIndex - 1;
         } else {
             // prepend first visible item
@@ -163,10 +311,10 @@ abstract class StaggeredGrid extends Grid {
         }
         int firstIndex = Math.max(mProvider.getMinIndex(), mFirstIndex);
         for (; itemIndex >= firstIndex; itemIndex--) {
-            Location loc = getLocation(itemIndex);
-            int rowIndex = loc.row;
+            int rowIndex = getLocationRow(itemIndex);
+            int itemOffset = getLocationOffset(itemIndex);
             int size = mProvider.createItem(itemIndex, false, mTmpItem, false);
-            if (size != loc.size) {
+            if (size != getLocationSize(itemIndex)) {
                 mLocations.removeFromStart(itemIndex + 1 - mFirstIndex);
                 mFirstIndex = mFirstVisibleIndex;
                 // pending item will be added in prependVisibleItemsWithoutCache
@@ -183,7 +331,7 @@ abstract class StaggeredGrid extends Grid {
                 return true;
             }
             edge = mProvider.getEdge(itemIndex);
-            offset = loc.offset;
+            offset = itemOffset;
             // Check limit after filled a full column
             if (rowIndex == 0) {
                 if (oneColumnMode) {
@@ -202,8 +350,7 @@ abstract class StaggeredGrid extends Grid {
         int cachedIndex = getLastIndex();
         boolean foundCachedItemInSameRow = false;
         while (cachedIndex >= mFirstIndex) {
-            Location loc = getLocation(cachedIndex);
-            if (loc.row == row) {
+            if (getLocationRow(cachedIndex) == row) {
                 foundCachedItemInSameRow = true;
                 break;
             }
@@ -215,10 +362,10 @@ abstract class StaggeredGrid extends Grid {
         // Assuming the cachedIndex is next to item on the same row, so the
         // sum of offset of [cachedIndex + 1, itemIndex] should be size of the
         // cached item plus spacing.
-        int offset = isReversedFlow() ?  -getLocation(cachedIndex).size - mSpacing:
-                getLocation(cachedIndex).size + mSpacing;
+        int offset = isReversedFlow() ?  -getLocationSize(cachedIndex) - mSpacing:
+                getLocationSize(cachedIndex) + mSpacing;
         for (int i = cachedIndex + 1; i <= getLastIndex(); i++) {
-            offset -= getLocation(i).offset;
+            offset -= getLocationOffset(i);
         }
         return offset;
     }
@@ -242,29 +389,30 @@ abstract class StaggeredGrid extends Grid {
                 throw new IllegalStateException();
             }
         }
-        Location oldFirstLoc = mFirstIndex >= 0 ? getLocation(mFirstIndex) : null;
+        boolean hasOldFirstLoc = mFirstIndex >= 0 && mLocations.size() > 0;
         int oldFirstEdge = mProvider.getEdge(mFirstIndex);
-        Location loc = new Location(rowIndex, 0, 0);
-        mLocations.addFirst(loc);
+        mLocations.addFirst(rowIndex, 0, 0);
         Object item;
+        int size;
         if (mPendingItem != null) {
-            loc.size = mPendingItemSize;
+            size = mPendingItemSize;
             item = mPendingItem;
             mPendingItem = null;
         } else {
-            loc.size = mProvider.createItem(itemIndex, false, mTmpItem, false);
+            size = mProvider.createItem(itemIndex, false, mTmpItem, false);
             item = mTmpItem[0];
         }
+        mLocations.setSize(0, size);
         mFirstIndex = mFirstVisibleIndex = itemIndex;
         if (mLastVisibleIndex < 0) {
             mLastVisibleIndex = itemIndex;
         }
-        int thisEdge = !mReversedFlow ? edge - loc.size : edge + loc.size;
-        if (oldFirstLoc != null) {
-            oldFirstLoc.offset = oldFirstEdge - thisEdge;
+        int thisEdge = !mReversedFlow ? edge - size : edge + size;
+        if (hasOldFirstLoc) {
+            mLocations.setOffset(1, oldFirstEdge - thisEdge);
         }
-        mProvider.addItem(item, itemIndex, loc.size, rowIndex, thisEdge);
-        return loc.size;
+        mProvider.addItem(item, itemIndex, size, rowIndex, thisEdge);
+        return size;
     }
 
     @Override
@@ -317,14 +465,13 @@ abstract class StaggeredGrid extends Grid {
         }
         int lastIndex = getLastIndex();
         for (; itemIndex < count && itemIndex <= lastIndex; itemIndex++) {
-            Location loc = getLocation(itemIndex);
             if (edge != Integer.MAX_VALUE) {
-                edge = edge + loc.offset;
+                edge = edge + getLocationOffset(itemIndex);
             }
-            int rowIndex = loc.row;
+            int rowIndex = getLocationRow(itemIndex);
             int size = mProvider.createItem(itemIndex, true, mTmpItem, false);
-            if (size != loc.size) {
-                loc.size = size;
+            if (size != getLocationSize(itemIndex)) {
+                mLocations.setSize(itemIndex - mFirstIndex, size);
                 mLocations.removeFromEnd(lastIndex - itemIndex);
                 lastIndex = itemIndex;
             }
@@ -378,17 +525,19 @@ abstract class StaggeredGrid extends Grid {
         } else {
             offset = location - mProvider.getEdge(mLastVisibleIndex);
         }
-        Location loc = new Location(rowIndex, offset, 0);
-        mLocations.addLast(loc);
+        mLocations.addLast(rowIndex, offset, 0);
+        final int indexInArray = mLocations.size() - 1;
         Object item;
+        int size;
         if (mPendingItem != null) {
-            loc.size = mPendingItemSize;
+            size = mPendingItemSize;
             item = mPendingItem;
             mPendingItem = null;
         } else {
-            loc.size = mProvider.createItem(itemIndex, true, mTmpItem, false);
+            size = mProvider.createItem(itemIndex, true, mTmpItem, false);
             item = mTmpItem[0];
         }
+        mLocations.setSize(indexInArray, size);
         if (mLocations.size() == 1) {
             mFirstIndex = mFirstVisibleIndex = mLastVisibleIndex = itemIndex;
         } else {
@@ -398,8 +547,8 @@ abstract class StaggeredGrid extends Grid {
                 mLastVisibleIndex++;
             }
         }
-        mProvider.addItem(item, itemIndex, loc.size, rowIndex, location);
-        return loc.size;
+        mProvider.addItem(item, itemIndex, size, rowIndex, location);
+        return size;
     }
 
     @Override
@@ -409,7 +558,7 @@ abstract class StaggeredGrid extends Grid {
         }
         if (startPos >= 0) {
             for (int i = startPos; i <= endPos; i++) {
-                CircularIntArray row = mTmpItemPositionsInRows[getLocation(i).row];
+                CircularIntArray row = mTmpItemPositionsInRows[getLocationRow(i)];
                 if (row.size() > 0 && row.getLast() == i - 1) {
                     // update continuous range
                     row.popLast();
@@ -31,27 +31,24 @@ final class StaggeredGridDefault extends StaggeredGrid {
         }
         if (mReversedFlow) {
             int edge = mProvider.getEdge(mFirstVisibleIndex);
-            if (getLocation(mFirstVisibleIndex).row == rowIndex) {
+            if (getLocationRow(mFirstVisibleIndex) == rowIndex) {
                 return edge;
             }
             for (int i = mFirstVisibleIndex + 1; i <= getLastIndex(); i++) {
-                Location loc = getLocation(i);
-                edge += loc.offset;
-                if (loc.row == rowIndex) {
+                edge += getLocationOffset(i);
+                if (getLocationRow(i) == rowIndex) {
                     return edge;
                 }
             }
         } else {
             int edge = mProvider.getEdge(mLastVisibleIndex);
-            Location loc = getLocation(mLastVisibleIndex);
-            if (loc.row == rowIndex) {
-                return edge + loc.size;
+            if (getLocationRow(mLastVisibleIndex) == rowIndex) {
+                return edge + getLocationSize(mLastVisibleIndex);
             }
             for (int i = mLastVisibleIndex - 1; i >= getFirstIndex(); i--) {
-                edge -= loc.offset;
-                loc = getLocation(i);
-                if (loc.row == rowIndex) {
-                    return edge + loc.size;
+                edge -= getLocationOffset(i + 1);
+                if (getLocationRow(i) == rowIndex) {
+                    return edge + getLocationSize(i);
                 }
             }
         }
@@ -68,26 +65,23 @@ final class StaggeredGridDefault extends StaggeredGrid {
         }
         if (mReversedFlow) {
             int edge = mProvider.getEdge(mLastVisibleIndex);
-            Location loc = getLocation(mLastVisibleIndex);
-            if (loc.row == rowIndex) {
-                return edge - loc.size;
+            if (getLocationRow(mLastVisibleIndex) == rowIndex) {
+                return edge - getLocationSize(mLastVisibleIndex);
             }
             for (int i = mLastVisibleIndex - 1; i >= getFirstIndex(); i--) {
-                edge -= loc.offset;
-                loc = getLocation(i);
-                if (loc.row == rowIndex) {
-                    return edge - loc.size;
+                edge -= getLocationOffset(i + 1);
+                if (getLocationRow(i) == rowIndex) {
+                    return edge - getLocationSize(i);
                 }
             }
         } else {
             int edge = mProvider.getEdge(mFirstVisibleIndex);
-            if (getLocation(mFirstVisibleIndex).row == rowIndex) {
+            if (getLocationRow(mFirstVisibleIndex) == rowIndex) {
                 return edge;
             }
             for (int i = mFirstVisibleIndex + 1; i <= getLastIndex() ; i++) {
-                Location loc = getLocation(i);
-                edge += loc.offset;
-                if (loc.row == rowIndex) {
+                edge += getLocationOffset(i);
+                if (getLocationRow(i) == rowIndex) {
                     return edge;
                 }
             }
@@ -103,18 +97,17 @@ final class StaggeredGridDefault extends StaggeredGrid {
     public int findRowMax(boolean findLarge, int indexLimit, int[] indices) {
         int value;
         int edge = mProvider.getEdge(indexLimit);
-        Location loc = getLocation(indexLimit);
-        int row = loc.row;
+        int row = getLocationRow(indexLimit);
         int index = indexLimit;
         int visitedRows = 1;
         int visitRow = row;
         if (mReversedFlow) {
             value = edge;
             for (int i = indexLimit + 1; visitedRows < mNumRows && i <= mLastVisibleIndex; i++) {
-                loc = getLocation(i);
-                edge += loc.offset;
-                if (loc.row != visitRow) {
-                    visitRow = loc.row;
+                edge += getLocationOffset(i);
+                int locRow = getLocationRow(i);
+                if (locRow != visitRow) {
+                    visitRow = locRow;
                     visitedRows++;
                     if (findLarge ? edge > value : edge < value) {
                         row = visitRow;
@@ -126,10 +119,10 @@ final class StaggeredGridDefault extends StaggeredGrid {
         } else {
             value = edge + mProvider.getSize(indexLimit);
             for (int i = indexLimit - 1; visitedRows < mNumRows && i >= mFirstVisibleIndex; i--) {
-                edge -= loc.offset;
-                loc = getLocation(i);
-                if (loc.row != visitRow) {
-                    visitRow = loc.row;
+                edge -= getLocationOffset(i + 1);
+                int locRow = getLocationRow(i);
+                if (locRow != visitRow) {
+                    visitRow = locRow;
                     visitedRows++;
                     int newValue = edge + mProvider.getSize(i);
                     if (findLarge ? newValue > value : newValue < value) {
@@ -155,18 +148,17 @@ final class StaggeredGridDefault extends StaggeredGrid {
     public int findRowMin(boolean findLarge, int indexLimit, int[] indices) {
         int value;
         int edge = mProvider.getEdge(indexLimit);
-        Location loc = getLocation(indexLimit);
-        int row = loc.row;
+        int row = getLocationRow(indexLimit);
         int index = indexLimit;
         int visitedRows = 1;
         int visitRow = row;
         if (mReversedFlow) {
             value = edge - mProvider.getSize(indexLimit);
             for (int i = indexLimit - 1; visitedRows < mNumRows && i >= mFirstVisibleIndex; i--) {
-                edge -= loc.offset;
-                loc = getLocation(i);
-                if (loc.row != visitRow) {
-                    visitRow = loc.row;
+                edge -= getLocationOffset(i + 1);
+                int locRow = getLocationRow(i);
+                if (locRow != visitRow) {
+                    visitRow = locRow;
                     visitedRows++;
                     int newValue = edge - mProvider.getSize(i);
                     if (findLarge ? newValue > value : newValue < value) {
@@ -179,10 +171,10 @@ final class StaggeredGridDefault extends StaggeredGrid {
         } else {
             value = edge;
             for (int i = indexLimit + 1; visitedRows < mNumRows && i <= mLastVisibleIndex; i++) {
-                loc = getLocation(i);
-                edge += loc.offset;
-                if (loc.row != visitRow) {
-                    visitRow = loc.row;
+                edge += getLocationOffset(i);
+                int locRow = getLocationRow(i);
+                if (locRow != visitRow) {
+                    visitRow = locRow;
                     visitedRows++;
                     if (findLarge ? edge > value : edge < value) {
                         value = edge;
@@ -203,7 +195,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
         boolean wrapped = false;
         if (append) {
             for (int index = mLastVisibleIndex; index >= mFirstVisibleIndex; index--) {
-                int row = getLocation(index).row;
+                int row = getLocationRow(index);
                 if (row == 0) {
                     wrapped = true;
                 } else if (wrapped && row == mNumRows - 1) {
@@ -212,7 +204,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
             }
         } else {
             for (int index = mFirstVisibleIndex; index <= mLastVisibleIndex; index++) {
-                int row = getLocation(index).row;
+                int row = getLocationRow(index);
                 if (row == mNumRows - 1) {
                     wrapped = true;
                 } else if (wrapped && row == 0) {
@@ -236,7 +228,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
                 return false;
             }
             itemIndex = mLastVisibleIndex + 1;
-            rowIndex = getLocation(mLastVisibleIndex).row;
+            rowIndex = getLocationRow(mLastVisibleIndex);
             // find start item index of "previous column"
             int edgeLimitSearchIndex = findRowEdgeLimitSearchIndex(true);
             if (edgeLimitSearchIndex < 0) {
@@ -267,7 +259,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
         } else {
             itemIndex = mStartIndex != START_DEFAULT ? mStartIndex : 0;
             // if there are cached items,  put on next row of last cached item.
-            rowIndex = (mLocations.size() > 0 ? getLocation(getLastIndex()).row + 1 : itemIndex)
+            rowIndex = (mLocations.size() > 0 ? getLocationRow(getLastIndex()) + 1 : itemIndex)
                     % mNumRows;
             edgeLimit = 0;
             edgeLimitIsValid = false;
@@ -336,7 +328,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
                 return false;
             }
             itemIndex = mFirstVisibleIndex - 1;
-            rowIndex = getLocation(mFirstVisibleIndex).row;
+            rowIndex = getLocationRow(mFirstVisibleIndex);
             // find start item index of "previous column"
             int edgeLimitSearchIndex = findRowEdgeLimitSearchIndex(false);
             if (edgeLimitSearchIndex < 0) {
@@ -369,7 +361,7 @@ final class StaggeredGridDefault extends StaggeredGrid {
         } else {
             itemIndex = mStartIndex != START_DEFAULT ? mStartIndex : 0;
             // if there are cached items,  put on previous row of first cached item.
-            rowIndex = (mLocations.size() >= 0 ? getLocation(getFirstIndex()).row + mNumRows - 1
+            rowIndex = (mLocations.size() >= 0 ? getLocationRow(getFirstIndex()) + mNumRows - 1
                     : itemIndex) % mNumRows;
             edgeLimit = 0;
             edgeLimitIsValid = false;
@@ -16,10 +16,12 @@
 package android.support.v17.leanback.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import android.content.ContentResolver;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
@@ -28,9 +30,11 @@ import android.graphics.Paint;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.support.test.filters.LargeTest;
 import android.support.test.runner.AndroidJUnit4;
+import android.support.v17.leanback.test.R;
 import android.support.v17.leanback.testutils.PollingCheck;
 
 import org.junit.Rule;
@@ -699,4 +703,90 @@ public class BackgroundManagerTest {
         waitForBackgroundAnimationFinish(manager1);
         assertIsBitmapDrawable(manager1, bitmap);
     }
+
+    @Test
+    public void setBitmapUriDebouncesAndCaches() throws Throwable {
+        TestActivity.Provider provider1 = new TestActivity.Provider() {
+            @Override
+            public void onAttachedToWindow(TestActivity activity) {
+                BackgroundManager.getInstance(activity).attach(activity.getWindow());
+            }
+
+            @Override
+            public void onStart(TestActivity activity) {
+                BackgroundManager.getInstance(activity).setColor(Color.BLUE);
+            }
+        };
+        mRule = new TestActivity.TestActivityTestRule(provider1, generateProviderName("activity1"));
+        final TestActivity activity1 = mRule.launchActivity();
+
+        final BackgroundManager manager = BackgroundManager.getInstance(activity1);
+        waitForBackgroundAnimationFinish(manager);
+        final Uri uri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_ANDROID_RESOURCE)
+                .authority(activity1.getPackageName())
+                .appendPath(String.valueOf(R.drawable.spiderman))
+                .build();
+        final Uri otherUri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_ANDROID_RESOURCE)
+                .authority(activity1.getPackageName())
+                .appendPath(String.valueOf(R.drawable.ic_action_a))
+                .build();
+        mRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                manager.setBitmapScale(0.5f);
+                // Only the last URI is decoded.
+                manager.setBitmapUri(otherUri);
+                manager.setBitmapUri(uri);
+            }
+        });
+        PollingCheck.waitFor(5000/* timeout */, new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return manager.getBitmapLoadStats().getDecodeCount() == 1
+                        && manager.mBackgroundDrawable instanceof BackgroundManager.BitmapDrawable;
+            }
+        });
+        waitForBackgroundAnimationFinish(manager);
+        final Bitmap bitmap = ((BackgroundManager.BitmapDrawable) manager.mBackgroundDrawable)
+                .getBitmap();
+        assertIsBitmapDrawable(manager, bitmap);
+        assertTrue(manager.getBitmapLoadStats().getMemoryUsageBytes() > 0);
+        // The image is decoded no larger than needed to cover half the screen size.
+        final int targetWidth = manager.getBitmapLoader().getTargetWidth();
+        final int targetHeight = manager.getBitmapLoader().getTargetHeight();
+        assertTrue(bitmap.getWidth() <= targetWidth || bitmap.getHeight() <= targetHeight);
+        assertEquals(targetWidth * targetHeight * 4
+                * BackgroundBitmapLoader.DEFAULT_CACHE_SIZE_SCREENS, manager.getBitmapCacheSize());
+
+        setColorAndVerify(manager, Color.RED);
+        mRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                manager.setBitmapUri(uri);
+            }
+        });
+        waitForBackgroundAnimationFinish(manager);
+        assertIsBitmapDrawable(manager, bitmap);
+        assertEquals(1, manager.getBitmapLoadStats().getCacheHitCount());
+        assertEquals(1, manager.getBitmapLoadStats().getDecodeCount());
+
+        // Changing the decoding parameters loads the image again.
+        mRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                manager.setBitmapBlurRadius(4);
+            }
+        });
+        PollingCheck.waitFor(5000/* timeout */, new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return manager.getBitmapLoadStats().getDecodeCount() == 2;
+            }
+        });
+        waitForBackgroundAnimationFinish(manager);
+        assertNotSame(bitmap, ((BackgroundManager.BitmapDrawable) manager.mBackgroundDrawable)
+                .getBitmap());
+    }
 }
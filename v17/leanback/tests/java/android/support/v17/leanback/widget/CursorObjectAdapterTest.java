@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v17.leanback.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SmallTest;
+import android.support.v17.leanback.database.CursorMapper;
+import android.support.v17.leanback.testutils.PollingCheck;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(JUnit4.class)
+public class CursorObjectAdapterTest {
+
+    static final String[] COLUMNS = new String[] {"_id", "title"};
+
+    static class Item {
+        final long mId;
+        final String mTitle;
+
+        Item(long id, String title) {
+            mId = id;
+            mTitle = title;
+        }
+    }
+
+    static class CountingMapper extends CursorMapper {
+        private int mIdIndex;
+        private int mTitleIndex;
+        final List<Integer> mConvertedPositions = new ArrayList<>();
+
+        @Override
+        protected void bindColumns(Cursor cursor) {
+            mIdIndex = cursor.getColumnIndex("_id");
+            mTitleIndex = cursor.getColumnIndex("title");
+        }
+
+        @Override
+        protected Object bind(Cursor cursor) {
+            synchronized (this) {
+                mConvertedPositions.add(cursor.getPosition());
+            }
+            return new Item(cursor.getLong(mIdIndex), cursor.getString(mTitleIndex));
+        }
+
+        synchronized int getConvertCount(int position) {
+            int count = 0;
+            for (int convertedPosition : mConvertedPositions) {
+                if (convertedPosition == position) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    static class CountingObserver extends ObjectAdapter.DataObserver {
+        int mChangedCount;
+        int mItemRangeChangedCount;
+        int mItemRangeInsertedCount;
+        int mItemRangeRemovedCount;
+
+        @Override
+        public void onChanged() {
+            mChangedCount++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mItemRangeChangedCount += itemCount;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mItemRangeInsertedCount += itemCount;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mItemRangeRemovedCount += itemCount;
+        }
+    }
+
+    static MatrixCursor createCursor(long[] ids, String[] titles) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (int i = 0; i < ids.length; i++) {
+            cursor.addRow(new Object[] {ids[i], titles[i]});
+        }
+        return cursor;
+    }
+
+    static MatrixCursor createCursor(int count) {
+        long[] ids = new long[count];
+        String[] titles = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+            titles[i] = "Title " + i;
+        }
+        return createCursor(ids, titles);
+    }
+
+    @Test
+    public void testSetCacheSize() {
+        CountingMapper mapper = new CountingMapper();
+        CursorObjectAdapter adapter = new CursorObjectAdapter();
+        adapter.setMapper(mapper);
+        adapter.changeCursor(createCursor(10));
+        adapter.setCacheSize(5);
+        assertEquals(5, adapter.getCacheSize());
+
+        for (int i = 0; i < 10; i++) {
+            adapter.get(i);
+        }
+        adapter.get(9);
+        assertEquals(1, mapper.getConvertCount(9));
+        adapter.get(0);
+        assertEquals(2, mapper.getConvertCount(0));
+    }
+
+    @Test
+    public void testPrefetchWindow() {
+        final CountingMapper mapper = new CountingMapper();
+        final CursorObjectAdapter adapter = new CursorObjectAdapter();
+        adapter.setMapper(mapper);
+        adapter.changeCursor(createCursor(1000));
+        adapter.setCacheSize(50);
+        adapter.setPrefetchWindow(10);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter.get(500);
+            }
+        });
+        PollingCheck.waitFor(new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return mapper.getConvertCount(490) > 0 && mapper.getConvertCount(510) > 0;
+            }
+        });
+        assertEquals(0, mapper.getConvertCount(489));
+        assertEquals(0, mapper.getConvertCount(511));
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter.get(505);
+            }
+        });
+        assertEquals(1, mapper.getConvertCount(505));
+        adapter.close();
+    }
+
+    static class ItemDiffCallback extends DiffCallback<Item> {
+        @Override
+        public boolean areItemsTheSame(Item oldItem, Item newItem) {
+            return oldItem.mId == newItem.mId;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.mTitle.equals(newItem.mTitle);
+        }
+    }
+
+    @Test
+    public void testSwapCursorWithDiffCallback() {
+        CountingMapper mapper = new CountingMapper();
+        CursorObjectAdapter adapter = new CursorObjectAdapter();
+        adapter.setMapper(mapper);
+        Cursor oldCursor = createCursor(new long[] {1, 2, 3, 4, 5},
+                new String[] {"a", "b", "c", "d", "e"});
+        adapter.changeCursor(oldCursor);
+        CountingObserver observer = new CountingObserver();
+        adapter.registerObserver(observer);
+
+        Cursor newCursor = createCursor(new long[] {1, 2, 4, 5, 6},
+                new String[] {"a", "b", "d", "new e", "f"});
+        assertSame(oldCursor, adapter.swapCursor(newCursor, new ItemDiffCallback()));
+        assertFalse(oldCursor.isClosed());
+        assertSame(newCursor, adapter.getCursor());
+        waitForDiff(observer);
+        assertEquals(0, observer.mChangedCount);
+        assertEquals(1, observer.mItemRangeRemovedCount);
+        assertEquals(1, observer.mItemRangeInsertedCount);
+        assertEquals(1, observer.mItemRangeChangedCount);
+        assertEquals(5, adapter.size());
+        assertEquals("new e", ((Item) adapter.get(3)).mTitle);
+    }
+
+    @Test
+    public void testCloseOldCursorAfterSwapCursorWithDiffCallback() {
+        CursorObjectAdapter adapter = new CursorObjectAdapter();
+        adapter.setMapper(new CountingMapper());
+        Cursor oldCursor = createCursor(new long[] {1, 2, 3}, new String[] {"a", "b", "c"});
+        adapter.changeCursor(oldCursor);
+        adapter.get(0);
+        CountingObserver observer = new CountingObserver();
+        adapter.registerObserver(observer);
+
+        Cursor newCursor = createCursor(new long[] {1, 3}, new String[] {"a", "c"});
+        assertSame(oldCursor, adapter.swapCursor(newCursor, new ItemDiffCallback()));
+        // As a CursorLoader does once onLoadFinished() returns.
+        oldCursor.close();
+
+        // The old rows back the adapter until the difference is dispatched.
+        assertEquals(3, adapter.size());
+        assertEquals("b", ((Item) adapter.get(1)).mTitle);
+        waitForDiff(observer);
+        assertEquals(0, observer.mChangedCount);
+        assertEquals(1, observer.mItemRangeRemovedCount);
+        assertEquals(2, adapter.size());
+        assertEquals("c", ((Item) adapter.get(1)).mTitle);
+    }
+
+    /**
+     * Waits until a difference is dispatched to the observer on the main thread.
+     */
+    static void waitForDiff(final CountingObserver observer) {
+        PollingCheck.waitFor(new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return observer.mItemRangeChangedCount + observer.mItemRangeInsertedCount
+                        + observer.mItemRangeRemovedCount > 0;
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    @Test
+    public void testSwapCursorWithDiffCallbackAfterOldCursorClosed() {
+        CursorObjectAdapter adapter = new CursorObjectAdapter();
+        adapter.setMapper(new CountingMapper());
+        Cursor oldCursor = createCursor(5);
+        adapter.changeCursor(oldCursor);
+        CountingObserver observer = new CountingObserver();
+        adapter.registerObserver(observer);
+        oldCursor.close();
+
+        // The closed rows can not be compared, so the whole cursor is reported as changed.
+        Cursor newCursor = createCursor(5);
+        assertSame(oldCursor, adapter.swapCursor(newCursor, new ItemDiffCallback()));
+        assertSame(newCursor, adapter.getCursor());
+        assertEquals(1, observer.mChangedCount);
+        assertEquals(0, observer.mItemRangeInsertedCount);
+    }
+}
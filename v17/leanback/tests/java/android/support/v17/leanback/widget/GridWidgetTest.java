@@ -48,6 +48,7 @@ import android.support.v7.widget.RecyclerViewAccessibilityDelegate;
 import android.text.Selection;
 import android.text.Spannable;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.util.SparseArray;
 import android.util.SparseIntArray;
 import android.util.TypedValue;
@@ -72,6 +73,7 @@ import java.util.HashSet;
 @RunWith(AndroidJUnit4.class)
 public class GridWidgetTest {
 
+    private static final String TAG = "GridWidgetTest";
     private static final float DELTA = 1f;
     private static final boolean HUMAN_DELAY = false;
     private static final long WAIT_FOR_SCROLL_IDLE_TIMEOUT_MS = 60000;
@@ -1116,6 +1118,42 @@ public class GridWidgetTest {
         verifyBeginAligned();
     }
 
+    @Test
+    public void testScrollStaggeredGrid_benchmark() throws Throwable {
+        final int numItems = 50000;
+        Intent intent = new Intent();
+        intent.putExtra(GridActivity.EXTRA_LAYOUT_RESOURCE_ID,
+                R.layout.horizontal_grid);
+        intent.putExtra(GridActivity.EXTRA_NUM_ITEMS, numItems);
+        intent.putExtra(GridActivity.EXTRA_STAGGERED, true);
+        initActivity(intent);
+        mOrientation = BaseGridView.HORIZONTAL;
+        mNumRows = 3;
+
+        final long[] nanos = new long[2];
+        mActivityTestRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final int distance = mGridView.getWidth();
+                long start = System.nanoTime();
+                while (mLayoutManager.mGrid.getLastVisibleIndex() < numItems - 1) {
+                    mGridView.scrollBy(distance, 0);
+                }
+                nanos[0] = System.nanoTime() - start;
+                start = System.nanoTime();
+                while (mLayoutManager.mGrid.getFirstVisibleIndex() > 0) {
+                    mGridView.scrollBy(-distance, 0);
+                }
+                nanos[1] = System.nanoTime() - start;
+            }
+        });
+        // All the locations are kept, so that scrolling back reuses them.
+        assertEquals(numItems, ((StaggeredGrid) mLayoutManager.mGrid).getSize());
+        Log.d(TAG, numItems + " items in " + mNumRows + " rows: scroll to end "
+                + nanos[0] / 1000000 + "ms, scroll back " + nanos[1] / 1000000 + "ms");
+        verifyBeginAligned();
+    }
+
     void waitOneUiCycle() throws Throwable {
         mActivityTestRule.runOnUiThread(new Runnable() {
             @Override
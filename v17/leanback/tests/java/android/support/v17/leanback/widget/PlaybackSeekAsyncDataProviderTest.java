@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v17.leanback.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v17.leanback.testutils.PollingCheck;
+import android.util.SparseArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PlaybackSeekAsyncDataProviderTest {
+    static final int THUMB_SIZE = 16;
+    static final int THUMB_BYTES = THUMB_SIZE * THUMB_SIZE * 4;
+
+    static class TestProvider extends PlaybackSeekAsyncDataProvider {
+        final List<Integer> mLoadedIndices = new ArrayList<>();
+        final List<Bitmap> mReusedBitmaps = new ArrayList<>();
+
+        TestProvider(int cacheSizeBytes, int prefetchCount, int numSeekPositions) {
+            super(cacheSizeBytes, prefetchCount);
+            long[] positions = new long[numSeekPositions];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i * 1000;
+            }
+            setSeekPositions(positions);
+        }
+
+        @Override
+        protected Bitmap loadThumbnail(int index, long position, BitmapFactory.Options options) {
+            synchronized (this) {
+                mLoadedIndices.add(index);
+                if (options.inBitmap != null) {
+                    mReusedBitmaps.add(options.inBitmap);
+                }
+            }
+            return options.inBitmap != null ? options.inBitmap
+                    : Bitmap.createBitmap(THUMB_SIZE, THUMB_SIZE, Bitmap.Config.ARGB_8888);
+        }
+
+        synchronized int getLoadCount(int index) {
+            int count = 0;
+            for (int loadedIndex : mLoadedIndices) {
+                if (loadedIndex == index) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized int getLoadCount() {
+            return mLoadedIndices.size();
+        }
+
+        synchronized int getReusedCount() {
+            return mReusedBitmaps.size();
+        }
+    }
+
+    static class TestCallback extends PlaybackSeekDataProvider.ResultCallback {
+        final SparseArray<Bitmap> mBitmaps = new SparseArray<>();
+
+        @Override
+        public void onThumbnailLoaded(Bitmap bitmap, int index) {
+            synchronized (this) {
+                mBitmaps.put(index, bitmap);
+            }
+        }
+
+        synchronized Bitmap getBitmap(int index) {
+            return mBitmaps.get(index);
+        }
+    }
+
+    static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    static void waitForThumbnail(final TestCallback callback, final int index) {
+        PollingCheck.waitFor(new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return callback.getBitmap(index) != null;
+            }
+        });
+    }
+
+    @Test
+    public void testPrefetchInSeekDirection() {
+        final TestProvider provider = new TestProvider(100 * THUMB_BYTES, 3, 100);
+        final TestCallback callback = new TestCallback();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                provider.getThumbnail(50, callback);
+                provider.getThumbnail(49, callback);
+            }
+        });
+        waitForThumbnail(callback, 49);
+        PollingCheck.waitFor(new PollingCheck.PollingCheckCondition() {
+            @Override
+            public boolean canProceed() {
+                return provider.mCache.get(48) != null && provider.mCache.get(47) != null
+                        && provider.mCache.get(46) != null;
+            }
+        });
+        assertEquals(0, provider.getLoadCount(51));
+
+        // A prefetched thumbnail is returned from the cache without loading it again.
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                provider.getThumbnail(47, callback);
+                assertTrue(callback.getBitmap(47) != null);
+            }
+        });
+        assertEquals(1, provider.getLoadCount(47));
+    }
+
+    @Test
+    public void testResetKeepsCacheAndCancelsRequests() {
+        final TestProvider provider = new TestProvider(100 * THUMB_BYTES, 0, 100);
+        final TestCallback callback = new TestCallback();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                provider.getThumbnail(10, callback);
+            }
+        });
+        waitForThumbnail(callback, 10);
+        final Bitmap bitmap = callback.getBitmap(10);
+        final TestCallback callback2 = new TestCallback();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                provider.getThumbnail(20, callback2);
+                provider.reset();
+                assertEquals(0, provider.mRequests.size());
+                provider.getThumbnail(10, callback2);
+                assertSame(bitmap, callback2.getBitmap(10));
+            }
+        });
+    }
+
+    @Test
+    public void testReuseEvictedBitmaps() {
+        // The cache holds two thumbnails.
+        final TestProvider provider = new TestProvider(2 * THUMB_BYTES, 0, 100);
+        for (int i = 0; i < 6; i++) {
+            final int index = i;
+            final TestCallback callback = new TestCallback();
+            runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    provider.getThumbnail(index, callback);
+                }
+            });
+            waitForThumbnail(callback, index);
+            // Seeking stops, so the displayed thumbnails can be reused once evicted.
+            runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    provider.reset();
+                }
+            });
+        }
+        assertEquals(6, provider.getLoadCount());
+        assertTrue(provider.getReusedCount() > 0);
+    }
+}
@@ -26,6 +26,7 @@ import static android.support.v7.widget.ThemeUtils.getThemeAttrColorStateList;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
@@ -45,9 +46,6 @@ import android.support.graphics.drawable.VectorDrawableCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.graphics.drawable.DrawableCompat;
 import android.support.v4.util.ArrayMap;
-import android.support.v4.util.LongSparseArray;
-import android.support.v4.util.LruCache;
-import android.support.v4.util.SparseArrayCompat;
 import android.support.v7.appcompat.R;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -57,8 +55,13 @@ import android.util.Xml;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @hide
@@ -78,14 +81,21 @@ public final class AppCompatDrawableManager {
 
     private static final String PLATFORM_VD_CLAZZ = "android.graphics.drawable.VectorDrawable";
 
-    private static AppCompatDrawableManager INSTANCE;
+    private static volatile AppCompatDrawableManager INSTANCE;
 
     public static AppCompatDrawableManager get() {
-        if (INSTANCE == null) {
-            INSTANCE = new AppCompatDrawableManager();
-            installDefaultInflateDelegates(INSTANCE);
+        AppCompatDrawableManager instance = INSTANCE;
+        if (instance == null) {
+            synchronized (AppCompatDrawableManager.class) {
+                instance = INSTANCE;
+                if (instance == null) {
+                    instance = new AppCompatDrawableManager();
+                    installDefaultInflateDelegates(instance);
+                    INSTANCE = instance;
+                }
+            }
         }
-        return INSTANCE;
+        return instance;
     }
 
     private static void installDefaultInflateDelegates(@NonNull AppCompatDrawableManager manager) {
@@ -98,7 +108,24 @@ public final class AppCompatDrawableManager {
         }
     }
 
-    private static final ColorFilterLruCache COLOR_FILTER_CACHE = new ColorFilterLruCache(6);
+    /**
+     * Default maximum number of color filters to cache. Each tinted widget state resolves to a
+     * color and mode pair, so a single screen of tinted widgets easily needs more than a handful.
+     */
+    private static final int DEFAULT_MAX_CACHED_COLOR_FILTERS = 32;
+
+    /**
+     * Default maximum number of drawables to cache for each theme and configuration pair. This
+     * covers every drawable which AppCompat inflates itself.
+     */
+    private static final int DEFAULT_MAX_CACHED_DRAWABLES = 64;
+
+    private static final ColorFilterCache COLOR_FILTER_CACHE =
+            new ColorFilterCache(DEFAULT_MAX_CACHED_COLOR_FILTERS);
+
+    private static final ThreadLocal<TypedValue> TL_TYPED_VALUE = new ThreadLocal<>();
+
+    private static final ThreadLocal<ThemeCacheKey> TL_THEME_CACHE_KEY = new ThreadLocal<>();
 
     /**
      * Drawables which should be tinted with the value of {@code R.attr.colorControlNormal},
@@ -170,17 +197,31 @@ public final class AppCompatDrawableManager {
             R.drawable.abc_btn_radio_material
     };
 
-    private WeakHashMap<Context, SparseArrayCompat<ColorStateList>> mTintLists;
+    // Only modified while the instance is created, so it can be read from any thread
     private ArrayMap<String, InflateDelegate> mDelegates;
-    private SparseArrayCompat<String> mKnownDrawableIdTags;
+    private final ConcurrentHashMap<Integer, String> mKnownDrawableIdTags =
+            new ConcurrentHashMap<>();
 
-    private final Object mDrawableCacheLock = new Object();
-    private final WeakHashMap<Context, LongSparseArray<WeakReference<Drawable.ConstantState>>>
-            mDrawableCaches = new WeakHashMap<>(0);
+    /**
+     * Cached drawables and tint lists, keyed by theme and configuration. Contexts which share
+     * both, such as an Activity and the wrappers created around it, share their cached entries.
+     */
+    private final ConcurrentHashMap<ThemeCacheKey, ThemeCache> mThemeCaches =
+            new ConcurrentHashMap<>();
+
+    // Receives the themes of the cache keys once they are garbage collected.
+    private final ReferenceQueue<Resources.Theme> mStaleThemes = new ReferenceQueue<>();
 
-    private TypedValue mTypedValue;
+    // Maximum number of drawables cached per theme set by setMaxCachedDrawables(), or 0 to size
+    // the caches from their configuration.
+    private volatile int mMaxCachedDrawables;
 
-    private boolean mHasCheckedVectorDrawableSetup;
+    private final AtomicInteger mDrawableCacheHits = new AtomicInteger();
+    private final AtomicInteger mDrawableCacheMisses = new AtomicInteger();
+    private final AtomicInteger mTintListCacheHits = new AtomicInteger();
+    private final AtomicInteger mTintListCacheMisses = new AtomicInteger();
+
+    private volatile boolean mHasCheckedVectorDrawableSetup;
 
     public Drawable getDrawable(@NonNull Context context, @DrawableRes int resId) {
         return getDrawable(context, resId, false);
@@ -210,27 +251,97 @@ public final class AppCompatDrawableManager {
     }
 
     public void onConfigurationChanged(@NonNull Context context) {
-        synchronized (mDrawableCacheLock) {
-            LongSparseArray<WeakReference<ConstantState>> cache = mDrawableCaches.get(context);
-            if (cache != null) {
-                // Crude, but we'll just clear the cache when the configuration changes
-                cache.clear();
+        // Crude, but we'll just drop everything cached for the context's theme. A new cache is
+        // created on the next request using the new configuration.
+        final Resources.Theme theme = context.getTheme();
+        for (Iterator<ThemeCacheKey> it = mThemeCaches.keySet().iterator(); it.hasNext(); ) {
+            final ThemeCacheKey key = it.next();
+            if (key.getTheme() == theme || key.isStale()) {
+                it.remove();
             }
         }
     }
 
+    /**
+     * Sets the maximum number of drawables cached for each theme and configuration, instead of
+     * sizing each cache from its configuration.
+     */
+    public void setMaxCachedDrawables(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxCachedDrawables = maxSize;
+        for (ThemeCache cache : mThemeCaches.values()) {
+            cache.mMaxDrawables = maxSize;
+            cache.trimDrawables(maxSize);
+        }
+    }
+
+    /**
+     * Sets the maximum number of cached color filters, instead of sizing the cache from the
+     * configurations of the themes in use.
+     */
+    public void setMaxCachedColorFilters(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        COLOR_FILTER_CACHE.setMaxSize(maxSize, true);
+    }
+
+    /**
+     * Sizes the color filter cache from the configurations of the cached themes again, undoing
+     * {@link #setMaxCachedColorFilters(int)}.
+     */
+    void resetMaxCachedColorFilters() {
+        COLOR_FILTER_CACHE.resetMaxSize(DEFAULT_MAX_CACHED_COLOR_FILTERS);
+        for (ThemeCacheKey key : mThemeCaches.keySet()) {
+            COLOR_FILTER_CACHE.setMaxSize(getCacheSizeForConfiguration(key.mConfiguration,
+                    DEFAULT_MAX_CACHED_COLOR_FILTERS), false);
+        }
+    }
+
+    /**
+     * Returns the number of cache entries suited to a configuration: large screens show more
+     * widgets at once, so twice the default.
+     */
+    static int getCacheSizeForConfiguration(@NonNull Configuration configuration,
+            int defaultSize) {
+        final int screenSize =
+                configuration.screenLayout & Configuration.SCREENLAYOUT_SIZE_MASK;
+        return screenSize >= Configuration.SCREENLAYOUT_SIZE_LARGE
+                && screenSize != Configuration.SCREENLAYOUT_SIZE_UNDEFINED
+                ? defaultSize * 2 : defaultSize;
+    }
+
+    /**
+     * Returns the hit and miss counts of the drawable, tint list and color filter caches.
+     */
+    public CacheStats getCacheStats() {
+        return new CacheStats(mDrawableCacheHits.get(), mDrawableCacheMisses.get(),
+                mTintListCacheHits.get(), mTintListCacheMisses.get(),
+                COLOR_FILTER_CACHE.mHits.get(), COLOR_FILTER_CACHE.mMisses.get());
+    }
+
     private static long createCacheKey(TypedValue tv) {
         return (((long) tv.assetCookie) << 32) | tv.data;
     }
 
+    private static TypedValue getTypedValue() {
+        TypedValue typedValue = TL_TYPED_VALUE.get();
+        if (typedValue == null) {
+            typedValue = new TypedValue();
+            TL_TYPED_VALUE.set(typedValue);
+        }
+        return typedValue;
+    }
+
     private Drawable createDrawableIfNeeded(@NonNull Context context,
             @DrawableRes final int resId) {
-        if (mTypedValue == null) {
-            mTypedValue = new TypedValue();
-        }
-        final TypedValue tv = mTypedValue;
+        final TypedValue tv = getTypedValue();
         context.getResources().getValue(resId, tv, true);
         final long key = createCacheKey(tv);
+        // The layers below are loaded through getDrawable(), which reuses the TypedValue
+        final int changingConfigurations = tv.changingConfigurations;
 
         Drawable dr = getCachedDrawable(context, key);
         if (dr != null) {
@@ -247,7 +358,7 @@ public final class AppCompatDrawableManager {
         }
 
         if (dr != null) {
-            dr.setChangingConfigurations(tv.changingConfigurations);
+            dr.setChangingConfigurations(changingConfigurations);
             // If we reached here then we created a new drawable, add it to the cache
             addDrawableToCache(context, key, dr);
         }
@@ -303,27 +414,19 @@ public final class AppCompatDrawableManager {
 
     private Drawable loadDrawableFromDelegates(@NonNull Context context, @DrawableRes int resId) {
         if (mDelegates != null && !mDelegates.isEmpty()) {
-            if (mKnownDrawableIdTags != null) {
-                final String cachedTagName = mKnownDrawableIdTags.get(resId);
-                if (SKIP_DRAWABLE_TAG.equals(cachedTagName)
-                        || (cachedTagName != null && mDelegates.get(cachedTagName) == null)) {
-                    // If we don't have a delegate for the drawable tag, or we've been set to
-                    // skip it, fail fast and return null
-                    if (DEBUG) {
-                        Log.d(TAG, "[loadDrawableFromDelegates] Skipping drawable: "
-                                + context.getResources().getResourceName(resId));
-                    }
-                    return null;
+            final String cachedTagName = mKnownDrawableIdTags.get(resId);
+            if (SKIP_DRAWABLE_TAG.equals(cachedTagName)
+                    || (cachedTagName != null && mDelegates.get(cachedTagName) == null)) {
+                // If we don't have a delegate for the drawable tag, or we've been set to
+                // skip it, fail fast and return null
+                if (DEBUG) {
+                    Log.d(TAG, "[loadDrawableFromDelegates] Skipping drawable: "
+                            + context.getResources().getResourceName(resId));
                 }
-            } else {
-                // Create an id cache as we'll need one later
-                mKnownDrawableIdTags = new SparseArrayCompat<>();
+                return null;
             }
 
-            if (mTypedValue == null) {
-                mTypedValue = new TypedValue();
-            }
-            final TypedValue tv = mTypedValue;
+            final TypedValue tv = getTypedValue();
             final Resources res = context.getResources();
             res.getValue(resId, tv, true);
 
@@ -355,7 +458,7 @@ public final class AppCompatDrawableManager {
 
                     final String tagName = parser.getName();
                     // Add the tag name to the cache
-                    mKnownDrawableIdTags.append(resId, tagName);
+                    mKnownDrawableIdTags.put(resId, tagName);
 
                     // Now try and find a delegate for the tag name and inflate if found
                     final InflateDelegate delegate = mDelegates.get(tagName);
@@ -378,7 +481,7 @@ public final class AppCompatDrawableManager {
             if (dr == null) {
                 // If we reach here then the delegate inflation of the resource failed. Mark it as
                 // bad so we skip the id next time
-                mKnownDrawableIdTags.append(resId, SKIP_DRAWABLE_TAG);
+                mKnownDrawableIdTags.put(resId, SKIP_DRAWABLE_TAG);
             }
             return dr;
         }
@@ -387,25 +490,21 @@ public final class AppCompatDrawableManager {
     }
 
     private Drawable getCachedDrawable(@NonNull final Context context, final long key) {
-        synchronized (mDrawableCacheLock) {
-            final LongSparseArray<WeakReference<ConstantState>> cache
-                    = mDrawableCaches.get(context);
-            if (cache == null) {
-                return null;
-            }
-
-            final WeakReference<ConstantState> wr = cache.get(key);
-            if (wr != null) {
-                // We have the key, and the secret
-                ConstantState entry = wr.get();
-                if (entry != null) {
-                    return entry.newDrawable(context.getResources());
-                } else {
-                    // Our entry has been purged
-                    cache.delete(key);
-                }
+        final ThemeCache cache = getThemeCache(context, false);
+        final DrawableEntry wr = cache != null ? cache.mDrawables.get(key) : null;
+        if (wr != null) {
+            // We have the key, and the secret
+            ConstantState entry = wr.get();
+            if (entry != null) {
+                wr.mLastAccess = cache.mClock.incrementAndGet();
+                mDrawableCacheHits.incrementAndGet();
+                return entry.newDrawable(context.getResources());
+            } else {
+                // Our entry has been purged
+                cache.mDrawables.remove(key, wr);
             }
         }
+        mDrawableCacheMisses.incrementAndGet();
         return null;
     }
 
@@ -413,19 +512,60 @@ public final class AppCompatDrawableManager {
             @NonNull final Drawable drawable) {
         final ConstantState cs = drawable.getConstantState();
         if (cs != null) {
-            synchronized (mDrawableCacheLock) {
-                LongSparseArray<WeakReference<ConstantState>> cache = mDrawableCaches.get(context);
-                if (cache == null) {
-                    cache = new LongSparseArray<>();
-                    mDrawableCaches.put(context, cache);
-                }
-                cache.put(key, new WeakReference<>(cs));
+            final ThemeCache cache = getThemeCache(context, true);
+            if (cache.mDrawables.size() >= cache.mMaxDrawables) {
+                cache.trimDrawables(cache.mMaxDrawables - 1);
             }
+            cache.mDrawables.put(key, new DrawableEntry(cs, cache.mClock.incrementAndGet()));
             return true;
         }
         return false;
     }
 
+    /**
+     * Returns the cache for the context's theme and configuration, optionally creating it.
+     */
+    private ThemeCache getThemeCache(@NonNull Context context, boolean create) {
+        final Resources.Theme theme = context.getTheme();
+        final Configuration configuration = context.getResources().getConfiguration();
+        // Drop the caches of the themes which have since been garbage collected, so that their
+        // drawables do not stay reachable until the next cache is created. The queue is empty on
+        // most lookups, which then do not scan the caches.
+        boolean hasStaleThemes = false;
+        while (mStaleThemes.poll() != null) {
+            hasStaleThemes = true;
+        }
+        if (hasStaleThemes) {
+            for (Iterator<ThemeCacheKey> it = mThemeCaches.keySet().iterator(); it.hasNext(); ) {
+                if (it.next().isStale()) {
+                    it.remove();
+                }
+            }
+        }
+        ThemeCacheKey lookupKey = TL_THEME_CACHE_KEY.get();
+        if (lookupKey == null) {
+            lookupKey = new ThemeCacheKey();
+            TL_THEME_CACHE_KEY.set(lookupKey);
+        }
+        ThemeCache cache = mThemeCaches.get(lookupKey.set(configuration, theme));
+        // Do not keep the theme reachable from the thread
+        lookupKey.clear();
+        if (cache == null && create) {
+            final int maxCachedDrawables = mMaxCachedDrawables;
+            final ThemeCache newCache = new ThemeCache(maxCachedDrawables > 0
+                    ? maxCachedDrawables
+                    : getCacheSizeForConfiguration(configuration, DEFAULT_MAX_CACHED_DRAWABLES));
+            COLOR_FILTER_CACHE.setMaxSize(getCacheSizeForConfiguration(configuration,
+                    DEFAULT_MAX_CACHED_COLOR_FILTERS), false);
+            cache = mThemeCaches.putIfAbsent(
+                    new ThemeCacheKey(configuration, theme, mStaleThemes), newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        return cache;
+    }
+
     Drawable onDrawableLoadedFromResources(@NonNull Context context,
             @NonNull VectorEnabledTintResources resources, @DrawableRes final int resId) {
         Drawable drawable = loadDrawableFromDelegates(context, resId);
@@ -550,31 +690,23 @@ public final class AppCompatDrawableManager {
             }
 
             if (tint != null) {
+                mTintListCacheMisses.incrementAndGet();
                 addTintListToCache(context, resId, tint);
             }
+        } else {
+            mTintListCacheHits.incrementAndGet();
         }
         return tint;
     }
 
     private ColorStateList getTintListFromCache(@NonNull Context context, @DrawableRes int resId) {
-        if (mTintLists != null) {
-            final SparseArrayCompat<ColorStateList> tints = mTintLists.get(context);
-            return tints != null ? tints.get(resId) : null;
-        }
-        return null;
+        final ThemeCache cache = getThemeCache(context, false);
+        return cache != null ? cache.mTintLists.get(resId) : null;
     }
 
     private void addTintListToCache(@NonNull Context context, @DrawableRes int resId,
             @NonNull ColorStateList tintList) {
-        if (mTintLists == null) {
-            mTintLists = new WeakHashMap<>();
-        }
-        SparseArrayCompat<ColorStateList> themeTints = mTintLists.get(context);
-        if (themeTints == null) {
-            themeTints = new SparseArrayCompat<>();
-            mTintLists.put(context, themeTints);
-        }
-        themeTints.append(resId, tintList);
+        getThemeCache(context, true).mTintLists.put(resId, tintList);
     }
 
     private ColorStateList createDefaultButtonColorStateList(@NonNull Context context) {
@@ -668,25 +800,276 @@ public final class AppCompatDrawableManager {
         return new ColorStateList(states, colors);
     }
 
-    private static class ColorFilterLruCache extends LruCache<Integer, PorterDuffColorFilter> {
+    /**
+     * Hit and miss counts of the caches kept by {@link AppCompatDrawableManager}.
+     */
+    public static final class CacheStats {
+        private final int mDrawableHits;
+        private final int mDrawableMisses;
+        private final int mTintListHits;
+        private final int mTintListMisses;
+        private final int mColorFilterHits;
+        private final int mColorFilterMisses;
+
+        CacheStats(int drawableHits, int drawableMisses, int tintListHits, int tintListMisses,
+                int colorFilterHits, int colorFilterMisses) {
+            mDrawableHits = drawableHits;
+            mDrawableMisses = drawableMisses;
+            mTintListHits = tintListHits;
+            mTintListMisses = tintListMisses;
+            mColorFilterHits = colorFilterHits;
+            mColorFilterMisses = colorFilterMisses;
+        }
+
+        public int getDrawableHitCount() {
+            return mDrawableHits;
+        }
+
+        public int getDrawableMissCount() {
+            return mDrawableMisses;
+        }
+
+        public int getTintListHitCount() {
+            return mTintListHits;
+        }
+
+        /**
+         * Returns the number of tint lists which were created and added to the cache.
+         */
+        public int getTintListMissCount() {
+            return mTintListMisses;
+        }
+
+        public int getColorFilterHitCount() {
+            return mColorFilterHits;
+        }
+
+        public int getColorFilterMissCount() {
+            return mColorFilterMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{drawables=" + mDrawableHits + "/" + mDrawableMisses
+                    + ", tintLists=" + mTintListHits + "/" + mTintListMisses
+                    + ", colorFilters=" + mColorFilterHits + "/" + mColorFilterMisses + "}";
+        }
+    }
+
+    /**
+     * The drawables and tint lists cached for a single theme and configuration.
+     */
+    private static class ThemeCache {
+        final ConcurrentHashMap<Long, DrawableEntry> mDrawables = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, ColorStateList> mTintLists = new ConcurrentHashMap<>();
+        // Orders the accesses of the drawables
+        final AtomicLong mClock = new AtomicLong();
+        volatile int mMaxDrawables;
+
+        ThemeCache(int maxDrawables) {
+            mMaxDrawables = maxDrawables;
+        }
 
-        public ColorFilterLruCache(int maxSize) {
-            super(maxSize);
+        /**
+         * Removes purged entries, then the least recently used ones until at most
+         * {@code maxSize} remain.
+         */
+        void trimDrawables(int maxSize) {
+            for (Iterator<DrawableEntry> it = mDrawables.values().iterator(); it.hasNext(); ) {
+                if (it.next().get() == null) {
+                    it.remove();
+                }
+            }
+            while (mDrawables.size() > maxSize) {
+                Map.Entry<Long, DrawableEntry> eldest = null;
+                for (Map.Entry<Long, DrawableEntry> entry : mDrawables.entrySet()) {
+                    if (eldest == null
+                            || entry.getValue().mLastAccess < eldest.getValue().mLastAccess) {
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    break;
+                }
+                mDrawables.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * A cached drawable constant state, with the time of its last use.
+     */
+    private static class DrawableEntry extends WeakReference<ConstantState> {
+        volatile long mLastAccess;
+
+        DrawableEntry(ConstantState constantState, long lastAccess) {
+            super(constantState);
+            mLastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Key of a {@link ThemeCache}. Keys stored in the map hold a copy of the configuration and
+     * only weakly reference the theme, lookup keys use both directly and are never stored.
+     */
+    private static final class ThemeCacheKey {
+        Configuration mConfiguration;
+        private Resources.Theme mTheme;
+        private final WeakReference<Resources.Theme> mThemeRef;
+        private int mHashCode;
+
+        /**
+         * Creates a key to store in the map, which copies the configuration and only weakly
+         * references the theme.
+         */
+        ThemeCacheKey(@NonNull Configuration configuration, @Nullable Resources.Theme theme,
+                @NonNull ReferenceQueue<Resources.Theme> staleThemes) {
+            mConfiguration = new Configuration(configuration);
+            mThemeRef = theme != null ? new WeakReference<>(theme, staleThemes) : null;
+            mHashCode = 31 * configuration.hashCode() + System.identityHashCode(theme);
+        }
+
+        /**
+         * Creates a lookup key, reused through {@link #set}.
+         */
+        ThemeCacheKey() {
+            mThemeRef = null;
+        }
+
+        ThemeCacheKey set(@NonNull Configuration configuration, @Nullable Resources.Theme theme) {
+            mConfiguration = configuration;
+            mTheme = theme;
+            mHashCode = 31 * configuration.hashCode() + System.identityHashCode(theme);
+            return this;
+        }
+
+        void clear() {
+            mConfiguration = null;
+            mTheme = null;
+        }
+
+        Resources.Theme getTheme() {
+            return mThemeRef != null ? mThemeRef.get() : mTheme;
+        }
+
+        /**
+         * Returns true if the theme of this key has been garbage collected.
+         */
+        boolean isStale() {
+            return mThemeRef != null && mThemeRef.get() == null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ThemeCacheKey)) {
+                return false;
+            }
+            final ThemeCacheKey other = (ThemeCacheKey) o;
+            return mHashCode == other.mHashCode
+                    && getTheme() == other.getTheme()
+                    && !isStale() && !other.isStale()
+                    && mConfiguration.equals(other.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    /**
+     * Bounded cache of color filters, keyed on the exact color and mode. Lookups do not lock, and
+     * the least recently used entry is evicted once the cache is full.
+     */
+    private static class ColorFilterCache {
+        final ConcurrentHashMap<Long, ColorFilterEntry> mFilters = new ConcurrentHashMap<>();
+        final AtomicInteger mHits = new AtomicInteger();
+        final AtomicInteger mMisses = new AtomicInteger();
+        // Orders the accesses of the filters
+        private final AtomicLong mClock = new AtomicLong();
+        private volatile int mMaxSize;
+        private volatile boolean mMaxSizeSetByApp;
+
+        ColorFilterCache(int maxSize) {
+            mMaxSize = maxSize;
+        }
+
+        /**
+         * Sets the maximum size. Sizes derived from a configuration only grow the cache, and are
+         * ignored once the app has set a size.
+         */
+        synchronized void resetMaxSize(int maxSize) {
+            mMaxSizeSetByApp = false;
+            mMaxSize = maxSize;
+            trim(maxSize);
+        }
+
+        synchronized void setMaxSize(int maxSize, boolean setByApp) {
+            if (setByApp) {
+                mMaxSizeSetByApp = true;
+                mMaxSize = maxSize;
+                trim(maxSize);
+            } else if (!mMaxSizeSetByApp && maxSize > mMaxSize) {
+                mMaxSize = maxSize;
+            }
         }
 
         PorterDuffColorFilter get(int color, PorterDuff.Mode mode) {
-            return get(generateCacheKey(color, mode));
+            final ColorFilterEntry entry = mFilters.get(generateCacheKey(color, mode));
+            if (entry != null) {
+                entry.mLastAccess = mClock.incrementAndGet();
+                mHits.incrementAndGet();
+                return entry.mFilter;
+            }
+            mMisses.incrementAndGet();
+            return null;
         }
 
-        PorterDuffColorFilter put(int color, PorterDuff.Mode mode, PorterDuffColorFilter filter) {
-            return put(generateCacheKey(color, mode), filter);
+        void put(int color, PorterDuff.Mode mode, PorterDuffColorFilter filter) {
+            trim(mMaxSize - 1);
+            mFilters.put(generateCacheKey(color, mode),
+                    new ColorFilterEntry(filter, mClock.incrementAndGet()));
         }
 
-        private static int generateCacheKey(int color, PorterDuff.Mode mode) {
-            int hashCode = 1;
-            hashCode = 31 * hashCode + color;
-            hashCode = 31 * hashCode + mode.hashCode();
-            return hashCode;
+        /**
+         * Removes the least recently used entries until at most {@code maxSize} remain. The
+         * cache is small and this only runs on misses, so a scan is cheaper than keeping the
+         * entries ordered on every hit.
+         */
+        private void trim(int maxSize) {
+            while (mFilters.size() > maxSize) {
+                Map.Entry<Long, ColorFilterEntry> eldest = null;
+                for (Map.Entry<Long, ColorFilterEntry> entry : mFilters.entrySet()) {
+                    if (eldest == null
+                            || entry.getValue().mLastAccess < eldest.getValue().mLastAccess) {
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    break;
+                }
+                mFilters.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        private static long generateCacheKey(int color, PorterDuff.Mode mode) {
+            return (((long) mode.ordinal()) << 32) | (color & 0xffffffffL);
+        }
+    }
+
+    /**
+     * A cached color filter, with the time of its last use.
+     */
+    private static class ColorFilterEntry {
+        final PorterDuffColorFilter mFilter;
+        volatile long mLastAccess;
+
+        ColorFilterEntry(PorterDuffColorFilter filter, long lastAccess) {
+            mFilter = filter;
+            mLastAccess = lastAccess;
         }
     }
 
@@ -23,13 +23,16 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.RectF;
+import android.graphics.Typeface;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RestrictTo;
+import android.support.v4.util.LruCache;
 import android.support.v4.widget.TextViewCompat;
 import android.support.v7.appcompat.R;
 import android.text.Layout;
+import android.text.Spanned;
 import android.text.StaticLayout;
 import android.text.TextDirectionHeuristic;
 import android.text.TextDirectionHeuristics;
@@ -47,6 +50,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Utility class which encapsulates the logic for the TextView auto-size text feature added to
@@ -72,6 +76,14 @@ class AppCompatTextViewAutoSizeHelper {
     // Ported from TextView#VERY_WIDE. Represents a maximum width in pixels the TextView takes when
     // horizontal scrolling is activated.
     private static final int VERY_WIDE = 1024 * 1024;
+    // Maximum number of text sizes remembered by sTextSizeCache.
+    private static final int MAX_CACHED_TEXT_SIZES = 128;
+    // Texts longer than this are not remembered by sTextSizeCache.
+    private static final int MAX_CACHED_TEXT_LENGTH = 256;
+    // Text sizes found by previous searches, shared by all the auto-sized views so that
+    // recycled views showing the same text in the same space do not search again.
+    private static final LruCache<TextSizeCacheKey, Integer> sTextSizeCache =
+            new LruCache<>(MAX_CACHED_TEXT_SIZES);
     // Auto-size text type.
     private int mAutoSizeTextType = TextViewCompat.AUTO_SIZE_TEXT_TYPE_NONE;
     // Specify if auto-size text is needed.
@@ -90,6 +102,19 @@ class AppCompatTextViewAutoSizeHelper {
     // mAutoSizeStepGranularityInPx.
     private boolean mHasPresetAutoSizeValues = false;
     private TextPaint mTempTextPaint;
+    // Inputs of the layouts built by suggestedSizeFitsInSpace(), read once per search.
+    private CharSequence mMeasuredText;
+    private int mMeasuredTextTrimmedLength;
+    private boolean mMeasuredTextIsPlain;
+    private int mMeasuredMaxLines;
+    private Layout.Alignment mMeasuredAlignment;
+    private float mMeasuredLineSpacingMultiplier;
+    private float mMeasuredLineSpacingAdd;
+    private boolean mMeasuredIncludePad;
+    // A TextDirectionHeuristic on API 23 and above.
+    private Object mMeasuredTextDirection;
+    // Key used to look up sTextSizeCache, reused between searches.
+    private final TextSizeCacheKey mTextSizeCacheKey = new TextSizeCacheKey();
 
     private final TextView mTextView;
     private final Context mContext;
@@ -642,6 +667,18 @@ class AppCompatTextViewAutoSizeHelper {
             throw new IllegalStateException("No available text sizes to choose from.");
         }
 
+        prepareMeasuring();
+        final boolean cacheable = mMeasuredTextIsPlain
+                && mMeasuredText.length() <= MAX_CACHED_TEXT_LENGTH;
+        if (cacheable) {
+            mTextSizeCacheKey.set(this, availableSpace);
+            final Integer cachedSize = sTextSizeCache.get(mTextSizeCacheKey);
+            if (cachedSize != null) {
+                mMeasuredText = null;
+                return cachedSize;
+            }
+        }
+
         int bestSizeIndex = 0;
         int lowIndex = bestSizeIndex + 1;
         int highIndex = sizesCount - 1;
@@ -657,10 +694,20 @@ class AppCompatTextViewAutoSizeHelper {
             }
         }
 
-        return mAutoSizeTextSizesInPx[bestSizeIndex];
+        final int bestSize = mAutoSizeTextSizesInPx[bestSizeIndex];
+        if (cacheable) {
+            sTextSizeCache.put(new TextSizeCacheKey(mTextSizeCacheKey), bestSize);
+        }
+        // Do not hold on to the text after the search.
+        mMeasuredText = null;
+        return bestSize;
     }
 
-    private boolean suggestedSizeFitsInSpace(int suggestedSizeInPx, RectF availableSpace) {
+    /**
+     * Reads the text and the TextView attributes used by the layouts of a search, so that they
+     * are not read again for each suggested size.
+     */
+    private void prepareMeasuring() {
         CharSequence text = mTextView.getText();
         TransformationMethod transformationMethod = mTextView.getTransformationMethod();
         if (transformationMethod != null) {
@@ -669,8 +716,45 @@ class AppCompatTextViewAutoSizeHelper {
                 text = transformedText;
             }
         }
+        mMeasuredText = text;
+        mMeasuredTextIsPlain = !(text instanceof Spanned);
+        int trimmedLength = text.length();
+        while (trimmedLength > 0 && Character.isWhitespace(text.charAt(trimmedLength - 1))) {
+            trimmedLength--;
+        }
+        mMeasuredTextTrimmedLength = trimmedLength;
+
+        mMeasuredMaxLines = Build.VERSION.SDK_INT >= 16 ? mTextView.getMaxLines() : -1;
+        // Needs reflection call due to being private.
+        mMeasuredAlignment = invokeAndReturnWithDefault(
+                mTextView, "getLayoutAlignment", Layout.Alignment.ALIGN_NORMAL);
+
+        if (Build.VERSION.SDK_INT >= 16) {
+            // Call public methods.
+            mMeasuredLineSpacingMultiplier = mTextView.getLineSpacingMultiplier();
+            mMeasuredLineSpacingAdd = mTextView.getLineSpacingExtra();
+            mMeasuredIncludePad = mTextView.getIncludeFontPadding();
+        } else {
+            // Call private methods and make sure to provide fallback defaults in case something
+            // goes wrong. The default values have been inlined with the StaticLayout defaults.
+            mMeasuredLineSpacingMultiplier = invokeAndReturnWithDefault(mTextView,
+                    "getLineSpacingMultiplier", 1.0f);
+            mMeasuredLineSpacingAdd = invokeAndReturnWithDefault(mTextView,
+                    "getLineSpacingExtra", 0.0f);
+            mMeasuredIncludePad = invokeAndReturnWithDefault(mTextView,
+                    "getIncludeFontPadding", true);
+        }
+
+        if (Build.VERSION.SDK_INT >= 23) {
+            mMeasuredTextDirection = invokeAndReturnWithDefault(
+                    mTextView, "getTextDirectionHeuristic",
+                    TextDirectionHeuristics.FIRSTSTRONG_LTR);
+        }
+    }
 
-        final int maxLines = Build.VERSION.SDK_INT >= 16 ? mTextView.getMaxLines() : -1;
+    private boolean suggestedSizeFitsInSpace(int suggestedSizeInPx, RectF availableSpace) {
+        final CharSequence text = mMeasuredText;
+        final int maxLines = mMeasuredMaxLines;
         if (mTempTextPaint == null) {
             mTempTextPaint = new TextPaint();
         } else {
@@ -679,14 +763,19 @@ class AppCompatTextViewAutoSizeHelper {
         mTempTextPaint.set(mTextView.getPaint());
         mTempTextPaint.setTextSize(suggestedSizeInPx);
 
-        // Needs reflection call due to being private.
-        Layout.Alignment alignment = invokeAndReturnWithDefault(
-                mTextView, "getLayoutAlignment", Layout.Alignment.ALIGN_NORMAL);
+        // A single line of plain text wider than the available space can not fit, there is no
+        // need to lay it out. The trailing whitespace does not take space at the end of a line
+        // and the comparison allows for a pixel of rounding difference with the layout.
+        if (maxLines == 1 && mMeasuredTextIsPlain && mTempTextPaint.measureText(
+                text, 0, mMeasuredTextTrimmedLength) > availableSpace.right + 1) {
+            return false;
+        }
+
         final StaticLayout layout = Build.VERSION.SDK_INT >= 23
                 ? createStaticLayoutForMeasuring(
-                        text, alignment, Math.round(availableSpace.right), maxLines)
+                        text, mMeasuredAlignment, Math.round(availableSpace.right), maxLines)
                 : createStaticLayoutForMeasuringPre23(
-                        text, alignment, Math.round(availableSpace.right));
+                        text, mMeasuredAlignment, Math.round(availableSpace.right));
         // Lines overflow.
         if (maxLines != -1 && (layout.getLineCount() > maxLines
                 || (layout.getLineEnd(layout.getLineCount() - 1)) != text.length())) {
@@ -706,18 +795,15 @@ class AppCompatTextViewAutoSizeHelper {
             Layout.Alignment alignment, int availableWidth, int maxLines) {
         // Can use the StaticLayout.Builder (along with TextView params added in or after
         // API 23) to construct the layout.
-        final TextDirectionHeuristic textDirectionHeuristic = invokeAndReturnWithDefault(
-                mTextView, "getTextDirectionHeuristic",
-                TextDirectionHeuristics.FIRSTSTRONG_LTR);
+        final TextDirectionHeuristic textDirectionHeuristic =
+                (TextDirectionHeuristic) mMeasuredTextDirection;
 
         final StaticLayout.Builder layoutBuilder = StaticLayout.Builder.obtain(
                 text, 0, text.length(),  mTempTextPaint, availableWidth);
 
         return layoutBuilder.setAlignment(alignment)
-                .setLineSpacing(
-                        mTextView.getLineSpacingExtra(),
-                        mTextView.getLineSpacingMultiplier())
-                .setIncludePad(mTextView.getIncludeFontPadding())
+                .setLineSpacing(mMeasuredLineSpacingAdd, mMeasuredLineSpacingMultiplier)
+                .setIncludePad(mMeasuredIncludePad)
                 .setBreakStrategy(mTextView.getBreakStrategy())
                 .setHyphenationFrequency(mTextView.getHyphenationFrequency())
                 .setMaxLines(maxLines == -1 ? Integer.MAX_VALUE : maxLines)
@@ -728,34 +814,13 @@ class AppCompatTextViewAutoSizeHelper {
     @TargetApi(14)
     private StaticLayout createStaticLayoutForMeasuringPre23(CharSequence text,
             Layout.Alignment alignment, int availableWidth) {
-        // Setup defaults.
-        float lineSpacingMultiplier = 1.0f;
-        float lineSpacingAdd = 0.0f;
-        boolean includePad = true;
-
-        if (Build.VERSION.SDK_INT >= 16) {
-            // Call public methods.
-            lineSpacingMultiplier = mTextView.getLineSpacingMultiplier();
-            lineSpacingAdd = mTextView.getLineSpacingExtra();
-            includePad = mTextView.getIncludeFontPadding();
-        } else {
-            // Call private methods and make sure to provide fallback defaults in case something
-            // goes wrong. The default values have been inlined with the StaticLayout defaults.
-            lineSpacingMultiplier = invokeAndReturnWithDefault(mTextView,
-                    "getLineSpacingMultiplier", lineSpacingMultiplier);
-            lineSpacingAdd = invokeAndReturnWithDefault(mTextView,
-                    "getLineSpacingExtra", lineSpacingAdd);
-            includePad = invokeAndReturnWithDefault(mTextView,
-                    "getIncludeFontPadding", includePad);
-        }
-
         // The layout could not be constructed using the builder so fall back to the
         // most broad constructor.
         return new StaticLayout(text, mTempTextPaint, availableWidth,
                 alignment,
-                lineSpacingMultiplier,
-                lineSpacingAdd,
-                includePad);
+                mMeasuredLineSpacingMultiplier,
+                mMeasuredLineSpacingAdd,
+                mMeasuredIncludePad);
     }
 
     private <T> T invokeAndReturnWithDefault(@NonNull Object object,
@@ -818,4 +883,140 @@ class AppCompatTextViewAutoSizeHelper {
         // Auto-size only supports TextView and all siblings but EditText.
         return !(mTextView instanceof AppCompatEditText);
     }
+
+    /**
+     * Everything the text size found by {@link #findLargestTextSizeWhichFits(RectF)} depends on,
+     * for plain text.
+     */
+    private static class TextSizeCacheKey {
+        String mText;
+        int mAvailableWidth;
+        int mAvailableHeight;
+        int[] mSizes;
+        int mMaxLines;
+        Layout.Alignment mAlignment;
+        float mLineSpacingMultiplier;
+        float mLineSpacingAdd;
+        boolean mIncludePad;
+        Object mTextDirection;
+        int mBreakStrategy;
+        int mHyphenationFrequency;
+        Typeface mTypeface;
+        int mPaintFlags;
+        float mTextScaleX;
+        float mTextSkewX;
+        float mLetterSpacing;
+        String mFontFeatureSettings;
+        Locale mTextLocale;
+        int mHashCode;
+
+        TextSizeCacheKey() {
+        }
+
+        // Copies the key to be stored in the cache.
+        TextSizeCacheKey(TextSizeCacheKey other) {
+            mText = other.mText;
+            mAvailableWidth = other.mAvailableWidth;
+            mAvailableHeight = other.mAvailableHeight;
+            // The sizes of the helper can be replaced but the cache must not see it changing.
+            mSizes = other.mSizes.clone();
+            mMaxLines = other.mMaxLines;
+            mAlignment = other.mAlignment;
+            mLineSpacingMultiplier = other.mLineSpacingMultiplier;
+            mLineSpacingAdd = other.mLineSpacingAdd;
+            mIncludePad = other.mIncludePad;
+            mTextDirection = other.mTextDirection;
+            mBreakStrategy = other.mBreakStrategy;
+            mHyphenationFrequency = other.mHyphenationFrequency;
+            mTypeface = other.mTypeface;
+            mPaintFlags = other.mPaintFlags;
+            mTextScaleX = other.mTextScaleX;
+            mTextSkewX = other.mTextSkewX;
+            mLetterSpacing = other.mLetterSpacing;
+            mFontFeatureSettings = other.mFontFeatureSettings;
+            mTextLocale = other.mTextLocale;
+            mHashCode = other.mHashCode;
+        }
+
+        void set(AppCompatTextViewAutoSizeHelper helper, RectF availableSpace) {
+            final TextView textView = helper.mTextView;
+            final TextPaint paint = textView.getPaint();
+            mText = helper.mMeasuredText.toString();
+            mAvailableWidth = Math.round(availableSpace.right);
+            mAvailableHeight = Math.round(availableSpace.bottom);
+            mSizes = helper.mAutoSizeTextSizesInPx;
+            mMaxLines = helper.mMeasuredMaxLines;
+            mAlignment = helper.mMeasuredAlignment;
+            mLineSpacingMultiplier = helper.mMeasuredLineSpacingMultiplier;
+            mLineSpacingAdd = helper.mMeasuredLineSpacingAdd;
+            mIncludePad = helper.mMeasuredIncludePad;
+            mTextDirection = helper.mMeasuredTextDirection;
+            if (Build.VERSION.SDK_INT >= 23) {
+                mBreakStrategy = textView.getBreakStrategy();
+                mHyphenationFrequency = textView.getHyphenationFrequency();
+            }
+            mTypeface = paint.getTypeface();
+            mPaintFlags = paint.getFlags();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            if (Build.VERSION.SDK_INT >= 21) {
+                mLetterSpacing = paint.getLetterSpacing();
+                mFontFeatureSettings = paint.getFontFeatureSettings();
+            }
+            if (Build.VERSION.SDK_INT >= 17) {
+                mTextLocale = paint.getTextLocale();
+            }
+
+            int hashCode = mText.hashCode();
+            hashCode = 31 * hashCode + mAvailableWidth;
+            hashCode = 31 * hashCode + mAvailableHeight;
+            hashCode = 31 * hashCode + Arrays.hashCode(mSizes);
+            hashCode = 31 * hashCode + mMaxLines;
+            hashCode = 31 * hashCode + (mTypeface != null ? mTypeface.hashCode() : 0);
+            hashCode = 31 * hashCode + mPaintFlags;
+            hashCode = 31 * hashCode + Float.floatToIntBits(mTextScaleX);
+            hashCode = 31 * hashCode + Float.floatToIntBits(mLetterSpacing);
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TextSizeCacheKey)) {
+                return false;
+            }
+            final TextSizeCacheKey other = (TextSizeCacheKey) o;
+            return mHashCode == other.mHashCode
+                    && mAvailableWidth == other.mAvailableWidth
+                    && mAvailableHeight == other.mAvailableHeight
+                    && mMaxLines == other.mMaxLines
+                    && mAlignment == other.mAlignment
+                    && mLineSpacingMultiplier == other.mLineSpacingMultiplier
+                    && mLineSpacingAdd == other.mLineSpacingAdd
+                    && mIncludePad == other.mIncludePad
+                    && mTextDirection == other.mTextDirection
+                    && mBreakStrategy == other.mBreakStrategy
+                    && mHyphenationFrequency == other.mHyphenationFrequency
+                    && mPaintFlags == other.mPaintFlags
+                    && mTextScaleX == other.mTextScaleX
+                    && mTextSkewX == other.mTextSkewX
+                    && mLetterSpacing == other.mLetterSpacing
+                    && objectEquals(mTypeface, other.mTypeface)
+                    && objectEquals(mFontFeatureSettings, other.mFontFeatureSettings)
+                    && objectEquals(mTextLocale, other.mTextLocale)
+                    && mText.equals(other.mText)
+                    && Arrays.equals(mSizes, other.mSizes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        private static boolean objectEquals(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
 }
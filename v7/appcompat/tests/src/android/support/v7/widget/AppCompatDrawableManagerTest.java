@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.filters.SmallTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.appcompat.R;
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class AppCompatDrawableManagerTest {
+    private static final String TAG = "AppCompatDrawableManagerTest";
+
+    private static final int[] DRAWABLE_IDS = {
+            R.drawable.abc_cab_background_top_material,
+            R.drawable.abc_ic_ab_back_material,
+            R.drawable.abc_ic_search_api_material,
+            R.drawable.abc_ic_clear_material,
+            R.drawable.abc_ic_menu_overflow_material,
+            R.drawable.abc_ic_voice_search_api_material,
+            R.drawable.abc_btn_check_material,
+            R.drawable.abc_edit_text_material,
+    };
+
+    @Rule
+    public final ActivityTestRule<AppCompatActivity> mActivityTestRule =
+            new ActivityTestRule<>(AppCompatActivity.class);
+
+    @Test
+    @SmallTest
+    public void testColorFilterCache() {
+        final int color = Color.argb(0x80, 0x12, 0x34, 0x56);
+        final AppCompatDrawableManager.CacheStats before =
+                AppCompatDrawableManager.get().getCacheStats();
+
+        assertSame(AppCompatDrawableManager.getPorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN),
+                AppCompatDrawableManager.getPorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN));
+        assertNotSame(
+                AppCompatDrawableManager.getPorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN),
+                AppCompatDrawableManager.getPorterDuffColorFilter(color, PorterDuff.Mode.MULTIPLY));
+        assertNotSame(
+                AppCompatDrawableManager.getPorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN),
+                AppCompatDrawableManager.getPorterDuffColorFilter(color + 1,
+                        PorterDuff.Mode.SRC_IN));
+
+        final AppCompatDrawableManager.CacheStats after =
+                AppCompatDrawableManager.get().getCacheStats();
+        assertTrue(after.getColorFilterHitCount() > before.getColorFilterHitCount());
+        assertTrue(after.getColorFilterMissCount() > before.getColorFilterMissCount());
+    }
+
+    @Test
+    @SmallTest
+    public void testColorFilterCacheEvictsLeastRecentlyUsed() {
+        final PorterDuff.Mode mode = PorterDuff.Mode.SRC_IN;
+        final int first = Color.argb(0x40, 0x01, 0x02, 0x03);
+        final int second = first + 1;
+        final int third = first + 2;
+        AppCompatDrawableManager.get().setMaxCachedColorFilters(2);
+        try {
+            final Object firstFilter = AppCompatDrawableManager.getPorterDuffColorFilter(first,
+                    mode);
+            final Object secondFilter = AppCompatDrawableManager.getPorterDuffColorFilter(second,
+                    mode);
+            // Use the first filter again so that the second is the least recently used
+            assertSame(firstFilter, AppCompatDrawableManager.getPorterDuffColorFilter(first, mode));
+            AppCompatDrawableManager.getPorterDuffColorFilter(third, mode);
+
+            assertSame(firstFilter, AppCompatDrawableManager.getPorterDuffColorFilter(first, mode));
+            assertNotSame(secondFilter,
+                    AppCompatDrawableManager.getPorterDuffColorFilter(second, mode));
+        } finally {
+            AppCompatDrawableManager.get().resetMaxCachedColorFilters();
+        }
+    }
+
+    @Test
+    @MediumTest
+    public void testDrawableCacheSharedBetweenContextsWithSameTheme() {
+        final AppCompatDrawableManager manager = AppCompatDrawableManager.get();
+        final Context context = mActivityTestRule.getActivity();
+        // Holds the cached constant state
+        final Drawable first = manager.getDrawable(context,
+                R.drawable.abc_cab_background_top_material);
+        assertNotNull(first);
+
+        final AppCompatDrawableManager.CacheStats before = manager.getCacheStats();
+        final Drawable second = manager.getDrawable(new ContextWrapper(context),
+                R.drawable.abc_cab_background_top_material);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        final AppCompatDrawableManager.CacheStats after = manager.getCacheStats();
+        assertEquals(before.getDrawableHitCount() + 1, after.getDrawableHitCount());
+    }
+
+    @Test
+    @MediumTest
+    public void testOnConfigurationChangedClearsCache() {
+        final AppCompatDrawableManager manager = AppCompatDrawableManager.get();
+        final Context context = mActivityTestRule.getActivity();
+        final Drawable first = manager.getDrawable(context,
+                R.drawable.abc_cab_background_top_material);
+        assertNotNull(first);
+
+        manager.onConfigurationChanged(context);
+        final AppCompatDrawableManager.CacheStats before = manager.getCacheStats();
+        assertNotNull(manager.getDrawable(context, R.drawable.abc_cab_background_top_material));
+        final AppCompatDrawableManager.CacheStats after = manager.getCacheStats();
+        assertEquals(before.getDrawableHitCount(), after.getDrawableHitCount());
+        assertTrue(after.getDrawableMissCount() > before.getDrawableMissCount());
+    }
+
+    @Test
+    @LargeTest
+    public void testConcurrentGetDrawable_benchmark() throws Exception {
+        final int threadCount = 4;
+        final int iterations = 500;
+        final AppCompatDrawableManager manager = AppCompatDrawableManager.get();
+        final Context context = mActivityTestRule.getActivity();
+        // Keep the first drawables alive so that their constant states stay cached
+        final Drawable[] warm = new Drawable[DRAWABLE_IDS.length];
+        for (int i = 0; i < DRAWABLE_IDS.length; i++) {
+            warm[i] = manager.getDrawable(context, DRAWABLE_IDS[i]);
+        }
+
+        final AppCompatDrawableManager.CacheStats before = manager.getCacheStats();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final Context threadContext = new ContextWrapper(context);
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < iterations; i++) {
+                            for (int resId : DRAWABLE_IDS) {
+                                manager.getDrawable(threadContext, resId);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        // Fall through, the latch below fails the test
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        final long startNanos = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        final long nanos = System.nanoTime() - startNanos;
+
+        final int count = threadCount * iterations * DRAWABLE_IDS.length;
+        Log.d(TAG, threadCount + " threads: " + nanos / count / 1000 + "us per drawable, "
+                + "before: " + before + ", after: " + manager.getCacheStats());
+        assertNotNull(warm[0]);
+    }
+}
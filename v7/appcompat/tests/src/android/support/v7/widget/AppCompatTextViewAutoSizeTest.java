@@ -22,12 +22,16 @@ import static org.junit.Assert.assertTrue;
 import android.content.Context;
 import android.os.Build;
 import android.support.annotation.Nullable;
+import android.support.test.filters.LargeTest;
 import android.support.test.filters.MediumTest;
 import android.support.test.runner.AndroidJUnit4;
 import android.support.v4.widget.TextViewCompat;
 import android.support.v7.appcompat.test.R;
 import android.text.method.SingleLineTransformationMethod;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.View;
 import android.widget.LinearLayout;
 
 import org.junit.Test;
@@ -88,6 +92,86 @@ public class AppCompatTextViewAutoSizeTest extends
         assertTrue(textView.getTransformationMethod() instanceof SingleLineTransformationMethod);
     }
 
+    @Test
+    public void testAutoSize_reusedViewMatchesNewView() throws Throwable {
+        final String shortText = "Short";
+        final String longText = "A much longer label which needs a smaller text size to fit";
+        mActivityTestRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final AppCompatTextView reusedView = createBoundAutoSizeView(shortText);
+                final float shortTextSize = reusedView.getTextSize();
+                bindAndLayout(reusedView, longText);
+                final float longTextSize = reusedView.getTextSize();
+                assertTrue(longTextSize < shortTextSize);
+
+                // The sizes found for the reused view are remembered, views bound to the same
+                // text afterwards must get the same sizes.
+                bindAndLayout(reusedView, shortText);
+                assertEquals(shortTextSize, reusedView.getTextSize(), 0f);
+                assertEquals(longTextSize, createBoundAutoSizeView(longText).getTextSize(), 0f);
+
+                // A change of configuration must not reuse the sizes of the previous one.
+                final AppCompatTextView singleLineView = createBoundAutoSizeView(null);
+                singleLineView.setMaxLines(1);
+                bindAndLayout(singleLineView, longText);
+                assertTrue(singleLineView.getTextSize() < longTextSize);
+            }
+        });
+    }
+
+    @Test
+    @LargeTest
+    public void testAutoSize_bindBenchmark() throws Throwable {
+        final int labelCount = 20;
+        final int passes = 20;
+        final String[] labels = new String[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            labels[i] = "Item " + i + " with an auto-sized label of some length";
+        }
+        mActivityTestRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // A single view bound to each label in turn, as a recycled list item.
+                final AppCompatTextView view = createBoundAutoSizeView(null);
+
+                long start = System.nanoTime();
+                for (String label : labels) {
+                    bindAndLayout(view, label);
+                }
+                final long firstPassNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int pass = 0; pass < passes; pass++) {
+                    for (String label : labels) {
+                        bindAndLayout(view, label);
+                    }
+                }
+                final long nextPassesNanos = System.nanoTime() - start;
+
+                Log.d("AutoSizeBenchmark", "First bind: " + firstPassNanos / labelCount / 1000
+                        + "us, next binds: " + nextPassesNanos / (passes * labelCount) / 1000
+                        + "us per item");
+            }
+        });
+    }
+
+    private AppCompatTextView createBoundAutoSizeView(String text) {
+        final AppCompatTextView view = new AppCompatTextView(mActivity);
+        view.setAutoSizeTextTypeUniformWithConfiguration(10, 100, 1, TypedValue.COMPLEX_UNIT_PX);
+        if (text != null) {
+            bindAndLayout(view, text);
+        }
+        return view;
+    }
+
+    private static void bindAndLayout(AppCompatTextView view, String text) {
+        view.setText(text);
+        view.measure(View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(80, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, 300, 80);
+    }
+
     public static class CustomTextViewWithTransformationMethod extends AppCompatTextView {
         public CustomTextViewWithTransformationMethod(Context context) {
             super(context);
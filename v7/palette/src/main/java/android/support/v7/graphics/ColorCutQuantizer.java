@@ -53,14 +53,33 @@ final class ColorCutQuantizer {
     private static final int QUANTIZE_WORD_WIDTH = 5;
     private static final int QUANTIZE_WORD_MASK = (1 << QUANTIZE_WORD_WIDTH) - 1;
 
-    final int[] mColors;
-    final int[] mHistogram;
-    final List<Swatch> mQuantizedColors;
+    private static final int[] EMPTY_COLORS = new int[0];
+
+    // Always left empty between two runs, so that the quantizer can be reused
+    final int[] mHistogram = new int[1 << (QUANTIZE_WORD_WIDTH * 3)];
+    // Only the first mColorCount entries are used, the array only grows
+    int[] mColors = EMPTY_COLORS;
+    int mColorCount;
+    List<Swatch> mQuantizedColors;
     final TimingLogger mTimingLogger;
-    final Palette.Filter[] mFilters;
+    Palette.Filter[] mFilters;
 
     private final float[] mTempHsl = new float[3];
 
+    private final PriorityQueue<Vbox> mQueue =
+            new PriorityQueue<>(Palette.DEFAULT_CALCULATE_NUMBER_COLORS, VBOX_COMPARATOR_VOLUME);
+    private final ArrayList<Vbox> mVboxPool = new ArrayList<>();
+    private int mVboxPoolUsed;
+
+    /**
+     * Constructor for a quantizer which is reused by {@link PaletteGenerator}. The pixels are
+     * added with {@link #addToHistogram(int[], int[], int, int, int)} and then quantized with
+     * {@link #quantizeHistogram(int, Palette.Filter[])}.
+     */
+    ColorCutQuantizer() {
+        mTimingLogger = LOG_TIMINGS ? new TimingLogger(LOG_TAG, "Creation") : null;
+    }
+
     /**
      * Constructor.
      *
@@ -69,22 +88,39 @@ final class ColorCutQuantizer {
      * @param filters Set of filters to use in the quantization stage
      */
     ColorCutQuantizer(final int[] pixels, final int maxColors, final Palette.Filter[] filters) {
-        mTimingLogger = LOG_TIMINGS ? new TimingLogger(LOG_TAG, "Creation") : null;
-        mFilters = filters;
-
-        final int[] hist = mHistogram = new int[1 << (QUANTIZE_WORD_WIDTH * 3)];
-        for (int i = 0; i < pixels.length; i++) {
-            final int quantizedColor = quantizeFromRgb888(pixels[i]);
-            // Now update the pixel value to the quantized value
-            pixels[i] = quantizedColor;
-            // And update the histogram
-            hist[quantizedColor]++;
-        }
+        this();
+        addToHistogram(mHistogram, pixels, 0, pixels.length, 1);
 
         if (LOG_TIMINGS) {
             mTimingLogger.addSplit("Histogram created");
         }
 
+        mQuantizedColors = quantizeHistogram(maxColors, filters);
+    }
+
+    /**
+     * Adds {@code count} pixels to a histogram, starting at {@code offset} and taking one pixel
+     * every {@code step}.
+     */
+    static void addToHistogram(final int[] hist, final int[] pixels, final int offset,
+            final int count, final int step) {
+        for (int i = offset, end = offset + count; i < end; i += step) {
+            hist[quantizeFromRgb888(pixels[i])]++;
+        }
+    }
+
+    /**
+     * Quantizes the colors currently in {@link #mHistogram}. The histogram is cleared
+     * afterwards, ready for the next image.
+     *
+     * @param maxColors The maximum number of colors that should be in the result palette.
+     * @param filters Set of filters to use in the quantization stage
+     * @return the list of quantized colors
+     */
+    List<Swatch> quantizeHistogram(final int maxColors, final Palette.Filter[] filters) {
+        mFilters = filters;
+        final int[] hist = mHistogram;
+
         // Now let's count the number of distinct colors
         int distinctColorCount = 0;
         for (int color = 0; color < hist.length; color++) {
@@ -103,7 +139,11 @@ final class ColorCutQuantizer {
         }
 
         // Now lets go through create an array consisting of only distinct colors
-        final int[] colors = mColors = new int[distinctColorCount];
+        if (mColors.length < distinctColorCount) {
+            mColors = new int[distinctColorCount];
+        }
+        final int[] colors = mColors;
+        mColorCount = distinctColorCount;
         int distinctColorIndex = 0;
         for (int color = 0; color < hist.length; color++) {
             if (hist[color] > 0) {
@@ -115,11 +155,13 @@ final class ColorCutQuantizer {
             mTimingLogger.addSplit("Distinct colors copied into array");
         }
 
+        final List<Swatch> quantizedColors;
         if (distinctColorCount <= maxColors) {
             // The image has fewer colors than the maximum requested, so just return the colors
-            mQuantizedColors = new ArrayList<>();
-            for (int color : colors) {
-                mQuantizedColors.add(new Swatch(approximateToRgb888(color), hist[color]));
+            quantizedColors = new ArrayList<>(distinctColorCount);
+            for (int i = 0; i < distinctColorCount; i++) {
+                final int color = colors[i];
+                quantizedColors.add(new Swatch(approximateToRgb888(color), hist[color]));
             }
 
             if (LOG_TIMINGS) {
@@ -128,13 +170,22 @@ final class ColorCutQuantizer {
             }
         } else {
             // We need use quantization to reduce the number of colors
-            mQuantizedColors = quantizePixels(maxColors);
+            quantizedColors = quantizePixels(maxColors);
 
             if (LOG_TIMINGS) {
                 mTimingLogger.addSplit("Quantized colors computed");
                 mTimingLogger.dumpToLog();
             }
         }
+
+        // Only the distinct colors have a population left, so clearing them empties the
+        // histogram without going through all of it
+        for (int i = 0; i < distinctColorCount; i++) {
+            hist[colors[i]] = 0;
+        }
+        mColorCount = 0;
+        mFilters = null;
+        return quantizedColors;
     }
 
     /**
@@ -147,17 +198,35 @@ final class ColorCutQuantizer {
     private List<Swatch> quantizePixels(int maxColors) {
         // Create the priority queue which is sorted by volume descending. This means we always
         // split the largest box in the queue
-        final PriorityQueue<Vbox> pq = new PriorityQueue<>(maxColors, VBOX_COMPARATOR_VOLUME);
+        final PriorityQueue<Vbox> pq = mQueue;
 
         // To start, offer a box which contains all of the colors
-        pq.offer(new Vbox(0, mColors.length - 1));
+        pq.offer(obtainVbox(0, mColorCount - 1));
 
         // Now go through the boxes, splitting them until we have reached maxColors or there are no
         // more boxes to split
         splitBoxes(pq, maxColors);
 
         // Finally, return the average colors of the color boxes
-        return generateAverageColors(pq);
+        final List<Swatch> swatches = generateAverageColors(pq);
+
+        // The boxes are kept for the next run
+        pq.clear();
+        mVboxPoolUsed = 0;
+        return swatches;
+    }
+
+    private Vbox obtainVbox(int lowerIndex, int upperIndex) {
+        final Vbox vbox;
+        if (mVboxPoolUsed < mVboxPool.size()) {
+            vbox = mVboxPool.get(mVboxPoolUsed);
+        } else {
+            vbox = new Vbox();
+            mVboxPool.add(vbox);
+        }
+        mVboxPoolUsed++;
+        vbox.set(lowerIndex, upperIndex);
+        return vbox;
     }
 
     /**
@@ -219,7 +288,7 @@ final class ColorCutQuantizer {
         private int mMinGreen, mMaxGreen;
         private int mMinBlue, mMaxBlue;
 
-        Vbox(int lowerIndex, int upperIndex) {
+        final void set(int lowerIndex, int upperIndex) {
             mLowerIndex = lowerIndex;
             mUpperIndex = upperIndex;
             fitBox();
@@ -301,7 +370,7 @@ final class ColorCutQuantizer {
             // find median along the longest dimension
             final int splitPoint = findSplitPoint();
 
-            Vbox newBox = new Vbox(splitPoint + 1, mUpperIndex);
+            Vbox newBox = obtainVbox(splitPoint + 1, mUpperIndex);
 
             // Now change this box's upperIndex and recompute the color boundaries
             mUpperIndex = splitPoint;
@@ -346,6 +346,14 @@ public final class Palette {
         return mDominantSwatch != null ? mDominantSwatch.getRgb() : defaultColor;
     }
 
+    /**
+     * Sets the swatch of a target without scoring, used when restoring a palette which was
+     * generated before.
+     */
+    void setSelectedSwatch(Target target, @Nullable Swatch swatch) {
+        mSelectedSwatches.put(target, swatch);
+    }
+
     void generate() {
         // We need to make sure that the scored targets are generated first. This is so that
         // inherited targets have something to inherit from
@@ -598,6 +606,9 @@ public final class Palette {
      * Builder class for generating {@link Palette} instances.
      */
     public static final class Builder {
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
         private final List<Swatch> mSwatches;
         private final Bitmap mBitmap;
 
@@ -779,6 +790,65 @@ public final class Palette {
             return this;
         }
 
+        /**
+         * Returns the targets which will be used by {@link #generate()}.
+         */
+        List<Target> getTargets() {
+            return mTargets;
+        }
+
+        /**
+         * Returns a hash of everything which affects the result of {@link #generate()}, other
+         * than the bitmap or swatches. Filters are identified by their class.
+         */
+        long getConfigHash() {
+            long hash = hashInt(FNV_OFFSET_BASIS, mMaxColors);
+            hash = hashInt(hash, mResizeArea);
+            hash = hashInt(hash, mResizeMaxDimension);
+            if (mRegion != null) {
+                hash = hashInt(hash, mRegion.left);
+                hash = hashInt(hash, mRegion.top);
+                hash = hashInt(hash, mRegion.right);
+                hash = hashInt(hash, mRegion.bottom);
+            } else {
+                hash = hashInt(hash, -1);
+            }
+            hash = hashInt(hash, mFilters.size());
+            for (int i = 0, count = mFilters.size(); i < count; i++) {
+                hash = hashInt(hash, mFilters.get(i).getClass().getName().hashCode());
+            }
+            hash = hashInt(hash, mTargets.size());
+            for (int i = 0, count = mTargets.size(); i < count; i++) {
+                final Target target = mTargets.get(i);
+                for (int j = 0; j < 3; j++) {
+                    hash = hashInt(hash, Float.floatToIntBits(target.mSaturationTargets[j]));
+                    hash = hashInt(hash, Float.floatToIntBits(target.mLightnessTargets[j]));
+                }
+                // The weights are normalized in place by generate(), so only hash their ratios
+                float sum = 0;
+                for (float weight : target.mWeights) {
+                    if (weight > 0) {
+                        sum += weight;
+                    }
+                }
+                for (float weight : target.mWeights) {
+                    hash = hashInt(hash, weight > 0 && sum != 0
+                            ? Math.round(weight / sum * 10000) : Float.floatToIntBits(weight));
+                }
+                hash = hashInt(hash, target.mIsExclusive ? 1 : 0);
+            }
+            return hash;
+        }
+
+        private static long hashInt(long hash, int value) {
+            // 64-bit FNV-1a, one byte at a time
+            for (int i = 0; i < 4; i++) {
+                hash ^= (value >>> (i * 8)) & 0xff;
+                hash *= FNV_PRIME;
+            }
+            return hash;
+        }
+
         /**
          * Generate and return the {@link Palette} synchronously.
          */
@@ -878,26 +948,20 @@ public final class Palette {
         }
 
         private int[] getPixelsFromBitmap(Bitmap bitmap) {
-            final int bitmapWidth = bitmap.getWidth();
-            final int bitmapHeight = bitmap.getHeight();
-            final int[] pixels = new int[bitmapWidth * bitmapHeight];
-            bitmap.getPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
-
             if (mRegion == null) {
                 // If we don't have a region, return all of the pixels
+                final int bitmapWidth = bitmap.getWidth();
+                final int bitmapHeight = bitmap.getHeight();
+                final int[] pixels = new int[bitmapWidth * bitmapHeight];
+                bitmap.getPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
                 return pixels;
             } else {
-                // If we do have a region, lets create a subset array containing only the region's
-                // pixels
+                // If we do have a region, only read the region's pixels from the bitmap
                 final int regionWidth = mRegion.width();
                 final int regionHeight = mRegion.height();
-                // pixels contains all of the pixels, so we need to iterate through each row and
-                // copy the regions pixels into a new smaller array
                 final int[] subsetPixels = new int[regionWidth * regionHeight];
-                for (int row = 0; row < regionHeight; row++) {
-                    System.arraycopy(pixels, ((row + mRegion.top) * bitmapWidth) + mRegion.left,
-                            subsetPixels, row * regionWidth, regionWidth);
-                }
+                bitmap.getPixels(subsetPixels, 0, regionWidth, mRegion.left, mRegion.top,
+                        regionWidth, regionHeight);
                 return subsetPixels;
             }
         }
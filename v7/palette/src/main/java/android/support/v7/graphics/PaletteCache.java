@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.graphics;
+
+import android.os.AsyncTask;
+import android.os.Process;
+import android.support.annotation.AnyThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.AtomicFile;
+import android.support.v4.util.LruCache;
+import android.support.v7.graphics.Palette.PaletteAsyncListener;
+import android.support.v7.graphics.Palette.Swatch;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of generated {@link Palette} instances which survives process restarts.
+ *
+ * <p>Palettes are looked up with a key provided by the caller, such as the URI of the image, and
+ * the configuration of the {@link Palette.Builder}: a palette generated with different targets,
+ * filters, region or sizes is not returned. Filters are identified by their class, so filters
+ * of the same class which behave differently must not be used with the same key.</p>
+ *
+ * <p>The cache has two tiers. The most recently used palettes are kept in memory, and a larger
+ * number of palettes, with their swatches and the swatch selected for each target, are kept in a
+ * single compact file. The file is read the first time it is needed and rewritten in the
+ * background after changes. Both tiers evict the least recently used palettes.</p>
+ *
+ * <pre>
+ * PaletteCache cache = new PaletteCache(new File(context.getCacheDir(), "palettes"), 50,
+ *         256 * 1024);
+ * Palette p = cache.getFromMemory(uri, Palette.from(bitmap));
+ * if (p == null) {
+ *     cache.getOrGenerateAsync(uri, Palette.from(bitmap), new PaletteAsyncListener() {
+ *         public void onGenerated(Palette p) {
+ *             // Use the palette
+ *         }
+ *     });
+ * }
+ * </pre>
+ */
+public final class PaletteCache {
+
+    private static final String LOG_TAG = "PaletteCache";
+
+    private static final int FILE_MAGIC = 0x50414c43; // PALC
+    private static final int FILE_VERSION = 1;
+    // Magic, version and entry count
+    private static final int FILE_HEADER_SIZE = 12;
+
+    // Longer keys are only cached in memory
+    private static final int MAX_DISK_KEY_LENGTH = 1024;
+
+    // Idle time after which the disk write thread stops
+    private static final long WRITE_THREAD_KEEP_ALIVE_MS = 10000;
+
+    // Writes the caches to disk one at a time, without delaying the app's AsyncTasks
+    private static final Executor sWriteExecutor = createWriteExecutor();
+
+    private final AtomicFile mFile;
+    private final int mMaxDiskBytes;
+    private final LruCache<String, Palette> mMemoryCache;
+
+    private final Object mLock = new Object();
+    // Encoded palettes in access order, null until the file has been read. Guarded by mLock
+    private LinkedHashMap<String, byte[]> mDiskEntries;
+    private int mDiskBytes;
+    private boolean mDirty;
+    private boolean mWriteScheduled;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Create a cache backed by the given file.
+     *
+     * @param file the file storing the palettes. It is created when needed.
+     * @param maxMemoryEntries the maximum number of palettes kept in memory.
+     * @param maxDiskBytes the approximate maximum size of the file.
+     */
+    public PaletteCache(@NonNull File file, int maxMemoryEntries, int maxDiskBytes) {
+        if (file == null) {
+            throw new IllegalArgumentException("file can not be null");
+        }
+        if (maxMemoryEntries <= 0) {
+            throw new IllegalArgumentException("maxMemoryEntries must be positive");
+        }
+        mFile = new AtomicFile(file);
+        mMaxDiskBytes = maxDiskBytes;
+        mMemoryCache = new LruCache<>(maxMemoryEntries);
+    }
+
+    /**
+     * Returns the cached palette for the key and builder configuration if it is in memory. This
+     * never reads the file, so it can be called when binding a view.
+     */
+    @AnyThread
+    @Nullable
+    public Palette getFromMemory(@NonNull String key, @NonNull Palette.Builder builder) {
+        return mMemoryCache.get(getCacheKey(key, builder));
+    }
+
+    /**
+     * Returns the cached palette for the key and builder configuration, reading the file if
+     * needed, or null if no such palette was cached.
+     */
+    @WorkerThread
+    @Nullable
+    public Palette get(@NonNull String key, @NonNull Palette.Builder builder) {
+        return getCached(getCacheKey(key, builder), builder);
+    }
+
+    /**
+     * Adds a palette generated by the given builder to the cache.
+     */
+    @WorkerThread
+    public void put(@NonNull String key, @NonNull Palette.Builder builder,
+            @NonNull Palette palette) {
+        if (palette == null) {
+            throw new IllegalArgumentException("palette can not be null");
+        }
+        put(getCacheKey(key, builder), palette);
+    }
+
+    /**
+     * Returns the cached palette for the key and builder configuration, or generates it with the
+     * builder and caches it.
+     */
+    @WorkerThread
+    @NonNull
+    public Palette getOrGenerate(@NonNull String key, @NonNull Palette.Builder builder) {
+        return getCachedOrGenerate(getCacheKey(key, builder), builder);
+    }
+
+    /**
+     * Looks up the palette asynchronously, generating it if it was not cached. The provided
+     * listener's {@link PaletteAsyncListener#onGenerated} method will be called with the palette,
+     * or null if it could not be generated.
+     */
+    @NonNull
+    public AsyncTask<Void, Void, Palette> getOrGenerateAsync(@NonNull final String key,
+            @NonNull final Palette.Builder builder, @NonNull final PaletteAsyncListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener can not be null");
+        }
+        final String cacheKey = getCacheKey(key, builder);
+
+        return new AsyncTask<Void, Void, Palette>() {
+            @Override
+            protected Palette doInBackground(Void... params) {
+                try {
+                    return getCachedOrGenerate(cacheKey, builder);
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "Exception thrown during async generate", e);
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(Palette palette) {
+                listener.onGenerated(palette);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Writes the pending changes to the file. Changes are otherwise written in the background
+     * shortly after they are made.
+     */
+    @WorkerThread
+    public void flush() {
+        // Serializes the writes of the file, which AtomicFile does not support concurrently
+        synchronized (mFile) {
+            final String[] keys;
+            final byte[][] values;
+            synchronized (mLock) {
+                mWriteScheduled = false;
+                if (!mDirty) {
+                    return;
+                }
+                mDirty = false;
+                keys = mDiskEntries.keySet().toArray(new String[mDiskEntries.size()]);
+                values = mDiskEntries.values().toArray(new byte[mDiskEntries.size()][]);
+            }
+
+            FileOutputStream fos = null;
+            try {
+                fos = mFile.startWrite();
+                final DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(fos));
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(keys.length);
+                // Entries are written from the least recently used, which is the order in which
+                // they are read back
+                for (int i = 0; i < keys.length; i++) {
+                    out.writeUTF(keys[i]);
+                    out.writeInt(values[i].length);
+                    out.write(values[i]);
+                }
+                out.flush();
+                mFile.finishWrite(fos);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to write palette cache", e);
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    /**
+     * Removes all the palettes from the memory and from the file.
+     */
+    @WorkerThread
+    public void clear() {
+        mMemoryCache.evictAll();
+        synchronized (mFile) {
+            synchronized (mLock) {
+                mDiskEntries = new LinkedHashMap<>(16, 0.75f, true);
+                mDiskBytes = 0;
+                mDirty = false;
+            }
+            mFile.delete();
+        }
+    }
+
+    private static String getCacheKey(String key, Palette.Builder builder) {
+        if (key == null) {
+            throw new IllegalArgumentException("key can not be null");
+        }
+        if (builder == null) {
+            throw new IllegalArgumentException("builder can not be null");
+        }
+        return Long.toHexString(builder.getConfigHash()) + ':' + key;
+    }
+
+    /**
+     * The cache key must be computed before this is called, as generate() can modify the region
+     * of the builder.
+     */
+    private Palette getCachedOrGenerate(String cacheKey, Palette.Builder builder) {
+        Palette palette = getCached(cacheKey, builder);
+        if (palette == null) {
+            palette = builder.generate();
+            put(cacheKey, palette);
+        }
+        return palette;
+    }
+
+    private Palette getCached(String cacheKey, Palette.Builder builder) {
+        Palette palette = mMemoryCache.get(cacheKey);
+        if (palette != null) {
+            return palette;
+        }
+        final byte[] encoded;
+        synchronized (mLock) {
+            encoded = getDiskEntries().get(cacheKey);
+        }
+        if (encoded != null) {
+            palette = decode(encoded, builder.getTargets());
+            if (palette != null) {
+                mMemoryCache.put(cacheKey, palette);
+            }
+        }
+        return palette;
+    }
+
+    private void put(String cacheKey, Palette palette) {
+        mMemoryCache.put(cacheKey, palette);
+        if (cacheKey.length() > MAX_DISK_KEY_LENGTH) {
+            return;
+        }
+        final byte[] encoded = encode(palette);
+        final int size = getEntrySize(cacheKey, encoded);
+        synchronized (mLock) {
+            final LinkedHashMap<String, byte[]> entries = getDiskEntries();
+            final byte[] previous = entries.put(cacheKey, encoded);
+            if (previous != null) {
+                mDiskBytes -= getEntrySize(cacheKey, previous);
+            }
+            mDiskBytes += size;
+            trimDiskEntries();
+            mDirty = true;
+            if (!mWriteScheduled) {
+                mWriteScheduled = true;
+                sWriteExecutor.execute(mWriteRunnable);
+            }
+        }
+    }
+
+    private static Executor createWriteExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                WRITE_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "PaletteCache");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void trimDiskEntries() {
+        final Iterator<Map.Entry<String, byte[]>> it = mDiskEntries.entrySet().iterator();
+        while (FILE_HEADER_SIZE + mDiskBytes > mMaxDiskBytes && it.hasNext()) {
+            final Map.Entry<String, byte[]> eldest = it.next();
+            mDiskBytes -= getEntrySize(eldest.getKey(), eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private static int getEntrySize(String cacheKey, byte[] encoded) {
+        // The key length in chars is close enough to its encoded length in the file
+        return cacheKey.length() + encoded.length + 6;
+    }
+
+    /**
+     * Returns the entries of the file, reading it if needed. Must be called with mLock held.
+     */
+    private LinkedHashMap<String, byte[]> getDiskEntries() {
+        if (mDiskEntries != null) {
+            return mDiskEntries;
+        }
+        mDiskEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mDiskBytes = 0;
+        try {
+            final DataInputStream in =
+                    new DataInputStream(new ByteArrayInputStream(mFile.readFully()));
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Unknown palette cache format");
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String cacheKey = in.readUTF();
+                final byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                mDiskEntries.put(cacheKey, encoded);
+                mDiskBytes += getEntrySize(cacheKey, encoded);
+            }
+            trimDiskEntries();
+        } catch (FileNotFoundException e) {
+            // Nothing has been cached yet
+        } catch (IOException | RuntimeException e) {
+            Log.w(LOG_TAG, "Discarding invalid palette cache", e);
+            mDiskEntries.clear();
+            mDiskBytes = 0;
+            mDirty = true;
+        }
+        return mDiskEntries;
+    }
+
+    /**
+     * Encodes the swatches of a palette and the index of the swatch selected for each target.
+     */
+    private static byte[] encode(Palette palette) {
+        final List<Swatch> swatches = palette.getSwatches();
+        final List<Target> targets = palette.getTargets();
+        final ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream(4 + swatches.size() * 8 + targets.size() * 2);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(swatches.size());
+            for (int i = 0, count = swatches.size(); i < count; i++) {
+                final Swatch swatch = swatches.get(i);
+                out.writeInt(swatch.getRgb());
+                out.writeInt(swatch.getPopulation());
+            }
+            out.writeShort(targets.size());
+            for (int i = 0, count = targets.size(); i < count; i++) {
+                final Swatch selected = palette.getSwatchForTarget(targets.get(i));
+                out.writeShort(selected != null ? swatches.indexOf(selected) : -1);
+            }
+        } catch (IOException e) {
+            // Can not happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a palette written by {@link #encode(Palette)}, or returns null if it does not
+     * match the targets.
+     */
+    private static Palette decode(byte[] encoded, List<Target> targets) {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        try {
+            final int swatchCount = in.readUnsignedShort();
+            final List<Swatch> swatches = new ArrayList<>(swatchCount);
+            for (int i = 0; i < swatchCount; i++) {
+                swatches.add(new Swatch(in.readInt(), in.readInt()));
+            }
+            if (in.readUnsignedShort() != targets.size()) {
+                return null;
+            }
+            final Palette palette = new Palette(swatches, new ArrayList<>(targets));
+            for (int i = 0, count = targets.size(); i < count; i++) {
+                final int index = in.readShort();
+                if (index >= swatchCount) {
+                    return null;
+                }
+                palette.setSelectedSwatch(targets.get(i), index >= 0 ? swatches.get(index) : null);
+            }
+            return palette;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Discarding invalid cached palette", e);
+            return null;
+        }
+    }
+}
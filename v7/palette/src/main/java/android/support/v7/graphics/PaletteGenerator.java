@@ -0,0 +1,405 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.graphics;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.graphics.Palette.Filter;
+import android.support.v7.graphics.Palette.Swatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Generates {@link Palette} instances for many images, reusing the same buffers for each one.
+ *
+ * <p>Unlike {@link Palette.Builder}, the pixels are read directly from the given {@code int[]} or
+ * {@link Bitmap} region: no scaled copy of the image is created. Large images are sampled instead,
+ * taking one pixel every few rows and columns so that about {@link #resizeBitmapArea(int)} pixels
+ * are used, the same as the nearest neighbour scaling done by {@link Palette.Builder}.</p>
+ *
+ * <p>The histogram of the image can be computed in parallel across stripes of rows, see
+ * {@link #setExecutor(Executor, int)}.</p>
+ *
+ * <p>A generator is not thread safe, use one generator per thread.</p>
+ *
+ * <pre>
+ * PaletteGenerator generator = new PaletteGenerator();
+ * for (Bitmap bitmap : bitmaps) {
+ *     Palette p = generator.generate(bitmap);
+ * }
+ * </pre>
+ */
+public final class PaletteGenerator {
+
+    // Below this number of sampled pixels, building the histogram is faster than handing out
+    // the stripes to other threads
+    private static final int MIN_PARALLEL_PIXELS = 64 * 1024;
+
+    private final ColorCutQuantizer mQuantizer = new ColorCutQuantizer();
+
+    private final List<Target> mTargets = new ArrayList<>();
+    private final List<Filter> mFilters = new ArrayList<>();
+    private Filter[] mFilterArray;
+
+    private int mMaxColors = Palette.DEFAULT_CALCULATE_NUMBER_COLORS;
+    private int mResizeArea = Palette.DEFAULT_RESIZE_BITMAP_AREA;
+
+    private Executor mExecutor;
+    private Stripe[] mStripes = new Stripe[] {new Stripe()};
+
+    // The source of the current run, either mPixels or mBitmap is set
+    private int[] mPixels;
+    private int mOffset;
+    private int mStride;
+    private Bitmap mBitmap;
+    private int mLeft;
+    private int mTop;
+    private int mWidth;
+    private int mStep;
+
+    /**
+     * Construct a new generator with the same default filter and targets as
+     * {@link Palette.Builder}.
+     */
+    public PaletteGenerator() {
+        mFilters.add(Palette.DEFAULT_FILTER);
+
+        // Add the default targets
+        mTargets.add(Target.LIGHT_VIBRANT);
+        mTargets.add(Target.VIBRANT);
+        mTargets.add(Target.DARK_VIBRANT);
+        mTargets.add(Target.LIGHT_MUTED);
+        mTargets.add(Target.MUTED);
+        mTargets.add(Target.DARK_MUTED);
+    }
+
+    /**
+     * Set the maximum number of colors to use in the quantization step.
+     *
+     * @see Palette.Builder#maximumColorCount(int)
+     */
+    @NonNull
+    public PaletteGenerator maximumColorCount(int colors) {
+        mMaxColors = colors;
+        return this;
+    }
+
+    /**
+     * Set the number of pixels sampled from each image. If an image has more pixels than this,
+     * only one pixel every few rows and columns is used.
+     *
+     * <p>Setting a value <= 0 uses all of the pixels.</p>
+     *
+     * @see Palette.Builder#resizeBitmapArea(int)
+     */
+    @NonNull
+    public PaletteGenerator resizeBitmapArea(int area) {
+        mResizeArea = area;
+        return this;
+    }
+
+    /**
+     * Clear all added filters, including the default filter.
+     */
+    @NonNull
+    public PaletteGenerator clearFilters() {
+        mFilters.clear();
+        mFilterArray = null;
+        return this;
+    }
+
+    /**
+     * Add a filter to be able to have fine grained control over which colors are
+     * allowed in the resulting palettes.
+     *
+     * @param filter filter to add.
+     */
+    @NonNull
+    public PaletteGenerator addFilter(Filter filter) {
+        if (filter != null) {
+            mFilters.add(filter);
+            mFilterArray = null;
+        }
+        return this;
+    }
+
+    /**
+     * Add a target profile to be generated in the palettes.
+     */
+    @NonNull
+    public PaletteGenerator addTarget(@NonNull Target target) {
+        if (!mTargets.contains(target)) {
+            mTargets.add(target);
+        }
+        return this;
+    }
+
+    /**
+     * Clear all added targets, including the default targets.
+     */
+    @NonNull
+    public PaletteGenerator clearTargets() {
+        mTargets.clear();
+        return this;
+    }
+
+    /**
+     * Compute the histogram of large images in parallel.
+     *
+     * <p>The rows of the image are split in {@code stripeCount} stripes. The first stripe is
+     * processed on the calling thread and the others on {@code executor}. As the calling thread
+     * waits for the other stripes, the executor must not need the calling thread to run them.
+     * Small images are always processed on the calling thread.</p>
+     *
+     * @param executor the executor processing the stripes, or null to process the whole image on
+     *                 the calling thread.
+     * @param stripeCount the number of stripes, including the one of the calling thread.
+     */
+    @NonNull
+    public PaletteGenerator setExecutor(@Nullable Executor executor, int stripeCount) {
+        if (executor != null && stripeCount < 1) {
+            throw new IllegalArgumentException("stripeCount must be positive");
+        }
+        mExecutor = executor;
+        final int count = executor != null ? stripeCount : 1;
+        if (mStripes.length != count) {
+            final Stripe[] stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = i < mStripes.length ? mStripes[i] : new Stripe();
+            }
+            mStripes = stripes;
+        }
+        return this;
+    }
+
+    /**
+     * Generate a {@link Palette} from all of the pixels of a {@link Bitmap}.
+     */
+    @NonNull
+    public Palette generate(@NonNull Bitmap bitmap) {
+        if (bitmap == null) {
+            throw new IllegalArgumentException("Bitmap is not valid");
+        }
+        return generate(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /**
+     * Generate a {@link Palette} from a region of a {@link Bitmap}. Only the rows which are
+     * sampled are read from the bitmap.
+     *
+     * @param left The left side of the rectangle used for the region.
+     * @param top The top of the rectangle used for the region.
+     * @param right The right side of the rectangle used for the region.
+     * @param bottom The bottom of the rectangle used for the region.
+     */
+    @NonNull
+    public Palette generate(@NonNull Bitmap bitmap, int left, int top, int right, int bottom) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            throw new IllegalArgumentException("Bitmap is not valid");
+        }
+        if (left < 0 || top < 0 || right > bitmap.getWidth() || bottom > bitmap.getHeight()
+                || left >= right || top >= bottom) {
+            throw new IllegalArgumentException("The given region must be a non empty region "
+                    + "inside the Bitmap's dimensions.");
+        }
+        mBitmap = bitmap;
+        mLeft = left;
+        mTop = top;
+        try {
+            return generate(right - left, bottom - top);
+        } finally {
+            mBitmap = null;
+        }
+    }
+
+    /**
+     * Generate a {@link Palette} from ARGB pixels, in the same layout as
+     * {@link Bitmap#getPixels(int[], int, int, int, int, int, int)}. The array is not modified.
+     *
+     * @param pixels the pixels of the image.
+     * @param offset the index of the first pixel of the image.
+     * @param stride the number of entries between two rows in {@code pixels}, at least
+     *               {@code width}.
+     * @param width the number of pixels in each row.
+     * @param height the number of rows.
+     */
+    @NonNull
+    public Palette generate(@NonNull int[] pixels, int offset, int stride, int width,
+            int height) {
+        if (pixels == null) {
+            throw new IllegalArgumentException("pixels can not be null");
+        }
+        if (width <= 0 || height <= 0 || offset < 0 || stride < width
+                || offset + (long) (height - 1) * stride + width > pixels.length) {
+            throw new IllegalArgumentException("The given dimensions do not fit in pixels");
+        }
+        mPixels = pixels;
+        mOffset = offset;
+        mStride = stride;
+        try {
+            return generate(width, height);
+        } finally {
+            mPixels = null;
+        }
+    }
+
+    private Palette generate(int width, int height) {
+        mWidth = width;
+        mStep = getSampleStep(width, height);
+
+        final int sampledRows = (height + mStep - 1) / mStep;
+        final int sampledColumns = (width + mStep - 1) / mStep;
+        final int stripeCount = mExecutor == null
+                || (long) sampledRows * sampledColumns < MIN_PARALLEL_PIXELS
+                ? 1 : Math.min(mStripes.length, sampledRows);
+
+        if (stripeCount == 1) {
+            addRowsToHistogram(mQuantizer.mHistogram, mStripes[0], 0, sampledRows);
+        } else {
+            computeHistogramInParallel(stripeCount, sampledRows);
+        }
+
+        if (mFilterArray == null && !mFilters.isEmpty()) {
+            mFilterArray = mFilters.toArray(new Filter[mFilters.size()]);
+        }
+        final List<Swatch> swatches = mQuantizer.quantizeHistogram(mMaxColors, mFilterArray);
+
+        // The targets are copied as the generator can be changed after this palette is created
+        final Palette p = new Palette(swatches, new ArrayList<>(mTargets));
+        p.generate();
+        return p;
+    }
+
+    private int getSampleStep(int width, int height) {
+        final long area = (long) width * height;
+        if (mResizeArea <= 0 || area <= mResizeArea) {
+            return 1;
+        }
+        return (int) Math.ceil(Math.sqrt(area / (double) mResizeArea));
+    }
+
+    private void computeHistogramInParallel(int stripeCount, int sampledRows) {
+        final CountDownLatch latch = new CountDownLatch(stripeCount - 1);
+        for (int i = 0; i < stripeCount; i++) {
+            final Stripe stripe = mStripes[i];
+            stripe.mFirstRow = (int) ((long) sampledRows * i / stripeCount);
+            stripe.mLastRow = (int) ((long) sampledRows * (i + 1) / stripeCount);
+            stripe.mLatch = latch;
+            stripe.mError = null;
+        }
+        for (int i = 1; i < stripeCount; i++) {
+            mExecutor.execute(mStripes[i]);
+        }
+
+        // The first stripe is added directly to the quantizer's histogram
+        final Stripe first = mStripes[0];
+        addRowsToHistogram(mQuantizer.mHistogram, first, first.mFirstRow, first.mLastRow);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final int[] hist = mQuantizer.mHistogram;
+        RuntimeException error = null;
+        for (int i = 1; i < stripeCount; i++) {
+            final Stripe stripe = mStripes[i];
+            stripe.mLatch = null;
+            if (stripe.mError != null && error == null) {
+                error = stripe.mError;
+            }
+            final int[] stripeHist = stripe.mHistogram;
+            for (int color = 0; color < hist.length; color++) {
+                hist[color] += stripeHist[color];
+                stripeHist[color] = 0;
+            }
+        }
+        if (error != null) {
+            // Leave the histogram empty for the next run
+            Arrays.fill(hist, 0);
+            throw error;
+        }
+    }
+
+    /**
+     * Adds the sampled rows in {@code [firstRow, lastRow)} to {@code hist}.
+     */
+    private void addRowsToHistogram(int[] hist, Stripe stripe, int firstRow, int lastRow) {
+        final int step = mStep;
+        final int width = mWidth;
+        if (mPixels != null) {
+            for (int row = firstRow; row < lastRow; row++) {
+                ColorCutQuantizer.addToHistogram(hist, mPixels,
+                        mOffset + row * step * mStride, width, step);
+            }
+        } else {
+            final int[] rowPixels = stripe.getRowBuffer(width);
+            for (int row = firstRow; row < lastRow; row++) {
+                mBitmap.getPixels(rowPixels, 0, width, mLeft, mTop + row * step, width, 1);
+                ColorCutQuantizer.addToHistogram(hist, rowPixels, 0, width, step);
+            }
+        }
+    }
+
+    /**
+     * A range of sampled rows, with the buffers used to process it. The buffers are kept
+     * between runs.
+     */
+    private final class Stripe implements Runnable {
+        private int[] mHistogram;
+        private int[] mRowBuffer;
+
+        int mFirstRow;
+        int mLastRow;
+        CountDownLatch mLatch;
+        RuntimeException mError;
+
+        int[] getRowBuffer(int width) {
+            if (mRowBuffer == null || mRowBuffer.length < width) {
+                mRowBuffer = new int[width];
+            }
+            return mRowBuffer;
+        }
+
+        @Override
+        public void run() {
+            if (mHistogram == null) {
+                mHistogram = new int[mQuantizer.mHistogram.length];
+            }
+            try {
+                addRowsToHistogram(mHistogram, this, mFirstRow, mLastRow);
+            } catch (RuntimeException e) {
+                mError = e;
+            } finally {
+                mLatch.countDown();
+            }
+        }
+    }
+}
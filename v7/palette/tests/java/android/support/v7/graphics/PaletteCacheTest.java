@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.graphics;
+
+import static android.support.v7.graphics.TestUtils.loadSampleBitmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(AndroidJUnit4.class)
+public class PaletteCacheTest {
+
+    private static final String TAG = "PaletteCacheTest";
+    private static final String KEY = "content://images/1";
+
+    private File mFile;
+    private Bitmap mBitmap;
+
+    @Before
+    public void setUp() {
+        mFile = new File(InstrumentationRegistry.getContext().getCacheDir(), "palette_cache_test");
+        mFile.delete();
+        mBitmap = loadSampleBitmap();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    @MediumTest
+    public void testRestoredFromFile() {
+        final PaletteCache cache = new PaletteCache(mFile, 10, 64 * 1024);
+        final Palette expected = cache.getOrGenerate(KEY, Palette.from(mBitmap));
+        assertSame(expected, cache.getFromMemory(KEY, Palette.from(mBitmap)));
+        cache.flush();
+
+        // A new cache, as after a process restart, reads the palette back from the file
+        final PaletteCache restored = new PaletteCache(mFile, 10, 64 * 1024);
+        assertNull(restored.getFromMemory(KEY, Palette.from(mBitmap)));
+        final Palette palette = restored.get(KEY, Palette.from(mBitmap));
+        assertNotNull(palette);
+        assertPalettesEqual(expected, palette);
+        assertSame(palette, restored.getFromMemory(KEY, Palette.from(mBitmap)));
+    }
+
+    @Test
+    @MediumTest
+    public void testConfigurationIsPartOfKey() {
+        final PaletteCache cache = new PaletteCache(mFile, 10, 64 * 1024);
+        cache.getOrGenerate(KEY, Palette.from(mBitmap));
+
+        assertNull(cache.get("content://images/2", Palette.from(mBitmap)));
+        assertNull(cache.get(KEY, Palette.from(mBitmap).maximumColorCount(8)));
+        assertNull(cache.get(KEY, Palette.from(mBitmap).setRegion(0, 0, 10, 10)));
+        assertNull(cache.get(KEY, Palette.from(mBitmap).clearTargets()
+                .addTarget(Target.VIBRANT)));
+        assertNotNull(cache.get(KEY, Palette.from(mBitmap)));
+    }
+
+    @Test
+    @MediumTest
+    public void testFileSizeIsBounded() {
+        final int maxDiskBytes = 1024;
+        final PaletteCache cache = new PaletteCache(mFile, 2, maxDiskBytes);
+        for (int i = 0; i < 20; i++) {
+            cache.getOrGenerate(KEY + i, Palette.from(mBitmap));
+        }
+        cache.flush();
+        assertTrue(mFile.length() <= maxDiskBytes);
+
+        // The most recently used palettes are kept
+        final PaletteCache restored = new PaletteCache(mFile, 2, maxDiskBytes);
+        assertNotNull(restored.get(KEY + 19, Palette.from(mBitmap)));
+        assertNull(restored.get(KEY + 0, Palette.from(mBitmap)));
+    }
+
+    @Test
+    @MediumTest
+    public void testGetOrGenerateAsync() throws InterruptedException {
+        final PaletteCache cache = new PaletteCache(mFile, 10, 64 * 1024);
+        final Palette expected = Palette.from(mBitmap).generate();
+        final AtomicReference<Palette> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        cache.getOrGenerateAsync(KEY, Palette.from(mBitmap),
+                new Palette.PaletteAsyncListener() {
+                    @Override
+                    public void onGenerated(Palette palette) {
+                        result.set(palette);
+                        latch.countDown();
+                    }
+                });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertPalettesEqual(expected, result.get());
+        assertSame(result.get(), cache.getFromMemory(KEY, Palette.from(mBitmap)));
+    }
+
+    @Test
+    @LargeTest
+    public void testGet_benchmark() {
+        final int iterations = 100;
+        final PaletteCache cache = new PaletteCache(mFile, 10, 64 * 1024);
+        cache.getOrGenerate(KEY, Palette.from(mBitmap));
+        cache.flush();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Palette.from(mBitmap).generate();
+        }
+        final long generateNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            // A new cache each time, so that the palette is read from the file
+            new PaletteCache(mFile, 10, 64 * 1024).get(KEY, Palette.from(mBitmap));
+        }
+        final long diskNanos = System.nanoTime() - start;
+
+        Log.d(TAG, "Generate: " + generateNanos / iterations / 1000 + "us, read from file: "
+                + diskNanos / iterations / 1000 + "us");
+    }
+
+    private static void assertPalettesEqual(Palette expected, Palette actual) {
+        assertEquals(expected.getSwatches(), actual.getSwatches());
+        assertEquals(expected.getDominantSwatch(), actual.getDominantSwatch());
+        for (Target target : expected.getTargets()) {
+            assertEquals(expected.getSwatchForTarget(target), actual.getSwatchForTarget(target));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.graphics;
+
+import static android.support.v7.graphics.TestUtils.loadSampleBitmap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.MediumTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@RunWith(AndroidJUnit4.class)
+public class PaletteGeneratorTest {
+
+    private static final String TAG = "PaletteGeneratorTest";
+    private static final int STRIPE_COUNT = 4;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(STRIPE_COUNT - 1);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    @MediumTest
+    public void testMatchesBuilder() {
+        final Bitmap bitmap = loadSampleBitmap();
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        final int[] original = pixels.clone();
+
+        // Without resizing, the generator sees exactly the same pixels as the builder
+        final Palette expected = Palette.from(bitmap).resizeBitmapArea(0).generate();
+        final PaletteGenerator generator = new PaletteGenerator().resizeBitmapArea(0);
+        final PaletteGenerator parallelGenerator = new PaletteGenerator().resizeBitmapArea(0)
+                .setExecutor(mExecutor, STRIPE_COUNT);
+
+        // Run twice to check that the buffers are correctly reset between runs
+        for (int i = 0; i < 2; i++) {
+            assertPalettesEqual(expected, generator.generate(bitmap));
+            assertPalettesEqual(expected, generator.generate(pixels, 0, width, width, height));
+            assertPalettesEqual(expected, parallelGenerator.generate(bitmap));
+            assertPalettesEqual(expected,
+                    parallelGenerator.generate(pixels, 0, width, width, height));
+        }
+        assertArrayEquals(original, pixels);
+    }
+
+    @Test
+    @MediumTest
+    public void testRegionMatchesBuilder() {
+        final Bitmap bitmap = loadSampleBitmap();
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        final int left = width / 4;
+        final int top = height / 3;
+        final int right = width - width / 5;
+        final int bottom = height - height / 6;
+
+        final Palette expected = Palette.from(bitmap).resizeBitmapArea(0)
+                .setRegion(left, top, right, bottom).generate();
+        final PaletteGenerator generator = new PaletteGenerator().resizeBitmapArea(0)
+                .setExecutor(mExecutor, STRIPE_COUNT);
+        assertPalettesEqual(expected, generator.generate(bitmap, left, top, right, bottom));
+        assertPalettesEqual(expected, generator.generate(pixels, top * width + left, width,
+                right - left, bottom - top));
+    }
+
+    @Test
+    @MediumTest
+    public void testSampledPixelsAndBitmapMatch() {
+        final Bitmap bitmap = loadSampleBitmap();
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        final PaletteGenerator generator = new PaletteGenerator();
+        assertPalettesEqual(generator.generate(pixels, 0, width, width, height),
+                generator.generate(bitmap));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    @MediumTest
+    public void testRegionOutsidePixels() {
+        new PaletteGenerator().generate(new int[100], 0, 10, 10, 11);
+    }
+
+    @Test
+    @LargeTest
+    public void testGenerate_benchmark() {
+        final int size = 512;
+        final int imageCount = 16;
+        final int iterations = 200;
+        final Bitmap sample = loadSampleBitmap();
+        final Bitmap[] bitmaps = new Bitmap[imageCount];
+        final int[][] pixels = new int[imageCount][size * size];
+        for (int i = 0; i < imageCount; i++) {
+            // Use different crops of the sample so that each image has its own colors
+            final Bitmap crop = Bitmap.createBitmap(sample, i * sample.getWidth() / 64,
+                    i * sample.getHeight() / 64, sample.getWidth() * 3 / 4,
+                    sample.getHeight() * 3 / 4);
+            bitmaps[i] = Bitmap.createScaledBitmap(crop, size, size, true);
+            bitmaps[i].getPixels(pixels[i], 0, size, 0, 0, size, size);
+        }
+
+        final PaletteGenerator generator = new PaletteGenerator();
+        final PaletteGenerator fullGenerator = new PaletteGenerator().resizeBitmapArea(0);
+        final PaletteGenerator parallelGenerator = new PaletteGenerator().resizeBitmapArea(0)
+                .setExecutor(mExecutor, STRIPE_COUNT);
+
+        // Warm up
+        for (int i = 0; i < imageCount; i++) {
+            Palette.from(bitmaps[i]).generate();
+            generator.generate(pixels[i], 0, size, size, size);
+            fullGenerator.generate(pixels[i], 0, size, size, size);
+            parallelGenerator.generate(pixels[i], 0, size, size, size);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Palette.from(bitmaps[i % imageCount]).generate();
+        }
+        final long builderNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            generator.generate(pixels[i % imageCount], 0, size, size, size);
+        }
+        final long generatorNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            fullGenerator.generate(pixels[i % imageCount], 0, size, size, size);
+        }
+        final long fullNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parallelGenerator.generate(pixels[i % imageCount], 0, size, size, size);
+        }
+        final long parallelNanos = System.nanoTime() - start;
+
+        Log.d(TAG, "Palettes per second on " + size + "x" + size + " images. Builder: "
+                + perSecond(iterations, builderNanos) + ", generator: "
+                + perSecond(iterations, generatorNanos) + ", generator with all pixels: "
+                + perSecond(iterations, fullNanos) + ", generator with all pixels and "
+                + STRIPE_COUNT + " stripes: " + perSecond(iterations, parallelNanos));
+    }
+
+    private static long perSecond(int iterations, long nanos) {
+        return iterations * 1000000000L / nanos;
+    }
+
+    private static void assertPalettesEqual(Palette expected, Palette actual) {
+        assertEquals(expected.getSwatches(), actual.getSwatches());
+        for (Target target : expected.getTargets()) {
+            assertEquals(expected.getSwatchForTarget(target), actual.getSwatchForTarget(target));
+        }
+    }
+}
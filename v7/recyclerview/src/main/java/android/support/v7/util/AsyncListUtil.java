@@ -16,6 +16,7 @@
 
 package android.support.v7.util;
 
+import android.os.AsyncTask;
 import android.support.annotation.UiThread;
 import android.support.annotation.WorkerThread;
 import android.util.Log;
@@ -36,8 +37,12 @@ import android.util.SparseIntArray;
  * {@link ViewCallback} when the data is loaded. It may load some extra items for smoother
  * scrolling.
  * <p>
- * Note that this class uses a single thread to load the data, so it suitable to load data from
- * secondary storage such as disk, but not from network.
+ * By default this class uses a single thread to load the data, so it suitable to load data from
+ * secondary storage such as disk, but not from network. If loading a single tile may be slow,
+ * use {@link #AsyncListUtil(Class, int, DataCallback, ViewCallback, int)} to load several tiles
+ * in parallel. Tiles are then loaded in the order of their distance from the visible range,
+ * preferring the tiles in the scroll direction, and pending loads of tiles that are no longer
+ * needed are cancelled.
  * <p>
  * This class is designed to work with {@link android.support.v7.widget.RecyclerView}, but it does
  * not depend on it and can be used with other list views.
@@ -55,6 +60,11 @@ public class AsyncListUtil<T> {
 
     final TileList<T> mTileList;
 
+    final TileLoadQueue mTileLoadQueue;
+
+    private final Object mRecycledTilesLock = new Object();
+    private TileList.Tile<T> mRecycledRoot;
+
     final ThreadUtil.MainThreadCallback<T> mMainThreadProxy;
     final ThreadUtil.BackgroundCallback<T> mBackgroundProxy;
 
@@ -86,12 +96,35 @@ public class AsyncListUtil<T> {
      */
     public AsyncListUtil(Class<T> klass, int tileSize, DataCallback<T> dataCallback,
                          ViewCallback viewCallback) {
+        this(klass, tileSize, dataCallback, viewCallback, 1);
+    }
+
+    /**
+     * Creates an AsyncListUtil that loads up to <code>workerCount</code> tiles in parallel.
+     * <p>
+     * If <code>workerCount</code> is greater than 1, the methods of <code>dataCallback</code> may
+     * be called concurrently from several background threads and must be thread safe.
+     *
+     * @param klass Class of the data item.
+     * @param tileSize Number of item per chunk loaded at once.
+     * @param dataCallback Data access callback.
+     * @param viewCallback Callback for querying visible item range and update notifications.
+     * @param workerCount Maximum number of tiles loaded at the same time.
+     */
+    public AsyncListUtil(Class<T> klass, int tileSize, DataCallback<T> dataCallback,
+                         ViewCallback viewCallback, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
         mTClass = klass;
         mTileSize = tileSize;
         mDataCallback = dataCallback;
         mViewCallback = viewCallback;
 
         mTileList = new TileList<T>(mTileSize);
+        mTileLoadQueue = workerCount > 1
+                ? new TileLoadQueue(AsyncTask.THREAD_POOL_EXECUTOR, workerCount, mTileLoader)
+                : null;
 
         ThreadUtil<T> threadUtil = new MessageThreadUtil<T>();
         mMainThreadProxy = threadUtil.getMainThreadProxy(mMainThreadCallback);
@@ -171,6 +204,33 @@ public class AsyncListUtil<T> {
         return mItemCount;
     }
 
+    TileList.Tile<T> acquireTile() {
+        synchronized (mRecycledTilesLock) {
+            if (mRecycledRoot != null) {
+                TileList.Tile<T> result = mRecycledRoot;
+                mRecycledRoot = mRecycledRoot.mNext;
+                result.mNext = null;
+                return result;
+            }
+        }
+        return new TileList.Tile<T>(mTClass, mTileSize);
+    }
+
+    void releaseTile(TileList.Tile<T> tile) {
+        synchronized (mRecycledTilesLock) {
+            tile.mNext = mRecycledRoot;
+            mRecycledRoot = tile;
+        }
+    }
+
+    void fillTile(TileList.Tile<T> tile, int startPosition, int itemCount) {
+        tile.mStartPosition = startPosition;
+        tile.mItemCount = itemCount;
+        final long startTime = System.nanoTime();
+        mDataCallback.fillData(tile.mItems, startPosition, itemCount);
+        tile.mLoadTimeNanos = System.nanoTime() - startTime;
+    }
+
     void updateRange() {
         mViewCallback.getItemRangeInto(mTmpRange);
         if (mTmpRange[0] > mTmpRange[1] || mTmpRange[0] < 0) {
@@ -242,6 +302,7 @@ public class AsyncListUtil<T> {
                 log("gen #%d, added tile @%d, total tiles: %d",
                         generation, tile.mStartPosition, mTileList.size());
             }
+            mViewCallback.onTileLoaded(tile.mStartPosition, tile.mItemCount, tile.mLoadTimeNanos);
             int endPosition = tile.mStartPosition + tile.mItemCount;
             int index = 0;
             while (index < mMissingPositions.size()) {
@@ -286,13 +347,23 @@ public class AsyncListUtil<T> {
         }
     };
 
+    private final TileLoadQueue.TileLoader mTileLoader = new TileLoadQueue.TileLoader() {
+        @Override
+        public void loadTile(int generation, int position, int itemCount, int scrollHint) {
+            TileList.Tile<T> tile = acquireTile();
+            fillTile(tile, position, itemCount);
+            mBackgroundProxy.onTileLoaded(generation, tile, scrollHint);
+        }
+    };
+
     private final ThreadUtil.BackgroundCallback<T>
             mBackgroundCallback = new ThreadUtil.BackgroundCallback<T>() {
 
-        private TileList.Tile<T> mRecycledRoot;
-
         final SparseBooleanArray mLoadedTiles = new SparseBooleanArray();
 
+        // Tiles queued or being loaded by the TileLoadQueue workers.
+        final SparseBooleanArray mLoadingTiles = new SparseBooleanArray();
+
         private int mGeneration;
         private int mItemCount;
 
@@ -303,6 +374,11 @@ public class AsyncListUtil<T> {
         public void refresh(int generation) {
             mGeneration = generation;
             mLoadedTiles.clear();
+            if (mTileLoadQueue != null) {
+                // Tiles of the previous generation still being loaded are dropped on arrival.
+                mTileLoadQueue.cancelPending(null);
+                mLoadingTiles.clear();
+            }
             mItemCount = mDataCallback.refreshData();
             mMainThreadProxy.updateItemCount(mGeneration, mItemCount);
         }
@@ -329,6 +405,18 @@ public class AsyncListUtil<T> {
                         mFirstRequiredTileStart, mLastRequiredTileStart);
             }
 
+            if (mTileLoadQueue != null) {
+                // Cancel the tiles that were not picked up yet, they are re-queued below if still
+                // required, with the priority updated for the new range.
+                mTileLoadQueue.cancelPending(mLoadingTiles);
+                for (int tileStart = mFirstRequiredTileStart; tileStart <= mLastRequiredTileStart;
+                        tileStart += mTileSize) {
+                    enqueueTile(tileStart, firstVisibleTileStart, lastVisibleTileStart,
+                            scrollHint);
+                }
+                return;
+            }
+
             // All pending tile requests are removed by ThreadUtil at this point.
             // Re-request all required tiles in the most optimal order.
             if (scrollHint == ViewCallback.HINT_SCROLL_DESC) {
@@ -342,6 +430,41 @@ public class AsyncListUtil<T> {
             }
         }
 
+        private void enqueueTile(int tileStart, int firstVisibleTileStart,
+                int lastVisibleTileStart, int scrollHint) {
+            if (isTileLoaded(tileStart) || mLoadingTiles.get(tileStart)) {
+                return;
+            }
+            final int priority;
+            if (tileStart < firstVisibleTileStart) {
+                priority = getTilePriority((firstVisibleTileStart - tileStart) / mTileSize,
+                        scrollHint != ViewCallback.HINT_SCROLL_ASC);
+            } else if (tileStart > lastVisibleTileStart) {
+                priority = getTilePriority((tileStart - lastVisibleTileStart) / mTileSize,
+                        scrollHint != ViewCallback.HINT_SCROLL_DESC);
+            } else {
+                priority = 0;
+            }
+            if (DEBUG) {
+                log("queueing tile @%d, priority: %d", tileStart, priority);
+            }
+            mLoadingTiles.put(tileStart, true);
+            mTileLoadQueue.enqueue(mGeneration, tileStart,
+                    Math.min(mTileSize, mItemCount - tileStart), scrollHint, priority);
+        }
+
+        /**
+         * Tiles in the scroll direction are loaded before the tiles at the same distance in the
+         * opposite direction.
+         */
+        private int getTilePriority(int tileDistance, boolean inScrollDirection) {
+            return inScrollDirection ? tileDistance : tileDistance * 2;
+        }
+
+        private boolean isTileRequired(int position) {
+            return mFirstRequiredTileStart <= position && position <= mLastRequiredTileStart;
+        }
+
         private int getTileStart(int position) {
             return position - position % mTileSize;
         }
@@ -366,9 +489,28 @@ public class AsyncListUtil<T> {
                 return;
             }
             TileList.Tile<T> tile = acquireTile();
-            tile.mStartPosition = position;
-            tile.mItemCount = Math.min(mTileSize, mItemCount - tile.mStartPosition);
-            mDataCallback.fillData(tile.mItems, tile.mStartPosition, tile.mItemCount);
+            fillTile(tile, position, Math.min(mTileSize, mItemCount - position));
+            flushTileCache(scrollHint);
+            addTile(tile);
+        }
+
+        @Override
+        public void onTileLoaded(int generation, TileList.Tile<T> tile, int scrollHint) {
+            if (generation != mGeneration) {
+                if (DEBUG) {
+                    log("dropping an older generation tile @%d", tile.mStartPosition);
+                }
+                recycleTile(tile);
+                return;
+            }
+            mLoadingTiles.delete(tile.mStartPosition);
+            if (isTileLoaded(tile.mStartPosition) || !isTileRequired(tile.mStartPosition)) {
+                if (DEBUG) {
+                    log("dropping tile @%d outside of the required range", tile.mStartPosition);
+                }
+                recycleTile(tile);
+                return;
+            }
             flushTileCache(scrollHint);
             addTile(tile);
         }
@@ -379,18 +521,7 @@ public class AsyncListUtil<T> {
                 log("recycling tile @%d", tile.mStartPosition);
             }
             mDataCallback.recycleData(tile.mItems, tile.mItemCount);
-
-            tile.mNext = mRecycledRoot;
-            mRecycledRoot = tile;
-        }
-
-        private TileList.Tile<T> acquireTile() {
-            if (mRecycledRoot != null) {
-                TileList.Tile<T> result = mRecycledRoot;
-                mRecycledRoot = mRecycledRoot.mNext;
-                return result;
-            }
-            return new TileList.Tile<T>(mTClass, mTileSize);
+            releaseTile(tile);
         }
 
         private boolean isTileLoaded(int position) {
@@ -442,7 +573,8 @@ public class AsyncListUtil<T> {
      * The callback that provides data access for {@link AsyncListUtil}.
      *
      * <p>
-     * All methods are called on the background thread.
+     * All methods are called on the background thread. If the {@link AsyncListUtil} was created
+     * with more than one worker, the methods may be called concurrently from several threads.
      */
     public static abstract class DataCallback<T> {
 
@@ -588,5 +720,20 @@ public class AsyncListUtil<T> {
          */
         @UiThread
         public abstract void onItemLoaded(int position);
+
+        /**
+         * Called when a tile has been loaded and added to the cache.
+         * <p>
+         * Can be used to monitor the cost of {@link DataCallback#fillData}. The default
+         * implementation does nothing.
+         *
+         * @param startPosition Position of the first item in the tile.
+         * @param itemCount Number of items in the tile.
+         * @param loadTimeNanos Time spent in {@link DataCallback#fillData} for this tile, in
+         *                      nanoseconds.
+         */
+        @UiThread
+        public void onTileLoaded(int startPosition, int itemCount, long loadTimeNanos) {
+        }
     }
 }
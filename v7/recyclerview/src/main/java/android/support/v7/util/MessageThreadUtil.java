@@ -93,6 +93,7 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
             static final int UPDATE_RANGE = 2;
             static final int LOAD_TILE = 3;
             static final int RECYCLE_TILE = 4;
+            static final int TILE_LOADED = 5;
 
             @Override
             public void refresh(int generation) {
@@ -116,6 +117,12 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
                 sendMessage(SyncQueueItem.obtainMessage(RECYCLE_TILE, 0, tile));
             }
 
+            @Override
+            public void onTileLoaded(int generation, TileList.Tile<T> tile, int scrollHint) {
+                sendMessage(SyncQueueItem.obtainMessage(TILE_LOADED,
+                        generation, scrollHint, 0, 0, 0, tile));
+            }
+
             private void sendMessage(SyncQueueItem msg) {
                 mQueue.sendMessage(msg);
                 maybeExecuteBackgroundRunnable();
@@ -138,6 +145,13 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
                     while (true) {
                         SyncQueueItem msg = mQueue.next();
                         if (msg == null) {
+                            mBackgroundRunning.set(false);
+                            // A message sent by a worker thread after next() returned null, but
+                            // before the flag was cleared, did not start this runnable again.
+                            if (!mQueue.isEmpty()
+                                    && mBackgroundRunning.compareAndSet(false, true)) {
+                                continue;
+                            }
                             break;
                         }
                         switch (msg.what) {
@@ -158,11 +172,15 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
                                 //noinspection unchecked
                                 callback.recycleTile((TileList.Tile<T>) msg.data);
                                 break;
+                            case TILE_LOADED:
+                                //noinspection unchecked
+                                callback.onTileLoaded(
+                                        msg.arg1, (TileList.Tile<T>) msg.data, msg.arg2);
+                                break;
                             default:
                                 Log.e("ThreadUtil", "Unsupported message, what=" + msg.what);
                         }
                     }
-                    mBackgroundRunning.set(false);
                 }
             };
         };
@@ -232,6 +250,10 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
 
         private SyncQueueItem mRoot;
 
+        synchronized boolean isEmpty() {
+            return mRoot == null;
+        }
+
         synchronized SyncQueueItem next() {
             if (mRoot == null) {
                 return null;
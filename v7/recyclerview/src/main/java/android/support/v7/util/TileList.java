@@ -87,6 +87,7 @@ class TileList<T> {
         public final T[] mItems;
         public int mStartPosition;
         public int mItemCount;
+        long mLoadTimeNanos;  // Time spent filling this tile, reported to the ViewCallback.
         Tile<T> mNext;  // Used only for pooling recycled tiles.
 
         public Tile(Class<T> klass, int size) {
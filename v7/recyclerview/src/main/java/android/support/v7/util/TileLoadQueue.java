@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.util;
+
+import android.util.SparseBooleanArray;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * A priority queue of tile load requests drained by a bounded number of workers.
+ * <p>
+ * Requests with a lower priority value are loaded first. Requests with equal priority are loaded
+ * in the order they were enqueued. Pending requests can be cancelled at any time; requests that
+ * a worker has already picked up always run to completion.
+ */
+class TileLoadQueue {
+
+    interface TileLoader {
+        /**
+         * Called on a worker thread to load a single tile.
+         */
+        void loadTile(int generation, int position, int itemCount, int scrollHint);
+    }
+
+    static class Request {
+        int mGeneration;
+        int mPosition;
+        int mItemCount;
+        int mScrollHint;
+        int mPriority;
+        long mSequence;
+    }
+
+    private static final Comparator<Request> PRIORITY_COMPARATOR = new Comparator<Request>() {
+        @Override
+        public int compare(Request lhs, Request rhs) {
+            if (lhs.mPriority != rhs.mPriority) {
+                return lhs.mPriority < rhs.mPriority ? -1 : 1;
+            }
+            if (lhs.mSequence != rhs.mSequence) {
+                return lhs.mSequence < rhs.mSequence ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    private final PriorityQueue<Request> mQueue = new PriorityQueue<>(16, PRIORITY_COMPARATOR);
+    private final Executor mExecutor;
+    private final TileLoader mTileLoader;
+    private final int mMaxWorkers;
+
+    private int mActiveWorkers;
+    private long mNextSequence;
+
+    TileLoadQueue(Executor executor, int maxWorkers, TileLoader tileLoader) {
+        mExecutor = executor;
+        mMaxWorkers = maxWorkers;
+        mTileLoader = tileLoader;
+    }
+
+    /**
+     * Adds a load request and starts a new worker if fewer than the maximum number of workers are
+     * currently running.
+     */
+    void enqueue(int generation, int position, int itemCount, int scrollHint, int priority) {
+        final Request request = new Request();
+        request.mGeneration = generation;
+        request.mPosition = position;
+        request.mItemCount = itemCount;
+        request.mScrollHint = scrollHint;
+        request.mPriority = priority;
+        final boolean startWorker;
+        synchronized (this) {
+            request.mSequence = mNextSequence++;
+            mQueue.add(request);
+            startWorker = mActiveWorkers < mMaxWorkers;
+            if (startWorker) {
+                mActiveWorkers++;
+            }
+        }
+        if (startWorker) {
+            mExecutor.execute(mWorkerRunnable);
+        }
+    }
+
+    /**
+     * Removes all requests that have not been picked up by a worker yet.
+     *
+     * @param outCancelled If not null, the positions of the cancelled requests are removed from
+     *                     this set.
+     * @return The number of cancelled requests.
+     */
+    synchronized int cancelPending(SparseBooleanArray outCancelled) {
+        final int count = mQueue.size();
+        if (outCancelled != null) {
+            for (Request request : mQueue) {
+                outCancelled.delete(request.mPosition);
+            }
+        }
+        mQueue.clear();
+        return count;
+    }
+
+    synchronized int getPendingCount() {
+        return mQueue.size();
+    }
+
+    private final Runnable mWorkerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                final Request request;
+                synchronized (TileLoadQueue.this) {
+                    request = mQueue.poll();
+                    if (request == null) {
+                        mActiveWorkers--;
+                        return;
+                    }
+                }
+                mTileLoader.loadTile(request.mGeneration, request.mPosition, request.mItemCount,
+                        request.mScrollHint);
+            }
+        }
+    };
+}
@@ -105,6 +105,13 @@ public class ThreadUtilTest {
                                 assertBackgroundThread();
                                 setResultData("recycleTile", data);
                             }
+
+                            @Override
+                            public void onTileLoaded(int generation, TileList.Tile<Integer> data,
+                                    int scrollHint) {
+                                assertBackgroundThread();
+                                setResultData("onTileLoaded", generation, data, scrollHint);
+                            }
                         });
             }
         });
@@ -172,6 +179,35 @@ public class ThreadUtilTest {
         assertThat(data, is(new Object[]{tile}));
     }
 
+    @Test
+    public void onTileLoaded() throws InterruptedException {
+        initWait("onTileLoaded");
+        TileList.Tile<Integer> tile = new TileList.Tile<Integer>(Integer.class, 10);
+        mBackgroundProxy.onTileLoaded(3, tile, 2);
+        Object[] data = waitFor("onTileLoaded");
+        assertThat(data, is(new Object[]{3, tile, 2}));
+    }
+
+    @Test
+    public void onTileLoadedFromWorkerThread() throws InterruptedException {
+        final TileList.Tile<Integer> tile = new TileList.Tile<Integer>(Integer.class, 10);
+        // Each tile is loaded from another thread while the background runnable is likely to be
+        // exiting after handling loadTile().
+        for (int i = 0; i < 200; i++) {
+            initWait("onTileLoaded");
+            final int generation = i;
+            mBackgroundProxy.loadTile(i, 0);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    mBackgroundProxy.onTileLoaded(generation, tile, 0);
+                }
+            }).start();
+            Object[] data = waitFor("onTileLoaded");
+            assertThat(data, is(new Object[]{i, tile, 0}));
+        }
+    }
+
     private void assertMainThread() {
         assertThat(Looper.myLooper(), notNullValue());
         assertThat(Looper.myLooper(), sameInstance(Looper.getMainLooper()));
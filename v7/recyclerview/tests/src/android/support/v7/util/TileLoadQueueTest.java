@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import android.support.test.filters.SmallTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.SparseBooleanArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class TileLoadQueueTest {
+    final List<Runnable> mWorkers = new ArrayList<>();
+    final List<Integer> mLoaded = new ArrayList<>();
+
+    TileLoadQueue mQueue;
+
+    @Before
+    public void setUp() throws Exception {
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mWorkers.add(command);
+            }
+        };
+        mQueue = new TileLoadQueue(executor, 2, new TileLoadQueue.TileLoader() {
+            @Override
+            public void loadTile(int generation, int position, int itemCount, int scrollHint) {
+                mLoaded.add(position);
+            }
+        });
+    }
+
+    @Test
+    public void startsUpToMaxWorkers() {
+        mQueue.enqueue(0, 0, 10, 0, 0);
+        mQueue.enqueue(0, 10, 10, 0, 0);
+        mQueue.enqueue(0, 20, 10, 0, 0);
+        assertThat(mWorkers.size(), is(2));
+        assertThat(mQueue.getPendingCount(), is(3));
+    }
+
+    @Test
+    public void loadsByPriorityThenInOrder() {
+        mQueue.enqueue(0, 0, 10, 0, 2);
+        mQueue.enqueue(0, 10, 10, 0, 0);
+        mQueue.enqueue(0, 20, 10, 0, 1);
+        mQueue.enqueue(0, 30, 10, 0, 0);
+        mWorkers.get(0).run();
+        assertThat(mLoaded, is(Arrays.asList(10, 30, 20, 0)));
+        assertThat(mQueue.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void workerRestartsAfterDraining() {
+        mQueue.enqueue(0, 0, 10, 0, 0);
+        mWorkers.get(0).run();
+        mWorkers.clear();
+        mQueue.enqueue(0, 10, 10, 0, 0);
+        assertThat(mWorkers.size(), is(1));
+    }
+
+    @Test
+    public void cancelPending() {
+        SparseBooleanArray loading = new SparseBooleanArray();
+        loading.put(0, true);
+        loading.put(10, true);
+        loading.put(20, true);
+        mQueue.enqueue(0, 0, 10, 0, 0);
+        mQueue.enqueue(0, 10, 10, 0, 0);
+        assertThat(mQueue.cancelPending(loading), is(2));
+        assertThat(loading.size(), is(1));
+        assertThat(loading.get(20), is(true));
+        mWorkers.get(0).run();
+        assertThat(mLoaded.isEmpty(), is(true));
+    }
+}